@@ -0,0 +1,257 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.liveramp.hank.config.BaseReaderConfigurator;
+import com.liveramp.hank.config.ReaderConfigurator;
+import com.liveramp.hank.config.SimpleDataDirectoriesConfigurator;
+import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.GzipCueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.Lz4CueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.ZstdCueballCompressionCodec;
+import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.coordinator.DomainVersion;
+import com.liveramp.hank.coordinator.mock.MockDomain;
+import com.liveramp.hank.coordinator.mock.MockDomainVersion;
+import com.liveramp.hank.hasher.Murmur64Hasher;
+import com.liveramp.hank.partitioner.Partitioner;
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.IOEngine;
+import com.liveramp.hank.storage.PartitionRemoteFileOps;
+import com.liveramp.hank.storage.StorageEngine;
+import com.liveramp.hank.storage.SynchronousIOEngine;
+import com.liveramp.hank.storage.cueball.Cueball;
+import com.liveramp.hank.storage.curly.Curly;
+import com.liveramp.hank.storage.curly.TestDomainGenerator;
+import com.liveramp.hank.storage.incremental.IncrementalDomainVersionProperties;
+
+/**
+ * Shared fixture parameters and helpers. Fixtures are written by the TestDomainGenerator
+ * of each storage engine into a temporary data directory, laid out as a partition server
+ * data directory (dataDirectory/domainName/partitionNumber).
+ */
+final class BenchmarkFixtures {
+
+  static final String DOMAIN_NAME = "benchmark_domain";
+  static final long SEED = 7;
+  static final int NUM_RECORDS = 100000;
+  static final int KEY_LENGTH = 16;
+  static final int KEY_HASH_SIZE = 10;
+  static final int HASH_INDEX_BITS = 12;
+  static final int VALUE_SIZE = 32;
+  static final long CACHE_NUM_BYTES_CAPACITY = 64L << 20;
+  static final int BUFFER_REUSE_MAX_SIZE = 1 << 10;
+
+  // Cache configurations of reader benchmarks
+  static final String CACHE_NONE = "none";
+  static final String CACHE_HEAP = "heap";
+  static final String CACHE_OFF_HEAP = "off_heap";
+  static final String CACHE_HEAP_ADMISSION_FILTER = "heap_admission_filter";
+  // Decompressed blocks are cached instead of values
+  static final String CACHE_BLOCK = "block";
+
+  // Compression codecs of reader benchmarks
+  static final String CODEC_NONE = "none";
+  static final String CODEC_GZIP = "gzip";
+  static final String CODEC_LZ4 = "lz4";
+  static final String CODEC_ZSTD = "zstd";
+
+  private BenchmarkFixtures() {
+  }
+
+  static File createDataDirectory() throws IOException {
+    return Files.createTempDirectory("hank-benchmarks").toFile();
+  }
+
+  static File getDomainDirectory(File dataDirectory) {
+    return new File(dataDirectory, DOMAIN_NAME);
+  }
+
+  static void deleteDataDirectory(File dataDirectory) throws IOException {
+    if (dataDirectory != null) {
+      FileUtils.deleteDirectory(dataDirectory);
+    }
+  }
+
+  static Class<? extends CueballCompressionCodec> getCueballCompressionCodecClass(String codec) {
+    if (codec.equals(CODEC_NONE)) {
+      return NoCueballCompressionCodec.class;
+    } else if (codec.equals(CODEC_GZIP)) {
+      return GzipCueballCompressionCodec.class;
+    } else if (codec.equals(CODEC_LZ4)) {
+      return Lz4CueballCompressionCodec.class;
+    } else if (codec.equals(CODEC_ZSTD)) {
+      return ZstdCueballCompressionCodec.class;
+    } else {
+      throw new IllegalArgumentException("Unknown codec: " + codec);
+    }
+  }
+
+  static CompressionCodec getBlockCompressionCodec(String codec) {
+    if (codec.equals(CODEC_NONE)) {
+      return null;
+    } else {
+      return CompressionCodec.valueOf(codec.toUpperCase());
+    }
+  }
+
+  static Map<Integer, List<byte[]>> generateCueball(File dataDirectory,
+                                                    Class<? extends CueballCompressionCodec> codecClass,
+                                                    int numPartitions,
+                                                    Partitioner partitioner) throws IOException {
+    return com.liveramp.hank.storage.cueball.TestDomainGenerator.generate(
+        getDomainDirectory(dataDirectory).getPath(), getBaseVersion(0), SEED, NUM_RECORDS, KEY_LENGTH,
+        KEY_HASH_SIZE, HASH_INDEX_BITS, VALUE_SIZE, new Murmur64Hasher(), codecClass, numPartitions, partitioner);
+  }
+
+  static Map<Integer, List<byte[]>> generateCurly(File dataDirectory,
+                                                  CompressionCodec blockCompressionCodec,
+                                                  int numPartitions,
+                                                  Partitioner partitioner) throws IOException {
+    return TestDomainGenerator.generate(
+        getDomainDirectory(dataDirectory).getPath(), getBaseVersion(0), SEED, NUM_RECORDS, KEY_LENGTH,
+        KEY_HASH_SIZE, HASH_INDEX_BITS, VALUE_SIZE, new Murmur64Hasher(), NoCueballCompressionCodec.class,
+        numPartitions, partitioner, blockCompressionCodec);
+  }
+
+  // Storage engines matching the generated fixtures
+  static Cueball getCueball(Class<? extends CueballCompressionCodec> codecClass,
+                            int numPartitions,
+                            Partitioner partitioner) {
+    return new Cueball(KEY_HASH_SIZE, new Murmur64Hasher(), VALUE_SIZE, HASH_INDEX_BITS, "", null,
+        codecClass, getDomain(numPartitions, partitioner, null), 0);
+  }
+
+  static Curly getCurly(CompressionCodec blockCompressionCodec,
+                        int numPartitions,
+                        Partitioner partitioner) {
+    return new Curly(KEY_HASH_SIZE, new Murmur64Hasher(), TestDomainGenerator.MAX_ALLOWED_PART_SIZE,
+        HASH_INDEX_BITS, TestDomainGenerator.RECORD_FILE_READ_BUFFER_BYTES, "", null,
+        NoCueballCompressionCodec.class, getDomain(numPartitions, partitioner, null), 0, -1,
+        blockCompressionCodec,
+        blockCompressionCodec == null ? -1 : TestDomainGenerator.COMPRESSED_BLOCK_SIZE_THRESHOLD,
+        blockCompressionCodec == null ? -1 : TestDomainGenerator.OFFSET_IN_BLOCK_NUM_BYTES);
+  }
+
+  static Domain getDomain(int numPartitions, Partitioner partitioner, StorageEngine storageEngine) {
+    return new MockDomain(DOMAIN_NAME, 0, numPartitions, partitioner, storageEngine, null, null);
+  }
+
+  static DomainVersion getBaseVersion(int versionNumber) {
+    return new MockDomainVersion(versionNumber, 0L, new IncrementalDomainVersionProperties.Base());
+  }
+
+  static DomainVersion getDeltaVersion(int versionNumber) {
+    return new MockDomainVersion(versionNumber, 0L, new IncrementalDomainVersionProperties.Delta(versionNumber - 1));
+  }
+
+  static ReaderConfigurator getReaderConfigurator(File dataDirectory,
+                                                  String cache,
+                                                  boolean useMemoryMappedFiles,
+                                                  int numTotalPartitions) {
+    return getReaderConfigurator(dataDirectory, cache, useMemoryMappedFiles, numTotalPartitions, new SynchronousIOEngine());
+  }
+
+  static ReaderConfigurator getReaderConfigurator(File dataDirectory,
+                                                  String cache,
+                                                  boolean useMemoryMappedFiles,
+                                                  int numTotalPartitions,
+                                                  IOEngine ioEngine) {
+    boolean enabled = !CACHE_NONE.equals(cache) && !CACHE_BLOCK.equals(cache);
+    return new BaseReaderConfigurator(
+        new SimpleDataDirectoriesConfigurator(dataDirectory.getAbsolutePath()),
+        enabled ? CACHE_NUM_BYTES_CAPACITY : 0,
+        enabled ? NUM_RECORDS : 0,
+        BUFFER_REUSE_MAX_SIZE,
+        numTotalPartitions,
+        useMemoryMappedFiles,
+        CACHE_OFF_HEAP.equals(cache),
+        CACHE_HEAP_ADMISSION_FILTER.equals(cache),
+        ioEngine,
+        new BlockCache(CACHE_BLOCK.equals(cache) ? CACHE_NUM_BYTES_CAPACITY : 0));
+  }
+
+  // Flatten and shuffle the generated keys so that reads do not follow the on-disk order
+  static ByteBuffer[] getKeys(Map<Integer, List<byte[]>> partitionedKeys) {
+    List<ByteBuffer> result = new ArrayList<ByteBuffer>();
+    for (List<byte[]> keys : partitionedKeys.values()) {
+      for (byte[] key : keys) {
+        result.add(ByteBuffer.wrap(key));
+      }
+    }
+    Collections.shuffle(result, new Random(SEED));
+    return result.toArray(new ByteBuffer[result.size()]);
+  }
+
+  // Writers are benchmarked without the cost of actual I/O
+  static class DiscardingPartitionRemoteFileOps implements PartitionRemoteFileOps {
+
+    @Override
+    public InputStream getInputStream(String remoteRelativePath) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public OutputStream getOutputStream(String remoteRelativePath) {
+      return new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+      };
+    }
+
+    @Override
+    public boolean exists(String remoteRelativePath) {
+      return false;
+    }
+
+    @Override
+    public void copyToLocalRoot(String remoteSourceRelativePath, String localDestinationRoot) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean attemptDelete(String remoteRelativePath) {
+      return false;
+    }
+
+    @Override
+    public String getRemoteAbsolutePath(String remoteRelativePath) {
+      return remoteRelativePath;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks matching an optional regular expression and write the results as JSON,
+ * so that runs can be archived and compared across builds.
+ * <p/>
+ * Usage: java -jar hank-benchmarks/target/benchmarks.jar [&lt;include regex&gt; [&lt;result file&gt;]]
+ */
+public class BenchmarkRunner {
+
+  private static final String DEFAULT_INCLUDE = ".*";
+  private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : DEFAULT_INCLUDE;
+    String resultFile = args.length > 1 ? args[1] : DEFAULT_RESULT_FILE;
+    Options options = new OptionsBuilder()
+        .include(include)
+        .resultFormat(ResultFormatType.JSON)
+        .result(resultFile)
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.storage.cueball.CueballBlockSearch;
+import com.liveramp.hank.storage.cueball.HashPrefixCalculator;
+
+/**
+ * Search of key hashes within decompressed Cueball blocks, without I/O or decompression. Fewer
+ * hash index bits make for larger blocks. Half of the searched key hashes are absent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CueballBlockSearchBenchmark {
+
+  private static final int RECORD_SIZE = BenchmarkFixtures.KEY_HASH_SIZE + BenchmarkFixtures.VALUE_SIZE;
+
+  @Param({"4", "8", "12", "16"})
+  public int hashIndexBits;
+
+  // Records of all blocks, contiguous and sorted by key hash
+  private byte[] records;
+  private int[] blockStarts;
+  private byte[][] keyHashes;
+  private int[] keyHashPrefixes;
+  private int keyIndex = 0;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(BenchmarkFixtures.SEED);
+    byte[][] recordKeyHashes = new byte[BenchmarkFixtures.NUM_RECORDS][BenchmarkFixtures.KEY_HASH_SIZE];
+    for (byte[] keyHash : recordKeyHashes) {
+      random.nextBytes(keyHash);
+    }
+    Arrays.sort(recordKeyHashes, new Comparator<byte[]>() {
+      @Override
+      public int compare(byte[] a, byte[] b) {
+        return BytesUtils.compareBytesUnsigned(a, 0, b, 0, BenchmarkFixtures.KEY_HASH_SIZE);
+      }
+    });
+    HashPrefixCalculator prefixer = new HashPrefixCalculator(hashIndexBits);
+    records = new byte[BenchmarkFixtures.NUM_RECORDS * RECORD_SIZE];
+    blockStarts = new int[(1 << hashIndexBits) + 1];
+    int prefix = 0;
+    for (int i = 0; i < BenchmarkFixtures.NUM_RECORDS; ++i) {
+      int recordPrefix = prefixer.getHashPrefix(recordKeyHashes[i], 0);
+      while (prefix <= recordPrefix) {
+        blockStarts[prefix++] = i * RECORD_SIZE;
+      }
+      System.arraycopy(recordKeyHashes[i], 0, records, i * RECORD_SIZE, BenchmarkFixtures.KEY_HASH_SIZE);
+    }
+    while (prefix < blockStarts.length) {
+      blockStarts[prefix++] = records.length;
+    }
+
+    keyHashes = new byte[BenchmarkFixtures.NUM_RECORDS][];
+    keyHashPrefixes = new int[BenchmarkFixtures.NUM_RECORDS];
+    for (int i = 0; i < BenchmarkFixtures.NUM_RECORDS; ++i) {
+      if (random.nextBoolean()) {
+        keyHashes[i] = recordKeyHashes[random.nextInt(BenchmarkFixtures.NUM_RECORDS)];
+      } else {
+        keyHashes[i] = new byte[BenchmarkFixtures.KEY_HASH_SIZE];
+        random.nextBytes(keyHashes[i]);
+      }
+      keyHashPrefixes[i] = prefixer.getHashPrefix(keyHashes[i], 0);
+    }
+  }
+
+  // Record by record scan comparing bytes one at a time, as done before bisection
+  @Benchmark
+  public int scanBytes() {
+    byte[] keyHash = nextKeyHash();
+    int prefix = keyHashPrefixes[keyIndex];
+    for (int offset = blockStarts[prefix]; offset < blockStarts[prefix + 1]; offset += RECORD_SIZE) {
+      int comparison = BytesUtils.compareBytesUnsigned(records, offset, keyHash, 0, BenchmarkFixtures.KEY_HASH_SIZE);
+      if (comparison == 0) {
+        return offset;
+      } else if (comparison > 0) {
+        break;
+      }
+    }
+    return -1;
+  }
+
+  @Benchmark
+  public int scan() {
+    byte[] keyHash = nextKeyHash();
+    int prefix = keyHashPrefixes[keyIndex];
+    return CueballBlockSearch.scanLowerBound(records, blockStarts[prefix], blockStarts[prefix + 1], RECORD_SIZE,
+        keyHash, 0, BenchmarkFixtures.KEY_HASH_SIZE);
+  }
+
+  @Benchmark
+  public int bisect() {
+    byte[] keyHash = nextKeyHash();
+    int prefix = keyHashPrefixes[keyIndex];
+    return CueballBlockSearch.lowerBound(records, blockStarts[prefix], blockStarts[prefix + 1], RECORD_SIZE,
+        keyHash, 0, BenchmarkFixtures.KEY_HASH_SIZE);
+  }
+
+  private byte[] nextKeyHash() {
+    if (++keyIndex == keyHashes.length) {
+      keyIndex = 0;
+    }
+    return keyHashes[keyIndex];
+  }
+}
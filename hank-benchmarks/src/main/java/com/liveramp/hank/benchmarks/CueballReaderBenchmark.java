@@ -0,0 +1,98 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.partitioner.ConstantPartitioner;
+import com.liveramp.hank.partitioner.Partitioner;
+import com.liveramp.hank.storage.Reader;
+import com.liveramp.hank.storage.ReaderResult;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CueballReaderBenchmark {
+
+  @Param({BenchmarkFixtures.CODEC_NONE, BenchmarkFixtures.CODEC_GZIP, BenchmarkFixtures.CODEC_LZ4,
+      BenchmarkFixtures.CODEC_ZSTD})
+  public String codec;
+
+  @Param({BenchmarkFixtures.CACHE_NONE, BenchmarkFixtures.CACHE_HEAP, BenchmarkFixtures.CACHE_OFF_HEAP,
+      BenchmarkFixtures.CACHE_HEAP_ADMISSION_FILTER, BenchmarkFixtures.CACHE_BLOCK})
+  public String cache;
+
+  @Param({"false", "true"})
+  public boolean mmap;
+
+  private File dataDirectory;
+  private Reader reader;
+  private ByteBuffer[] keys;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private final ReaderResult result = new ReaderResult();
+    private int keyIndex = 0;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Class<? extends CueballCompressionCodec> codecClass = BenchmarkFixtures.getCueballCompressionCodecClass(codec);
+    Partitioner partitioner = new ConstantPartitioner();
+    dataDirectory = BenchmarkFixtures.createDataDirectory();
+    keys = BenchmarkFixtures.getKeys(BenchmarkFixtures.generateCueball(dataDirectory, codecClass, 1, partitioner));
+    reader = BenchmarkFixtures.getCueball(codecClass, 1, partitioner)
+        .getReader(BenchmarkFixtures.getReaderConfigurator(dataDirectory, cache, mmap, 1), 0);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    reader.close();
+    BenchmarkFixtures.deleteDataDirectory(dataDirectory);
+  }
+
+  @Benchmark
+  public ReaderResult get(ThreadState state) throws IOException {
+    if (state.keyIndex == keys.length) {
+      state.keyIndex = 0;
+    }
+    state.result.clear();
+    reader.get(keys[state.keyIndex++], state.result);
+    return state.result;
+  }
+}
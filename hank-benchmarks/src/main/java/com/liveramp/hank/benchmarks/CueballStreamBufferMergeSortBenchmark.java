@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.GzipCueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.hasher.Murmur64Hasher;
+import com.liveramp.hank.partitioner.ConstantPartitioner;
+import com.liveramp.hank.storage.cueball.Cueball;
+import com.liveramp.hank.storage.cueball.CueballFilePath;
+import com.liveramp.hank.storage.cueball.CueballStreamBufferMergeSort;
+import com.liveramp.hank.storage.cueball.TestDomainGenerator;
+
+/**
+ * Time to merge a Cueball base with a number of deltas, as done when updating a partition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CueballStreamBufferMergeSortBenchmark {
+
+  @Param({"false", "true"})
+  public boolean compressed;
+
+  @Param({"1", "4"})
+  public int numDeltas;
+
+  private File dataDirectory;
+  private CueballCompressionCodec codec;
+  private CueballFilePath base;
+  private List<CueballFilePath> deltas;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Class<? extends CueballCompressionCodec> codecClass =
+        compressed ? GzipCueballCompressionCodec.class : NoCueballCompressionCodec.class;
+    codec = compressed ? new GzipCueballCompressionCodec() : new NoCueballCompressionCodec();
+    dataDirectory = BenchmarkFixtures.createDataDirectory();
+    String domainDirectory = BenchmarkFixtures.getDomainDirectory(dataDirectory).getPath();
+    TestDomainGenerator.generate(domainDirectory, BenchmarkFixtures.getBaseVersion(0), BenchmarkFixtures.SEED,
+        BenchmarkFixtures.NUM_RECORDS, BenchmarkFixtures.KEY_LENGTH, BenchmarkFixtures.KEY_HASH_SIZE,
+        BenchmarkFixtures.HASH_INDEX_BITS, BenchmarkFixtures.VALUE_SIZE, new Murmur64Hasher(), codecClass,
+        1, new ConstantPartitioner());
+    // Deltas are a tenth of the size of the base
+    for (int versionNumber = 1; versionNumber <= numDeltas; ++versionNumber) {
+      TestDomainGenerator.generate(domainDirectory, BenchmarkFixtures.getDeltaVersion(versionNumber),
+          BenchmarkFixtures.SEED + versionNumber, BenchmarkFixtures.NUM_RECORDS / 10, BenchmarkFixtures.KEY_LENGTH,
+          BenchmarkFixtures.KEY_HASH_SIZE, BenchmarkFixtures.HASH_INDEX_BITS, BenchmarkFixtures.VALUE_SIZE,
+          new Murmur64Hasher(), codecClass, 1, new ConstantPartitioner());
+    }
+    String partitionRoot = domainDirectory + "/0";
+    base = Cueball.getBases(partitionRoot).last();
+    deltas = new ArrayList<CueballFilePath>(Cueball.getDeltas(partitionRoot));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkFixtures.deleteDataDirectory(dataDirectory);
+  }
+
+  @Benchmark
+  public int merge() throws IOException {
+    CueballStreamBufferMergeSort mergeSort = new CueballStreamBufferMergeSort(base, deltas,
+        BenchmarkFixtures.KEY_HASH_SIZE, BenchmarkFixtures.VALUE_SIZE, BenchmarkFixtures.HASH_INDEX_BITS, codec, null);
+    int numRecords = 0;
+    while (mergeSort.nextKeyHashAndValueAndStreamIndex() != null) {
+      ++numRecords;
+    }
+    mergeSort.close();
+    return numRecords;
+  }
+}
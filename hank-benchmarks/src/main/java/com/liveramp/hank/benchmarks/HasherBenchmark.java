@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.hasher.Hasher;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HasherBenchmark {
+
+  @Param({
+      "com.liveramp.hank.hasher.Murmur64Hasher",
+      "com.liveramp.hank.hasher.IdentityHasher",
+      "com.liveramp.hank.hasher.LeftPaddedIdentityHasher"})
+  public String hasherClass;
+
+  @Param({"8", "16", "64"})
+  public int keyLength;
+
+  private Hasher hasher;
+  private ByteBuffer key;
+  private byte[] keyHash;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    hasher = (Hasher)Class.forName(hasherClass).newInstance();
+    byte[] keyBytes = new byte[keyLength];
+    new Random(BenchmarkFixtures.SEED).nextBytes(keyBytes);
+    key = ByteBuffer.wrap(keyBytes);
+    // Identity hashers require hashes of the size of the key
+    keyHash = new byte[keyLength];
+  }
+
+  @Benchmark
+  public byte[] hash() {
+    hasher.hash(key, keyLength, keyHash);
+    return keyHash;
+  }
+}
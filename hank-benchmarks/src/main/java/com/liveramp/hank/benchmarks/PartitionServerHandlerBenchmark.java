@@ -0,0 +1,359 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.config.PartitionServerConfigurator;
+import com.liveramp.hank.config.ReaderConfigurator;
+import com.liveramp.hank.coordinator.Coordinator;
+import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.coordinator.DomainAndVersion;
+import com.liveramp.hank.coordinator.Host;
+import com.liveramp.hank.coordinator.HostDomain;
+import com.liveramp.hank.coordinator.PartitionServerAddress;
+import com.liveramp.hank.coordinator.Ring;
+import com.liveramp.hank.coordinator.RingGroup;
+import com.liveramp.hank.coordinator.mock.MockCoordinator;
+import com.liveramp.hank.coordinator.mock.MockDomainGroup;
+import com.liveramp.hank.generated.HankBulkResponse;
+import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.partition_server.ExecutionMode;
+import com.liveramp.hank.partition_server.PartitionServerHandler;
+import com.liveramp.hank.partitioner.Murmur64Partitioner;
+import com.liveramp.hank.partitioner.Partitioner;
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.IOEngine;
+import com.liveramp.hank.storage.IOEngines;
+import com.liveramp.hank.storage.cueball.Cueball;
+import com.liveramp.hank.test.coordinator.MockHost;
+import com.liveramp.hank.test.coordinator.MockHostDomain;
+import com.liveramp.hank.test.coordinator.MockRing;
+import com.liveramp.hank.test.coordinator.MockRingGroup;
+
+/**
+ * In-process GET and GET BULK requests served by a partition server handler over
+ * Cueball partitions, without Thrift and network overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PartitionServerHandlerBenchmark {
+
+  private static final String RING_GROUP_NAME = "benchmark_ring_group";
+  private static final PartitionServerAddress ADDRESS = new PartitionServerAddress("localhost", 12345);
+  private static final int NUM_PARTITIONS = 4;
+  private static final int BULK_SIZE = 64;
+
+  @Param({BenchmarkFixtures.CACHE_NONE, BenchmarkFixtures.CACHE_HEAP})
+  public String cache;
+
+  // Number of I/O engine threads per data directory, reads are synchronous when there are none
+  @Param({"0", "16"})
+  public int ioEngineThreads;
+
+  @Param({"THREAD_POOL", "FORK_JOIN", "VIRTUAL_THREADS"})
+  public ExecutionMode executionMode;
+
+  private File dataDirectory;
+  private IOEngine ioEngine;
+  private PartitionServerHandler handler;
+  private ByteBuffer[] keys;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private final List<ByteBuffer> bulkKeys = new ArrayList<ByteBuffer>(BULK_SIZE);
+    private int keyIndex = 0;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Partitioner partitioner = new Murmur64Partitioner();
+    dataDirectory = BenchmarkFixtures.createDataDirectory();
+    keys = BenchmarkFixtures.getKeys(BenchmarkFixtures.generateCueball(dataDirectory,
+        NoCueballCompressionCodec.class, NUM_PARTITIONS, partitioner));
+    Cueball cueball = BenchmarkFixtures.getCueball(NoCueballCompressionCodec.class, NUM_PARTITIONS, partitioner);
+    Domain domain = BenchmarkFixtures.getDomain(NUM_PARTITIONS, partitioner, cueball);
+    Coordinator coordinator = getCoordinator(domain);
+    ioEngine = IOEngines.create(Collections.singleton(dataDirectory.getAbsolutePath()), ioEngineThreads);
+    handler = new PartitionServerHandler(ADDRESS,
+        new BenchmarkPartitionServerConfigurator(dataDirectory, cache, ioEngine, executionMode, coordinator),
+        coordinator);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    handler.shutDown();
+    ioEngine.close();
+    BenchmarkFixtures.deleteDataDirectory(dataDirectory);
+  }
+
+  @Benchmark
+  public HankResponse get(ThreadState state) {
+    return handler.get(0, nextKey(state));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BULK_SIZE)
+  public HankBulkResponse getBulk(ThreadState state) {
+    state.bulkKeys.clear();
+    for (int i = 0; i < BULK_SIZE; ++i) {
+      state.bulkKeys.add(nextKey(state));
+    }
+    return handler.getBulk(0, state.bulkKeys);
+  }
+
+  private ByteBuffer nextKey(ThreadState state) {
+    if (state.keyIndex == keys.length) {
+      state.keyIndex = 0;
+    }
+    return keys[state.keyIndex++];
+  }
+
+  // The host serves all partitions of the domain, at version 0
+  private static Coordinator getCoordinator(final Domain domain) {
+    int[] partitionNumberAndVersionPairs = new int[2 * NUM_PARTITIONS];
+    for (int partitionNumber = 0; partitionNumber < NUM_PARTITIONS; ++partitionNumber) {
+      partitionNumberAndVersionPairs[2 * partitionNumber] = partitionNumber;
+    }
+    final HostDomain hostDomain = new MockHostDomain(domain, partitionNumberAndVersionPairs);
+    final Host host = new MockHost(ADDRESS) {
+      @Override
+      public HostDomain getHostDomain(Domain domain) {
+        return hostDomain;
+      }
+    };
+    final MockDomainGroup domainGroup = new MockDomainGroup("benchmark_domain_group") {
+      @Override
+      public Set<DomainAndVersion> getDomainVersions() throws IOException {
+        Set<DomainAndVersion> result = new HashSet<DomainAndVersion>();
+        result.add(new DomainAndVersion(domain, 0));
+        return result;
+      }
+    };
+    final MockRing ring = new MockRing(null, new MockRingGroup(domainGroup, RING_GROUP_NAME, null), 1) {
+      @Override
+      public Host getHostByAddress(PartitionServerAddress address) {
+        return host;
+      }
+    };
+    return new MockCoordinator() {
+      @Override
+      public RingGroup getRingGroup(String ringGroupName) {
+        return new MockRingGroup(domainGroup, RING_GROUP_NAME, null) {
+          @Override
+          public Ring getRingForHost(PartitionServerAddress hostAddress) {
+            return ring;
+          }
+        };
+      }
+    };
+  }
+
+  private static class BenchmarkPartitionServerConfigurator implements PartitionServerConfigurator {
+
+    private final File dataDirectory;
+    private final String cache;
+    private final IOEngine ioEngine;
+    private final ExecutionMode executionMode;
+    private final Coordinator coordinator;
+
+    private BenchmarkPartitionServerConfigurator(File dataDirectory,
+                                                 String cache,
+                                                 IOEngine ioEngine,
+                                                 ExecutionMode executionMode,
+                                                 Coordinator coordinator) {
+      this.dataDirectory = dataDirectory;
+      this.cache = cache;
+      this.ioEngine = ioEngine;
+      this.executionMode = executionMode;
+      this.coordinator = coordinator;
+    }
+
+    @Override
+    public Set<String> getDataDirectories() {
+      return Collections.singleton(dataDirectory.getAbsolutePath());
+    }
+
+    @Override
+    public int getUpdateMergeParallelism() {
+      return 1;
+    }
+
+    @Override
+    public boolean getUpdateStreamDeltas() {
+      return false;
+    }
+
+    @Override
+    public int getKeyFileFilterBitsPerKey() {
+      return 0;
+    }
+
+    @Override
+    public int getServicePort() {
+      return ADDRESS.getPortNumber();
+    }
+
+    @Override
+    public Coordinator createCoordinator() {
+      return coordinator;
+    }
+
+    @Override
+    public String getRingGroupName() {
+      return RING_GROUP_NAME;
+    }
+
+    @Override
+    public int getNumConcurrentQueries() {
+      return 1;
+    }
+
+    @Override
+    public int getNumConcurrentGetBulkTasks() {
+      return 2;
+    }
+
+    @Override
+    public ExecutionMode getExecutionMode() {
+      return executionMode;
+    }
+
+    @Override
+    public int getNumSelectorThreads() {
+      return 1;
+    }
+
+    @Override
+    public int getMetricsPort() {
+      return 0;
+    }
+
+    @Override
+    public int getGetBulkTaskSize() {
+      return BULK_SIZE / 2;
+    }
+
+    @Override
+    public int getGetTimerAggregatorWindow() {
+      return 1 << 16;
+    }
+
+    @Override
+    public long getUpdateFailureCooldown() {
+      return 0;
+    }
+
+    @Override
+    public boolean getUseOnlineUpdates() {
+      return false;
+    }
+
+    @Override
+    public int getBufferReuseMaxSize() {
+      return BenchmarkFixtures.BUFFER_REUSE_MAX_SIZE;
+    }
+
+    @Override
+    public long getCacheNumBytesCapacity() {
+      return getReaderConfigurator(1).getCacheNumBytesCapacity();
+    }
+
+    @Override
+    public long getCacheNumItemsCapacity() {
+      return getReaderConfigurator(1).getCacheNumItemsCapacity();
+    }
+
+    @Override
+    public boolean getUseMemoryMappedFiles() {
+      return false;
+    }
+
+    @Override
+    public boolean getUseOffHeapCache() {
+      return false;
+    }
+
+    @Override
+    public boolean getUseCacheAdmissionFilter() {
+      return false;
+    }
+
+    @Override
+    public int getNumIOEngineThreadsPerDataDirectory() {
+      return ioEngine.getMaxNumReadsInFlight();
+    }
+
+    @Override
+    public IOEngine getIOEngine() {
+      return ioEngine;
+    }
+
+    @Override
+    public long getBlockCacheNumBytesCapacity() {
+      return 0;
+    }
+
+    @Override
+    public BlockCache getBlockCache() {
+      return new BlockCache(0);
+    }
+
+    @Override
+    public ReaderConfigurator getReaderConfigurator(int numTotalPartitions) {
+      return BenchmarkFixtures.getReaderConfigurator(dataDirectory, cache, false, numTotalPartitions, ioEngine);
+    }
+
+    @Override
+    public int getNumConcurrentUpdates() {
+      return 1;
+    }
+
+    @Override
+    public int getMaxConcurrentUpdatesPerDataDirectory() {
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.hasher.Hasher;
+import com.liveramp.hank.hasher.Murmur64Hasher;
+import com.liveramp.hank.partitioner.ConstantPartitioner;
+import com.liveramp.hank.storage.StorageEngine;
+import com.liveramp.hank.storage.Writer;
+
+/**
+ * Throughput of writing one partition of records, in records per second. Output is discarded
+ * so that only encoding, hashing and compression are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriterBenchmark {
+
+  @Param({BenchmarkFixtures.CODEC_NONE, BenchmarkFixtures.CODEC_GZIP, BenchmarkFixtures.CODEC_LZ4,
+      BenchmarkFixtures.CODEC_ZSTD})
+  public String codec;
+
+  private StorageEngine cueball;
+  private StorageEngine curly;
+  private ByteBuffer[] keys;
+  private ByteBuffer[] values;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    cueball = BenchmarkFixtures.getCueball(
+        BenchmarkFixtures.getCueballCompressionCodecClass(codec), 1, new ConstantPartitioner());
+    curly = BenchmarkFixtures.getCurly(BenchmarkFixtures.getBlockCompressionCodec(codec), 1, new ConstantPartitioner());
+
+    // Writers require keys in the order of their hashes
+    final Hasher hasher = new Murmur64Hasher();
+    Random random = new Random(BenchmarkFixtures.SEED);
+    final byte[][] keyHashes = new byte[BenchmarkFixtures.NUM_RECORDS][];
+    ByteBuffer[] unsortedKeys = new ByteBuffer[BenchmarkFixtures.NUM_RECORDS];
+    Integer[] order = new Integer[BenchmarkFixtures.NUM_RECORDS];
+    for (int i = 0; i < BenchmarkFixtures.NUM_RECORDS; ++i) {
+      byte[] key = new byte[BenchmarkFixtures.KEY_LENGTH];
+      random.nextBytes(key);
+      unsortedKeys[i] = ByteBuffer.wrap(key);
+      keyHashes[i] = new byte[BenchmarkFixtures.KEY_HASH_SIZE];
+      hasher.hash(unsortedKeys[i], BenchmarkFixtures.KEY_HASH_SIZE, keyHashes[i]);
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return BytesUtils.compareBytesUnsigned(ByteBuffer.wrap(keyHashes[a]), ByteBuffer.wrap(keyHashes[b]));
+      }
+    });
+    keys = new ByteBuffer[BenchmarkFixtures.NUM_RECORDS];
+    values = new ByteBuffer[BenchmarkFixtures.NUM_RECORDS];
+    for (int i = 0; i < BenchmarkFixtures.NUM_RECORDS; ++i) {
+      keys[i] = unsortedKeys[order[i]];
+      byte[] value = new byte[BenchmarkFixtures.VALUE_SIZE];
+      random.nextBytes(value);
+      values[i] = ByteBuffer.wrap(value);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkFixtures.NUM_RECORDS)
+  public Writer writeCueball() throws IOException {
+    return write(cueball);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BenchmarkFixtures.NUM_RECORDS)
+  public Writer writeCurly() throws IOException {
+    return write(curly);
+  }
+
+  private Writer write(StorageEngine storageEngine) throws IOException {
+    Writer writer = storageEngine.getWriter(BenchmarkFixtures.getBaseVersion(0),
+        new BenchmarkFixtures.DiscardingPartitionRemoteFileOps(), 0);
+    for (int i = 0; i < keys.length; ++i) {
+      writer.write(keys[i], values[i]);
+    }
+    writer.close();
+    return writer;
+  }
+}
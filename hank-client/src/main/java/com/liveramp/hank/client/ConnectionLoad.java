@@ -20,15 +20,32 @@ class ConnectionLoad {
 
   private int numConnections;
   private int numConnectionsLocked;
+  private double totalLatencyMs;
+  private int numLatencyMeasurements;
+  private int numOutstandingRequests;
 
   ConnectionLoad(int numConnections, int numConnectionsLocked) {
+    this(numConnections, numConnectionsLocked, 0, 0, 0);
+  }
+
+  ConnectionLoad(int numConnections,
+                 int numConnectionsLocked,
+                 double totalLatencyMs,
+                 int numLatencyMeasurements,
+                 int numOutstandingRequests) {
     this.numConnections = numConnections;
     this.numConnectionsLocked = numConnectionsLocked;
+    this.totalLatencyMs = totalLatencyMs;
+    this.numLatencyMeasurements = numLatencyMeasurements;
+    this.numOutstandingRequests = numOutstandingRequests;
   }
 
   public ConnectionLoad() {
     this.numConnections = 0;
     this.numConnectionsLocked = 0;
+    this.totalLatencyMs = 0;
+    this.numLatencyMeasurements = 0;
+    this.numOutstandingRequests = 0;
   }
 
   public int getNumConnections() {
@@ -39,13 +56,28 @@ class ConnectionLoad {
     return numConnectionsLocked;
   }
 
+  public int getNumOutstandingRequests() {
+    return numOutstandingRequests;
+  }
+
   public void aggregate(ConnectionLoad other) {
     this.numConnections += other.numConnections;
     this.numConnectionsLocked += other.numConnectionsLocked;
+    this.totalLatencyMs += other.totalLatencyMs;
+    this.numLatencyMeasurements += other.numLatencyMeasurements;
+    this.numOutstandingRequests += other.numOutstandingRequests;
   }
 
   // Return connection load as a percentage
   public double getLoad() {
     return ((double) numConnectionsLocked / (double) numConnections) * 100;
   }
+
+  // Return the average of the moving average latencies of hosts, in milliseconds
+  public double getAverageLatencyMs() {
+    if (numLatencyMeasurements == 0) {
+      return 0;
+    }
+    return totalLatencyMs / numLatencyMeasurements;
+  }
 }
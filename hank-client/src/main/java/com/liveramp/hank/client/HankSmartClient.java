@@ -18,15 +18,25 @@ package com.liveramp.hank.client;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
 import com.liveramp.commons.util.BytesUtils;
@@ -44,6 +54,10 @@ import com.liveramp.hank.coordinator.RingGroupDataLocationChangeListener;
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.metrics.MetricsCollector;
+import com.liveramp.hank.metrics.MetricsExporter;
+import com.liveramp.hank.metrics.MetricsRegistry;
+import com.liveramp.hank.metrics.MetricsSource;
 import com.liveramp.hank.util.AtomicLongCollection;
 import com.liveramp.hank.util.FormatUtils;
 import com.liveramp.hank.util.HankResponseMemoryUsageEstimator;
@@ -53,13 +67,15 @@ import com.liveramp.hank.util.UpdateStatisticsRunnable;
 
 import static com.liveramp.hank.client.HostConnectionPool.getHostListShuffleSeed;
 
-public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocationChangeListener {
+public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocationChangeListener, MetricsSource {
 
   private static final long CACHE_UPDATER_MINIMUM_WAIT_MS = 5 * 1000;
 
   private static final HankResponse NO_SUCH_DOMAIN = HankResponse.xception(HankException.no_such_domain(true));
   private static final HankBulkResponse NO_SUCH_DOMAIN_BULK = HankBulkResponse.xception(HankException.no_such_domain(true));
   private static final HankResponse NO_REPLICA = HankResponse.xception(HankException.no_replica(true));
+  private static final HankResponse NO_CONNECTION_AVAILABLE = HankResponse.xception(HankException.no_connection_available(true));
+  private static final HankResponse INTERRUPTED = HankResponse.xception(HankException.internal_error("Interrupted"));
 
   private static final long GET_TASK_EXECUTOR_THREAD_KEEP_ALIVE_TIME = 1;
   private static final TimeUnit GET_TASK_EXECUTOR_THREAD_KEEP_ALIVE_TIME_UNIT = TimeUnit.MINUTES;
@@ -73,6 +89,9 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
 
   private static final Logger LOG = LoggerFactory.getLogger(HankSmartClient.class);
 
+  // Distinguishes the MBeans of clients of the same ring group within a JVM
+  private static final AtomicInteger metricsExporterCounter = new AtomicInteger(0);
+
   private final RingGroup ringGroup;
   private final Coordinator coordinator;
   private final int numConnectionsPerHost;
@@ -81,6 +100,10 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
   private final int establishConnectionTimeoutMs;
   private final int queryTimeoutMs;
   private final int bulkQueryTimeoutMs;
+  private final boolean connectionPipeliningEnabled;
+  private final boolean latencyAwareHostSelectionEnabled;
+  // Null when hedged requests are disabled
+  private final RequestHedger requestHedger;
 
   private final SynchronizedMemoryBoundCacheExpiring<DomainAndKey, HankResponse> responseCache;
   // 0: num queries
@@ -91,6 +114,7 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
 
   private final UpdateRuntimeStatisticsRunnable updateRuntimeStatisticsRunnable;
   private final Thread updateRuntimeStatisticsThread;
+  private final MetricsExporter metricsExporter;
 
   // Connection Cache
 
@@ -98,6 +122,8 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
       = new HashMap<HostAddress, HostConnectionPool>();
   private Map<Integer, Map<Integer, HostConnectionPool>> domainToPartitionToConnectionPool
       = new HashMap<Integer, Map<Integer, HostConnectionPool>>();
+  private Map<Host, HostConnectionPool> hostToConnectionPool
+      = new HashMap<Host, HostConnectionPool>();
 
   private final Object connectionCacheLock = new Object();
   private final ConnectionCacheUpdaterRunnable connectionCacheUpdaterRunnable = new ConnectionCacheUpdaterRunnable();
@@ -154,6 +180,17 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     this.establishConnectionTimeoutMs = options.getEstablishConnectionTimeoutMs();
     this.queryTimeoutMs = options.getQueryTimeoutMs();
     this.bulkQueryTimeoutMs = options.getBulkQueryTimeoutMs();
+    this.connectionPipeliningEnabled = options.getConnectionPipeliningEnabled();
+    this.latencyAwareHostSelectionEnabled = options.getLatencyAwareHostSelectionEnabled();
+    if (options.getHedgedRequestsEnabled()) {
+      this.requestHedger = new RequestHedger(
+          options.getHedgedRequestsDelayPercentile(),
+          options.getHedgedRequestsMinDelayMs(),
+          options.getHedgedRequestsBudget(),
+          !connectionPipeliningEnabled);
+    } else {
+      this.requestHedger = null;
+    }
     this.responseCache = new SynchronizedMemoryBoundCacheExpiring<DomainAndKey, HankResponse>(
         options.getResponseCacheEnabled(),
         options.getResponseCacheNumBytesCapacity(),
@@ -187,6 +224,14 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     connectionCacheUpdaterThread = new Thread(connectionCacheUpdaterRunnable, "Connection Cache Updater Thread");
     connectionCacheUpdaterThread.setDaemon(true);
     connectionCacheUpdaterThread.start();
+
+    // Expose metrics
+    MetricsRegistry metricsRegistry = new MetricsRegistry();
+    metricsRegistry.register(this);
+    metricsExporter = new MetricsExporter(metricsRegistry,
+        "HankSmartClient " + ringGroupName + " " + metricsExporterCounter.incrementAndGet(),
+        options.getMetricsPort());
+    metricsExporter.start();
   }
 
   private void updateConnectionCache() throws IOException {
@@ -197,11 +242,14 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
         = new HashMap<HostAddress, HostConnectionPool>();
     final Map<Integer, Map<Integer, HostConnectionPool>> newDomainToPartitionToConnectionPool
         = new HashMap<Integer, Map<Integer, HostConnectionPool>>();
+    final Map<Host, HostConnectionPool> newHostToConnectionPool
+        = new HashMap<Host, HostConnectionPool>();
 
     // Build new cache
     buildNewConnectionCache(
         newPartitionServerAddressToConnectionPool,
-        newDomainToPartitionToConnectionPool);
+        newDomainToPartitionToConnectionPool,
+        newHostToConnectionPool);
 
     // Switch old cache for new cache
     final Map<HostAddress, HostConnectionPool> oldPartitionServerAddressToConnectionPool
@@ -209,6 +257,7 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     synchronized (connectionCacheLock) {
       partitionServerAddressToConnectionPool = newPartitionServerAddressToConnectionPool;
       domainToPartitionToConnectionPool = newDomainToPartitionToConnectionPool;
+      hostToConnectionPool = newHostToConnectionPool;
     }
 
     // Clean up old cache when new cache is in place
@@ -270,7 +319,8 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
 
   private void buildNewConnectionCache(
       final Map<HostAddress, HostConnectionPool> newPartitionServerAddressToConnectionPool,
-      final Map<Integer, Map<Integer, HostConnectionPool>> newDomainToPartitionToConnectionPool)
+      final Map<Integer, Map<Integer, HostConnectionPool>> newDomainToPartitionToConnectionPool,
+      final Map<Host, HostConnectionPool> newHostToConnectionPool)
       throws IOException {
 
     final Map<Integer, Map<Integer, List<HostAddress>>> newDomainToPartitionToPartitionServerAddressList
@@ -319,18 +369,26 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
               + " with connection try lock timeout = " + tryLockConnectionTimeoutMs + "ms"
               + ", connection establishment timeout = " + establishConnectionTimeoutMs + "ms"
               + ", query timeout = " + queryTimeoutMs + "ms"
-              + ", bulk query timeout = " + bulkQueryTimeoutMs + "ms");
+              + ", bulk query timeout = " + bulkQueryTimeoutMs + "ms"
+              + ", pipelining = " + connectionPipeliningEnabled);
           List<HostConnection> hostConnections = new ArrayList<HostConnection>(numConnectionsPerHost);
+          HostLatencyTracker latencyTracker = new HostLatencyTracker();
           for (int i = 0; i < numConnectionsPerHost; i++) {
             hostConnections.add(new HostConnection(host,
                 tryLockConnectionTimeoutMs,
                 establishConnectionTimeoutMs,
                 queryTimeoutMs,
-                bulkQueryTimeoutMs));
+                bulkQueryTimeoutMs,
+                connectionPipeliningEnabled,
+                latencyTracker));
           }
           hostConnectionPool = HostConnectionPool.createFromList(hostConnections, null);
         }
         newPartitionServerAddressToConnectionPool.put(hostAddress, hostConnectionPool);
+        // Index the pool by the Host its connections refer to, since partition pools are built from them
+        for (HostConnection connection : hostConnectionPool.getConnections()) {
+          newHostToConnectionPool.put(connection.getHost(), hostConnectionPool);
+        }
       }
     }
 
@@ -347,7 +405,8 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
         }
         Integer partitionId = partitionToAddressesEntry.getKey();
         partitionToConnectionPool.put(partitionId,
-            HostConnectionPool.createFromList(connections, getHostListShuffleSeed(domainId, partitionId)));
+            HostConnectionPool.createFromList(connections, getHostListShuffleSeed(domainId, partitionId),
+                latencyAwareHostSelectionEnabled));
       }
       newDomainToPartitionToConnectionPool.put(domainId, partitionToConnectionPool);
     }
@@ -374,17 +433,7 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
       LOG.error(getLogPrefix() + "No such Domain: " + domainName);
       return NO_SUCH_DOMAIN_BULK;
     }
-    // Execute futures
-    List<FutureGet> futureGets = new ArrayList<FutureGet>(keys.size());
-    for (ByteBuffer key : keys) {
-      futureGets.add(_concurrentGet(domain, key));
-    }
-    // Build responses list
-    List<HankResponse> allResponses = new ArrayList<HankResponse>(keys.size());
-    for (FutureGet futureGet : futureGets) {
-      allResponses.add(futureGet.getResponse());
-    }
-    return HankBulkResponse.responses(allResponses);
+    return _getBulk(domain, keys);
   }
 
   // Asynchronous get
@@ -422,6 +471,135 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     return result;
   }
 
+  // Asynchronous get. When connection pipelining is enabled, the returned future is completed from
+  // network I/O and no thread is blocked waiting for the response.
+  @Override
+  public ListenableFuture<HankResponse> getAsync(String domainName, ByteBuffer key) {
+    // Get Domain
+    Domain domain = this.coordinator.getDomain(domainName);
+    if (domain == null) {
+      LOG.error(getLogPrefix() + "No such Domain: " + domainName);
+      return Futures.immediateFuture(NO_SUCH_DOMAIN);
+    }
+    return _getAsync(domain, key);
+  }
+
+  // Asynchronous get. The callback is invoked with the response from the thread that completes it.
+  @Override
+  public void getAsync(String domainName, ByteBuffer key, final GetCallback callback) {
+    final ListenableFuture<HankResponse> response = getAsync(domainName, key);
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        callback.onComplete(Futures.getUnchecked(response));
+      }
+    }, HostConnection.SAME_THREAD_EXECUTOR);
+  }
+
+  // Asynchronous getBulk. When connection pipelining is enabled, one request per host is in flight at
+  // a time and retries are started from network I/O. Otherwise, requests need to hold connections for
+  // their full round trip and the synchronous getBulk is performed in the calling thread.
+  @Override
+  public ListenableFuture<HankBulkResponse> getBulkAsync(String domainName, List<ByteBuffer> keys) {
+    // Get Domain
+    Domain domain = coordinator.getDomain(domainName);
+    if (domain == null) {
+      LOG.error(getLogPrefix() + "No such Domain: " + domainName);
+      return Futures.immediateFuture(NO_SUCH_DOMAIN_BULK);
+    }
+    if (connectionPipeliningEnabled) {
+      return _getBulkAsync(domain, keys);
+    } else {
+      return Futures.immediateFuture(_getBulk(domain, keys));
+    }
+  }
+
+  // Asynchronous getBulk. The callback is invoked with the response from the thread that completes it.
+  @Override
+  public void getBulkAsync(String domainName, List<ByteBuffer> keys, final GetBulkCallback callback) {
+    final ListenableFuture<HankBulkResponse> response = getBulkAsync(domainName, keys);
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        callback.onComplete(Futures.getUnchecked(response));
+      }
+    }, HostConnection.SAME_THREAD_EXECUTOR);
+  }
+
+  private ListenableFuture<HankResponse> _getAsync(final Domain domain, final ByteBuffer key) {
+    // Check for null keys
+    if (key == null) {
+      throw new NullKeyException();
+    }
+    // Check for empty keys
+    if (key.remaining() == 0) {
+      throw new EmptyKeyException();
+    }
+
+    // Attempt to load from cache
+    HankResponse cachedResponse = responseCache.get(new DomainAndKey(domain, key));
+    if (cachedResponse != null) {
+      // One request, in cache
+      requestsCounters.increment(1, 1);
+      return Futures.immediateFuture(cachedResponse);
+    }
+    // One request, not in cache
+    requestsCounters.increment(1, 0);
+
+    // Determine HostConnectionPool to use
+    final int partition = domain.getPartitioner().partition(key, domain.getNumParts());
+    int keyHash = domain.getPartitioner().partition(key, Integer.MAX_VALUE);
+    HostConnectionPool hostConnectionPool = getConnectionPool(domain, partition);
+    if (hostConnectionPool == null) {
+      return Futures.immediateFuture(NO_REPLICA);
+    }
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("Looking in domain " + domain.getName() + ", in partition " + partition + ", for key: " + BytesUtils.bytesToHexString(key));
+    }
+    // Perform get
+    final ListenableFuture<HankResponse> response;
+    if (requestHedger != null) {
+      response = hostConnectionPool.getHedgedAsync(domain, key, queryMaxNumTries, keyHash, requestHedger);
+    } else {
+      response = hostConnectionPool.getAsync(domain, key, queryMaxNumTries, keyHash);
+    }
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        // Responses are set by the connection pool, never exceptions
+        HankResponse value = Futures.getUnchecked(response);
+        // Cache response if necessary, do not cache exceptions
+        if (responseCache.isEnabled() && (value.is_set_not_found() || value.is_set_value())) {
+          responseCache.put(
+              new DomainAndKey(domain, BytesUtils.byteBufferDeepCopy(key)),
+              value.deepCopy());
+        }
+        if (value.is_set_xception()) {
+          LOG.error(getLogPrefix() + "Failed to perform get: domain " + domain.getName() + ", partition " + partition + ", key: " + BytesUtils.bytesToHexString(key) + ", partitioner: " + domain.getPartitioner() + ", response: " + value);
+        }
+      }
+    }, HostConnection.SAME_THREAD_EXECUTOR);
+    return response;
+  }
+
+  // Return null if no connection pool could be found for that partition
+  private HostConnectionPool getConnectionPool(Domain domain, int partition) {
+    Map<Integer, HostConnectionPool> partitionToConnectionPool;
+    synchronized (connectionCacheLock) {
+      partitionToConnectionPool = domainToPartitionToConnectionPool.get(domain.getId());
+    }
+    if (partitionToConnectionPool == null) {
+      LOG.error(getLogPrefix() + String.format("Could not find domain to partition map for domain %s (id: %d)", domain.getName(), domain.getId()));
+      return null;
+    }
+    HostConnectionPool hostConnectionPool = partitionToConnectionPool.get(partition);
+    if (hostConnectionPool == null) {
+      // this is a problem, since the cache must not have been loaded correctly
+      LOG.error(getLogPrefix() + String.format("Could not find list of hosts for domain %s (id: %d) when looking for partition %d", domain.getName(), domain.getId(), partition));
+    }
+    return hostConnectionPool;
+  }
+
   private FutureGet _concurrentGet(Domain domain, ByteBuffer key) {
     FutureGet futureGet = new FutureGet(new GetTaskRunnable(domain, key));
     getTaskExecutor.execute(futureGet);
@@ -469,7 +647,14 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
           LOG.trace("Looking in domain " + domain.getName() + ", in partition " + partition + ", for key: " + BytesUtils.bytesToHexString(key));
         }
         // Perform get
-        HankResponse response = hostConnectionPool.get(domain, key, queryMaxNumTries, keyHash);
+        HankResponse response;
+        if (requestHedger != null) {
+          // Responses are set by the connection pool, never exceptions
+          response = Futures.getUnchecked(
+              hostConnectionPool.getHedgedAsync(domain, key, queryMaxNumTries, keyHash, requestHedger));
+        } else {
+          response = hostConnectionPool.get(domain, key, queryMaxNumTries, keyHash);
+        }
         // Cache response if necessary, do not cache exceptions
         if (responseCache.isEnabled() && response.is_set_not_found() || response.is_set_value()) {
           responseCache.put(
@@ -487,8 +672,268 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     }
   }
 
+  // Keys are grouped by partition, and then by the host selected to serve each partition. One GET BULK
+  // request is performed per host. When a request to a host fails (or when some of its keys fail), the
+  // corresponding partitions are retried on other hosts. Responses are returned in the order of the keys.
+  private HankBulkResponse _getBulk(Domain domain, List<ByteBuffer> keys) {
+    GetBulkOperation operation = new GetBulkOperation(domain, keys);
+    while (!operation.isDone()) {
+      Collection<HostGetBulkRequest> requests = operation.prepareRound();
+      // Perform requests concurrently, the last one in the current thread
+      List<FutureTask<Object>> futureTasks = new ArrayList<FutureTask<Object>>(requests.size());
+      int requestIndex = 0;
+      for (HostGetBulkRequest request : requests) {
+        if (++requestIndex == requests.size()) {
+          request.run();
+        } else {
+          FutureTask<Object> futureTask = new FutureTask<Object>(request, null);
+          getTaskExecutor.execute(futureTask);
+          futureTasks.add(futureTask);
+        }
+      }
+      try {
+        for (FutureTask<Object> futureTask : futureTasks) {
+          try {
+            futureTask.get();
+          } catch (ExecutionException e) {
+            // The corresponding request has no response and will be retried
+            LOG.error(getLogPrefix() + "Failed to wait for GET BULK request", e);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.error(getLogPrefix() + "Interrupted while waiting for GET BULK requests. Giving up on remaining keys.");
+        // Requests that have not started yet will not run. Requests still running only write their own
+        // responses, which are not read anymore.
+        for (FutureTask<Object> futureTask : futureTasks) {
+          futureTask.cancel(false);
+        }
+        operation.abortRound(INTERRUPTED);
+        break;
+      }
+      operation.completeRound();
+    }
+    return operation.getResponse();
+  }
+
+  // Asynchronous version of _getBulk(). Each round of requests is started from the completion of the
+  // previous one, so no thread is blocked while waiting for responses from pipelined connections.
+  private ListenableFuture<HankBulkResponse> _getBulkAsync(Domain domain, List<ByteBuffer> keys) {
+    SettableFuture<HankBulkResponse> result = SettableFuture.create();
+    performGetBulkAsync(new GetBulkOperation(domain, keys), result);
+    return result;
+  }
+
+  private void performGetBulkAsync(final GetBulkOperation operation, final SettableFuture<HankBulkResponse> result) {
+    if (operation.isDone()) {
+      result.set(operation.getResponse());
+      return;
+    }
+    Collection<HostGetBulkRequest> requests = operation.prepareRound();
+    if (requests.isEmpty()) {
+      operation.completeRound();
+      performGetBulkAsync(operation, result);
+      return;
+    }
+    final AtomicInteger numPendingRequests = new AtomicInteger(requests.size());
+    for (HostGetBulkRequest request : requests) {
+      request.runAsync().addListener(new Runnable() {
+        @Override
+        public void run() {
+          // The last request to complete moves on to the next round
+          if (numPendingRequests.decrementAndGet() == 0) {
+            operation.completeRound();
+            performGetBulkAsync(operation, result);
+          }
+        }
+      }, HostConnection.SAME_THREAD_EXECUTOR);
+    }
+  }
+
+  // State of a GET BULK across rounds of per-host requests. Rounds are performed one at a time, either
+  // synchronously or asynchronously, so the state is never accessed concurrently.
+  private class GetBulkOperation {
+
+    private final Domain domain;
+    private final List<ByteBuffer> keys;
+    private final HankResponse[] responses;
+    private Map<Integer, List<Integer>> partitionToKeyIndices = new HashMap<Integer, List<Integer>>();
+    private final Map<Integer, HostConnectionPool> partitionToConnectionPool;
+    private final Map<Host, HostConnectionPool> hostToConnectionPool;
+    private final Map<Integer, Integer> partitionToNumTries = new HashMap<Integer, Integer>();
+    private final Map<Integer, Set<Host>> partitionToFailedHosts = new HashMap<Integer, Set<Host>>();
+    private Map<Host, HostGetBulkRequest> hostToRequest = null;
+
+    private GetBulkOperation(Domain domain, List<ByteBuffer> keys) {
+      this.domain = domain;
+      this.keys = keys;
+      this.responses = new HankResponse[keys.size()];
+
+      // Load from cache and group remaining keys by partition
+      for (int keyIndex = 0; keyIndex < keys.size(); ++keyIndex) {
+        ByteBuffer key = keys.get(keyIndex);
+        // Check for null keys
+        if (key == null) {
+          throw new NullKeyException();
+        }
+        // Check for empty keys
+        if (key.remaining() == 0) {
+          throw new EmptyKeyException();
+        }
+        HankResponse cachedResponse = responseCache.get(new DomainAndKey(domain, key));
+        if (cachedResponse != null) {
+          // One request, in cache
+          requestsCounters.increment(1, 1);
+          responses[keyIndex] = cachedResponse;
+        } else {
+          // One request, not in cache
+          requestsCounters.increment(1, 0);
+          int partition = domain.getPartitioner().partition(key, domain.getNumParts());
+          List<Integer> keyIndices = partitionToKeyIndices.get(partition);
+          if (keyIndices == null) {
+            keyIndices = new ArrayList<Integer>();
+            partitionToKeyIndices.put(partition, keyIndices);
+          }
+          keyIndices.add(keyIndex);
+        }
+      }
+
+      synchronized (connectionCacheLock) {
+        partitionToConnectionPool = domainToPartitionToConnectionPool.get(domain.getId());
+        hostToConnectionPool = HankSmartClient.this.hostToConnectionPool;
+      }
+      if (partitionToConnectionPool == null && !partitionToKeyIndices.isEmpty()) {
+        LOG.error(getLogPrefix() + String.format("Could not find domain to partition map for domain %s (id: %d)", domain.getName(), domain.getId()));
+        for (List<Integer> keyIndices : partitionToKeyIndices.values()) {
+          setResponses(responses, keyIndices, NO_REPLICA);
+        }
+        partitionToKeyIndices.clear();
+      }
+    }
+
+    private boolean isDone() {
+      return partitionToKeyIndices.isEmpty();
+    }
+
+    private HankBulkResponse getResponse() {
+      return HankBulkResponse.responses(Arrays.asList(responses));
+    }
+
+    // Select a host for each remaining partition and group requests by host
+    private Collection<HostGetBulkRequest> prepareRound() {
+      hostToRequest = new HashMap<Host, HostGetBulkRequest>();
+      for (Map.Entry<Integer, List<Integer>> entry : partitionToKeyIndices.entrySet()) {
+        Integer partition = entry.getKey();
+        List<Integer> keyIndices = entry.getValue();
+        HostConnectionPool partitionConnectionPool = partitionToConnectionPool.get(partition);
+        if (partitionConnectionPool == null) {
+          // this is a problem, since the cache must not have been loaded correctly
+          LOG.error(getLogPrefix() + String.format("Could not find list of hosts for domain %s (id: %d) when looking for partition %d", domain.getName(), domain.getId(), partition));
+          setResponses(responses, keyIndices, NO_REPLICA);
+          continue;
+        }
+        Set<Host> failedHosts = partitionToFailedHosts.get(partition);
+        if (failedHosts == null) {
+          failedHosts = new HashSet<Host>();
+          partitionToFailedHosts.put(partition, failedHosts);
+        }
+        Host host = partitionConnectionPool.getHostToUse(failedHosts);
+        if (host == null && !failedHosts.isEmpty()) {
+          // All hosts have failed once, but tries remain. Start over.
+          failedHosts.clear();
+          host = partitionConnectionPool.getHostToUse(failedHosts);
+        }
+        HostConnectionPool hostConnectionPool = host == null ? null : hostToConnectionPool.get(host);
+        if (hostConnectionPool == null) {
+          LOG.error(getLogPrefix() + "No connection is available. Giving up. Domain = " + domain.getName() + ", partition = " + partition + ", num keys = " + keyIndices.size());
+          setResponses(responses, keyIndices, NO_CONNECTION_AVAILABLE);
+          continue;
+        }
+        HostGetBulkRequest request = hostToRequest.get(host);
+        if (request == null) {
+          request = new HostGetBulkRequest(domain.getId(), hostConnectionPool);
+          hostToRequest.put(host, request);
+        }
+        request.add(partition, keyIndices, keys);
+      }
+      return hostToRequest.values();
+    }
+
+    // Give up on the current round, without reading its responses. Keys that are not resolved yet get
+    // the given response.
+    private void abortRound(HankResponse response) {
+      for (List<Integer> keyIndices : partitionToKeyIndices.values()) {
+        for (Integer keyIndex : keyIndices) {
+          if (responses[keyIndex] == null) {
+            responses[keyIndex] = response;
+          }
+        }
+      }
+      partitionToKeyIndices.clear();
+      hostToRequest = null;
+    }
+
+    // Scatter responses of the current round and determine partitions to retry
+    private void completeRound() {
+      Map<Integer, List<Integer>> partitionToKeyIndicesToRetry = new HashMap<Integer, List<Integer>>();
+      for (Map.Entry<Host, HostGetBulkRequest> entry : hostToRequest.entrySet()) {
+        Host host = entry.getKey();
+        HostGetBulkRequest request = entry.getValue();
+        List<HankResponse> requestResponses = request.getResponses();
+        for (int i = 0; i < request.keyIndices.size(); ++i) {
+          int keyIndex = request.keyIndices.get(i);
+          HankResponse response = requestResponses == null ? null : requestResponses.get(i);
+          if (response != null && !response.is_set_xception()) {
+            responses[keyIndex] = response;
+            // Cache response if necessary, do not cache exceptions
+            if (responseCache.isEnabled()) {
+              responseCache.put(
+                  new DomainAndKey(domain, BytesUtils.byteBufferDeepCopy(keys.get(keyIndex))),
+                  response.deepCopy());
+            }
+          } else {
+            Integer partition = request.partitions.get(i);
+            List<Integer> keyIndicesToRetry = partitionToKeyIndicesToRetry.get(partition);
+            if (keyIndicesToRetry == null) {
+              keyIndicesToRetry = new ArrayList<Integer>();
+              partitionToKeyIndicesToRetry.put(partition, keyIndicesToRetry);
+              partitionToFailedHosts.get(partition).add(host);
+            }
+            keyIndicesToRetry.add(keyIndex);
+          }
+        }
+      }
+      hostToRequest = null;
+
+      // Keep count of the number of times we tried each partition
+      partitionToKeyIndices = new HashMap<Integer, List<Integer>>();
+      for (Map.Entry<Integer, List<Integer>> entry : partitionToKeyIndicesToRetry.entrySet()) {
+        Integer partition = entry.getKey();
+        Integer numTries = partitionToNumTries.get(partition);
+        numTries = numTries == null ? 1 : numTries + 1;
+        partitionToNumTries.put(partition, numTries);
+        if (numTries < queryMaxNumTries) {
+          LOG.error(getLogPrefix() + "Failed to perform GET BULK for domain " + domain.getName() + ", partition " + partition
+              + ". Retrying. Try " + numTries + "/" + queryMaxNumTries + ", num keys = " + entry.getValue().size());
+          partitionToKeyIndices.put(partition, entry.getValue());
+        } else {
+          LOG.error(getLogPrefix() + "Failed to perform GET BULK for domain " + domain.getName() + ", partition " + partition
+              + ". Giving up. Try " + numTries + "/" + queryMaxNumTries + ", num keys = " + entry.getValue().size());
+          setResponses(responses, entry.getValue(), HankResponse.xception(HankException.failed_retries(queryMaxNumTries)));
+        }
+      }
+    }
+  }
+
+  private static void setResponses(HankResponse[] responses, List<Integer> keyIndices, HankResponse response) {
+    for (Integer keyIndex : keyIndices) {
+      responses[keyIndex] = response;
+    }
+  }
+
   @Override
   public void stop() {
+    metricsExporter.stop();
     stopGetTaskExecutor();
     connectionCacheUpdaterRunnable.cancel();
     connectionCacheUpdaterThread.interrupt();
@@ -500,6 +945,9 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     } catch (InterruptedException e) {
       LOG.info(getLogPrefix() + "Interrupted while waiting for updater threads to terminate during shutdown.");
     }
+    if (requestHedger != null) {
+      requestHedger.shutDown();
+    }
     disconnect();
   }
 
@@ -532,10 +980,107 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
     connectionCacheUpdaterRunnable.wakeUp();
   }
 
+  @Override
+  public void collect(MetricsCollector collector) {
+    String ringGroupName = ringGroup.getName();
+    long[] requestsCounterValues = requestsCounters.getAsArray();
+    collector.counter("hank_client_requests_total", "Number of keys requested",
+        requestsCounterValues[0], "ring_group", ringGroupName);
+    collector.counter("hank_client_cache_hits_total", "Number of keys served by the client-side cache",
+        requestsCounterValues[1], "ring_group", ringGroupName);
+    collector.gauge("hank_client_cache_items", "Number of items in the client-side cache",
+        responseCache.size(), "ring_group", ringGroupName);
+    collector.gauge("hank_client_cache_bytes", "Number of bytes managed by the client-side cache",
+        responseCache.getNumManagedBytes(), "ring_group", ringGroupName);
+    // Connection pools are per host and domain, aggregate them per partition server
+    Map<PartitionServerAddress, ConnectionLoad> partitionServerToConnectionLoad
+        = new HashMap<PartitionServerAddress, ConnectionLoad>();
+    for (Map.Entry<HostAddress, HostConnectionPool> entry : partitionServerAddressToConnectionPool.entrySet()) {
+      PartitionServerAddress serverAddress = entry.getKey().getPartitionServerAddress();
+      ConnectionLoad connectionLoad = partitionServerToConnectionLoad.get(serverAddress);
+      if (connectionLoad == null) {
+        connectionLoad = new ConnectionLoad();
+        partitionServerToConnectionLoad.put(serverAddress, connectionLoad);
+      }
+      connectionLoad.aggregate(entry.getValue().getConnectionLoad());
+    }
+    for (Map.Entry<PartitionServerAddress, ConnectionLoad> entry : partitionServerToConnectionLoad.entrySet()) {
+      String server = entry.getKey().toString();
+      ConnectionLoad connectionLoad = entry.getValue();
+      collector.gauge("hank_client_connections", "Number of connections to partition servers",
+          connectionLoad.getNumConnections(), "ring_group", ringGroupName, "server", server);
+      collector.gauge("hank_client_connections_locked", "Number of connections to partition servers in use",
+          connectionLoad.getNumConnectionsLocked(), "ring_group", ringGroupName, "server", server);
+      collector.gauge("hank_client_outstanding_requests", "Number of requests awaiting a response from partition servers",
+          connectionLoad.getNumOutstandingRequests(), "ring_group", ringGroupName, "server", server);
+      collector.gauge("hank_client_latency_seconds", "Smoothed latency of requests to partition servers",
+          connectionLoad.getAverageLatencyMs() / 1000d, "ring_group", ringGroupName, "server", server);
+    }
+  }
+
   private String getLogPrefix() {
     return ringGroup.getName() + ": ";
   }
 
+  // GET BULK request to a single host, for keys that can belong to multiple partitions
+  private static class HostGetBulkRequest implements Runnable {
+
+    private final int domainId;
+    private final HostConnectionPool hostConnectionPool;
+    private final List<ByteBuffer> keys = new ArrayList<ByteBuffer>();
+    private final List<Integer> keyIndices = new ArrayList<Integer>();
+    private final List<Integer> partitions = new ArrayList<Integer>();
+    private List<HankResponse> responses = null;
+
+    private HostGetBulkRequest(int domainId, HostConnectionPool hostConnectionPool) {
+      this.domainId = domainId;
+      this.hostConnectionPool = hostConnectionPool;
+    }
+
+    private void add(Integer partition, List<Integer> partitionKeyIndices, List<ByteBuffer> allKeys) {
+      for (Integer keyIndex : partitionKeyIndices) {
+        keys.add(allKeys.get(keyIndex));
+        keyIndices.add(keyIndex);
+        partitions.add(partition);
+      }
+    }
+
+    @Override
+    public void run() {
+      // Failover to other hosts is managed by the caller, try this host only once
+      setBulkResponse(hostConnectionPool.getBulk(domainId, keys, 1));
+    }
+
+    // Responses are available once the returned future is done
+    private ListenableFuture<Object> runAsync() {
+      final SettableFuture<Object> done = SettableFuture.create();
+      // Failover to other hosts is managed by the caller, try this host only once
+      final ListenableFuture<HankBulkResponse> bulkResponse = hostConnectionPool.getBulkAsync(domainId, keys, 1);
+      bulkResponse.addListener(new Runnable() {
+        @Override
+        public void run() {
+          // The connection pool sets responses, never exceptions
+          setBulkResponse(Futures.getUnchecked(bulkResponse));
+          done.set(null);
+        }
+      }, HostConnection.SAME_THREAD_EXECUTOR);
+      return done;
+    }
+
+    private void setBulkResponse(HankBulkResponse bulkResponse) {
+      if (bulkResponse.is_set_responses() && bulkResponse.get_responses().size() == keys.size()) {
+        responses = bulkResponse.get_responses();
+      } else if (bulkResponse.is_set_responses()) {
+        LOG.error("Invalid GET BULK response. Expected " + keys.size() + " responses but got " + bulkResponse.get_responses().size());
+      }
+    }
+
+    // Return null if the request failed
+    private List<HankResponse> getResponses() {
+      return responses;
+    }
+  }
+
   private class StaticGetTaskRunnable implements GetTaskRunnableIface {
 
     private final HankResponse response;
@@ -591,6 +1136,8 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
 
     private final Map<PartitionServerAddress, ConnectionLoad> partitionServerToConnectionLoad;
     private final HankTimer timer = new HankTimer();
+    // Counters are cumulative since they are also reported as metrics
+    private long[] previousRequestsCounterValues = new long[]{0, 0};
 
     public UpdateRuntimeStatisticsRunnable() {
       super(UPDATE_RUNTIME_STATISTICS_THREAD_SLEEP_TIME_MS_DEFAULT);
@@ -623,20 +1170,26 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
         ConnectionLoad totalConnectionLoad = entry.getValue();
         ConnectionLoad connectionLoad = new ConnectionLoad(
             (int)((double)totalConnectionLoad.getNumConnections() / (double)UPDATE_RUNTIME_STATISTICS_NUM_MEASUREMENTS),
-            (int)((double)totalConnectionLoad.getNumConnectionsLocked() / (double)UPDATE_RUNTIME_STATISTICS_NUM_MEASUREMENTS));
+            (int)((double)totalConnectionLoad.getNumConnectionsLocked() / (double)UPDATE_RUNTIME_STATISTICS_NUM_MEASUREMENTS),
+            totalConnectionLoad.getAverageLatencyMs(),
+            1,
+            (int)((double)totalConnectionLoad.getNumOutstandingRequests() / (double)UPDATE_RUNTIME_STATISTICS_NUM_MEASUREMENTS));
         // Only display if load is non zero
-        if (connectionLoad.getLoad() > 0) {
+        if (connectionLoad.getLoad() > 0 || connectionLoad.getNumOutstandingRequests() > 0) {
           LOG.info(getLogPrefix() + "Load on connections to " + entry.getKey() + ": " + FormatUtils.formatDouble(connectionLoad.getLoad())
-              + "% (" + connectionLoad.getNumConnectionsLocked() + "/" + connectionLoad.getNumConnections() + " locked connections)");
+              + "% (" + connectionLoad.getNumConnectionsLocked() + "/" + connectionLoad.getNumConnections() + " locked connections)"
+              + ", latency: " + FormatUtils.formatDouble(connectionLoad.getAverageLatencyMs()) + "ms"
+              + ", outstanding requests: " + connectionLoad.getNumOutstandingRequests());
         }
       }
       // Restart timer
       long timerDurationMs = timer.getDurationMs();
       timer.restart();
       // Log requests counters
-      long[] requestsCounterValues = requestsCounters.getAsArrayAndSet(0, 0);
-      long numRequests = requestsCounterValues[0];
-      long numCacheHits = requestsCounterValues[1];
+      long[] requestsCounterValues = requestsCounters.getAsArray();
+      long numRequests = requestsCounterValues[0] - previousRequestsCounterValues[0];
+      long numCacheHits = requestsCounterValues[1] - previousRequestsCounterValues[1];
+      previousRequestsCounterValues = requestsCounterValues;
       if (timerDurationMs != 0 && numRequests != 0) {
         double throughput = (double)numRequests / ((double)timerDurationMs / 1000d);
         double cacheHitRate = (double)numCacheHits / (double)numRequests;
@@ -645,6 +1198,16 @@ public class HankSmartClient implements HankSmartClientIface, RingGroupDataLocat
             + ", client-side cache hit rate: " + FormatUtils.formatDouble(cacheHitRate * 100) + "%"
             + ", cache: " + responseCache.size() + " items totaling " + FormatUtils.formatNumBytes(responseCache.getNumManagedBytes()));
       }
+      // Log hedged requests counters
+      if (requestHedger != null) {
+        long[] hedgeCounterValues = requestHedger.getAndResetCounters();
+        if (hedgeCounterValues[0] != 0) {
+          LOG.info(getLogPrefix()
+              + "Hedged requests: " + hedgeCounterValues[0]
+              + ", won: " + hedgeCounterValues[1]
+              + ", wasted: " + hedgeCounterValues[2]);
+        }
+      }
     }
 
     @Override
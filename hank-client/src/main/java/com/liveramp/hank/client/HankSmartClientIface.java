@@ -3,6 +3,8 @@ package com.liveramp.hank.client;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankResponse;
 import com.liveramp.hank.generated.SmartClient;
@@ -17,5 +19,13 @@ public interface HankSmartClientIface extends HankClientIface, SmartClient.Iface
 
   public List<FutureGet> concurrentGet(String domainName, List<ByteBuffer> key);
 
+  public ListenableFuture<HankResponse> getAsync(String domainName, ByteBuffer key);
+
+  public void getAsync(String domainName, ByteBuffer key, GetCallback callback);
+
+  public ListenableFuture<HankBulkResponse> getBulkAsync(String domainName, List<ByteBuffer> keys);
+
+  public void getBulkAsync(String domainName, List<ByteBuffer> keys, GetBulkCallback callback);
+
   public abstract void stop();
 }
@@ -25,10 +25,17 @@ public class HankSmartClientOptions {
   private int queryTimeoutMs = 0;
   private int bulkQueryTimeoutMs = 0;
   private int concurrentGetThreadPoolMaxSize = 1024;
+  private boolean connectionPipeliningEnabled = false;
+  private boolean latencyAwareHostSelectionEnabled = false;
+  private boolean hedgedRequestsEnabled = false;
+  private double hedgedRequestsDelayPercentile = 95;
+  private int hedgedRequestsMinDelayMs = 1;
+  private double hedgedRequestsBudget = 0.05;
   private boolean responseCacheEnabled = false;
   private long responseCacheNumBytesCapacity = 0;
   private int responseCacheNumItemsCapacity = 0;
   private long responseCacheExpirationSeconds = 0;
+  private int metricsPort = 0;
 
   public int getNumConnectionsPerHost() {
     return numConnectionsPerHost;
@@ -93,6 +100,67 @@ public class HankSmartClientOptions {
     return this;
   }
 
+  public boolean getConnectionPipeliningEnabled() {
+    return connectionPipeliningEnabled;
+  }
+
+  // When enabled, connections do not wait for responses before sending the next requests,
+  // so that many requests can be in flight on a single connection
+  public HankSmartClientOptions setConnectionPipeliningEnabled(boolean connectionPipeliningEnabled) {
+    this.connectionPipeliningEnabled = connectionPipeliningEnabled;
+    return this;
+  }
+
+  public boolean getLatencyAwareHostSelectionEnabled() {
+    return latencyAwareHostSelectionEnabled;
+  }
+
+  // When enabled, queries are sent to the better of two random hosts serving the partition, based on
+  // their recent latency and number of outstanding requests, instead of cycling through hosts
+  public HankSmartClientOptions setLatencyAwareHostSelectionEnabled(boolean latencyAwareHostSelectionEnabled) {
+    this.latencyAwareHostSelectionEnabled = latencyAwareHostSelectionEnabled;
+    return this;
+  }
+
+  public boolean getHedgedRequestsEnabled() {
+    return hedgedRequestsEnabled;
+  }
+
+  // When enabled, a backup request is sent to another host when a get has not completed after a
+  // given percentile of recent latencies. The first successful response is used.
+  public HankSmartClientOptions setHedgedRequestsEnabled(boolean hedgedRequestsEnabled) {
+    this.hedgedRequestsEnabled = hedgedRequestsEnabled;
+    return this;
+  }
+
+  public double getHedgedRequestsDelayPercentile() {
+    return hedgedRequestsDelayPercentile;
+  }
+
+  public HankSmartClientOptions setHedgedRequestsDelayPercentile(double hedgedRequestsDelayPercentile) {
+    this.hedgedRequestsDelayPercentile = hedgedRequestsDelayPercentile;
+    return this;
+  }
+
+  public int getHedgedRequestsMinDelayMs() {
+    return hedgedRequestsMinDelayMs;
+  }
+
+  public HankSmartClientOptions setHedgedRequestsMinDelayMs(int hedgedRequestsMinDelayMs) {
+    this.hedgedRequestsMinDelayMs = hedgedRequestsMinDelayMs;
+    return this;
+  }
+
+  public double getHedgedRequestsBudget() {
+    return hedgedRequestsBudget;
+  }
+
+  // Maximum number of backup requests, as a ratio of the number of requests
+  public HankSmartClientOptions setHedgedRequestsBudget(double hedgedRequestsBudget) {
+    this.hedgedRequestsBudget = hedgedRequestsBudget;
+    return this;
+  }
+
   public boolean getResponseCacheEnabled() {
     return responseCacheEnabled;
   }
@@ -128,4 +196,14 @@ public class HankSmartClientOptions {
     this.responseCacheExpirationSeconds = responseCacheExpirationSeconds;
     return this;
   }
+
+  public int getMetricsPort() {
+    return metricsPort;
+  }
+
+  // Port of the HTTP metrics endpoint, 0 to disable it. Metrics are always exposed through JMX.
+  public HankSmartClientOptions setMetricsPort(int metricsPort) {
+    this.metricsPort = metricsPort;
+    return this;
+  }
 }
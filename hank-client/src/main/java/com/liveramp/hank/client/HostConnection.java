@@ -19,9 +19,14 @@ package com.liveramp.hank.client;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.protocol.TProtocol;
@@ -43,6 +48,14 @@ public class HostConnection implements WatchedNodeListener<HostState> {
 
   private static final Logger LOG = LoggerFactory.getLogger(HostConnection.class);
 
+  // Runs listeners in the thread that completes the future
+  static final Executor SAME_THREAD_EXECUTOR = new Executor() {
+    @Override
+    public void execute(Runnable runnable) {
+      runnable.run();
+    }
+  };
+
   private final int tryLockTimeoutMs;
   private final int establishConnectionTimeoutMs;
   private final int queryTimeoutMs;
@@ -50,7 +63,11 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   private TSocket socket;
   private TTransport transport;
   private PartitionServer.Client client;
+  // When pipelining, the lock is only held to connect and to submit requests
+  private final boolean pipelined;
+  private volatile PipelinedPartitionServerClient pipelinedClient;
   private final Host host;
+  private final HostLatencyTracker latencyTracker;
   protected final ReentrantLock lock = new ReentrantLock(true); // Use a fair ReentrantLock
 
   // A timeout of 0 means no timeout
@@ -59,7 +76,31 @@ public class HostConnection implements WatchedNodeListener<HostState> {
                         int establishConnectionTimeoutMs,
                         int queryTimeoutMs,
                         int bulkQueryTimeoutMs) throws IOException {
+    this(host, tryLockTimeoutMs, establishConnectionTimeoutMs, queryTimeoutMs, bulkQueryTimeoutMs, false);
+  }
+
+  // A timeout of 0 means no timeout
+  public HostConnection(Host host,
+                        int tryLockTimeoutMs,
+                        int establishConnectionTimeoutMs,
+                        int queryTimeoutMs,
+                        int bulkQueryTimeoutMs,
+                        boolean pipelined) throws IOException {
+    this(host, tryLockTimeoutMs, establishConnectionTimeoutMs, queryTimeoutMs, bulkQueryTimeoutMs, pipelined,
+        new HostLatencyTracker());
+  }
+
+  // Connections to the same host share a latency tracker
+  HostConnection(Host host,
+                 int tryLockTimeoutMs,
+                 int establishConnectionTimeoutMs,
+                 int queryTimeoutMs,
+                 int bulkQueryTimeoutMs,
+                 boolean pipelined,
+                 HostLatencyTracker latencyTracker) throws IOException {
     this.host = host;
+    this.latencyTracker = latencyTracker;
+    this.pipelined = pipelined;
     this.tryLockTimeoutMs = tryLockTimeoutMs;
     this.establishConnectionTimeoutMs = establishConnectionTimeoutMs;
     this.queryTimeoutMs = queryTimeoutMs;
@@ -72,6 +113,10 @@ public class HostConnection implements WatchedNodeListener<HostState> {
     return host;
   }
 
+  HostLatencyTracker getLatencyTracker() {
+    return latencyTracker;
+  }
+
   boolean isServing() {
     try {
       return HostState.SERVING.equals(host.getState());
@@ -89,6 +134,9 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   }
 
   private boolean isDisconnected() {
+    if (pipelined) {
+      return pipelinedClient == null || pipelinedClient.isClosed();
+    }
     return client == null;
   }
 
@@ -124,6 +172,21 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   }
 
   public HankResponse get(int domainId, ByteBuffer key) throws IOException {
+    if (pipelined) {
+      return waitFor(getAsync(domainId, key));
+    }
+    long startNanos = latencyTracker.requestStarted();
+    boolean success = false;
+    try {
+      HankResponse result = getCore(domainId, key);
+      success = true;
+      return result;
+    } finally {
+      latencyTracker.requestCompleted(startNanos, success);
+    }
+  }
+
+  private HankResponse getCore(int domainId, ByteBuffer key) throws IOException {
     // Lock the connection only if needed
     if (!lock.isHeldByCurrentThread()) {
       // Try to lock within a given timeframe
@@ -158,6 +221,21 @@ public class HostConnection implements WatchedNodeListener<HostState> {
   }
 
   public HankBulkResponse getBulk(int domainId, List<ByteBuffer> keys) throws IOException {
+    if (pipelined) {
+      return waitFor(getBulkAsync(domainId, keys));
+    }
+    long startNanos = latencyTracker.requestStarted();
+    boolean success = false;
+    try {
+      HankBulkResponse result = getBulkCore(domainId, keys);
+      success = true;
+      return result;
+    } finally {
+      latencyTracker.requestCompleted(startNanos, success);
+    }
+  }
+
+  private HankBulkResponse getBulkCore(int domainId, List<ByteBuffer> keys) throws IOException {
     // Lock the connection only if needed
     if (!lock.isHeldByCurrentThread()) {
       // Try to lock within a given timeframe
@@ -197,19 +275,181 @@ public class HostConnection implements WatchedNodeListener<HostState> {
     }
   }
 
+  // Perform the query without holding the connection for the full round trip when pipelining.
+  // Otherwise, the query is performed synchronously.
+  public ListenableFuture<HankResponse> getAsync(int domainId, ByteBuffer key) {
+    if (!pipelined) {
+      try {
+        return Futures.immediateFuture(get(domainId, key));
+      } catch (IOException e) {
+        return Futures.immediateFailedFuture(e);
+      }
+    }
+    final long startNanos = latencyTracker.requestStarted();
+    final PipelinedPartitionServerClient client;
+    try {
+      client = getConnectedPipelinedClient();
+    } catch (IOException e) {
+      latencyTracker.requestCompleted(startNanos, false);
+      return Futures.immediateFailedFuture(e);
+    }
+    final ListenableFuture<HankResponse> response = client.get(domainId, key, queryTimeoutMs);
+    final SettableFuture<HankResponse> result = SettableFuture.create();
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (response.isCancelled()) {
+          latencyTracker.requestCancelled();
+          return;
+        }
+        boolean success = false;
+        try {
+          HankResponse value = Futures.getUnchecked(response);
+          if (value.is_set_xception()) {
+            result.setException(new IOException("Server failed to execute GET: " + value.get_xception()));
+          } else {
+            success = true;
+            result.set(value);
+          }
+        } catch (RuntimeException e) {
+          result.setException(new IOException("Failed to execute GET", e.getCause() != null ? e.getCause() : e));
+        } finally {
+          latencyTracker.requestCompleted(startNanos, success);
+        }
+      }
+    }, SAME_THREAD_EXECUTOR);
+    // Cancelling the result cancels the pending request
+    result.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (result.isCancelled()) {
+          response.cancel(false);
+        }
+      }
+    }, SAME_THREAD_EXECUTOR);
+    return result;
+  }
+
+  // Perform the query without holding the connection for the full round trip when pipelining.
+  // Otherwise, the query is performed synchronously.
+  public ListenableFuture<HankBulkResponse> getBulkAsync(int domainId, List<ByteBuffer> keys) {
+    if (!pipelined) {
+      try {
+        return Futures.immediateFuture(getBulk(domainId, keys));
+      } catch (IOException e) {
+        return Futures.immediateFailedFuture(e);
+      }
+    }
+    final long startNanos = latencyTracker.requestStarted();
+    final PipelinedPartitionServerClient client;
+    try {
+      client = getConnectedPipelinedClient();
+    } catch (IOException e) {
+      latencyTracker.requestCompleted(startNanos, false);
+      return Futures.immediateFailedFuture(e);
+    }
+    final ListenableFuture<HankBulkResponse> response = client.getBulk(domainId, keys, bulkQueryTimeoutMs);
+    final SettableFuture<HankBulkResponse> result = SettableFuture.create();
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (response.isCancelled()) {
+          latencyTracker.requestCancelled();
+          return;
+        }
+        boolean success = false;
+        try {
+          HankBulkResponse value = Futures.getUnchecked(response);
+          if (value.is_set_xception()) {
+            result.setException(new IOException("Server failed to execute GET BULK: " + value.get_xception()));
+          } else {
+            success = true;
+            result.set(value);
+          }
+        } catch (RuntimeException e) {
+          result.setException(new IOException("Failed to execute GET BULK", e.getCause() != null ? e.getCause() : e));
+        } finally {
+          latencyTracker.requestCompleted(startNanos, success);
+        }
+      }
+    }, SAME_THREAD_EXECUTOR);
+    // Cancelling the result cancels the pending request
+    result.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (result.isCancelled()) {
+          response.cancel(false);
+        }
+      }
+    }, SAME_THREAD_EXECUTOR);
+    return result;
+  }
+
+  private PipelinedPartitionServerClient getConnectedPipelinedClient() throws IOException {
+    // Lock the connection only if needed
+    if (!lock.isHeldByCurrentThread()) {
+      // Try to lock within a given timeframe
+      if (!tryLockWithTimeout()) {
+        throw new IOException("Exceeded timeout while trying to lock the host connection.");
+      }
+    }
+    try {
+      // Check availability
+      if (!isServing() && !isOffline()) {
+        throw new IOException("Connection to host is not available (host is not serving).");
+      }
+      // Connect if necessary
+      if (isDisconnected()) {
+        connect();
+      }
+      return pipelinedClient;
+    } finally {
+      unlock();
+    }
+  }
+
+  private static <T> T waitFor(ListenableFuture<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for response", e);
+    }
+  }
+
   public void disconnect() {
     if (transport != null) {
       transport.close();
     }
+    if (pipelinedClient != null) {
+      pipelinedClient.close();
+    }
     socket = null;
     transport = null;
     client = null;
+    pipelinedClient = null;
   }
 
   private void connect() throws IOException {
     if (LOG.isTraceEnabled()) {
       LOG.trace("Trying to connect to " + host.getAddress());
     }
+    if (pipelined) {
+      try {
+        pipelinedClient = new PipelinedPartitionServerClient(host.getAddress().getHostName(),
+            host.getAddress().getPortNumber(),
+            establishConnectionTimeoutMs);
+      } catch (IOException e) {
+        LOG.error("Failed to establish connection to host " + host.getAddress(), e);
+        throw e;
+      }
+      return;
+    }
     // Use connection timeout to connect
     socket = new TSocket(host.getAddress().getHostName(),
         host.getAddress().getPortNumber(),
@@ -263,7 +503,14 @@ public class HostConnection implements WatchedNodeListener<HostState> {
     }
   }
 
+  // When pipelining, a connection with pending requests is considered locked
   public boolean isLocked() {
+    if (pipelined) {
+      PipelinedPartitionServerClient client = pipelinedClient;
+      if (client != null && client.getNumPendingRequests() > 0) {
+        return true;
+      }
+    }
     return lock.isLocked();
   }
 }
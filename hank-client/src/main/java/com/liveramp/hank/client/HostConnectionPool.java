@@ -25,7 +25,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,6 +74,17 @@ import com.liveramp.hank.generated.HankResponse;
  * case of failure, HostConnectionPool will re-attempt a given number of times,
  * each time determining a new connection to use as described earlier. (And
  * using a local Host iterator.)
+ *
+ * Optionally, HostConnectionPool can instead select hosts based on their
+ * recent latency. In that mode, a query picks two distinct hosts at random and
+ * uses the one that is serving and has the lowest product of moving average
+ * latency and number of outstanding requests (power of two choices). This
+ * selection does not acquire any lock. Queries with a key hash and retries
+ * still use the strategy described above.
+ *
+ * Queries can also be hedged: when no response was received after a given
+ * percentile of the recent latencies of the pool, a backup query is sent to
+ * another host and the first successful response is used.
  */
 public class HostConnectionPool {
 
@@ -76,9 +93,16 @@ public class HostConnectionPool {
   private ArrayList<List<HostConnectionAndHostIndex>> hostToConnections
       = new ArrayList<List<HostConnectionAndHostIndex>>();
 
+  // Latency trackers, by host index
+  private final HostLatencyTracker[] hostLatencyTrackers;
+  private final boolean latencyAware;
+
   private int globalPreviouslyUsedHostIndex;
   private final Random random = new Random();
 
+  // Created on the first hedged request
+  private volatile LatencyPercentileEstimator latencyEstimator;
+
   private static final HankResponse NO_CONNECTION_AVAILABLE_RESPONSE
       = HankResponse.xception(HankException.no_connection_available(true));
   private static final HankBulkResponse NO_CONNECTION_AVAILABLE_BULK_RESPONSE
@@ -102,6 +126,12 @@ public class HostConnectionPool {
   }
 
   HostConnectionPool(Map<Host, List<HostConnection>> hostToConnectionsMap, Integer hostShuffleSeed) {
+    this(hostToConnectionsMap, hostShuffleSeed, false);
+  }
+
+  HostConnectionPool(Map<Host, List<HostConnection>> hostToConnectionsMap,
+                     Integer hostShuffleSeed,
+                     boolean latencyAware) {
     if (hostToConnectionsMap.size() == 0) {
       throw new RuntimeException("HostConnectionPool must be initialized with a non empty collection of connections.");
     }
@@ -130,12 +160,25 @@ public class HostConnectionPool {
       ++hostIndex;
     }
 
+    this.latencyAware = latencyAware;
+    // Connections to the same host share a tracker, use the one of the first connection
+    hostLatencyTrackers = new HostLatencyTracker[hostToConnections.size()];
+    for (int i = 0; i < hostToConnections.size(); ++i) {
+      hostLatencyTrackers[i] = hostToConnections.get(i).get(0).hostConnection.getLatencyTracker();
+    }
+
     // Previously used host is randomized so that different connection pools start querying
     // different hosts.
     globalPreviouslyUsedHostIndex = random.nextInt(hostToConnections.size());
   }
 
   static HostConnectionPool createFromList(Collection<HostConnection> connections, Integer hostShuffleSeed) {
+    return createFromList(connections, hostShuffleSeed, false);
+  }
+
+  static HostConnectionPool createFromList(Collection<HostConnection> connections,
+                                           Integer hostShuffleSeed,
+                                           boolean latencyAware) {
     Map<Host, List<HostConnection>> hostToConnectionsMap = new HashMap<Host, List<HostConnection>>();
     for (HostConnection connection : connections) {
       List<HostConnection> connectionList = hostToConnectionsMap.get(connection.getHost());
@@ -145,7 +188,7 @@ public class HostConnectionPool {
       }
       connectionList.add(connection);
     }
-    return new HostConnectionPool(hostToConnectionsMap, hostShuffleSeed);
+    return new HostConnectionPool(hostToConnectionsMap, hostShuffleSeed, latencyAware);
   }
 
   Collection<HostConnection> getConnections() {
@@ -158,8 +201,16 @@ public class HostConnectionPool {
     return connections;
   }
 
+  private HostConnectionAndHostIndex getConnectionToUse() {
+    if (latencyAware && hostToConnections.size() > 1) {
+      return getLeastLoadedConnectionToUse();
+    } else {
+      return getRoundRobinConnectionToUse();
+    }
+  }
+
   // Return a connection to a host, initially skipping the previously used host
-  private synchronized HostConnectionAndHostIndex getConnectionToUse() {
+  private synchronized HostConnectionAndHostIndex getRoundRobinConnectionToUse() {
     HostConnectionAndHostIndex result = getNextConnectionToUse(globalPreviouslyUsedHostIndex);
     if (result != null) {
       globalPreviouslyUsedHostIndex = result.hostIndex;
@@ -167,6 +218,50 @@ public class HostConnectionPool {
     return result;
   }
 
+  // Return a connection to the better of two distinct random hosts (power of two choices). Serving hosts are
+  // preferred, then hosts with the lowest latency score. Does not acquire any lock.
+  private HostConnectionAndHostIndex getLeastLoadedConnectionToUse() {
+    ThreadLocalRandom threadLocalRandom = ThreadLocalRandom.current();
+    int numHosts = hostToConnections.size();
+    int hostIndexA = threadLocalRandom.nextInt(numHosts);
+    int hostIndexB = threadLocalRandom.nextInt(numHosts - 1);
+    if (hostIndexB >= hostIndexA) {
+      ++hostIndexB;
+    }
+    boolean isServingA = isHostServing(hostIndexA);
+    boolean isServingB = isHostServing(hostIndexB);
+    int hostIndex;
+    if (isServingA != isServingB) {
+      hostIndex = isServingA ? hostIndexA : hostIndexB;
+    } else {
+      hostIndex = hostLatencyTrackers[hostIndexA].getScore() <= hostLatencyTrackers[hostIndexB].getScore()
+          ? hostIndexA : hostIndexB;
+    }
+    if (!isHostServing(hostIndex)) {
+      // Neither host is serving, fall back to the default strategy
+      return getNextConnectionToUse(hostIndex);
+    }
+    List<HostConnectionAndHostIndex> connectionAndHostList = hostToConnections.get(hostIndex);
+    for (HostConnectionAndHostIndex connectionAndHostIndex : connectionAndHostList) {
+      // Note: here the returned connection is already locked.
+      if (connectionAndHostIndex.hostConnection.tryLockRespectingFairness()) {
+        return connectionAndHostIndex;
+      }
+    }
+    // All connections to that host are in use, return a random one
+    return connectionAndHostList.get(threadLocalRandom.nextInt(connectionAndHostList.size()));
+  }
+
+  // If a host has one unavailable connection, it is itself unavailable
+  private boolean isHostServing(int hostIndex) {
+    for (HostConnectionAndHostIndex connectionAndHostIndex : hostToConnections.get(hostIndex)) {
+      if (!connectionAndHostIndex.hostConnection.isServing()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   // Attempt to find a connection for that key where it is likely to be in the cache if it was queried
   // recently. (Globally random, but deterministic on the key.)
   private HostConnectionAndHostIndex getConnectionToUseForKey(int keyHash) {
@@ -234,6 +329,58 @@ public class HostConnectionPool {
     return null;
   }
 
+  // Return the host that should serve the next bulk request, skipping the supplied hosts (likely because
+  // there were failures using connections to them). Hosts are selected with the same preferences as
+  // connections: hosts that are serving and have an unlocked connection first, then hosts that are serving,
+  // then hosts that are offline. Return null if no host is available.
+  synchronized Host getHostToUse(Set<Host> excludedHosts) {
+    Integer hostIndex = getNextHostIndexToUse(excludedHosts, true);
+    if (hostIndex == null) {
+      hostIndex = getNextHostIndexToUse(excludedHosts, false);
+    }
+    if (hostIndex == null) {
+      for (int tryId = 0; tryId < hostToConnections.size(); ++tryId) {
+        int candidateHostIndex = (globalPreviouslyUsedHostIndex + 1 + tryId) % hostToConnections.size();
+        HostConnection hostConnection = hostToConnections.get(candidateHostIndex).get(0).hostConnection;
+        if (!excludedHosts.contains(hostConnection.getHost()) && hostConnection.isOffline()) {
+          hostIndex = candidateHostIndex;
+          break;
+        }
+      }
+    }
+    if (hostIndex == null) {
+      return null;
+    }
+    globalPreviouslyUsedHostIndex = hostIndex;
+    return hostToConnections.get(hostIndex).get(0).hostConnection.getHost();
+  }
+
+  private Integer getNextHostIndexToUse(Set<Host> excludedHosts, boolean requireUnlockedConnection) {
+    for (int tryId = 0; tryId < hostToConnections.size(); ++tryId) {
+      int hostIndex = (globalPreviouslyUsedHostIndex + 1 + tryId) % hostToConnections.size();
+      List<HostConnectionAndHostIndex> connectionAndHostList = hostToConnections.get(hostIndex);
+      if (excludedHosts.contains(connectionAndHostList.get(0).hostConnection.getHost())) {
+        continue;
+      }
+      boolean isServing = true;
+      boolean hasUnlockedConnection = false;
+      for (HostConnectionAndHostIndex connectionAndHostIndex : connectionAndHostList) {
+        // If a host has one unavailable connection, it is itself unavailable
+        if (!connectionAndHostIndex.hostConnection.isServing()) {
+          isServing = false;
+          break;
+        }
+        if (!connectionAndHostIndex.hostConnection.isLocked()) {
+          hasUnlockedConnection = true;
+        }
+      }
+      if (isServing && (hasUnlockedConnection || !requireUnlockedConnection)) {
+        return hostIndex;
+      }
+    }
+    return null;
+  }
+
   private int getNextHostIndexToUse(int previouslyUsedHostIndex) {
     if (previouslyUsedHostIndex >= (hostToConnections.size() - 1)) {
       return 0;
@@ -290,6 +437,261 @@ public class HostConnectionPool {
     }
   }
 
+  // Asynchronous version of get(). Retries are chained from the completion of the previous try, so no
+  // thread is blocked while waiting for responses from pipelined connections.
+  public ListenableFuture<HankResponse> getAsync(Domain domain, ByteBuffer key, int maxNumTries, Integer keyHash) {
+    SettableFuture<HankResponse> result = SettableFuture.create();
+    new AsyncGet(domain, key, maxNumTries, keyHash, null, result).tryNext();
+    return result;
+  }
+
+  // Hedged version of getAsync(). When no response was received after a delay determined by the hedger,
+  // a backup request is sent to another host. The first successful response wins and the other request
+  // is cancelled. Backup requests are not retried.
+  public ListenableFuture<HankResponse> getHedgedAsync(Domain domain,
+                                                       ByteBuffer key,
+                                                       int maxNumTries,
+                                                       Integer keyHash,
+                                                       RequestHedger hedger) {
+    if (hostToConnections.size() < 2) {
+      return getAsync(domain, key, maxNumTries, keyHash);
+    }
+    LatencyPercentileEstimator estimator = latencyEstimator;
+    if (estimator == null) {
+      // Concurrent first requests might create distinct estimators, only one of them is kept
+      estimator = hedger.newLatencyEstimator();
+      latencyEstimator = estimator;
+    }
+    return new HedgedGet(domain, key, maxNumTries, keyHash, hedger, estimator).start();
+  }
+
+  private class AsyncGet {
+
+    private final Domain domain;
+    private final ByteBuffer key;
+    private final int maxNumTries;
+    private final Integer keyHash;
+    private final Integer excludedHostIndex;
+    private final SettableFuture<HankResponse> result;
+    private volatile HostConnectionAndHostIndex connectionAndHostIndex = null;
+    private volatile ListenableFuture<HankResponse> pendingResponse = null;
+    private int numTries = 0;
+
+    // The first connection skips the excluded host if one is supplied
+    private AsyncGet(Domain domain,
+                     ByteBuffer key,
+                     int maxNumTries,
+                     Integer keyHash,
+                     Integer excludedHostIndex,
+                     final SettableFuture<HankResponse> result) {
+      this.domain = domain;
+      this.key = key;
+      this.maxNumTries = maxNumTries;
+      this.keyHash = keyHash;
+      this.excludedHostIndex = excludedHostIndex;
+      this.result = result;
+      // Cancelling the result cancels the pending request
+      result.addListener(new Runnable() {
+        @Override
+        public void run() {
+          ListenableFuture<HankResponse> response = pendingResponse;
+          if (result.isCancelled() && response != null) {
+            response.cancel(false);
+          }
+        }
+      }, HostConnection.SAME_THREAD_EXECUTOR);
+    }
+
+    private void tryNext() {
+      if (result.isCancelled()) {
+        return;
+      }
+      // Either get a connection to an arbitrary host, or get a connection skipping the
+      // previous host used (since it failed)
+      if (connectionAndHostIndex == null) {
+        if (excludedHostIndex != null) {
+          connectionAndHostIndex = getNextConnectionToUse(excludedHostIndex);
+        } else if (keyHash == null) {
+          connectionAndHostIndex = getConnectionToUse();
+        } else {
+          connectionAndHostIndex = getConnectionToUseForKey(keyHash);
+        }
+      } else {
+        connectionAndHostIndex = getNextConnectionToUse(connectionAndHostIndex.hostIndex);
+      }
+      // If we couldn't find any available connection, return corresponding error response
+      if (connectionAndHostIndex == null) {
+        LOG.error("No connection is available. Giving up. Domain = " + domain.getName() + ", Key=" + BytesUtils.bytesToHexString(key));
+        result.set(NO_CONNECTION_AVAILABLE_RESPONSE);
+        return;
+      }
+      // Perform query
+      final ListenableFuture<HankResponse> response = connectionAndHostIndex.hostConnection.getAsync(domain.getId(), key);
+      pendingResponse = response;
+      if (result.isCancelled()) {
+        response.cancel(false);
+      }
+      response.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (response.isCancelled()) {
+            return;
+          }
+          try {
+            result.set(Futures.getUnchecked(response));
+          } catch (RuntimeException e) {
+            onFailure(e.getCause() != null ? e.getCause() : e);
+          }
+        }
+      }, HostConnection.SAME_THREAD_EXECUTOR);
+    }
+
+    private void onFailure(Throwable e) {
+      if (result.isCancelled()) {
+        return;
+      }
+      // In case of error, keep count of the number of times we retry
+      ++numTries;
+      if (numTries < maxNumTries) {
+        // Simply log the error and retry
+        LOG.error("Failed to perform query with host: "
+            + connectionAndHostIndex.hostConnection.getHost().getAddress()
+            + ". Retrying. Try " + numTries + "/" + maxNumTries
+            + ", Domain = " + domain.getName()
+            + ", Key = " + BytesUtils.bytesToHexString(key), e);
+        tryNext();
+      } else {
+        // If we have exhausted tries, return an exception response
+        LOG.error("Failed to perform query with host: "
+            + connectionAndHostIndex.hostConnection.getHost().getAddress()
+            + ". Giving up. Try " + numTries + "/" + maxNumTries
+            + ", Domain = " + domain.getName()
+            + ", Key = " + BytesUtils.bytesToHexString(key), e);
+        result.set(HankResponse.xception(HankException.failed_retries(maxNumTries)));
+      }
+    }
+  }
+
+  private class HedgedGet {
+
+    private final Domain domain;
+    private final ByteBuffer key;
+    private final RequestHedger hedger;
+    private final LatencyPercentileEstimator latencyEstimator;
+    private final SettableFuture<HankResponse> result = SettableFuture.create();
+    private final AsyncGet primary;
+    private volatile AsyncGet backup = null;
+    private volatile ScheduledFuture<?> backupTimer = null;
+    private final long startNanos = System.nanoTime();
+
+    private HedgedGet(Domain domain,
+                      ByteBuffer key,
+                      int maxNumTries,
+                      Integer keyHash,
+                      RequestHedger hedger,
+                      LatencyPercentileEstimator latencyEstimator) {
+      this.domain = domain;
+      this.key = key;
+      this.hedger = hedger;
+      this.latencyEstimator = latencyEstimator;
+      this.primary = new AsyncGet(domain, key, maxNumTries, keyHash, null, SettableFuture.<HankResponse>create());
+    }
+
+    private ListenableFuture<HankResponse> start() {
+      hedger.requestStarted();
+      result.addListener(new Runnable() {
+        @Override
+        public void run() {
+          ScheduledFuture<?> timer = backupTimer;
+          if (timer != null) {
+            timer.cancel(false);
+          }
+          // Cancelling the result cancels both requests
+          if (result.isCancelled()) {
+            primary.result.cancel(false);
+            AsyncGet currentBackup = backup;
+            if (currentBackup != null) {
+              currentBackup.result.cancel(false);
+            }
+          }
+        }
+      }, HostConnection.SAME_THREAD_EXECUTOR);
+      addResponseListener(primary);
+      long delayNanos = hedger.getDelayNanos(latencyEstimator);
+      if (delayNanos >= 0) {
+        backupTimer = hedger.schedule(new Runnable() {
+          @Override
+          public void run() {
+            sendBackup();
+          }
+        }, delayNanos);
+      }
+      // Connections are selected and used from the same thread, since selection might lock them
+      hedger.getRequestExecutor().execute(new Runnable() {
+        @Override
+        public void run() {
+          primary.tryNext();
+        }
+      });
+      return result;
+    }
+
+    private void sendBackup() {
+      if (result.isDone() || !hedger.tryAcquireHedge()) {
+        return;
+      }
+      HostConnectionAndHostIndex primaryConnectionAndHostIndex = primary.connectionAndHostIndex;
+      final AsyncGet currentBackup = new AsyncGet(domain, key, 1, null,
+          primaryConnectionAndHostIndex == null ? null : primaryConnectionAndHostIndex.hostIndex,
+          SettableFuture.<HankResponse>create());
+      backup = currentBackup;
+      addResponseListener(currentBackup);
+      hedger.getRequestExecutor().execute(new Runnable() {
+        @Override
+        public void run() {
+          currentBackup.tryNext();
+        }
+      });
+      if (result.isDone()) {
+        currentBackup.result.cancel(false);
+      }
+    }
+
+    private void addResponseListener(final AsyncGet attempt) {
+      attempt.result.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (!attempt.result.isCancelled()) {
+            // Responses are set by attempts, never exceptions
+            onResponse(attempt, Futures.getUnchecked(attempt.result));
+          }
+        }
+      }, HostConnection.SAME_THREAD_EXECUTOR);
+    }
+
+    private void onResponse(AsyncGet attempt, HankResponse response) {
+      AsyncGet other = attempt == primary ? backup : primary;
+      // If this request failed, wait for the other one
+      if (response.is_set_xception() && other != null && !other.result.isDone()) {
+        return;
+      }
+      if (!result.set(response)) {
+        return;
+      }
+      if (!response.is_set_xception()) {
+        latencyEstimator.record(System.nanoTime() - startNanos);
+      }
+      if (other != null) {
+        other.result.cancel(false);
+        if (attempt == primary) {
+          hedger.onHedgeWasted();
+        } else {
+          hedger.onHedgeWon();
+        }
+      }
+    }
+  }
+
   public HankBulkResponse getBulk(int domainId, List<ByteBuffer> keys, int maxNumTries) {
     HostConnectionAndHostIndex connectionAndHostIndex = null;
     int numTries = 0;
@@ -329,14 +731,93 @@ public class HostConnectionPool {
     }
   }
 
+  // Asynchronous version of getBulk(). Retries are chained from the completion of the previous try.
+  public ListenableFuture<HankBulkResponse> getBulkAsync(int domainId, List<ByteBuffer> keys, int maxNumTries) {
+    SettableFuture<HankBulkResponse> result = SettableFuture.create();
+    new AsyncGetBulk(domainId, keys, maxNumTries, result).tryNext();
+    return result;
+  }
+
+  private class AsyncGetBulk {
+
+    private final int domainId;
+    private final List<ByteBuffer> keys;
+    private final int maxNumTries;
+    private final SettableFuture<HankBulkResponse> result;
+    private HostConnectionAndHostIndex connectionAndHostIndex = null;
+    private int numTries = 0;
+
+    private AsyncGetBulk(int domainId, List<ByteBuffer> keys, int maxNumTries, SettableFuture<HankBulkResponse> result) {
+      this.domainId = domainId;
+      this.keys = keys;
+      this.maxNumTries = maxNumTries;
+      this.result = result;
+    }
+
+    private void tryNext() {
+      // Either get a connection to an arbitrary host, or get a connection skipping the
+      // previous host used (since it failed)
+      if (connectionAndHostIndex == null) {
+        connectionAndHostIndex = getConnectionToUse();
+      } else {
+        connectionAndHostIndex = getNextConnectionToUse(connectionAndHostIndex.hostIndex);
+      }
+      // If we couldn't find any available connection, return corresponding error response
+      if (connectionAndHostIndex == null) {
+        LOG.error("No connection is available. Giving up. Num keys = " + keys.size());
+        result.set(NO_CONNECTION_AVAILABLE_BULK_RESPONSE);
+        return;
+      }
+      // Perform query
+      final ListenableFuture<HankBulkResponse> response = connectionAndHostIndex.hostConnection.getBulkAsync(domainId, keys);
+      response.addListener(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            result.set(Futures.getUnchecked(response));
+          } catch (RuntimeException e) {
+            onFailure(e.getCause() != null ? e.getCause() : e);
+          }
+        }
+      }, HostConnection.SAME_THREAD_EXECUTOR);
+    }
+
+    private void onFailure(Throwable e) {
+      // In case of error, keep count of the number of times we retry
+      ++numTries;
+      if (numTries < maxNumTries) {
+        // Simply log the error and retry
+        LOG.error("Failed to perform query with host #" + connectionAndHostIndex.hostIndex
+            + ". Retrying. Try " + numTries + "/" + maxNumTries
+            + ", Num keys = " + keys.size(), e);
+        tryNext();
+      } else {
+        // If we have exhausted tries, return an exception response
+        LOG.error("Failed to perform query with host #" + connectionAndHostIndex.hostIndex
+            + ". Giving up. Try " + numTries + "/" + maxNumTries
+            + ", Num keys = " + keys.size(), e);
+        result.set(HankBulkResponse.xception(HankException.failed_retries(maxNumTries)));
+      }
+    }
+  }
+
   public static Integer getHostListShuffleSeed(Integer domainId, Integer partitionId) {
     return (domainId + 1) * (partitionId + 1);
   }
 
-  // Compute the ratio of used (locked) connections over the total number of connections
+  // Compute the ratio of used (locked) connections over the total number of connections, along with
+  // the latency of and number of outstanding requests to each host
   public ConnectionLoad getConnectionLoad() {
     int numLockedConnections = 0;
     int numConnections = 0;
+    double totalLatencyMs = 0;
+    int numLatencyMeasurements = 0;
+    int numOutstandingRequests = 0;
+    for (HostLatencyTracker hostLatencyTracker : hostLatencyTrackers) {
+      totalLatencyMs += hostLatencyTracker.getLatencyNanos() / 1000000.0;
+      numLatencyMeasurements += 1;
+      numOutstandingRequests += hostLatencyTracker.getNumOutstandingRequests();
+    }
     for (List<HostConnectionAndHostIndex> hostConnectionAndHostIndexes : hostToConnections) {
       for (HostConnectionAndHostIndex hostConnectionAndHostIndex : hostConnectionAndHostIndexes) {
         if (hostConnectionAndHostIndex.hostConnection.isLocked()) {
@@ -345,6 +826,7 @@ public class HostConnectionPool {
         numConnections += 1;
       }
     }
-    return new ConnectionLoad(numConnections, numLockedConnections);
+    return new ConnectionLoad(numConnections, numLockedConnections,
+        totalLatencyMs, numLatencyMeasurements, numOutstandingRequests);
   }
 }
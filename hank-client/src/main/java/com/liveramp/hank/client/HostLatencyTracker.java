@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the latency of requests to a Host as an exponentially weighted moving average (EWMA),
+ * along with the number of outstanding requests. Shared by all connections to a Host, and
+ * updated without locking.
+ *
+ * The average decays while no request completes, so that a Host that was slow at some point
+ * eventually gets probed again.
+ */
+final class HostLatencyTracker {
+
+  // Weight of the latest measurement in the moving average
+  static final double EWMA_WEIGHT = 0.2;
+  // Time constant of the decay of the average when no request completes
+  static final long DECAY_TIME_NANOS = TimeUnit.SECONDS.toNanos(10);
+  // Failed requests are accounted for as requests that took at least that long
+  static final long FAILURE_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static final double UNKNOWN_LATENCY = -1;
+
+  private final AtomicLong ewmaLatencyNanosBits = new AtomicLong(Double.doubleToLongBits(UNKNOWN_LATENCY));
+  private volatile long lastUpdateNanos = System.nanoTime();
+  private final AtomicInteger numOutstandingRequests = new AtomicInteger(0);
+
+  // Return the start time of the request, to be supplied on completion
+  long requestStarted() {
+    numOutstandingRequests.incrementAndGet();
+    return System.nanoTime();
+  }
+
+  void requestCompleted(long startNanos, boolean success) {
+    numOutstandingRequests.decrementAndGet();
+    long now = System.nanoTime();
+    double latency = now - startNanos;
+    if (!success) {
+      latency = Math.max(latency, FAILURE_LATENCY_NANOS);
+    }
+    while (true) {
+      long previousBits = ewmaLatencyNanosBits.get();
+      double previous = Double.longBitsToDouble(previousBits);
+      double updated;
+      if (previous == UNKNOWN_LATENCY) {
+        updated = latency;
+      } else {
+        updated = previous + EWMA_WEIGHT * (latency - previous);
+      }
+      if (ewmaLatencyNanosBits.compareAndSet(previousBits, Double.doubleToLongBits(updated))) {
+        break;
+      }
+    }
+    lastUpdateNanos = now;
+  }
+
+  // Cancelled requests do not contribute to the moving average
+  void requestCancelled() {
+    numOutstandingRequests.decrementAndGet();
+  }
+
+  // Return the decayed moving average of request latencies, 0 if no request completed yet
+  double getLatencyNanos() {
+    double latency = Double.longBitsToDouble(ewmaLatencyNanosBits.get());
+    if (latency == UNKNOWN_LATENCY) {
+      return 0;
+    }
+    long age = System.nanoTime() - lastUpdateNanos;
+    if (age > 0) {
+      latency *= Math.exp(-(double)age / DECAY_TIME_NANOS);
+    }
+    return latency;
+  }
+
+  int getNumOutstandingRequests() {
+    return numOutstandingRequests.get();
+  }
+
+  // Expected cost of sending one more request to the Host. Lower is better.
+  double getScore() {
+    return (getLatencyNanos() + 1) * (getNumOutstandingRequests() + 1);
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Estimates a percentile of recent request latencies from a fixed size window of samples. Samples
+ * are recorded without locking. The percentile is recomputed only after a number of new samples
+ * have been recorded, so that querying it is cheap.
+ */
+final class LatencyPercentileEstimator {
+
+  static final int NUM_SAMPLES = 512;
+  // No estimate is available until that many samples have been recorded
+  static final int MIN_NUM_SAMPLES = 64;
+  private static final int RECOMPUTE_INTERVAL = 64;
+
+  private final double percentile;
+  private final AtomicLongArray samples = new AtomicLongArray(NUM_SAMPLES);
+  private final AtomicLong numSamples = new AtomicLong(0);
+  private volatile long cachedPercentileNanos = -1;
+  private volatile long cachedNumSamples = 0;
+
+  LatencyPercentileEstimator(double percentile) {
+    if (percentile <= 0 || percentile > 100) {
+      throw new IllegalArgumentException("Invalid percentile: " + percentile);
+    }
+    this.percentile = percentile;
+  }
+
+  void record(long latencyNanos) {
+    long index = numSamples.getAndIncrement();
+    samples.set((int)(index % NUM_SAMPLES), latencyNanos);
+  }
+
+  // Return the estimated percentile of recent latencies, or -1 if not enough samples were recorded
+  long getPercentileNanos() {
+    long currentNumSamples = numSamples.get();
+    if (currentNumSamples < MIN_NUM_SAMPLES) {
+      return -1;
+    }
+    if (cachedPercentileNanos < 0 || currentNumSamples - cachedNumSamples >= RECOMPUTE_INTERVAL) {
+      int size = (int)Math.min(currentNumSamples, NUM_SAMPLES);
+      long[] sortedSamples = new long[size];
+      for (int i = 0; i < size; ++i) {
+        sortedSamples[i] = samples.get(i);
+      }
+      Arrays.sort(sortedSamples);
+      int rank = (int)Math.ceil(percentile / 100 * size) - 1;
+      cachedPercentileNanos = sortedSamples[Math.max(0, Math.min(size - 1, rank))];
+      cachedNumSamples = currentNumSamples;
+    }
+    return cachedPercentileNanos;
+  }
+}
@@ -6,6 +6,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
@@ -81,6 +84,26 @@ public class MockHankSmartClient implements HankSmartClientIface {
     return result;
   }
 
+  @Override
+  public ListenableFuture<HankResponse> getAsync(String domainName, ByteBuffer key) {
+    return Futures.immediateFuture(get(domainName, key));
+  }
+
+  @Override
+  public void getAsync(String domainName, ByteBuffer key, GetCallback callback) {
+    callback.onComplete(get(domainName, key));
+  }
+
+  @Override
+  public ListenableFuture<HankBulkResponse> getBulkAsync(String domainName, List<ByteBuffer> keys) {
+    return Futures.immediateFuture(getBulk(domainName, keys));
+  }
+
+  @Override
+  public void getBulkAsync(String domainName, List<ByteBuffer> keys, GetBulkCallback callback) {
+    callback.onComplete(getBulk(domainName, keys));
+  }
+
   @Override
   public void stop() {
     // No-op
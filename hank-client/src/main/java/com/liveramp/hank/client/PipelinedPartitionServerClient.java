@@ -0,0 +1,275 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.hank.generated.HankBulkResponse;
+import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.generated.PartitionServer;
+
+/**
+ * Client to a partition server that allows many outstanding requests on a single socket. Requests are
+ * written as soon as they are submitted, each with its own sequence id, and a reader thread matches
+ * responses to pending requests by sequence id. The partition server processes the requests of a given
+ * connection in order, so the benefit comes from not holding the connection for a full round trip.
+ * <p/>
+ * Each request is failed if no response has been received after its timeout. When the connection
+ * fails, all pending requests are failed and the client is closed. Futures are completed from the
+ * reader thread, so listeners added to them should not block.
+ */
+class PipelinedPartitionServerClient {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PipelinedPartitionServerClient.class);
+
+  private static final ScheduledThreadPoolExecutor TIMEOUT_EXECUTOR;
+
+  static {
+    TIMEOUT_EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "Pipelined Partition Server Client Timeout Thread");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    TIMEOUT_EXECUTOR.setRemoveOnCancelPolicy(true);
+  }
+
+  private final String description;
+  private final TTransport transport;
+  private final TProtocol inputProtocol;
+  private final TProtocol outputProtocol;
+  private final Map<Integer, PendingRequest<?>> pendingRequests = new ConcurrentHashMap<Integer, PendingRequest<?>>();
+  private final Object writeLock = new Object();
+  private int nextSequenceId = 0;
+  private volatile boolean closed = false;
+  private final Thread readerThread;
+
+  PipelinedPartitionServerClient(String hostName, int portNumber, int establishConnectionTimeoutMs) throws IOException {
+    this.description = hostName + ":" + portNumber;
+    // The reader thread blocks until responses are available, request timeouts are managed separately
+    TSocket socket = new TSocket(hostName, portNumber, establishConnectionTimeoutMs);
+    transport = new TFramedTransport(socket);
+    try {
+      transport.open();
+      socket.setTimeout(0);
+    } catch (TTransportException e) {
+      transport.close();
+      throw new IOException("Failed to establish connection to host " + description, e);
+    }
+    // Protocols are stateful, use separate instances for reading and writing
+    inputProtocol = new TCompactProtocol(transport);
+    outputProtocol = new TCompactProtocol(transport);
+    readerThread = new Thread(new ReaderRunnable(), "Pipelined Partition Server Client Reader " + description);
+    readerThread.setDaemon(true);
+    readerThread.start();
+  }
+
+  // A timeout of 0 means no timeout
+  ListenableFuture<HankResponse> get(int domainId, ByteBuffer key, int timeoutMs) {
+    PartitionServer.get_args args = new PartitionServer.get_args();
+    args.set_domain_id(domainId);
+    args.set_key(key);
+    return send("get", args, new PendingRequest<HankResponse>() {
+      @Override
+      protected HankResponse readResult(TProtocol protocol) throws TException {
+        PartitionServer.get_result result = new PartitionServer.get_result();
+        result.read(protocol);
+        if (!result.is_set_success()) {
+          throw new TApplicationException(TApplicationException.MISSING_RESULT, "get failed: unknown result");
+        }
+        return result.get_success();
+      }
+    }, timeoutMs);
+  }
+
+  // A timeout of 0 means no timeout
+  ListenableFuture<HankBulkResponse> getBulk(int domainId, List<ByteBuffer> keys, int timeoutMs) {
+    PartitionServer.getBulk_args args = new PartitionServer.getBulk_args();
+    args.set_domain_id(domainId);
+    args.set_keys(keys);
+    return send("getBulk", args, new PendingRequest<HankBulkResponse>() {
+      @Override
+      protected HankBulkResponse readResult(TProtocol protocol) throws TException {
+        PartitionServer.getBulk_result result = new PartitionServer.getBulk_result();
+        result.read(protocol);
+        if (!result.is_set_success()) {
+          throw new TApplicationException(TApplicationException.MISSING_RESULT, "getBulk failed: unknown result");
+        }
+        return result.get_success();
+      }
+    }, timeoutMs);
+  }
+
+  int getNumPendingRequests() {
+    return pendingRequests.size();
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  void close() {
+    close(new IOException("Connection to host " + description + " was closed"));
+  }
+
+  private <T> ListenableFuture<T> send(String methodName,
+                                       TBase<?, ?> args,
+                                       final PendingRequest<T> request,
+                                       int timeoutMs) {
+    synchronized (writeLock) {
+      if (closed) {
+        request.future.setException(new IOException("Connection to host " + description + " is closed"));
+        return request.future;
+      }
+      final int sequenceId = nextSequenceId++;
+      pendingRequests.put(sequenceId, request);
+      if (timeoutMs > 0) {
+        request.timeout = TIMEOUT_EXECUTOR.schedule(new Runnable() {
+          @Override
+          public void run() {
+            if (pendingRequests.remove(sequenceId) != null) {
+              request.future.setException(new IOException("Request to host " + description + " timed out"));
+            }
+          }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+      }
+      // Cancelled requests are forgotten, their responses will be discarded
+      request.future.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (request.future.isCancelled() && pendingRequests.remove(sequenceId) != null) {
+            request.cancelTimeout();
+          }
+        }
+      }, HostConnection.SAME_THREAD_EXECUTOR);
+      try {
+        outputProtocol.writeMessageBegin(new TMessage(methodName, TMessageType.CALL, sequenceId));
+        args.write(outputProtocol);
+        outputProtocol.writeMessageEnd();
+        outputProtocol.getTransport().flush();
+      } catch (TException e) {
+        close(new IOException("Failed to send request to host " + description, e));
+      }
+    }
+    return request.future;
+  }
+
+  private void close(IOException cause) {
+    synchronized (writeLock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      transport.close();
+    }
+    for (Integer sequenceId : pendingRequests.keySet()) {
+      PendingRequest<?> request = pendingRequests.remove(sequenceId);
+      if (request != null) {
+        request.fail(cause);
+      }
+    }
+  }
+
+  private class ReaderRunnable implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        while (!closed) {
+          TMessage message = inputProtocol.readMessageBegin();
+          PendingRequest<?> request = pendingRequests.remove(message.seqid);
+          if (request == null) {
+            // Request has timed out or was cancelled, discard its response
+            TProtocolUtil.skip(inputProtocol, TType.STRUCT);
+            inputProtocol.readMessageEnd();
+          } else if (message.type == TMessageType.EXCEPTION) {
+            TApplicationException exception = TApplicationException.read(inputProtocol);
+            inputProtocol.readMessageEnd();
+            request.fail(new IOException("Host " + description + " failed to execute request", exception));
+          } else {
+            try {
+              request.complete(inputProtocol);
+            } catch (TException e) {
+              request.fail(new IOException("Failed to read response from host " + description, e));
+              throw e;
+            }
+            inputProtocol.readMessageEnd();
+          }
+        }
+      } catch (TException e) {
+        if (!closed) {
+          LOG.error("Failed to read response from host " + description, e);
+        }
+        close(new IOException("Failed to read response from host " + description, e));
+      }
+    }
+  }
+
+  private static abstract class PendingRequest<T> {
+
+    private final SettableFuture<T> future = SettableFuture.create();
+    private volatile ScheduledFuture<?> timeout;
+
+    protected abstract T readResult(TProtocol protocol) throws TException;
+
+    private void complete(TProtocol protocol) throws TException {
+      T result = readResult(protocol);
+      cancelTimeout();
+      future.set(result);
+    }
+
+    private void fail(Throwable cause) {
+      cancelTimeout();
+      future.setException(cause);
+    }
+
+    private void cancelTimeout() {
+      ScheduledFuture<?> timeout = this.timeout;
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+    }
+  }
+}
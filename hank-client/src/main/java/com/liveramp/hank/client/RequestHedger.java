@@ -0,0 +1,160 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.client;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when to send backup (hedged) requests and how many can be sent. A backup request is sent
+ * when no response was received after a given percentile of recent latencies of the connection
+ * pool (but not sooner than a minimum delay). The number of backup requests is capped by a budget,
+ * expressed as a ratio of the number of requests: each request earns that fraction of a backup
+ * request, and unused budget accumulates up to a small burst.
+ */
+class RequestHedger {
+
+  // Budget is accounted for in fractions of a backup request
+  private static final long BUDGET_UNIT = 1000000;
+  private static final long MAX_BUDGET_BURST = 10 * BUDGET_UNIT;
+
+  private final double delayPercentile;
+  private final long minDelayNanos;
+  private final long budgetPerRequest;
+  private final AtomicLong budget = new AtomicLong(0);
+
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final ExecutorService requestExecutorService;
+  private final Executor requestExecutor;
+
+  private final AtomicLong numHedgedRequests = new AtomicLong(0);
+  private final AtomicLong numHedgesWon = new AtomicLong(0);
+  private final AtomicLong numHedgesWasted = new AtomicLong(0);
+
+  // When requests block the thread that performs them (no connection pipelining), requests are
+  // performed in separate threads so that a backup request can be sent while the first one is pending.
+  RequestHedger(double delayPercentile,
+                int minDelayMs,
+                double budgetRatio,
+                boolean requestsBlock) {
+    if (budgetRatio < 0) {
+      throw new IllegalArgumentException("Invalid hedged requests budget: " + budgetRatio);
+    }
+    this.delayPercentile = delayPercentile;
+    this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+    this.budgetPerRequest = (long)(budgetRatio * BUDGET_UNIT);
+    scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("Hedged Request Timer Thread"));
+    scheduler.setRemoveOnCancelPolicy(true);
+    if (requestsBlock) {
+      requestExecutorService = Executors.newCachedThreadPool(new DaemonThreadFactory("Hedged Request Thread"));
+      requestExecutor = requestExecutorService;
+    } else {
+      requestExecutorService = null;
+      requestExecutor = HostConnection.SAME_THREAD_EXECUTOR;
+    }
+  }
+
+  LatencyPercentileEstimator newLatencyEstimator() {
+    return new LatencyPercentileEstimator(delayPercentile);
+  }
+
+  // Return the delay after which a backup request should be sent, or -1 if it cannot be determined yet
+  long getDelayNanos(LatencyPercentileEstimator latencyEstimator) {
+    long percentileNanos = latencyEstimator.getPercentileNanos();
+    if (percentileNanos < 0) {
+      return -1;
+    }
+    return Math.max(minDelayNanos, percentileNanos);
+  }
+
+  // Called for every request, to earn budget
+  void requestStarted() {
+    while (true) {
+      long current = budget.get();
+      if (current >= MAX_BUDGET_BURST || budget.compareAndSet(current, Math.min(MAX_BUDGET_BURST, current + budgetPerRequest))) {
+        return;
+      }
+    }
+  }
+
+  // Return true if the budget allows a backup request, in which case it is consumed
+  boolean tryAcquireHedge() {
+    while (true) {
+      long current = budget.get();
+      if (current < BUDGET_UNIT) {
+        return false;
+      }
+      if (budget.compareAndSet(current, current - BUDGET_UNIT)) {
+        numHedgedRequests.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  void onHedgeWon() {
+    numHedgesWon.incrementAndGet();
+  }
+
+  void onHedgeWasted() {
+    numHedgesWasted.incrementAndGet();
+  }
+
+  ScheduledFuture<?> schedule(Runnable runnable, long delayNanos) {
+    return scheduler.schedule(runnable, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  Executor getRequestExecutor() {
+    return requestExecutor;
+  }
+
+  // Return the number of hedged, won and wasted backup requests since the last call, and reset them
+  long[] getAndResetCounters() {
+    return new long[]{
+        numHedgedRequests.getAndSet(0),
+        numHedgesWon.getAndSet(0),
+        numHedgesWasted.getAndSet(0)};
+  }
+
+  void shutDown() {
+    scheduler.shutdownNow();
+    if (requestExecutorService != null) {
+      requestExecutorService.shutdown();
+    }
+  }
+
+  private static class DaemonThreadFactory implements ThreadFactory {
+
+    private final String name;
+
+    private DaemonThreadFactory(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
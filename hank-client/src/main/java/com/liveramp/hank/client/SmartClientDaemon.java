@@ -63,7 +63,8 @@ public class SmartClientDaemon {
    */
   private void serve() throws IOException, TException {
     // set up the service handler
-    HankSmartClient handler = new HankSmartClient(coordinator, ringGroupName);
+    HankSmartClient handler = new HankSmartClient(coordinator, ringGroupName,
+        new HankSmartClientOptions().setMetricsPort(configurator.getMetricsPort()));
 
     // launch the thrift server
     TNonblockingServerSocket serverSocket = new TNonblockingServerSocket(configurator.getPortNumber());
@@ -22,4 +22,6 @@ public interface SmartClientDaemonConfigurator extends CoordinatorConfigurator {
   public String getRingGroupName();
   public int getPortNumber();
   public int getNumThreads();
+  // Port of the HTTP metrics endpoint, 0 to disable it
+  public int getMetricsPort();
 }
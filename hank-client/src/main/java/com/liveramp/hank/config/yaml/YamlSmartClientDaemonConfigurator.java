@@ -26,6 +26,7 @@ public class YamlSmartClientDaemonConfigurator extends YamlCoordinatorConfigurat
   public static final String NUM_WORKER_THREADS = "num_worker_threads";
   public static final String SERVICE_PORT_KEY = "service_port";
   public static final String RING_GROUP_NAME_KEY = "ring_group_name";
+  public static final String METRICS_PORT_KEY = "metrics_port";
 
   public YamlSmartClientDaemonConfigurator(String path) throws IOException, InvalidConfigurationException {
     super(path);
@@ -46,6 +47,12 @@ public class YamlSmartClientDaemonConfigurator extends YamlCoordinatorConfigurat
     return getString(SMART_CLIENT_SECTION_KEY, RING_GROUP_NAME_KEY);
   }
 
+  @Override
+  public int getMetricsPort() {
+    Integer result = getOptionalInteger(SMART_CLIENT_SECTION_KEY, METRICS_PORT_KEY);
+    return result == null ? 0 : result;
+  }
+
   @Override
   protected void validate() throws InvalidConfigurationException {
     super.validate();
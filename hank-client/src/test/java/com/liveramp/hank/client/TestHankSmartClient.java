@@ -85,7 +85,6 @@ public class TestHankSmartClient extends BaseTestCase {
 
   private static class MockPartitionServerHandler implements PartitionServer.Iface {
     private final HankResponse response;
-    private final HankBulkResponse bulkResponse;
     private Mode mode = Mode.NORMAL;
     private int numRequests = 0;
 
@@ -98,9 +97,6 @@ public class TestHankSmartClient extends BaseTestCase {
 
     public MockPartitionServerHandler(ByteBuffer result) {
       this.response = HankResponse.value(result);
-      List<HankResponse> responses = new ArrayList<HankResponse>();
-      responses.add(HankResponse.value(result));
-      this.bulkResponse = HankBulkResponse.responses(responses);
     }
 
     @Override
@@ -118,7 +114,15 @@ public class TestHankSmartClient extends BaseTestCase {
     public HankBulkResponse getBulk(int domainId, List<ByteBuffer> keys) {
       applyMode();
       numRequests += keys.size();
-      return bulkResponse;
+      List<HankResponse> responses = new ArrayList<HankResponse>();
+      for (ByteBuffer key : keys) {
+        if (key.equals(KEY_NOT_FOUND)) {
+          responses.add(HankResponse.not_found(true));
+        } else {
+          responses.add(response);
+        }
+      }
+      return HankBulkResponse.responses(responses);
     }
 
     public int getNumRequests() {
@@ -279,6 +283,74 @@ public class TestHankSmartClient extends BaseTestCase {
       bulkRequest1.add(KEY_2);
       assertEquals(bulkResponse1, client.getBulk("existent_domain", bulkRequest1));
 
+      // Test getBulk with keys from multiple partitions and hosts, responses should be in request order
+      iface1.clearNumRequests();
+      iface2.clearNumRequests();
+      HankBulkResponse bulkResponse2 = HankBulkResponse.responses(new ArrayList<HankResponse>());
+      bulkResponse2.get_responses().add(HankResponse.value(VALUE_2));
+      bulkResponse2.get_responses().add(HankResponse.not_found(true));
+      bulkResponse2.get_responses().add(HankResponse.value(VALUE_1));
+      bulkResponse2.get_responses().add(HankResponse.value(VALUE_2));
+      List<ByteBuffer> bulkRequest2 = new ArrayList<ByteBuffer>();
+      bulkRequest2.add(KEY_2);
+      bulkRequest2.add(KEY_NOT_FOUND);
+      bulkRequest2.add(KEY_1);
+      bulkRequest2.add(KEY_2);
+      assertEquals(bulkResponse2, client.getBulk("existent_domain", bulkRequest2));
+      assertEquals(2, iface1.getNumRequests());
+      assertEquals(2, iface2.getNumRequests());
+
+      // Test pipelined connections
+      final HankSmartClient pipelinedClient = new HankSmartClient(mockCoord, "myRingGroup",
+          new HankSmartClientOptions().setQueryTimeoutMs(1000).setConnectionPipeliningEnabled(true));
+      try {
+        assertEquals(HankResponse.value(VALUE_1), pipelinedClient.get("existent_domain", KEY_1));
+        assertEquals(HankResponse.value(VALUE_2), pipelinedClient.getAsync("existent_domain", KEY_2).get());
+        assertEquals(HankResponse.not_found(true), pipelinedClient.getAsync("existent_domain", KEY_NOT_FOUND).get());
+        assertEquals(bulkResponse2, pipelinedClient.getBulk("existent_domain", bulkRequest2));
+        assertEquals(bulkResponse2, pipelinedClient.getBulkAsync("existent_domain", bulkRequest2).get());
+        assertEquals(HankBulkResponse.xception(HankException.no_such_domain(true)),
+            pipelinedClient.getBulkAsync("nonexistent_domain", bulkRequest2).get());
+
+        // Test callbacks
+        final List<HankResponse> callbackResponses = Collections.synchronizedList(new ArrayList<HankResponse>());
+        final List<HankBulkResponse> callbackBulkResponses = Collections.synchronizedList(new ArrayList<HankBulkResponse>());
+        for (int i = 0; i < 100; ++i) {
+          pipelinedClient.getAsync("existent_domain", KEY_1, new GetCallback() {
+            @Override
+            public void onComplete(HankResponse response) {
+              callbackResponses.add(response);
+            }
+          });
+        }
+        pipelinedClient.getBulkAsync("existent_domain", bulkRequest2, new GetBulkCallback() {
+          @Override
+          public void onComplete(HankBulkResponse response) {
+            callbackBulkResponses.add(response);
+          }
+        });
+        WaitUntil.orDie(new Condition() {
+          @Override
+          public boolean test() {
+            return callbackResponses.size() == 100 && callbackBulkResponses.size() == 1;
+          }
+        });
+        for (HankResponse response : callbackResponses) {
+          assertEquals(HankResponse.value(VALUE_1), response);
+        }
+        assertEquals(bulkResponse2, callbackBulkResponses.get(0));
+      } finally {
+        pipelinedClient.stop();
+      }
+
+      // Test getBulk with null key
+      try {
+        client.getBulk("existent_domain", Arrays.asList(KEY_1, null));
+        fail("Should throw an exception.");
+      } catch (NullKeyException e) {
+        // Good
+      }
+
       // Test get with null key
       try {
         client.get("existent_domain", null);
@@ -335,6 +407,9 @@ public class TestHankSmartClient extends BaseTestCase {
 
       assertTrue(client.get("existent_domain", KEY_1).get_xception().get_failed_retries() > 0);
       assertTrue(client.get("existent_domain", KEY_2).get_xception().get_failed_retries() > 0);
+      for (HankResponse response : client.getBulk("existent_domain", bulkRequest1).get_responses()) {
+        assertTrue(response.get_xception().get_failed_retries() > 0);
+      }
 
       // Simulate servers that throws an error
       iface1.setMode(MockPartitionServerHandler.Mode.THROWING_ERROR);
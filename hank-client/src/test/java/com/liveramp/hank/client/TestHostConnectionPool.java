@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 
 import org.junit.After;
@@ -126,6 +127,29 @@ public class TestHostConnectionPool extends BaseTestCase {
     }
   }
 
+  // Blocks requests while stalled
+  private class StallingIface extends MockIface {
+
+    private final Semaphore semaphore;
+    private volatile boolean stalled = false;
+
+    public StallingIface(Semaphore semaphore) {
+      this.semaphore = semaphore;
+    }
+
+    @Override
+    public HankResponse getCore(int domain_id, ByteBuffer key) {
+      if (stalled) {
+        try {
+          this.semaphore.acquire();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return RESPONSE_1;
+    }
+  }
+
   private class HankExceptionIface extends MockIface {
 
     @Override
@@ -228,6 +252,116 @@ public class TestHostConnectionPool extends BaseTestCase {
     assertEquals("All keys should have been found", 10, numHits);
   }
 
+  @Test
+  public void testLatencyAwareSelection() throws IOException, InterruptedException {
+
+    MockIface iface1 = new Response1Iface();
+    MockIface iface2 = new Response1Iface();
+
+    startMockPartitionServerThread1(iface1, 1);
+    startMockPartitionServerThread2(iface2, 1);
+
+    Map<Host, List<HostConnection>> hostToConnectionsMap = new HashMap<Host, List<HostConnection>>();
+
+    int tryLockTimeoutMs = 0;
+    int establishConnectionTimeoutMs = 0;
+    int queryTimeoutMs = 0;
+    int bulkQueryTimeoutMs = 0;
+
+    HostConnection connection1 = new HostConnection(mockHost1,
+        tryLockTimeoutMs, establishConnectionTimeoutMs, queryTimeoutMs, bulkQueryTimeoutMs);
+    hostToConnectionsMap.put(mockHost1, Collections.singletonList(connection1));
+    hostToConnectionsMap.put(mockHost2, Collections.singletonList(new HostConnection(mockHost2,
+        tryLockTimeoutMs, establishConnectionTimeoutMs, queryTimeoutMs, bulkQueryTimeoutMs)));
+
+    HostConnectionPool hostConnectionPool = new HostConnectionPool(hostToConnectionsMap, null, true);
+
+    mockHost1.setState(HostState.SERVING);
+    mockHost2.setState(HostState.SERVING);
+
+    // Host 1 was very slow recently
+    HostLatencyTracker latencyTracker1 = connection1.getLatencyTracker();
+    latencyTracker1.requestStarted();
+    latencyTracker1.requestCompleted(System.nanoTime() - 1000000000L, true);
+
+    for (int i = 0; i < 10; ++i) {
+      assertEquals(RESPONSE_1, hostConnectionPool.get(mockDomain, KEY_1, 1, null));
+    }
+    assertEquals("Slow host should receive no query", 0, iface1.numGets);
+    assertEquals("Fast host should receive all queries", 10, iface2.numGets);
+
+    iface1.clearCounts();
+    iface2.clearCounts();
+
+    // A host that is not serving should not be queried, regardless of its latency
+
+    mockHost1.setState(HostState.SERVING);
+    mockHost2.setState(HostState.OFFLINE);
+
+    for (int i = 0; i < 10; ++i) {
+      assertEquals(RESPONSE_1, hostConnectionPool.get(mockDomain, KEY_1, 1, null));
+    }
+    assertEquals("Online host should receive all queries", 10, iface1.numGets);
+    assertEquals("Offline host should receive no query", 0, iface2.numGets);
+
+    ConnectionLoad connectionLoad = hostConnectionPool.getConnectionLoad();
+    assertEquals(2, connectionLoad.getNumConnections());
+    assertEquals(0, connectionLoad.getNumOutstandingRequests());
+    assertTrue(connectionLoad.getAverageLatencyMs() > 0);
+  }
+
+  @Test
+  public void testHedgedRequests() throws IOException, InterruptedException {
+    Semaphore semaphore = new Semaphore(0);
+    StallingIface iface1 = new StallingIface(semaphore);
+    MockIface iface2 = new Response1Iface();
+
+    startMockPartitionServerThread1(iface1, 1);
+    startMockPartitionServerThread2(iface2, 1);
+
+    Map<Host, List<HostConnection>> hostToConnectionsMap = new HashMap<Host, List<HostConnection>>();
+
+    int tryLockTimeoutMs = 0;
+    int establishConnectionTimeoutMs = 0;
+    int queryTimeoutMs = 0;
+    int bulkQueryTimeoutMs = 0;
+
+    hostToConnectionsMap.put(mockHost1, Collections.singletonList(new HostConnection(mockHost1,
+        tryLockTimeoutMs, establishConnectionTimeoutMs, queryTimeoutMs, bulkQueryTimeoutMs)));
+    hostToConnectionsMap.put(mockHost2, Collections.singletonList(new HostConnection(mockHost2,
+        tryLockTimeoutMs, establishConnectionTimeoutMs, queryTimeoutMs, bulkQueryTimeoutMs)));
+
+    HostConnectionPool hostConnectionPool = new HostConnectionPool(hostToConnectionsMap, null);
+    // Backup requests are sent after the 99th percentile of latencies, and at least after 50ms
+    RequestHedger hedger = new RequestHedger(99, 50, 1.0, true);
+
+    mockHost1.setState(HostState.SERVING);
+    mockHost2.setState(HostState.SERVING);
+
+    try {
+      // Measure latencies
+      for (int i = 0; i < 2 * LatencyPercentileEstimator.MIN_NUM_SAMPLES; ++i) {
+        assertEquals(RESPONSE_1, hostConnectionPool.getHedgedAsync(mockDomain, KEY_1, 1, null, hedger).get());
+      }
+      hedger.getAndResetCounters();
+
+      // Host 1 stalls, backup requests to host 2 should win
+      iface1.stalled = true;
+      for (int i = 0; i < 10; ++i) {
+        assertEquals(RESPONSE_1, hostConnectionPool.getHedgedAsync(mockDomain, KEY_1, 1, null, hedger).get());
+      }
+      long[] hedgeCounters = hedger.getAndResetCounters();
+      assertTrue("Requests should have been hedged", hedgeCounters[0] > 0);
+      assertTrue("Backup requests should have won", hedgeCounters[1] > 0);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      iface1.stalled = false;
+      semaphore.release(100);
+      hedger.shutDown();
+    }
+  }
+
   @Test
   public void testOneHankExceptions() throws IOException, InterruptedException {
 
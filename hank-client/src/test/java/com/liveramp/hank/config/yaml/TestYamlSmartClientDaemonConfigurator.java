@@ -135,5 +135,20 @@ public class TestYamlSmartClientDaemonConfigurator extends BaseTestCase {
     assertEquals("rg1", conf.getRingGroupName());
     assertEquals(1, conf.getPortNumber());
     assertEquals(1, conf.getNumThreads());
+    assertEquals(0, conf.getMetricsPort());
+
+    pw = new PrintWriter(new FileWriter(configPath));
+    pw.println("smart_client:");
+    pw.println("  service_port: 1");
+    pw.println("  num_worker_threads: 1");
+    pw.println("  ring_group_name: rg1");
+    pw.println("  metrics_port: 9103");
+    pw.println("coordinator:");
+    pw.println("  factory: " + MockCoordinator.Factory.class.getName());
+    pw.println("  options:");
+    pw.println("    blah: blah");
+    pw.close();
+    conf = new YamlSmartClientDaemonConfigurator(configPath);
+    assertEquals(9103, conf.getMetricsPort());
   }
 }
@@ -17,15 +17,19 @@
 package com.liveramp.hank.compression;
 
 import com.liveramp.hank.compression.deflate.DeflateCompressionFactory;
+import com.liveramp.hank.compression.lz4.Lz4CompressionFactory;
 import com.liveramp.hank.compression.none.SlowNoCompressionCompressionFactory;
 import com.liveramp.hank.compression.snappy.SnappyCompressionFactory;
 import com.liveramp.hank.compression.zip.GzipCompressionFactory;
+import com.liveramp.hank.compression.zstd.ZstdCompressionFactory;
 
 public enum CompressionCodec {
   DEFLATE,
   GZIP,
   SNAPPY,
-  SLOW_NO_COMPRESSION;
+  SLOW_NO_COMPRESSION,
+  LZ4,
+  ZSTD;
 
   public CompressionFactory getFactory() {
     switch (this) {
@@ -37,6 +41,10 @@ public enum CompressionCodec {
         return new SnappyCompressionFactory();
       case SLOW_NO_COMPRESSION:
         return new SlowNoCompressionCompressionFactory();
+      case LZ4:
+        return new Lz4CompressionFactory();
+      case ZSTD:
+        return new ZstdCompressionFactory();
       default:
         throw new IllegalStateException();
     }
@@ -0,0 +1,36 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression;
+
+/**
+ * Dictionary that blocks are compressed against. It is trained from sample values when a domain is
+ * built and stored with the data it compresses. Implementations hold the codec specific digested form
+ * of the dictionary and are shared by all threads.
+ */
+public abstract class CompressionDictionary {
+
+  private final byte[] bytes;
+
+  protected CompressionDictionary(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  // Serialized form of the dictionary, as it is stored
+  public byte[] getBytes() {
+    return bytes;
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression;
+
+import java.util.List;
+
+public interface DictionaryCompressionFactory extends CompressionFactory {
+
+  // Train a dictionary of at most the given size from sample values. Returns null when the
+  // samples are not sufficient to train a dictionary.
+  public CompressionDictionary trainDictionary(List<byte[]> samples, int dictionaryNumBytes);
+
+  // Load a dictionary from its serialized form
+  public CompressionDictionary loadDictionary(byte[] bytes);
+
+  public Compressor getCompressor(CompressionDictionary dictionary);
+
+  @Override
+  public DictionaryDecompressor getDecompressor();
+}
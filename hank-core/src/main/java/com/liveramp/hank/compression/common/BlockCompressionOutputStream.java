@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.liveramp.hank.util.EncodingHelper;
+import com.liveramp.hank.util.UnsafeByteArrayOutputStream;
+
+/**
+ * Buffers a block until the stream is closed, and then writes to the underlying stream the size of the
+ * uncompressed block followed by the compressed block. Since nothing can be compressed before the block
+ * is complete, flushing does not write anything.
+ */
+public class BlockCompressionOutputStream extends OutputStream {
+
+  private final BlockCompressor compressor;
+  private final OutputStream outputStream;
+  private final UnsafeByteArrayOutputStream block = new UnsafeByteArrayOutputStream();
+  private boolean closed = false;
+
+  public BlockCompressionOutputStream(BlockCompressor compressor, OutputStream outputStream) {
+    this.compressor = compressor;
+    this.outputStream = outputStream;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    block.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    block.write(b, off, len);
+  }
+
+  // Number of uncompressed bytes written to the block so far
+  public int getNumUncompressedBytes() {
+    return block.count();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    byte[] sizeBuffer = new byte[EncodingHelper.MAX_VARINT_SIZE];
+    int sizeNumBytes = EncodingHelper.encodeLittleEndianVarInt(block.count(), sizeBuffer);
+    outputStream.write(sizeBuffer, 0, sizeNumBytes);
+    byte[] compressedBlock = new byte[compressor.getMaxCompressedLength(block.count())];
+    int compressedLength = compressor.compress(block.array(), 0, block.count(),
+        compressedBlock, 0, compressedBlock.length);
+    outputStream.write(compressedBlock, 0, compressedLength);
+    outputStream.close();
+  }
+}
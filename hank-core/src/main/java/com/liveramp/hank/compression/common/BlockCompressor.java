@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.liveramp.hank.compression.Compressor;
+
+/**
+ * Compressor of codecs that compress a whole block at once rather than a stream.
+ */
+public abstract class BlockCompressor implements Compressor {
+
+  @Override
+  public OutputStream getOutputStream(OutputStream outputStream) throws IOException {
+    return new BlockCompressionOutputStream(this, outputStream);
+  }
+
+  // Maximum size of the compression of a block of the given size
+  public abstract int getMaxCompressedLength(int length);
+
+  // Returns the number of bytes written to dst
+  public abstract int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength)
+      throws IOException;
+}
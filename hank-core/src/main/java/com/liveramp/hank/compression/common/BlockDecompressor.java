@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.liveramp.hank.compression.CompressionDictionary;
+import com.liveramp.hank.compression.Decompressor;
+import com.liveramp.hank.util.EncodingHelper;
+import com.liveramp.hank.util.UnsafeByteArrayOutputStream;
+
+/**
+ * Decompressor of blocks written by a BlockCompressor. Blocks are decompressed directly into the
+ * array of an UnsafeByteArrayOutputStream, and through a reused buffer for other streams, so that
+ * decompression does not allocate once buffers are large enough.
+ */
+public abstract class BlockDecompressor implements Decompressor {
+
+  private byte[] copyBuffer = new byte[0];
+
+  @Override
+  public void decompressBlock(byte[] buffer, int offset, int length, OutputStream outputStream) throws IOException {
+    decompressBlock(buffer, offset, length, null, outputStream);
+  }
+
+  protected void decompressBlock(byte[] buffer,
+                                 int offset,
+                                 int length,
+                                 CompressionDictionary dictionary,
+                                 OutputStream outputStream) throws IOException {
+    int uncompressedLength = EncodingHelper.decodeLittleEndianVarInt(buffer, offset);
+    int sizeNumBytes = EncodingHelper.getLittleEndianVarIntNumBytes(uncompressedLength);
+    int srcOffset = offset + sizeNumBytes;
+    int srcLength = length - sizeNumBytes;
+    if (outputStream instanceof UnsafeByteArrayOutputStream) {
+      UnsafeByteArrayOutputStream byteArrayOutputStream = (UnsafeByteArrayOutputStream)outputStream;
+      byteArrayOutputStream.ensureRemaining(uncompressedLength);
+      decompress(buffer, srcOffset, srcLength,
+          byteArrayOutputStream.array(), byteArrayOutputStream.count(), uncompressedLength, dictionary);
+      byteArrayOutputStream.advance(uncompressedLength);
+    } else {
+      if (copyBuffer.length < uncompressedLength) {
+        copyBuffer = new byte[uncompressedLength];
+      }
+      decompress(buffer, srcOffset, srcLength, copyBuffer, 0, uncompressedLength, dictionary);
+      outputStream.write(copyBuffer, 0, uncompressedLength);
+    }
+  }
+
+  // Decompress exactly dstLength bytes into dst. The dictionary is null when the block was compressed
+  // without one.
+  protected abstract void decompress(byte[] src,
+                                     int srcOffset,
+                                     int srcLength,
+                                     byte[] dst,
+                                     int dstOffset,
+                                     int dstLength,
+                                     CompressionDictionary dictionary) throws IOException;
+}
@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.cueball;
+
+import java.nio.ByteBuffer;
+
+import com.liveramp.hank.util.EncodingHelper;
+import com.liveramp.hank.util.ObjectPool;
+
+/**
+ * Base of codecs whose compressed blocks do not delimit themselves. Reads of Cueball blocks can go
+ * past the end of the block, so compressed blocks are prefixed with their size. Implementations are
+ * shared by all threads.
+ */
+public abstract class BlockCueballCompressionCodec implements CueballCompressionCodec {
+
+  private static final int SIZE_NUM_BYTES = 4;
+
+  // Compressed blocks that are not backed by an array (e.g. memory mapped) are copied into one of
+  // these buffers. Shared by all codecs, since a codec is created for each file.
+  private static final ObjectPool<byte[]> copyBufferPool =
+      new ObjectPool<byte[]>(2 * Runtime.getRuntime().availableProcessors()) {
+        @Override
+        protected byte[] create() {
+          return new byte[0];
+        }
+      };
+
+  @Override
+  public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
+    int compressedLength = compressBlock(src, srcOffset, srcLength,
+        dst, dstOff + SIZE_NUM_BYTES, dst.length - dstOff - SIZE_NUM_BYTES);
+    EncodingHelper.encodeLittleEndianFixedWidthLong(compressedLength, dst, dstOff, SIZE_NUM_BYTES);
+    return SIZE_NUM_BYTES + compressedLength;
+  }
+
+  @Override
+  public int getMaxCompressBufferSize(int length) {
+    return SIZE_NUM_BYTES + getMaxCompressedLength(length);
+  }
+
+  @Override
+  public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
+    if (srcLength == 0) {
+      return 0;
+    }
+    int compressedLength = (int)EncodingHelper.decodeLittleEndianFixedWidthLong(src, srcOffset, SIZE_NUM_BYTES);
+    return decompressBlock(src, srcOffset + SIZE_NUM_BYTES, compressedLength, dst, dstOff, dst.length - dstOff);
+  }
+
+  @Override
+  public int decompress(ByteBuffer src, byte[] dst, int dstOff) {
+    if (src.hasArray()) {
+      return decompress(src.array(), src.arrayOffset() + src.position(), src.remaining(), dst, dstOff);
+    }
+    if (!src.hasRemaining()) {
+      return 0;
+    }
+    int position = src.position();
+    int compressedLength = 0;
+    for (int i = SIZE_NUM_BYTES - 1; i >= 0; --i) {
+      compressedLength = (compressedLength << 8) | (src.get(position + i) & 0xff);
+    }
+    byte[] block = copyBufferPool.acquire();
+    if (block.length < compressedLength) {
+      block = new byte[compressedLength];
+    }
+    try {
+      // Copy without leaving the position of src modified
+      src.position(position + SIZE_NUM_BYTES);
+      src.get(block, 0, compressedLength);
+      src.position(position);
+      return decompressBlock(block, 0, compressedLength, dst, dstOff, dst.length - dstOff);
+    } finally {
+      copyBufferPool.release(block);
+    }
+  }
+
+  protected abstract int getMaxCompressedLength(int length);
+
+  // Returns the number of bytes written to dst
+  protected abstract int compressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff, int dstLength);
+
+  // Returns the number of bytes written to dst
+  protected abstract int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff, int dstLength);
+}
@@ -16,11 +16,18 @@
 
 package com.liveramp.hank.compression.cueball;
 
+import java.nio.ByteBuffer;
+
 public interface CueballCompressionCodec {
 
   public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff);
 
   public int getMaxCompressBufferSize(int length);
 
+  // Returns the number of bytes written to dst
   public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff);
+
+  // Decompress the remaining bytes of src, which is not required to be backed by an array
+  // (e.g. a memory mapped region). Returns the number of bytes written to dst.
+  public int decompress(ByteBuffer src, byte[] dst, int dstOff);
 }
@@ -1,12 +1,43 @@
 package com.liveramp.hank.compression.cueball;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 
+import com.liveramp.hank.util.ObjectPool;
+
+/**
+ * Blocks are decompressed with pooled Inflaters, and gzip headers and trailers are parsed here, rather
+ * than with a new GZIPInputStream and Inflater per block. Since a codec is created for each file, the
+ * pool is shared by all codecs.
+ */
 public class GzipCueballCompressionCodec implements CueballCompressionCodec {
+
+  // Decompression does not wait on I/O, so there are rarely more decompressors in use than processors
+  private static final ObjectPool<Decompressor> decompressorPool =
+      new ObjectPool<Decompressor>(2 * Runtime.getRuntime().availableProcessors()) {
+        @Override
+        protected Decompressor create() {
+          return new Decompressor();
+        }
+
+        @Override
+        protected void reset(Decompressor decompressor) {
+          decompressor.reset();
+        }
+
+        @Override
+        protected void discard(Decompressor decompressor) {
+          decompressor.close();
+        }
+      };
+
   @Override
   public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
     if (srcLength - srcOffset == 0) {
@@ -28,23 +59,24 @@ public class GzipCueballCompressionCodec implements CueballCompressionCodec {
 
   @Override
   public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
-    if (srcLength - srcOffset == 0) {
+    if (srcLength == 0) {
+      return 0;
+    }
+    return decompress(ByteBuffer.wrap(src, srcOffset, srcLength), dst, dstOff);
+  }
+
+  @Override
+  public int decompress(ByteBuffer src, byte[] dst, int dstOff) {
+    if (!src.hasRemaining()) {
       return 0;
     }
+    Decompressor decompressor = decompressorPool.acquire();
     try {
-      ByteArrayInputStream bytesIn = new ByteArrayInputStream(src, srcOffset, srcLength);
-      GZIPInputStream gzip = new GZIPInputStream(bytesIn);
-      int curOff = dstOff;
-      while (curOff < dst.length - dstOff) {
-        int amtRead = gzip.read(dst, curOff, dst.length - curOff);
-        if (amtRead == -1) {
-          break;
-        }
-        curOff += amtRead;
-      }
-      return curOff;
+      return decompressor.decompress(src, dst, dstOff);
     } catch (IOException e) {
       throw new RuntimeException("Unexpected IOException while decompressing!", e);
+    } finally {
+      decompressorPool.release(decompressor);
     }
   }
 
@@ -54,4 +86,137 @@ public class GzipCueballCompressionCodec implements CueballCompressionCodec {
     // doubles in size when compressed with gzip.
     return (int) (1.5 * length) + 18;
   }
+
+  // Decompresses a single gzip member (RFC 1952), which is what GZIPOutputStream writes
+  private static class Decompressor {
+
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    // Compressed bytes that are not backed by an array (e.g. memory mapped) are fed through this buffer
+    private static final int CHUNK_SIZE = 4096;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private byte[] chunk;
+
+    // Src can extend past the end of the gzip member. Its position is left unmodified.
+    private int decompress(ByteBuffer src, byte[] dst, int dstOff) throws IOException {
+      int position = src.position();
+      int limit = src.limit();
+      // Absolute position of the next compressed byte to feed to the inflater
+      int next = readHeader(src, position, limit);
+      if (src.hasArray()) {
+        inflater.setInput(src.array(), src.arrayOffset() + next, limit - next);
+        next = limit;
+      }
+      int curOff = dstOff;
+      try {
+        while (curOff < dst.length && !inflater.finished()) {
+          if (inflater.needsInput()) {
+            if (next == limit) {
+              throw new EOFException("Unexpected end of gzip block");
+            }
+            if (chunk == null) {
+              chunk = new byte[CHUNK_SIZE];
+            }
+            int numBytes = Math.min(CHUNK_SIZE, limit - next);
+            src.position(next);
+            src.get(chunk, 0, numBytes);
+            inflater.setInput(chunk, 0, numBytes);
+            next += numBytes;
+          }
+          int numBytes = inflater.inflate(dst, curOff, dst.length - curOff);
+          if (numBytes == 0 && inflater.needsDictionary()) {
+            throw new ZipException("Unexpected preset dictionary in gzip block");
+          }
+          curOff += numBytes;
+        }
+      } catch (DataFormatException e) {
+        throw new ZipException(e.getMessage());
+      } finally {
+        src.position(position);
+      }
+      // Like GZIPInputStream, check the trailer once the whole member is decompressed
+      if (inflater.finished()) {
+        int trailer = next - inflater.getRemaining();
+        if (limit - trailer < TRAILER_SIZE) {
+          throw new EOFException("Unexpected end of gzip block trailer");
+        }
+        crc.update(dst, dstOff, curOff - dstOff);
+        if (readInt(src, trailer) != (int)crc.getValue()) {
+          throw new ZipException("Corrupt gzip block (CRC mismatch)");
+        }
+        if (readInt(src, trailer + 4) != (int)inflater.getBytesWritten()) {
+          throw new ZipException("Corrupt gzip block (size mismatch)");
+        }
+      }
+      return curOff - dstOff;
+    }
+
+    // Return the absolute position of the compressed data, after the header that starts at the given position
+    private static int readHeader(ByteBuffer src, int position, int limit) throws IOException {
+      if (limit - position < HEADER_SIZE) {
+        throw new EOFException("Unexpected end of gzip block header");
+      }
+      if ((src.get(position) & 0xff) != 0x1f || (src.get(position + 1) & 0xff) != 0x8b) {
+        throw new ZipException("Not in gzip format");
+      }
+      if (src.get(position + 2) != 8) {
+        throw new ZipException("Unsupported gzip compression method");
+      }
+      int flags = src.get(position + 3) & 0xff;
+      int offset = position + HEADER_SIZE;
+      if ((flags & FEXTRA) != 0) {
+        if (limit - offset < 2) {
+          throw new EOFException("Unexpected end of gzip block header");
+        }
+        offset += 2 + ((src.get(offset) & 0xff) | ((src.get(offset + 1) & 0xff) << 8));
+      }
+      if ((flags & FNAME) != 0) {
+        offset = skipZeroTerminated(src, offset, limit);
+      }
+      if ((flags & FCOMMENT) != 0) {
+        offset = skipZeroTerminated(src, offset, limit);
+      }
+      if ((flags & FHCRC) != 0) {
+        offset += 2;
+      }
+      if (offset > limit) {
+        throw new EOFException("Unexpected end of gzip block header");
+      }
+      return offset;
+    }
+
+    private static int skipZeroTerminated(ByteBuffer src, int offset, int limit) throws IOException {
+      while (offset < limit && src.get(offset) != 0) {
+        ++offset;
+      }
+      if (offset == limit) {
+        throw new EOFException("Unexpected end of gzip block header");
+      }
+      return offset + 1;
+    }
+
+    // Little endian
+    private static int readInt(ByteBuffer src, int offset) {
+      return (src.get(offset) & 0xff)
+          | ((src.get(offset + 1) & 0xff) << 8)
+          | ((src.get(offset + 2) & 0xff) << 16)
+          | ((src.get(offset + 3) & 0xff) << 24);
+    }
+
+    private void reset() {
+      inflater.reset();
+      crc.reset();
+    }
+
+    // Release the native memory of the inflater
+    private void close() {
+      inflater.end();
+    }
+  }
 }
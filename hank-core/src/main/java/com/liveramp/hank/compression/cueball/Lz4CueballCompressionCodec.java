@@ -0,0 +1,45 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.cueball;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * LZ4 compressors and decompressors are stateless, so a single instance is shared by all threads.
+ */
+public class Lz4CueballCompressionCodec extends BlockCueballCompressionCodec {
+
+  private final LZ4Compressor compressor = LZ4Factory.fastestInstance().highCompressor();
+  private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+  @Override
+  protected int getMaxCompressedLength(int length) {
+    return compressor.maxCompressedLength(length);
+  }
+
+  @Override
+  protected int compressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff, int dstLength) {
+    return compressor.compress(src, srcOffset, srcLength, dst, dstOff, dstLength);
+  }
+
+  @Override
+  protected int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff, int dstLength) {
+    return decompressor.decompress(src, srcOffset, srcLength, dst, dstOff, dstLength);
+  }
+}
@@ -1,5 +1,7 @@
 package com.liveramp.hank.compression.cueball;
 
+import java.nio.ByteBuffer;
+
 public class NoCueballCompressionCodec implements CueballCompressionCodec {
   @Override
   public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
@@ -10,7 +12,14 @@ public class NoCueballCompressionCodec implements CueballCompressionCodec {
   @Override
   public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff) {
     System.arraycopy(src, srcOffset, dst, dstOff, srcLength);
-    return srcLength - srcOffset;
+    return srcLength;
+  }
+
+  @Override
+  public int decompress(ByteBuffer src, byte[] dst, int dstOff) {
+    int length = src.remaining();
+    src.duplicate().get(dst, dstOff, length);
+    return length;
   }
 
   @Override
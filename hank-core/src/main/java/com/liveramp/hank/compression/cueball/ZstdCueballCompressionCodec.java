@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.cueball;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDecompressCtx;
+
+import com.liveramp.hank.compression.zstd.ZstdCompressionFactory;
+import com.liveramp.hank.util.ObjectPool;
+
+/**
+ * Decompression contexts are pooled and reused for all blocks. Since a codec is created for each file,
+ * the pool is shared by all codecs.
+ */
+public class ZstdCueballCompressionCodec extends BlockCueballCompressionCodec {
+
+  // Decompression does not wait on I/O, so there are rarely more contexts in use than processors
+  private static final ObjectPool<ZstdDecompressCtx> decompressionContextPool =
+      new ObjectPool<ZstdDecompressCtx>(2 * Runtime.getRuntime().availableProcessors()) {
+        @Override
+        protected ZstdDecompressCtx create() {
+          return new ZstdDecompressCtx();
+        }
+
+        // Free native memory now rather than when the context is collected
+        @Override
+        protected void discard(ZstdDecompressCtx context) {
+          context.close();
+        }
+      };
+
+  @Override
+  protected int getMaxCompressedLength(int length) {
+    return (int)Zstd.compressBound(length);
+  }
+
+  @Override
+  protected int compressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff, int dstLength) {
+    long result = Zstd.compressByteArray(dst, dstOff, dstLength, src, srcOffset, srcLength,
+        ZstdCompressionFactory.COMPRESSION_LEVEL);
+    if (Zstd.isError(result)) {
+      throw new RuntimeException("Failed to compress Zstandard block: " + Zstd.getErrorName(result));
+    }
+    return (int)result;
+  }
+
+  @Override
+  protected int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOff, int dstLength) {
+    ZstdDecompressCtx context = decompressionContextPool.acquire();
+    try {
+      return context.decompressByteArray(dst, dstOff, dstLength, src, srcOffset, srcLength);
+    } finally {
+      decompressionContextPool.release(context);
+    }
+  }
+}
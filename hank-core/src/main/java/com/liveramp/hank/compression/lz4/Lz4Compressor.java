@@ -0,0 +1,38 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.lz4;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+
+import com.liveramp.hank.compression.common.BlockCompressor;
+
+public class Lz4Compressor extends BlockCompressor {
+
+  // Domains are built offline, so use the high compression variant. It decompresses as fast.
+  private final LZ4Compressor compressor = LZ4Factory.fastestInstance().highCompressor();
+
+  @Override
+  public int getMaxCompressedLength(int length) {
+    return compressor.maxCompressedLength(length);
+  }
+
+  @Override
+  public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) {
+    return compressor.compress(src, srcOffset, srcLength, dst, dstOffset, dstLength);
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.lz4;
+
+import java.io.IOException;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import com.liveramp.hank.compression.CompressionDictionary;
+import com.liveramp.hank.compression.common.BlockDecompressor;
+
+public class Lz4Decompressor extends BlockDecompressor {
+
+  private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+  @Override
+  protected void decompress(byte[] src,
+                            int srcOffset,
+                            int srcLength,
+                            byte[] dst,
+                            int dstOffset,
+                            int dstLength,
+                            CompressionDictionary dictionary) throws IOException {
+    int numBytes;
+    try {
+      numBytes = decompressor.decompress(src, srcOffset, srcLength, dst, dstOffset, dstLength);
+    } catch (LZ4Exception e) {
+      throw new IOException("Failed to decompress LZ4 block", e);
+    }
+    if (numBytes != dstLength) {
+      throw new IOException("Decompressed LZ4 block size (" + numBytes + ") does not match expected size (" + dstLength + ")");
+    }
+  }
+}
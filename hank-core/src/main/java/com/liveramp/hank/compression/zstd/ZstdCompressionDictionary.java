@@ -0,0 +1,62 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.zstd;
+
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+
+import com.liveramp.hank.compression.CompressionDictionary;
+
+public class ZstdCompressionDictionary extends CompressionDictionary {
+
+  // Digested forms of the dictionary are built when first needed, since writers
+  // only compress and readers only decompress
+  private volatile ZstdDictCompress compressionDictionary;
+  private volatile ZstdDictDecompress decompressionDictionary;
+
+  public ZstdCompressionDictionary(byte[] bytes) {
+    super(bytes);
+  }
+
+  ZstdDictCompress getCompressionDictionary() {
+    ZstdDictCompress result = compressionDictionary;
+    if (result == null) {
+      synchronized (this) {
+        result = compressionDictionary;
+        if (result == null) {
+          result = new ZstdDictCompress(getBytes(), ZstdCompressionFactory.COMPRESSION_LEVEL);
+          compressionDictionary = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  ZstdDictDecompress getDecompressionDictionary() {
+    ZstdDictDecompress result = decompressionDictionary;
+    if (result == null) {
+      synchronized (this) {
+        result = decompressionDictionary;
+        if (result == null) {
+          result = new ZstdDictDecompress(getBytes());
+          decompressionDictionary = result;
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.zstd;
+
+import java.util.List;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.hank.compression.CompressionDictionary;
+import com.liveramp.hank.compression.Compressor;
+import com.liveramp.hank.compression.DictionaryCompressionFactory;
+import com.liveramp.hank.compression.DictionaryDecompressor;
+
+public class ZstdCompressionFactory implements DictionaryCompressionFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ZstdCompressionFactory.class);
+
+  // Domains are built offline, so favor the compression ratio. Decompression speed
+  // does not depend on the level.
+  public static final int COMPRESSION_LEVEL = 9;
+
+  @Override
+  public DictionaryDecompressor getDecompressor() {
+    return new ZstdDecompressor();
+  }
+
+  @Override
+  public Compressor getCompressor() {
+    return new ZstdCompressor(null);
+  }
+
+  @Override
+  public Compressor getCompressor(CompressionDictionary dictionary) {
+    return new ZstdCompressor((ZstdCompressionDictionary)dictionary);
+  }
+
+  @Override
+  public CompressionDictionary trainDictionary(List<byte[]> samples, int dictionaryNumBytes) {
+    int samplesNumBytes = 0;
+    for (byte[] sample : samples) {
+      samplesNumBytes += sample.length;
+    }
+    if (samplesNumBytes == 0) {
+      return null;
+    }
+    ZstdDictTrainer trainer = new ZstdDictTrainer(samplesNumBytes, dictionaryNumBytes);
+    for (byte[] sample : samples) {
+      trainer.addSample(sample);
+    }
+    try {
+      return new ZstdCompressionDictionary(trainer.trainSamples());
+    } catch (ZstdException e) {
+      LOG.warn("Failed to train a Zstandard dictionary from " + samples.size() + " samples ("
+          + samplesNumBytes + " bytes), compressing without a dictionary", e);
+      return null;
+    }
+  }
+
+  @Override
+  public CompressionDictionary loadDictionary(byte[] bytes) {
+    return new ZstdCompressionDictionary(bytes);
+  }
+}
@@ -0,0 +1,53 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.zstd;
+
+import java.io.IOException;
+
+import com.github.luben.zstd.Zstd;
+
+import com.liveramp.hank.compression.common.BlockCompressor;
+
+public class ZstdCompressor extends BlockCompressor {
+
+  private final ZstdCompressionDictionary dictionary;
+
+  // The dictionary is null to compress without one
+  public ZstdCompressor(ZstdCompressionDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  @Override
+  public int getMaxCompressedLength(int length) {
+    return (int)Zstd.compressBound(length);
+  }
+
+  @Override
+  public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset, int dstLength) throws IOException {
+    long result;
+    if (dictionary == null) {
+      result = Zstd.compressByteArray(dst, dstOffset, dstLength, src, srcOffset, srcLength,
+          ZstdCompressionFactory.COMPRESSION_LEVEL);
+    } else {
+      result = Zstd.compressFastDict(dst, dstOffset, src, srcOffset, srcLength, dictionary.getCompressionDictionary());
+    }
+    if (Zstd.isError(result)) {
+      throw new IOException("Failed to compress Zstandard block: " + Zstd.getErrorName(result));
+    }
+    return (int)result;
+  }
+}
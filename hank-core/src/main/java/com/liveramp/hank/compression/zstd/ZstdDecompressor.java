@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.compression.zstd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+
+import com.liveramp.hank.compression.CompressionDictionary;
+import com.liveramp.hank.compression.DictionaryDecompressor;
+import com.liveramp.hank.compression.common.BlockDecompressor;
+
+/**
+ * Decompressors are used by one thread at a time, so decompression contexts are kept and reused
+ * for all blocks.
+ */
+public class ZstdDecompressor extends BlockDecompressor implements DictionaryDecompressor {
+
+  private final ZstdDecompressCtx context = new ZstdDecompressCtx();
+  // Context that references the dictionary of the last block compressed with one
+  private ZstdDecompressCtx dictionaryContext;
+  private ZstdDictDecompress dictionaryContextDictionary;
+
+  @Override
+  public void decompressBlock(byte[] buffer,
+                              int offset,
+                              int length,
+                              CompressionDictionary dictionary,
+                              OutputStream outputStream) throws IOException {
+    super.decompressBlock(buffer, offset, length, dictionary, outputStream);
+  }
+
+  @Override
+  protected void decompress(byte[] src,
+                            int srcOffset,
+                            int srcLength,
+                            byte[] dst,
+                            int dstOffset,
+                            int dstLength,
+                            CompressionDictionary dictionary) throws IOException {
+    int numBytes;
+    try {
+      numBytes = getContext(dictionary).decompressByteArray(dst, dstOffset, dstLength, src, srcOffset, srcLength);
+    } catch (ZstdException e) {
+      throw new IOException("Failed to decompress Zstandard block", e);
+    }
+    if (numBytes != dstLength) {
+      throw new IOException("Decompressed Zstandard block size (" + numBytes + ") does not match expected size (" + dstLength + ")");
+    }
+  }
+
+  private ZstdDecompressCtx getContext(CompressionDictionary dictionary) {
+    if (dictionary == null) {
+      return context;
+    }
+    ZstdDictDecompress decompressionDictionary = ((ZstdCompressionDictionary)dictionary).getDecompressionDictionary();
+    if (dictionaryContext == null) {
+      dictionaryContext = new ZstdDecompressCtx();
+    }
+    // Referencing a digested dictionary is cheap, but avoid it for consecutive blocks of the same file
+    if (dictionaryContextDictionary != decompressionDictionary) {
+      dictionaryContext.loadDict(decompressionDictionary);
+      dictionaryContextDictionary = decompressionDictionary;
+    }
+    return dictionaryContext;
+  }
+}
@@ -18,6 +18,9 @@ package com.liveramp.hank.config;
 
 import java.util.Set;
 
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.IOEngine;
+
 public class BaseReaderConfigurator implements ReaderConfigurator {
 
   private final DataDirectoriesConfigurator dataDirectoriesConfigurator;
@@ -25,17 +28,32 @@ public class BaseReaderConfigurator implements ReaderConfigurator {
   private final long cacheNumItemsCapacity;
   private final int bufferReuseMaxSize;
   private final int numTotalPartitions;
+  private final boolean useMemoryMappedFiles;
+  private final boolean useOffHeapCache;
+  private final boolean useCacheAdmissionFilter;
+  private final IOEngine ioEngine;
+  private final BlockCache blockCache;
 
   public BaseReaderConfigurator(DataDirectoriesConfigurator dataDirectoriesConfigurator,
                                 long cacheNumBytesCapacity,
                                 long cacheNumItemsCapacity,
                                 int bufferReuseMaxSize,
-                                int numTotalPartitions) {
+                                int numTotalPartitions,
+                                boolean useMemoryMappedFiles,
+                                boolean useOffHeapCache,
+                                boolean useCacheAdmissionFilter,
+                                IOEngine ioEngine,
+                                BlockCache blockCache) {
     this.dataDirectoriesConfigurator = dataDirectoriesConfigurator;
     this.cacheNumBytesCapacity = cacheNumBytesCapacity;
     this.cacheNumItemsCapacity = cacheNumItemsCapacity;
     this.bufferReuseMaxSize = bufferReuseMaxSize;
     this.numTotalPartitions = numTotalPartitions;
+    this.useMemoryMappedFiles = useMemoryMappedFiles;
+    this.useOffHeapCache = useOffHeapCache;
+    this.useCacheAdmissionFilter = useCacheAdmissionFilter;
+    this.ioEngine = ioEngine;
+    this.blockCache = blockCache;
   }
 
   @Override
@@ -59,8 +77,48 @@ public class BaseReaderConfigurator implements ReaderConfigurator {
     return bufferReuseMaxSize;
   }
 
+  @Override
+  public boolean getUseMemoryMappedFiles() {
+    return useMemoryMappedFiles;
+  }
+
+  @Override
+  public boolean getUseOffHeapCache() {
+    return useOffHeapCache;
+  }
+
+  @Override
+  public boolean getUseCacheAdmissionFilter() {
+    return useCacheAdmissionFilter;
+  }
+
+  @Override
+  public IOEngine getIOEngine() {
+    return ioEngine;
+  }
+
+  @Override
+  public BlockCache getBlockCache() {
+    return blockCache;
+  }
+
   @Override
   public Set<String> getDataDirectories() {
     return dataDirectoriesConfigurator.getDataDirectories();
   }
+
+  @Override
+  public int getUpdateMergeParallelism() {
+    return dataDirectoriesConfigurator.getUpdateMergeParallelism();
+  }
+
+  @Override
+  public boolean getUpdateStreamDeltas() {
+    return dataDirectoriesConfigurator.getUpdateStreamDeltas();
+  }
+
+  @Override
+  public int getKeyFileFilterBitsPerKey() {
+    return dataDirectoriesConfigurator.getKeyFileFilterBitsPerKey();
+  }
 }
@@ -21,4 +21,13 @@ import java.util.Set;
 public interface DataDirectoriesConfigurator {
 
   public Set<String> getDataDirectories();
+
+  // Number of threads merging the files of a partition when updating it
+  public int getUpdateMergeParallelism();
+
+  // Whether deltas are merged directly from their remote input streams when updating, instead of being fetched first
+  public boolean getUpdateStreamDeltas();
+
+  // Number of bits per key of the Bloom filters kept alongside key files, 0 to disable them
+  public int getKeyFileFilterBitsPerKey();
 }
@@ -16,6 +16,9 @@
 
 package com.liveramp.hank.config;
 
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.IOEngine;
+
 public interface ReaderConfigurator extends DataDirectoriesConfigurator {
 
   public long getCacheNumBytesCapacity();
@@ -23,4 +26,19 @@ public interface ReaderConfigurator extends DataDirectoriesConfigurator {
   public long getCacheNumItemsCapacity();
 
   public int getBufferReuseMaxSize();
+
+  // Read partition files through memory mappings instead of positional file channel reads
+  public boolean getUseMemoryMappedFiles();
+
+  // Store cached values outside of the Java heap
+  public boolean getUseOffHeapCache();
+
+  // Only cache values of keys that were recently accessed more than once
+  public boolean getUseCacheAdmissionFilter();
+
+  // Engine through which partition files are read. It is shared by all readers.
+  public IOEngine getIOEngine();
+
+  // Cache of decompressed blocks of partition files. It is shared by all readers.
+  public BlockCache getBlockCache();
 }
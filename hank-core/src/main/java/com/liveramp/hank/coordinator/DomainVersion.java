@@ -17,6 +17,9 @@ public interface DomainVersion extends Comparable<DomainVersion> {
 
   public Collection<PartitionMetadata> getPartitionsMetadata() throws IOException;
 
+  // Return null if no metadata was recorded for that partition
+  public PartitionMetadata getPartitionMetadata(int partitionNumber) throws IOException;
+
   public void addPartitionProperties(int partNum, long numBytes, long numRecords) throws IOException;
 
   public boolean isDefunct() throws IOException;
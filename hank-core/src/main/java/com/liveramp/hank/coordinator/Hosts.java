@@ -294,20 +294,27 @@ public final class Hosts {
 
   public static Map<Domain, RuntimeStatisticsAggregator> computeRuntimeStatistics(Coordinator coordinator,
                                                                                   Host host) throws IOException {
+    Map<Domain, RuntimeStatisticsAggregator> result = new HashMap<Domain, RuntimeStatisticsAggregator>();
+    for (Map.Entry<Integer, RuntimeStatisticsAggregator> entry : computeRuntimeStatisticsByDomainId(host).entrySet()) {
+      result.put(coordinator.getDomainById(entry.getKey()), entry.getValue());
+    }
+    return result;
+  }
+
+  public static Map<Integer, RuntimeStatisticsAggregator> computeRuntimeStatisticsByDomainId(Host host) throws IOException {
     String runtimeStatistics = host.getStatistic(RUNTIME_STATISTICS_KEY);
 
     if (runtimeStatistics == null) {
       return Collections.emptyMap();
     } else {
-      Map<Domain, RuntimeStatisticsAggregator> result = new HashMap<Domain, RuntimeStatisticsAggregator>();
+      Map<Integer, RuntimeStatisticsAggregator> result = new HashMap<Integer, RuntimeStatisticsAggregator>();
       String[] domainStatistics = runtimeStatistics.split("\n");
       for (String statistics : domainStatistics) {
         if (statistics.length() == 0) {
           continue;
         }
         String[] tokens = statistics.split("\t");
-        int domainId = Integer.parseInt(tokens[0]);
-        result.put(coordinator.getDomainById(domainId), RuntimeStatisticsAggregator.parse(tokens[1]));
+        result.put(Integer.parseInt(tokens[0]), RuntimeStatisticsAggregator.parse(tokens[1]));
       }
       return result;
     }
@@ -21,13 +21,15 @@ import com.liveramp.hank.generated.PartitionMetadata;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 public class MockDomainVersion extends AbstractDomainVersion {
 
   private final int versionNumber;
   private final Long closedAt;
   private boolean isDefunct = false;
+  private final Map<Integer, PartitionMetadata> partitionsMetadata = new HashMap<Integer, PartitionMetadata>();
   private DomainVersionProperties properties;
 
   public MockDomainVersion(int versionNumber, Long closedAt, DomainVersionProperties domainVersionProperties) {
@@ -49,6 +51,7 @@ public class MockDomainVersion extends AbstractDomainVersion {
   }
 
   public void addPartitionProperties(int partNum, long numBytes, long numRecords) {
+    partitionsMetadata.put(partNum, new PartitionMetadata(numBytes, numRecords));
   }
 
   public void cancel() {
@@ -59,7 +62,12 @@ public class MockDomainVersion extends AbstractDomainVersion {
 
   @Override
   public Collection<PartitionMetadata> getPartitionsMetadata() throws IOException {
-    return Collections.emptyList();
+    return partitionsMetadata.values();
+  }
+
+  @Override
+  public PartitionMetadata getPartitionMetadata(int partitionNumber) throws IOException {
+    return partitionsMetadata.get(partitionNumber);
   }
 
   @Override
@@ -124,6 +124,16 @@ public class ZkDomainVersion extends AbstractDomainVersion implements DomainVers
     }
   }
 
+  @Override
+  public PartitionMetadata getPartitionMetadata(int partitionNumber) throws IOException {
+    Map<Integer, PartitionMetadata> partitionsMetadata = metadata.get().get_partitions();
+    if (partitionsMetadata == null) {
+      return null;
+    } else {
+      return partitionsMetadata.get(partitionNumber);
+    }
+  }
+
   @Override
   public void addPartitionProperties(final int partNum,
                                      final long numBytes,
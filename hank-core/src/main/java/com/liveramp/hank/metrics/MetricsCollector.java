@@ -0,0 +1,171 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.liveramp.hank.partition_server.DoublePopulationStatisticsAggregator;
+import com.liveramp.hank.partition_server.LatencyHistogram;
+
+/**
+ * Samples of metrics, grouped into families of samples that share a name and type. Labels are given
+ * as alternating names and values, e.g. ("domain", "users", "partition", "3").
+ */
+public class MetricsCollector {
+
+  public static enum Type {
+    COUNTER,
+    GAUGE,
+    HISTOGRAM
+  }
+
+  // Upper bounds of exported latency buckets, in seconds
+  private static final double[] LATENCY_BUCKET_UPPER_BOUNDS = {
+      0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+  private final Map<String, Family> families = new LinkedHashMap<String, Family>();
+
+  // Monotonically increasing value
+  public void counter(String name, String help, double value, String... labels) {
+    add(name, help, Type.COUNTER, name, value, labels);
+  }
+
+  // Value that can go up and down
+  public void gauge(String name, String help, double value, String... labels) {
+    add(name, help, Type.GAUGE, name, value, labels);
+  }
+
+  /**
+   * Cumulative latency histogram in seconds, from population statistics in milliseconds. The
+   * fine grained buckets of the underlying histogram are summed into a fixed set of coarser buckets,
+   * so that histograms of different sources can be aggregated by the monitoring system.
+   */
+  public void latency(String name, String help, DoublePopulationStatisticsAggregator populationStatistics,
+                      String... labels) {
+    LatencyHistogram histogram = populationStatistics.getHistogram();
+    long count = 0;
+    int bucketIndex = 0;
+    for (double upperBound : LATENCY_BUCKET_UPPER_BOUNDS) {
+      while (bucketIndex < LatencyHistogram.NUM_BUCKETS
+          && LatencyHistogram.getBucketValue(bucketIndex) <= upperBound * 1000) {
+        count += histogram.getCount(bucketIndex++);
+      }
+      String le = BigDecimal.valueOf(upperBound).stripTrailingZeros().toPlainString();
+      add(name, help, Type.HISTOGRAM, name + "_bucket", count, withLabel(labels, "le", le));
+    }
+    add(name, help, Type.HISTOGRAM, name + "_bucket", histogram.getTotalCount(), withLabel(labels, "le", "+Inf"));
+    add(name, help, Type.HISTOGRAM, name + "_sum", populationStatistics.getTotal() / 1000d, labels);
+    add(name, help, Type.HISTOGRAM, name + "_count", histogram.getTotalCount(), labels);
+  }
+
+  public Collection<Family> getFamilies() {
+    return Collections.unmodifiableCollection(families.values());
+  }
+
+  private void add(String familyName, String help, Type type, String sampleName, double value, String[] labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels of metric " + sampleName + " should be name and value pairs: "
+          + Arrays.toString(labels));
+    }
+    Family family = families.get(familyName);
+    if (family == null) {
+      family = new Family(familyName, help, type);
+      families.put(familyName, family);
+    } else if (family.type != type) {
+      throw new IllegalArgumentException("Metric " + familyName + " was reported as both "
+          + family.type + " and " + type);
+    }
+    family.samples.add(new Sample(sampleName, labels, value));
+  }
+
+  private static String[] withLabel(String[] labels, String name, String value) {
+    String[] result = Arrays.copyOf(labels, labels.length + 2);
+    result[labels.length] = name;
+    result[labels.length + 1] = value;
+    return result;
+  }
+
+  public static class Family {
+
+    private final String name;
+    private final String help;
+    private final Type type;
+    private final List<Sample> samples = new ArrayList<Sample>();
+
+    private Family(String name, String help, Type type) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getHelp() {
+      return help;
+    }
+
+    public Type getType() {
+      return type;
+    }
+
+    public List<Sample> getSamples() {
+      return Collections.unmodifiableList(samples);
+    }
+  }
+
+  public static class Sample {
+
+    private final String name;
+    private final String[] labels;
+    private final double value;
+
+    private Sample(String name, String[] labels, double value) {
+      this.name = name;
+      this.labels = labels;
+      this.value = value;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getNumLabels() {
+      return labels.length / 2;
+    }
+
+    public String getLabelName(int index) {
+      return labels[2 * index];
+    }
+
+    public String getLabelValue(int index) {
+      return labels[2 * index + 1];
+    }
+
+    public double getValue() {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exposes a metrics registry through JMX, and over HTTP when a port is configured. Metrics are not
+ * essential to serving, so failures to export them are logged rather than thrown.
+ */
+public class MetricsExporter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsExporter.class);
+
+  private static final String JMX_DOMAIN = "com.liveramp.hank";
+
+  private final MetricsRegistry registry;
+  private final String name;
+  private final int httpPort;
+  private ObjectName objectName;
+  private MetricsHttpServer httpServer;
+
+  /**
+   * @param registry
+   * @param name     Name of the MBean, which should be unique within the JVM
+   * @param httpPort Port of the HTTP endpoint. 0 or less means no HTTP endpoint.
+   */
+  public MetricsExporter(MetricsRegistry registry, String name, int httpPort) {
+    this.registry = registry;
+    this.name = name;
+    this.httpPort = httpPort;
+  }
+
+  public synchronized void start() {
+    try {
+      ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(registry), objectName);
+      this.objectName = objectName;
+    } catch (JMException e) {
+      LOG.error("Failed to register metrics MBean " + name, e);
+    }
+    if (httpPort > 0) {
+      try {
+        httpServer = new MetricsHttpServer(registry, httpPort);
+        httpServer.start();
+        LOG.info("Serving metrics of " + name + " on port " + httpPort);
+      } catch (IOException e) {
+        LOG.error("Failed to start metrics HTTP server on port " + httpPort, e);
+      }
+    }
+  }
+
+  public synchronized void stop() {
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException e) {
+        LOG.error("Failed to unregister metrics MBean " + name, e);
+      }
+      objectName = null;
+    }
+    if (httpServer != null) {
+      httpServer.stop();
+      httpServer = null;
+    }
+  }
+}
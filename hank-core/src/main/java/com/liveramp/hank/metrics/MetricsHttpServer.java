@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal HTTP server that serves the metrics of a registry at /metrics, in Prometheus text format.
+ * Requests are handled one at a time by the server's dispatcher thread.
+ */
+public class MetricsHttpServer {
+
+  public static final String PATH = "/metrics";
+
+  private final HttpServer server;
+
+  // Port 0 binds an ephemeral port
+  public MetricsHttpServer(final MetricsRegistry registry, int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext(PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            return;
+          }
+          ByteArrayOutputStream body = new ByteArrayOutputStream();
+          Writer writer = new OutputStreamWriter(body, "UTF-8");
+          PrometheusTextFormat.write(registry.collect(), writer);
+          writer.flush();
+          exchange.getResponseHeaders().set("Content-Type", PrometheusTextFormat.CONTENT_TYPE);
+          exchange.sendResponseHeaders(200, body.size());
+          OutputStream responseBody = exchange.getResponseBody();
+          body.writeTo(responseBody);
+          responseBody.close();
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only MBean with one attribute per sample of a metrics registry. Attributes are named like
+ * Prometheus samples, e.g. hank_partition_requests_total{domain="users",partition="3"}, and metrics
+ * are collected again each time attributes are read.
+ */
+public class MetricsMBean implements DynamicMBean {
+
+  private final MetricsRegistry registry;
+
+  public MetricsMBean(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Double value = collect().get(attribute);
+    if (value == null) {
+      throw new AttributeNotFoundException("Unknown metric: " + attribute);
+    }
+    return value;
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes) {
+    Map<String, Double> values = collect();
+    AttributeList result = new AttributeList();
+    for (String attribute : attributes) {
+      Double value = values.get(attribute);
+      if (value != null) {
+        result.add(new Attribute(attribute, value));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+    throw new ReflectionException(new NoSuchMethodException(actionName));
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+    for (MetricsCollector.Family family : registry.collect().getFamilies()) {
+      for (MetricsCollector.Sample sample : family.getSamples()) {
+        attributes.add(new MBeanAttributeInfo(getAttributeName(sample), Double.class.getName(),
+            family.getHelp(), true, false, false));
+      }
+    }
+    return new MBeanInfo(getClass().getName(), "Hank metrics",
+        attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+        null, new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+  }
+
+  private Map<String, Double> collect() {
+    Map<String, Double> result = new LinkedHashMap<String, Double>();
+    for (MetricsCollector.Family family : registry.collect().getFamilies()) {
+      for (MetricsCollector.Sample sample : family.getSamples()) {
+        result.put(getAttributeName(sample), sample.getValue());
+      }
+    }
+    return result;
+  }
+
+  private static String getAttributeName(MetricsCollector.Sample sample) {
+    if (sample.getNumLabels() == 0) {
+      return sample.getName();
+    }
+    StringBuilder result = new StringBuilder(sample.getName());
+    result.append('{');
+    for (int i = 0; i < sample.getNumLabels(); ++i) {
+      if (i > 0) {
+        result.append(',');
+      }
+      result.append(sample.getLabelName(i));
+      result.append("=\"");
+      result.append(sample.getLabelValue(i));
+      result.append('"');
+    }
+    result.append('}');
+    return result.toString();
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.metrics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Set of metrics sources of a process, collected on demand by the JMX and HTTP exporters.
+ */
+public class MetricsRegistry {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+
+  private final List<MetricsSource> sources = new CopyOnWriteArrayList<MetricsSource>();
+
+  public void register(MetricsSource source) {
+    sources.add(source);
+  }
+
+  public void unregister(MetricsSource source) {
+    sources.remove(source);
+  }
+
+  // A failing source is skipped, so that it does not prevent other metrics from being reported
+  public MetricsCollector collect() {
+    MetricsCollector collector = new MetricsCollector();
+    for (MetricsSource source : sources) {
+      try {
+        source.collect(collector);
+      } catch (IOException e) {
+        LOG.error("Failed to collect metrics from " + source, e);
+      } catch (RuntimeException e) {
+        LOG.error("Failed to collect metrics from " + source, e);
+      }
+    }
+    return collector;
+  }
+}
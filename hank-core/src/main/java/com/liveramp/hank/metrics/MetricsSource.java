@@ -0,0 +1,28 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.metrics;
+
+import java.io.IOException;
+
+/**
+ * Anything that reports metrics. Sources are asked for the current value of their metrics each time
+ * metrics are collected, so that they do not need to maintain copies of their statistics.
+ */
+public interface MetricsSource {
+
+  public void collect(MetricsCollector collector) throws IOException;
+}
@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Prometheus text exposition format, version 0.0.4.
+ */
+public class PrometheusTextFormat {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private PrometheusTextFormat() {
+  }
+
+  public static void write(MetricsCollector collector, Writer writer) throws IOException {
+    for (MetricsCollector.Family family : collector.getFamilies()) {
+      writer.write("# HELP ");
+      writer.write(family.getName());
+      writer.write(' ');
+      writer.write(escape(family.getHelp(), false));
+      writer.write('\n');
+      writer.write("# TYPE ");
+      writer.write(family.getName());
+      writer.write(' ');
+      writer.write(family.getType().name().toLowerCase());
+      writer.write('\n');
+      for (MetricsCollector.Sample sample : family.getSamples()) {
+        writer.write(sample.getName());
+        if (sample.getNumLabels() > 0) {
+          writer.write('{');
+          for (int i = 0; i < sample.getNumLabels(); ++i) {
+            if (i > 0) {
+              writer.write(',');
+            }
+            writer.write(sample.getLabelName(i));
+            writer.write("=\"");
+            writer.write(escape(sample.getLabelValue(i), true));
+            writer.write('"');
+          }
+          writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(formatValue(sample.getValue()));
+        writer.write('\n');
+      }
+    }
+  }
+
+  static String formatValue(double value) {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    } else if (Double.isInfinite(value)) {
+      return value > 0 ? "+Inf" : "-Inf";
+    } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long)value);
+    } else {
+      return Double.toString(value);
+    }
+  }
+
+  private static String escape(String str, boolean isLabelValue) {
+    StringBuilder result = new StringBuilder(str.length());
+    for (int i = 0; i < str.length(); ++i) {
+      char c = str.charAt(i);
+      if (c == '\\') {
+        result.append("\\\\");
+      } else if (c == '\n') {
+        result.append("\\n");
+      } else if (c == '"' && isLabelValue) {
+        result.append("\\\"");
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+}
@@ -83,7 +83,8 @@ public abstract class AbstractMappingPartitionAssigner implements PartitionAssig
   private Map<Host, Map<Domain, Set<Integer>>>
   getHostToDomainToPartitionsMapping(Ring ring, Set<DomainAndVersion> domainVersions) throws IOException {
     Map<Host, Map<Domain, Set<Integer>>> result = new TreeMap<Host, Map<Domain, Set<Integer>>>();
-    for (DomainAndVersion dgvdv : domainVersions) {
+    // Domains are processed in a consistent order, since assignments can depend on previous domains
+    for (DomainAndVersion dgvdv : new TreeSet<DomainAndVersion>(domainVersions)) {
       Domain domain = dgvdv.getDomain();
 
       // Determine which hosts can serve this domain
@@ -0,0 +1,275 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.partition_assigner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.coordinator.DomainAndVersion;
+import com.liveramp.hank.coordinator.DomainVersion;
+import com.liveramp.hank.coordinator.Host;
+import com.liveramp.hank.coordinator.HostDomain;
+import com.liveramp.hank.coordinator.HostDomainPartition;
+import com.liveramp.hank.coordinator.Hosts;
+import com.liveramp.hank.coordinator.Ring;
+import com.liveramp.hank.generated.PartitionMetadata;
+import com.liveramp.hank.partition_server.RuntimeStatisticsAggregator;
+import com.liveramp.hank.ring_group_conductor.RingGroupConductorMode;
+
+/**
+ * Partition assigner that balances the cost of partitions across the hosts of a ring, over all domains.
+ * The cost of a partition is a weighted sum of its share of the total number of bytes (from the partition
+ * metadata of the domain version) and its share of the total observed throughput (from the runtime
+ * statistics reported by the hosts currently serving it).
+ *
+ * Partitions are assigned by decreasing cost. Each partition stays on the host currently serving it if that
+ * host has room for it, and otherwise goes to the first host with room in its rendez-vous hashing order. A
+ * host has room if its total cost stays under the average cost per host, plus some slack. This keeps
+ * partition movement low across versions and ring changes, while bounding the load of each host.
+ */
+public class LoadBalancingPartitionAssigner extends AbstractMappingPartitionAssigner implements PartitionAssigner {
+
+  public static final double DEFAULT_NUM_BYTES_WEIGHT = 0.5;
+  public static final double DEFAULT_LOAD_SLACK = 0.1;
+
+  private final double numBytesWeight;
+  private final double loadSlack;
+
+  private Map<Domain, double[]> domainToPartitionCosts;
+  private Map<Domain, Map<Integer, Host>> domainToCurrentAssignments;
+  private Map<Host, Double> hostToLoad;
+  private double maxLoadPerHost;
+
+  public LoadBalancingPartitionAssigner() {
+    this(DEFAULT_NUM_BYTES_WEIGHT, DEFAULT_LOAD_SLACK);
+  }
+
+  // The number of bytes weight is in [0, 1], the throughput weight being its complement. The load
+  // slack is the ratio by which hosts can exceed the average cost per host.
+  public LoadBalancingPartitionAssigner(double numBytesWeight, double loadSlack) {
+    if (numBytesWeight < 0 || numBytesWeight > 1) {
+      throw new IllegalArgumentException("Number of bytes weight must be in [0, 1]: " + numBytesWeight);
+    }
+    if (loadSlack < 0) {
+      throw new IllegalArgumentException("Load slack must be positive: " + loadSlack);
+    }
+    this.numBytesWeight = numBytesWeight;
+    this.loadSlack = loadSlack;
+  }
+
+  @Override
+  public void prepare(Ring ring,
+                      Set<DomainAndVersion> domainVersions,
+                      RingGroupConductorMode ringGroupConductorMode) throws IOException {
+    domainToCurrentAssignments = getCurrentAssignments(ring, domainVersions);
+    domainToPartitionCosts = computePartitionCosts(ring, domainVersions, domainToCurrentAssignments, numBytesWeight);
+    hostToLoad = new HashMap<Host, Double>();
+    double totalCost = 0;
+    for (double[] partitionCosts : domainToPartitionCosts.values()) {
+      for (double partitionCost : partitionCosts) {
+        totalCost += partitionCost;
+      }
+    }
+    int numHosts = 0;
+    for (Host host : ring.getHosts()) {
+      if (ringGroupConductorMode != RingGroupConductorMode.PROACTIVE || Hosts.isOnline(host)) {
+        ++numHosts;
+      }
+    }
+    if (numHosts == 0) {
+      maxLoadPerHost = Double.MAX_VALUE;
+    } else {
+      maxLoadPerHost = (1 + loadSlack) * totalCost / numHosts;
+    }
+    super.prepare(ring, domainVersions, ringGroupConductorMode);
+  }
+
+  @Override
+  protected Map<Integer, Host> getPartitionsAssignment(Domain domain, List<HostAndIndexInRing> hosts) {
+    final double[] partitionCosts = domainToPartitionCosts.get(domain);
+    Map<Integer, Host> currentAssignments = domainToCurrentAssignments.get(domain);
+    Set<Host> validHosts = new HashSet<Host>();
+    for (HostAndIndexInRing hostAndIndexInRing : hosts) {
+      validHosts.add(hostAndIndexInRing.getHost());
+    }
+    // Assign expensive partitions first, ties are broken by partition number
+    List<Integer> partitionNumbers = new ArrayList<Integer>();
+    for (int partitionNumber = 0; partitionNumber < domain.getNumParts(); ++partitionNumber) {
+      partitionNumbers.add(partitionNumber);
+    }
+    Collections.sort(partitionNumbers, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        int result = Double.compare(partitionCosts[b], partitionCosts[a]);
+        if (result == 0) {
+          result = a.compareTo(b);
+        }
+        return result;
+      }
+    });
+    Map<Integer, Host> result = new HashMap<Integer, Host>();
+    for (Integer partitionNumber : partitionNumbers) {
+      double partitionCost = partitionCosts[partitionNumber];
+      Host assignedHost = null;
+      // Keep partition on its current host if possible
+      Host currentHost = currentAssignments.get(partitionNumber);
+      if (currentHost != null && validHosts.contains(currentHost) && hasRoom(currentHost, partitionCost)) {
+        assignedHost = currentHost;
+      }
+      // Otherwise, use the first host with room, in rendez-vous order
+      List<Host> orderedHosts = RendezVousPartitionAssigner.getOrderedWeightedHosts(domain, partitionNumber, hosts);
+      if (assignedHost == null) {
+        for (Host host : orderedHosts) {
+          if (hasRoom(host, partitionCost)) {
+            assignedHost = host;
+            break;
+          }
+        }
+      }
+      // If no host has room, use the least loaded host
+      if (assignedHost == null) {
+        for (Host host : orderedHosts) {
+          if (assignedHost == null || getLoad(host) < getLoad(assignedHost)) {
+            assignedHost = host;
+          }
+        }
+      }
+      hostToLoad.put(assignedHost, getLoad(assignedHost) + partitionCost);
+      result.put(partitionNumber, assignedHost);
+    }
+    return result;
+  }
+
+  private double getLoad(Host host) {
+    Double load = hostToLoad.get(host);
+    return load == null ? 0 : load;
+  }
+
+  private boolean hasRoom(Host host, double partitionCost) {
+    return getLoad(host) + partitionCost <= maxLoadPerHost;
+  }
+
+  // Return the host currently serving each partition (ignoring partitions that are being deleted), by domain
+  static Map<Domain, Map<Integer, Host>> getCurrentAssignments(Ring ring,
+                                                               Set<DomainAndVersion> domainVersions) throws IOException {
+    Map<Domain, Map<Integer, Host>> result = new HashMap<Domain, Map<Integer, Host>>();
+    for (DomainAndVersion domainAndVersion : domainVersions) {
+      Domain domain = domainAndVersion.getDomain();
+      Map<Integer, Host> partitionToHost = new HashMap<Integer, Host>();
+      for (Host host : ring.getHostsSorted()) {
+        HostDomain hostDomain = host.getHostDomain(domain);
+        if (hostDomain != null) {
+          for (HostDomainPartition partition : hostDomain.getPartitions()) {
+            if (!partition.isDeletable() && !partitionToHost.containsKey(partition.getPartitionNumber())) {
+              partitionToHost.put(partition.getPartitionNumber(), host);
+            }
+          }
+        }
+      }
+      result.put(domain, partitionToHost);
+    }
+    return result;
+  }
+
+  // Return the cost of each partition, by domain. Costs of all partitions sum to 1.
+  static Map<Domain, double[]> computePartitionCosts(Ring ring,
+                                                     Set<DomainAndVersion> domainVersions,
+                                                     Map<Domain, Map<Integer, Host>> domainToCurrentAssignments,
+                                                     double numBytesWeight) throws IOException {
+    Map<Domain, long[]> domainToNumBytes = new HashMap<Domain, long[]>();
+    Map<Domain, double[]> domainToThroughput = new HashMap<Domain, double[]>();
+    Map<Integer, Domain> idToDomain = new HashMap<Integer, Domain>();
+    long totalNumBytes = 0;
+    double totalThroughput = 0;
+    int totalNumPartitions = 0;
+
+    // Number of bytes, from the partitions metadata
+    for (DomainAndVersion domainAndVersion : domainVersions) {
+      Domain domain = domainAndVersion.getDomain();
+      DomainVersion domainVersion = domain.getVersion(domainAndVersion.getVersionNumber());
+      long[] numBytes = new long[domain.getNumParts()];
+      if (domainVersion != null) {
+        for (int partitionNumber = 0; partitionNumber < numBytes.length; ++partitionNumber) {
+          PartitionMetadata partitionMetadata = domainVersion.getPartitionMetadata(partitionNumber);
+          if (partitionMetadata != null) {
+            numBytes[partitionNumber] = partitionMetadata.get_num_bytes();
+            totalNumBytes += numBytes[partitionNumber];
+          }
+        }
+      }
+      domainToNumBytes.put(domain, numBytes);
+      domainToThroughput.put(domain, new double[domain.getNumParts()]);
+      idToDomain.put(domain.getId(), domain);
+      totalNumPartitions += domain.getNumParts();
+    }
+
+    // Observed throughput. Hosts only report it by domain, so it is spread evenly over the partitions
+    // each host currently serves.
+    for (Host host : ring.getHosts()) {
+      for (Map.Entry<Integer, RuntimeStatisticsAggregator> entry : Hosts.computeRuntimeStatisticsByDomainId(host).entrySet()) {
+        Domain domain = idToDomain.get(entry.getKey());
+        if (domain == null) {
+          continue;
+        }
+        List<Integer> servedPartitions = new ArrayList<Integer>();
+        for (Map.Entry<Integer, Host> assignment : domainToCurrentAssignments.get(domain).entrySet()) {
+          if (assignment.getValue().equals(host) && assignment.getKey() < domain.getNumParts()) {
+            servedPartitions.add(assignment.getKey());
+          }
+        }
+        double throughput = entry.getValue().getThroughput();
+        if (servedPartitions.isEmpty() || !(throughput > 0)) {
+          continue;
+        }
+        double[] partitionThroughputs = domainToThroughput.get(domain);
+        for (Integer partitionNumber : servedPartitions) {
+          partitionThroughputs[partitionNumber] += throughput / servedPartitions.size();
+        }
+        totalThroughput += throughput;
+      }
+    }
+
+    // Combine shares of the totals. Without metadata, partitions are considered of equal size.
+    Map<Domain, double[]> result = new HashMap<Domain, double[]>();
+    for (Map.Entry<Domain, long[]> entry : domainToNumBytes.entrySet()) {
+      long[] numBytes = entry.getValue();
+      double[] throughputs = domainToThroughput.get(entry.getKey());
+      double[] costs = new double[numBytes.length];
+      for (int partitionNumber = 0; partitionNumber < costs.length; ++partitionNumber) {
+        double numBytesShare = totalNumBytes > 0
+            ? (double)numBytes[partitionNumber] / totalNumBytes
+            : 1.0 / totalNumPartitions;
+        if (totalThroughput > 0) {
+          costs[partitionNumber] = numBytesWeight * numBytesShare
+              + (1 - numBytesWeight) * throughputs[partitionNumber] / totalThroughput;
+        } else {
+          costs[partitionNumber] = numBytesShare;
+        }
+      }
+      result.put(entry.getKey(), costs);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,207 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.partition_assigner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.hank.config.InvalidConfigurationException;
+import com.liveramp.hank.config.yaml.YamlCoordinatorConfigurator;
+import com.liveramp.hank.coordinator.Coordinator;
+import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.coordinator.DomainAndVersion;
+import com.liveramp.hank.coordinator.DomainGroup;
+import com.liveramp.hank.coordinator.DomainVersion;
+import com.liveramp.hank.coordinator.Host;
+import com.liveramp.hank.coordinator.PartitionServerAddress;
+import com.liveramp.hank.generated.PartitionMetadata;
+import com.liveramp.hank.ring_group_conductor.RingGroupConductorMode;
+import com.liveramp.hank.test.coordinator.MockHost;
+import com.liveramp.hank.test.coordinator.MockRing;
+import com.liveramp.hank.util.CommandLineChecker;
+import com.liveramp.hank.util.FormatUtils;
+
+/**
+ * Replays the partition assignment of a domain group's current versions on a simulated ring, and reports
+ * how balanced the resulting assignment is (maximum over mean of the number of partitions, bytes and
+ * records per host). It then adds a host to the ring and reports how many partitions were moved.
+ */
+public class PartitionAssignmentSimulator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionAssignmentSimulator.class);
+
+  public static class Report {
+
+    private final long[] numPartitionsPerHost;
+    private final long[] numBytesPerHost;
+    private final long[] numRecordsPerHost;
+    private final int numPartitions;
+    private final int numPartitionsMoved;
+
+    private Report(long[] numPartitionsPerHost,
+                   long[] numBytesPerHost,
+                   long[] numRecordsPerHost,
+                   int numPartitions,
+                   int numPartitionsMoved) {
+      this.numPartitionsPerHost = numPartitionsPerHost;
+      this.numBytesPerHost = numBytesPerHost;
+      this.numRecordsPerHost = numRecordsPerHost;
+      this.numPartitions = numPartitions;
+      this.numPartitionsMoved = numPartitionsMoved;
+    }
+
+    public double getNumPartitionsImbalance() {
+      return getImbalance(numPartitionsPerHost);
+    }
+
+    public double getNumBytesImbalance() {
+      return getImbalance(numBytesPerHost);
+    }
+
+    public double getNumRecordsImbalance() {
+      return getImbalance(numRecordsPerHost);
+    }
+
+    public int getNumPartitions() {
+      return numPartitions;
+    }
+
+    // Number of partitions that changed host when a host was added to the ring
+    public int getNumPartitionsMoved() {
+      return numPartitionsMoved;
+    }
+
+    // Return the ratio of the maximum over the mean, 1 meaning perfect balance
+    private static double getImbalance(long[] values) {
+      long max = 0;
+      long total = 0;
+      for (long value : values) {
+        max = Math.max(max, value);
+        total += value;
+      }
+      if (total == 0) {
+        return 1;
+      }
+      return (double)max / ((double)total / values.length);
+    }
+
+    @Override
+    public String toString() {
+      return "Report [hosts=" + numPartitionsPerHost.length
+          + ", partitions=" + numPartitions
+          + ", partitions imbalance=" + FormatUtils.formatDouble(getNumPartitionsImbalance())
+          + ", bytes imbalance=" + FormatUtils.formatDouble(getNumBytesImbalance())
+          + ", records imbalance=" + FormatUtils.formatDouble(getNumRecordsImbalance())
+          + ", partitions moved when adding a host=" + numPartitionsMoved
+          + "]";
+    }
+  }
+
+  public static Report simulate(PartitionAssigner partitionAssigner,
+                                Set<DomainAndVersion> domainVersions,
+                                int numHosts) throws IOException {
+    List<Host> hosts = new ArrayList<Host>();
+    for (int i = 0; i < numHosts; ++i) {
+      hosts.add(new MockHost(new PartitionServerAddress(getHostName(i), 0)));
+    }
+    Map<Domain, Map<Integer, Host>> assignments = assign(partitionAssigner, hosts, domainVersions);
+
+    // Measure balance
+    Map<Host, Integer> hostToIndex = new HashMap<Host, Integer>();
+    for (int i = 0; i < hosts.size(); ++i) {
+      hostToIndex.put(hosts.get(i), i);
+    }
+    long[] numPartitionsPerHost = new long[numHosts];
+    long[] numBytesPerHost = new long[numHosts];
+    long[] numRecordsPerHost = new long[numHosts];
+    int numPartitions = 0;
+    for (DomainAndVersion domainAndVersion : domainVersions) {
+      Domain domain = domainAndVersion.getDomain();
+      DomainVersion domainVersion = domain.getVersion(domainAndVersion.getVersionNumber());
+      for (Map.Entry<Integer, Host> entry : assignments.get(domain).entrySet()) {
+        int hostIndex = hostToIndex.get(entry.getValue());
+        numPartitionsPerHost[hostIndex] += 1;
+        PartitionMetadata partitionMetadata = domainVersion == null ? null : domainVersion.getPartitionMetadata(entry.getKey());
+        if (partitionMetadata != null) {
+          numBytesPerHost[hostIndex] += partitionMetadata.get_num_bytes();
+          numRecordsPerHost[hostIndex] += partitionMetadata.get_num_records();
+        }
+        ++numPartitions;
+      }
+    }
+
+    // Measure movement when adding a host
+    hosts.add(new MockHost(new PartitionServerAddress(getHostName(numHosts), 0)));
+    Map<Domain, Map<Integer, Host>> newAssignments = assign(partitionAssigner, hosts, domainVersions);
+    int numPartitionsMoved = 0;
+    for (Map.Entry<Domain, Map<Integer, Host>> entry : assignments.entrySet()) {
+      Map<Integer, Host> newPartitionToHost = newAssignments.get(entry.getKey());
+      for (Map.Entry<Integer, Host> partitionToHost : entry.getValue().entrySet()) {
+        if (!partitionToHost.getValue().equals(newPartitionToHost.get(partitionToHost.getKey()))) {
+          ++numPartitionsMoved;
+        }
+      }
+    }
+
+    return new Report(numPartitionsPerHost, numBytesPerHost, numRecordsPerHost, numPartitions, numPartitionsMoved);
+  }
+
+  // Host names sort in the order hosts are added, so that added hosts are last in the ring
+  private static String getHostName(int hostIndex) {
+    return String.format("host%05d", hostIndex);
+  }
+
+  private static Map<Domain, Map<Integer, Host>> assign(PartitionAssigner partitionAssigner,
+                                                       List<Host> hosts,
+                                                       Set<DomainAndVersion> domainVersions) throws IOException {
+    MockRing ring = new MockRing(new HashSet<Host>(hosts), null, 0);
+    partitionAssigner.prepare(ring, domainVersions, RingGroupConductorMode.ACTIVE);
+    for (Host host : hosts) {
+      partitionAssigner.assign(host);
+    }
+    return LoadBalancingPartitionAssigner.getCurrentAssignments(ring, domainVersions);
+  }
+
+  public static void main(String[] args) throws IOException, InvalidConfigurationException {
+    CommandLineChecker.check(args, new String[]{"configuration", "domain group name", "number of hosts"},
+        PartitionAssignmentSimulator.class);
+
+    String configurationPath = args[0];
+    String domainGroupName = args[1];
+    int numHosts = Integer.parseInt(args[2]);
+
+    Coordinator coordinator = new YamlCoordinatorConfigurator(configurationPath).createCoordinator();
+    DomainGroup domainGroup = coordinator.getDomainGroup(domainGroupName);
+    if (domainGroup == null) {
+      throw new RuntimeException("Given domain group was not found: " + domainGroupName);
+    }
+    Set<DomainAndVersion> domainVersions = domainGroup.getDomainVersions();
+
+    LOG.info("Rendez-vous partition assigner: "
+        + simulate(new RendezVousPartitionAssigner(), domainVersions, numHosts));
+    LOG.info("Load balancing partition assigner: "
+        + simulate(new LoadBalancingPartitionAssigner(), domainVersions, numHosts));
+  }
+}
@@ -109,7 +109,8 @@ public class RendezVousPartitionAssigner extends AbstractMappingPartitionAssigne
     }
   }
 
-  private List<Host> getOrderedWeightedHosts(Domain domain, int partitionNumber, List<HostAndIndexInRing> hosts) {
+  // Order hosts by rendez vous hash value for the given partition
+  static List<Host> getOrderedWeightedHosts(Domain domain, int partitionNumber, List<HostAndIndexInRing> hosts) {
     List<HostAndPartitionRendezVous> hostAndPartitionRendezVousList = new ArrayList<HostAndPartitionRendezVous>();
     for (HostAndIndexInRing hostAndIndexInRing : hosts) {
       hostAndPartitionRendezVousList.add(new HostAndPartitionRendezVous(domain, partitionNumber, hostAndIndexInRing));
@@ -17,14 +17,10 @@
 package com.liveramp.hank.partition_server;
 
 import java.text.DecimalFormat;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Random;
 
 public class DoublePopulationStatisticsAggregator {
 
-  private static int POPULATION_RANDOM_SAMPLE_MAX_SIZE = 100;
-
   private static DecimalFormat format3 = new DecimalFormat("#.###");
   private static DecimalFormat format1 = new DecimalFormat("#.#");
   private static DecimalFormat format0 = new DecimalFormat("#");
@@ -33,8 +29,7 @@ public class DoublePopulationStatisticsAggregator {
   private double maximum;
   private long numValues;
   private double total;
-  private final ReservoirSample reservoirSample = new ReservoirSample(POPULATION_RANDOM_SAMPLE_MAX_SIZE);
-  private final Random random = new Random();
+  private final LatencyHistogram histogram = new LatencyHistogram();
 
   public DoublePopulationStatisticsAggregator() {
     clear();
@@ -44,12 +39,24 @@ public class DoublePopulationStatisticsAggregator {
                                               double maximum,
                                               long numValues,
                                               double total,
-                                              double[] randomSample) {
+                                              double[] values) {
     this.minimum = minimum;
     this.maximum = maximum;
     this.numValues = numValues;
     this.total = total;
-    this.reservoirSample.sample(randomSample, random);
+    this.histogram.record(values);
+  }
+
+  public DoublePopulationStatisticsAggregator(double minimum,
+                                              double maximum,
+                                              long numValues,
+                                              double total,
+                                              LatencyHistogram histogram) {
+    this.minimum = minimum;
+    this.maximum = maximum;
+    this.numValues = numValues;
+    this.total = total;
+    this.histogram.add(histogram);
   }
 
   public void clear() {
@@ -57,10 +64,24 @@ public class DoublePopulationStatisticsAggregator {
     maximum = Double.MIN_VALUE;
     numValues = 0;
     total = 0.0;
-    reservoirSample.clear();
+    histogram.clear();
   }
 
   public void aggregate(double minimum, double maximum, long numValues, double total, double[] values) {
+    aggregate(minimum, maximum, numValues, total);
+    histogram.record(values);
+  }
+
+  public void aggregate(double minimum, double maximum, long numValues, double total, LatencyHistogram histogram) {
+    aggregate(minimum, maximum, numValues, total);
+    this.histogram.add(histogram);
+  }
+
+  public void aggregate(DoublePopulationStatisticsAggregator other) {
+    aggregate(other.minimum, other.maximum, other.numValues, other.total, other.histogram);
+  }
+
+  private void aggregate(double minimum, double maximum, long numValues, double total) {
     if (maximum > this.maximum) {
       this.maximum = maximum;
     }
@@ -69,12 +90,10 @@ public class DoublePopulationStatisticsAggregator {
     }
     this.numValues += numValues;
     this.total += total;
-    this.reservoirSample.sample(values, random);
   }
 
   public static DoublePopulationStatisticsAggregator
   combine(Collection<DoublePopulationStatisticsAggregator> aggregators) {
-    Random random = new Random();
     DoublePopulationStatisticsAggregator result = new DoublePopulationStatisticsAggregator();
     for (DoublePopulationStatisticsAggregator aggregator : aggregators) {
       if (aggregator.maximum > result.maximum) {
@@ -85,19 +104,7 @@ public class DoublePopulationStatisticsAggregator {
       }
       result.numValues += aggregator.numValues;
       result.total += aggregator.total;
-    }
-    // Now we can create a stream of values based on a
-    // random sample of the aggregators reservoirs but
-    // with the number of values in their streams a weight
-    // and reservoir sample that. This assumes that all given reservoirs
-    // have the same size.
-    for (DoublePopulationStatisticsAggregator aggregator : aggregators) {
-      double ratio = (double) aggregator.numValues / (double) result.numValues;
-      for (double value : aggregator.reservoirSample.getReservoir()) {
-        if ((Math.abs(random.nextDouble()) / Double.MAX_VALUE) < ratio) {
-          result.reservoirSample.sample(value, random);
-        }
-      }
+      result.histogram.add(aggregator.histogram);
     }
     return result;
   }
@@ -116,6 +123,14 @@ public class DoublePopulationStatisticsAggregator {
     return minimum;
   }
 
+  public long getNumValues() {
+    return numValues;
+  }
+
+  public double getTotal() {
+    return total;
+  }
+
   public double getMean() {
     if (numValues != 0) {
       return total / numValues;
@@ -126,18 +141,26 @@ public class DoublePopulationStatisticsAggregator {
 
   public double[] computeDeciles() {
     double[] result = new double[9];
-    Arrays.fill(result, 0.0);
-    if (reservoirSample.getSize() > 0) {
-      // Sort valid reservoir values first
-      Arrays.sort(reservoirSample.getReservoir(), 0, reservoirSample.getSize());
-      // Compute deciles
-      for (int i = 0; i < 9; ++i) {
-        result[i] = getSortedPopulationDecile(reservoirSample.getReservoir(), i + 1, reservoirSample.getSize());
-      }
+    for (int i = 0; i < 9; ++i) {
+      result[i] = histogram.getValueAtPercentile((i + 1) * 10);
     }
     return result;
   }
 
+  // Value below which the given percentage of values fall, 0 if there are no values
+  public double getPercentile(double percentile) {
+    return histogram.getValueAtPercentile(percentile);
+  }
+
+  // Copy of these statistics with an empty histogram
+  public DoublePopulationStatisticsAggregator withoutHistogram() {
+    return new DoublePopulationStatisticsAggregator(minimum, maximum, numValues, total, new LatencyHistogram());
+  }
+
+  public LatencyHistogram getHistogram() {
+    return histogram;
+  }
+
   public static String toString(DoublePopulationStatisticsAggregator populationStatistics) {
     StringBuilder result = new StringBuilder();
     result.append(populationStatistics.minimum);
@@ -147,9 +170,9 @@ public class DoublePopulationStatisticsAggregator {
     result.append(populationStatistics.numValues);
     result.append(' ');
     result.append(populationStatistics.total);
-    for (int i = 0; i < populationStatistics.reservoirSample.getSize(); ++i) {
+    if (populationStatistics.histogram.getTotalCount() > 0) {
       result.append(' ');
-      result.append(populationStatistics.reservoirSample.getReservoir()[i]);
+      result.append(LatencyHistogram.toString(populationStatistics.histogram));
     }
     return result.toString();
   }
@@ -169,65 +192,17 @@ public class DoublePopulationStatisticsAggregator {
     StringBuilder result = new StringBuilder();
     // Compute median
     double median = numValues == 0 ? 0 : deciles[4];
-    // Compute 90% percentile
-    double ninetiethPercentile = numValues == 0 ? 0 : deciles[8];
+    // Compute 99% percentile
+    double ninetyNinthPercentile = numValues == 0 ? 0 : getPercentile(99);
     result.append(formatDouble(getMean()));
     result.append(" / ");
     result.append(formatDouble(median));
     result.append(" / ");
-    result.append(formatDouble(ninetiethPercentile));
+    result.append(formatDouble(ninetyNinthPercentile));
     result.append(" ms");
     return result.toString();
   }
 
-  public class ReservoirSample {
-
-    private final double[] reservoir;
-    private int size;
-    private int count;
-
-    public ReservoirSample(int reservoirMaxSize) {
-      reservoir = new double[reservoirMaxSize];
-      clear();
-    }
-
-    public void sample(double[] values, Random random) {
-      for (double value : values) {
-        sample(value, random);
-      }
-    }
-
-    public void sample(double value, Random random) {
-      if (count < reservoir.length) {
-        reservoir[size++] = value;
-      } else {
-        if (random.nextInt(count) < reservoir.length) {
-          reservoir[random.nextInt(reservoir.length)] = value;
-        }
-      }
-      ++count;
-    }
-
-    public void sample(ReservoirSample other, Random random) {
-      for (int i = 0; i < other.getSize(); ++i) {
-        sample(other.getReservoir()[i], random);
-      }
-    }
-
-    public double[] getReservoir() {
-      return reservoir;
-    }
-
-    public int getSize() {
-      return size;
-    }
-
-    public void clear() {
-      size = 0;
-      count = 0;
-    }
-  }
-
   public static double getSortedPopulationDecile(double[] population, int decile, int endIndex) {
     return getInterpolatedValueAtIndex(population, getDecileIndex(endIndex, decile));
   }
@@ -0,0 +1,145 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.partition_server;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies with logarithmic buckets, in the manner of HdrHistogram. Values are recorded
+ * in microseconds. Values below 64us are counted exactly, larger values fall into buckets whose width is
+ * 1/32 of their lower bound, so that percentiles are accurate to within about 2% at any magnitude.
+ * All histograms have the same buckets, which makes combining them across partitions, domains, hosts
+ * and rings exact, unlike combining random samples. Not thread safe.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+  // Values of 2^32us (over an hour) and more are counted in the last bucket
+  private static final long MAX_VALUE = (1L << 32) - 1;
+
+  public static final int NUM_BUCKETS = getBucketIndex(MAX_VALUE) + 1;
+
+  private final long[] counts = new long[NUM_BUCKETS];
+  private long totalCount;
+
+  public static int getBucketIndex(long valueMicroseconds) {
+    long value = Math.max(0, Math.min(MAX_VALUE, valueMicroseconds));
+    if (value < SUB_BUCKET_COUNT) {
+      return (int)value;
+    }
+    // Keep the SUB_BUCKET_BITS most significant bits of the value
+    int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKET_HALF_COUNT + (int)(value >>> shift);
+  }
+
+  // Middle of the given bucket, in milliseconds
+  public static double getBucketValue(int bucketIndex) {
+    if (bucketIndex < SUB_BUCKET_COUNT) {
+      return bucketIndex / 1000d;
+    }
+    int shift = bucketIndex / SUB_BUCKET_HALF_COUNT - 1;
+    long lowerBound = (long)(bucketIndex - shift * SUB_BUCKET_HALF_COUNT) << shift;
+    return (lowerBound + ((1L << shift) - 1) / 2d) / 1000d;
+  }
+
+  public void record(double valueMilliseconds) {
+    addCount(getBucketIndex(Math.round(valueMilliseconds * 1000)), 1);
+  }
+
+  public void record(double[] valuesMilliseconds) {
+    for (double value : valuesMilliseconds) {
+      record(value);
+    }
+  }
+
+  public void addCount(int bucketIndex, long count) {
+    counts[bucketIndex] += count;
+    totalCount += count;
+  }
+
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < NUM_BUCKETS; ++i) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+  }
+
+  public long getCount(int bucketIndex) {
+    return counts[bucketIndex];
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  // Value in milliseconds below which the given percentage of recorded values fall, 0 if empty
+  public double getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long)Math.ceil(totalCount * (Math.min(100, percentile) / 100d)));
+    long count = 0;
+    for (int i = 0; i < NUM_BUCKETS; ++i) {
+      count += counts[i];
+      if (count >= rank) {
+        return getBucketValue(i);
+      }
+    }
+    return getBucketValue(NUM_BUCKETS - 1);
+  }
+
+  public void clear() {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+  }
+
+  // Non empty buckets as "index:count" tokens, where each index is relative to the previous one
+  public static String toString(LatencyHistogram histogram) {
+    StringBuilder result = new StringBuilder();
+    int previousIndex = 0;
+    for (int i = 0; i < NUM_BUCKETS; ++i) {
+      if (histogram.counts[i] != 0) {
+        if (result.length() > 0) {
+          result.append(' ');
+        }
+        result.append(i - previousIndex);
+        result.append(':');
+        result.append(histogram.counts[i]);
+        previousIndex = i;
+      }
+    }
+    return result.toString();
+  }
+
+  // Tokens that are plain numbers are values in milliseconds, as published by previous versions
+  public static LatencyHistogram parse(String[] tokens, int offset) {
+    LatencyHistogram result = new LatencyHistogram();
+    int index = 0;
+    for (int i = offset; i < tokens.length; ++i) {
+      int separator = tokens[i].indexOf(':');
+      if (separator < 0) {
+        result.record(Double.parseDouble(tokens[i]));
+      } else {
+        index += Integer.parseInt(tokens[i].substring(0, separator));
+        result.addCount(index, Long.parseLong(tokens[i].substring(separator + 1)));
+      }
+    }
+    return result;
+  }
+}
@@ -26,6 +26,10 @@ public class PartitionAccessorRuntimeStatistics {
   protected final double responseDataThroughput;
   protected final long numL1CacheHits;
   protected final long numL2CacheHits;
+  // Number of requests that read from a memory mapped file rather than through a file channel
+  protected final long numMemoryMappedReads;
+  // Number of requests served from a block of the shared decompressed block cache
+  protected final long numBlockCacheHits;
   protected final CacheStatistics cacheStatistics;
 
   public PartitionAccessorRuntimeStatistics(long numRequests,
@@ -34,6 +38,8 @@ public class PartitionAccessorRuntimeStatistics {
                                             double responseDataThroughput,
                                             long numL1CacheHits,
                                             long numL2CacheHits,
+                                            long numMemoryMappedReads,
+                                            long numBlockCacheHits,
                                             CacheStatistics cacheStatistics) {
     this.numRequests = numRequests;
     this.numHits = numHits;
@@ -41,6 +47,8 @@ public class PartitionAccessorRuntimeStatistics {
     this.responseDataThroughput = responseDataThroughput;
     this.numL1CacheHits = numL1CacheHits;
     this.numL2CacheHits = numL2CacheHits;
+    this.numMemoryMappedReads = numMemoryMappedReads;
+    this.numBlockCacheHits = numBlockCacheHits;
     this.cacheStatistics = cacheStatistics;
   }
 }
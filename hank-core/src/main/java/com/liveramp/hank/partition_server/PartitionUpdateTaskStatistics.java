@@ -24,6 +24,8 @@ public class PartitionUpdateTaskStatistics {
   private long startTimeMs;
   private long endTimeMs;
   private final Map<String, Long> durationsMs;
+  private long numBytesWritten;
+  private long peakDiskUsageBytes;
 
   public PartitionUpdateTaskStatistics() {
     this.durationsMs = new HashMap<String, Long>();
@@ -48,4 +50,26 @@ public class PartitionUpdateTaskStatistics {
   public Map<String, Long> getDurationsMs() {
     return durationsMs;
   }
+
+  /**
+   * @return Number of bytes written to local disk by the update
+   */
+  public long getNumBytesWritten() {
+    return numBytesWritten;
+  }
+
+  public void addNumBytesWritten(long numBytes) {
+    numBytesWritten += numBytes;
+  }
+
+  /**
+   * @return Largest disk space used by the partition observed during the update
+   */
+  public long getPeakDiskUsageBytes() {
+    return peakDiskUsageBytes;
+  }
+
+  public void recordDiskUsageBytes(long diskUsageBytes) {
+    peakDiskUsageBytes = Math.max(peakDiskUsageBytes, diskUsageBytes);
+  }
 }
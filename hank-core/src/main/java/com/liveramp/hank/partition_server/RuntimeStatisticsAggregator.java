@@ -28,12 +28,19 @@ public class RuntimeStatisticsAggregator {
 
   private static Logger LOG = LoggerFactory.getLogger(RuntimeStatisticsAggregator.class);
 
+  // Serialized statistics start with a version token. Each version adds fields, and strings of older
+  // versions, including the original unversioned format, remain readable.
+  private static final String FORMAT_VERSION_PREFIX = "v";
+  private static final int FORMAT_VERSION = 7;
+
   private double throughputTotal;
   private double responseDataThroughputTotal;
   private long numRequestsTotal;
   private long numHitsTotal;
   private long numL1CacheHitsTotal;
   private long numL2CacheHitsTotal;
+  private long numMemoryMappedReadsTotal;
+  private long numBlockCacheHitsTotal;
   private DoublePopulationStatisticsAggregator getRequestsPopulationStatistics;
   private CacheStatistics cacheStatisticsTotal;
 
@@ -44,8 +51,10 @@ public class RuntimeStatisticsAggregator {
     numHitsTotal = 0;
     numL1CacheHitsTotal = 0;
     numL2CacheHitsTotal = 0;
+    numMemoryMappedReadsTotal = 0;
+    numBlockCacheHitsTotal = 0;
     getRequestsPopulationStatistics = new DoublePopulationStatisticsAggregator();
-    cacheStatisticsTotal = new CacheStatistics(0, 0, 0, 0);
+    cacheStatisticsTotal = new CacheStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
   }
 
   public RuntimeStatisticsAggregator(double throughputTotal,
@@ -54,6 +63,8 @@ public class RuntimeStatisticsAggregator {
                                      long numHitsTotal,
                                      long numL1CacheHitsTotal,
                                      long numL2CacheHitsTotal,
+                                     long numMemoryMappedReadsTotal,
+                                     long numBlockCacheHitsTotal,
                                      DoublePopulationStatisticsAggregator getRequestsPopulationStatistics,
                                      CacheStatistics cacheStatisticsTotal) {
     this.throughputTotal = throughputTotal;
@@ -62,6 +73,8 @@ public class RuntimeStatisticsAggregator {
     this.numHitsTotal = numHitsTotal;
     this.numL1CacheHitsTotal = numL1CacheHitsTotal;
     this.numL2CacheHitsTotal = numL2CacheHitsTotal;
+    this.numMemoryMappedReadsTotal = numMemoryMappedReadsTotal;
+    this.numBlockCacheHitsTotal = numBlockCacheHitsTotal;
     this.getRequestsPopulationStatistics = getRequestsPopulationStatistics;
     this.cacheStatisticsTotal = cacheStatisticsTotal;
   }
@@ -73,6 +86,8 @@ public class RuntimeStatisticsAggregator {
     numHitsTotal += runtimeStatistics.numHits;
     numL1CacheHitsTotal += runtimeStatistics.numL1CacheHits;
     numL2CacheHitsTotal += runtimeStatistics.numL2CacheHits;
+    numMemoryMappedReadsTotal += runtimeStatistics.numMemoryMappedReads;
+    numBlockCacheHitsTotal += runtimeStatistics.numBlockCacheHits;
     cacheStatisticsTotal.add(runtimeStatistics.cacheStatistics);
   }
 
@@ -87,6 +102,8 @@ public class RuntimeStatisticsAggregator {
       result.numHitsTotal += runtimeStatisticsAggregator.numHitsTotal;
       result.numL1CacheHitsTotal += runtimeStatisticsAggregator.numL1CacheHitsTotal;
       result.numL2CacheHitsTotal += runtimeStatisticsAggregator.numL2CacheHitsTotal;
+      result.numMemoryMappedReadsTotal += runtimeStatisticsAggregator.numMemoryMappedReadsTotal;
+      result.numBlockCacheHitsTotal += runtimeStatisticsAggregator.numBlockCacheHitsTotal;
       doublePopulationStatisticsAggregators.add(runtimeStatisticsAggregator.getRequestsPopulationStatistics);
       result.cacheStatisticsTotal.add(runtimeStatisticsAggregator.cacheStatisticsTotal);
     }
@@ -94,6 +111,22 @@ public class RuntimeStatisticsAggregator {
     return result;
   }
 
+  // Request counters, throughputs and latency aggregates of the given statistics, without the latency
+  // histogram and cache statistics, which are exported as metrics instead
+  public static RuntimeStatisticsAggregator summarize(RuntimeStatisticsAggregator runtimeStatisticsAggregator) {
+    return new RuntimeStatisticsAggregator(
+        runtimeStatisticsAggregator.throughputTotal,
+        runtimeStatisticsAggregator.responseDataThroughputTotal,
+        runtimeStatisticsAggregator.numRequestsTotal,
+        runtimeStatisticsAggregator.numHitsTotal,
+        runtimeStatisticsAggregator.numL1CacheHitsTotal,
+        runtimeStatisticsAggregator.numL2CacheHitsTotal,
+        runtimeStatisticsAggregator.numMemoryMappedReadsTotal,
+        runtimeStatisticsAggregator.numBlockCacheHitsTotal,
+        runtimeStatisticsAggregator.getRequestsPopulationStatistics.withoutHistogram(),
+        new CacheStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0));
+  }
+
   public void setGetRequestsPopulationStatistics(DoublePopulationStatisticsAggregator populationStatistics) {
     this.getRequestsPopulationStatistics = populationStatistics;
   }
@@ -130,6 +163,24 @@ public class RuntimeStatisticsAggregator {
     }
   }
 
+  // Fraction of requests that were served by reading from memory mapped files
+  public double getMemoryMappedReadRate() {
+    if (numRequestsTotal == 0) {
+      return 0;
+    } else {
+      return (double)numMemoryMappedReadsTotal / (double)numRequestsTotal;
+    }
+  }
+
+  // Fraction of requests that were served from a block of the shared decompressed block cache
+  public double getBlockCacheHitRate() {
+    if (numRequestsTotal == 0) {
+      return 0;
+    } else {
+      return (double)numBlockCacheHitsTotal / (double)numRequestsTotal;
+    }
+  }
+
   public DoublePopulationStatisticsAggregator getGetRequestsPopulationStatistics() {
     return getRequestsPopulationStatistics;
   }
@@ -139,16 +190,25 @@ public class RuntimeStatisticsAggregator {
   }
 
   public static String toString(RuntimeStatisticsAggregator runtimeStatisticsAggregator) {
-    return runtimeStatisticsAggregator.throughputTotal
+    return FORMAT_VERSION_PREFIX + FORMAT_VERSION
+        + " " + runtimeStatisticsAggregator.throughputTotal
         + " " + runtimeStatisticsAggregator.responseDataThroughputTotal
         + " " + runtimeStatisticsAggregator.numRequestsTotal
         + " " + runtimeStatisticsAggregator.numHitsTotal
         + " " + runtimeStatisticsAggregator.numL1CacheHitsTotal
         + " " + runtimeStatisticsAggregator.numL2CacheHitsTotal
+        + " " + runtimeStatisticsAggregator.numMemoryMappedReadsTotal
+        + " " + runtimeStatisticsAggregator.numBlockCacheHitsTotal
         + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumItems()
         + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getMaxNumItems()
         + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumManagedBytes()
         + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getMaxNumManagedBytes()
+        + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumOffHeapBytes()
+        + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumFilterBytes()
+        + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumFilterNegatives()
+        + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumFilterFalsePositives()
+        + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumAdmissions()
+        + " " + runtimeStatisticsAggregator.cacheStatisticsTotal.getNumAdmissionRejections()
         + " " + DoublePopulationStatisticsAggregator.toString(
         runtimeStatisticsAggregator.getRequestsPopulationStatistics);
   }
@@ -158,30 +218,56 @@ public class RuntimeStatisticsAggregator {
 
     try {
 
-      double throughputTotal = Double.parseDouble(tokens[0]);
-      double responseDataThroughputTotal = Double.parseDouble(tokens[1]);
-      long numRequestsTotal = Long.parseLong(tokens[2]);
-      long numHitsTotal = Long.parseLong(tokens[3]);
-      long numL1CacheHitsTotal = Long.parseLong(tokens[4]);
-      long numL2CacheHitsTotal = Long.parseLong(tokens[5]);
+      // Strings without a version token are in the original format
+      int version = 1;
+      int index = 0;
+      if (tokens[0].startsWith(FORMAT_VERSION_PREFIX)) {
+        version = Integer.parseInt(tokens[0].substring(FORMAT_VERSION_PREFIX.length()));
+        index = 1;
+      }
+      if (version > FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unsupported runtime statistics format version: " + version);
+      }
+
+      // Fields added by later versions are zero when reading older ones
+      double throughputTotal = Double.parseDouble(tokens[index++]);
+      double responseDataThroughputTotal = Double.parseDouble(tokens[index++]);
+      long numRequestsTotal = Long.parseLong(tokens[index++]);
+      long numHitsTotal = Long.parseLong(tokens[index++]);
+      long numL1CacheHitsTotal = Long.parseLong(tokens[index++]);
+      long numL2CacheHitsTotal = Long.parseLong(tokens[index++]);
+      long numMemoryMappedReadsTotal = version >= 2 ? Long.parseLong(tokens[index++]) : 0;
+      long numBlockCacheHitsTotal = version >= 7 ? Long.parseLong(tokens[index++]) : 0;
 
+      long numCacheItems = Long.parseLong(tokens[index++]);
+      long maxNumCacheItems = Long.parseLong(tokens[index++]);
+      long numCacheManagedBytes = Long.parseLong(tokens[index++]);
+      long maxNumCacheManagedBytes = Long.parseLong(tokens[index++]);
+      long numCacheOffHeapBytes = version >= 3 ? Long.parseLong(tokens[index++]) : 0;
+      long numFilterBytes = version >= 4 ? Long.parseLong(tokens[index++]) : 0;
+      long numFilterNegatives = version >= 4 ? Long.parseLong(tokens[index++]) : 0;
+      long numFilterFalsePositives = version >= 4 ? Long.parseLong(tokens[index++]) : 0;
+      long numCacheAdmissions = version >= 5 ? Long.parseLong(tokens[index++]) : 0;
+      long numCacheAdmissionRejections = version >= 5 ? Long.parseLong(tokens[index++]) : 0;
       CacheStatistics cacheStatisticsTotal = new CacheStatistics(
-          Long.parseLong(tokens[6]),
-          Long.parseLong(tokens[7]),
-          Long.parseLong(tokens[8]),
-          Long.parseLong(tokens[9]));
-
-      int numRandomSample = tokens.length - 14;
-      double[] randomSample = new double[numRandomSample];
-      for (int i = 0; i < numRandomSample; ++i) {
-        randomSample[i] = Double.parseDouble(tokens[14 + i]);
-      }
+          numCacheItems,
+          maxNumCacheItems,
+          numCacheManagedBytes,
+          maxNumCacheManagedBytes,
+          numCacheOffHeapBytes,
+          numFilterBytes,
+          numFilterNegatives,
+          numFilterFalsePositives,
+          numCacheAdmissions,
+          numCacheAdmissionRejections);
+
+      double minimum = Double.parseDouble(tokens[index++]);
+      double maximum = Double.parseDouble(tokens[index++]);
+      long numValues = Long.parseLong(tokens[index++]);
+      double total = Double.parseDouble(tokens[index++]);
+      // Older versions end with a random sample of latencies, which is read into the histogram
       DoublePopulationStatisticsAggregator getRequestsPopulationStatistics = new DoublePopulationStatisticsAggregator(
-          Double.parseDouble(tokens[10]),
-          Double.parseDouble(tokens[11]),
-          Long.parseLong(tokens[12]),
-          Double.parseDouble(tokens[13]),
-          randomSample);
+          minimum, maximum, numValues, total, LatencyHistogram.parse(tokens, index));
 
       return new RuntimeStatisticsAggregator(
           throughputTotal,
@@ -190,6 +276,8 @@ public class RuntimeStatisticsAggregator {
           numHitsTotal,
           numL1CacheHitsTotal,
           numL2CacheHitsTotal,
+          numMemoryMappedReadsTotal,
+          numBlockCacheHitsTotal,
           getRequestsPopulationStatistics,
           cacheStatisticsTotal);
     } catch (Exception e) {
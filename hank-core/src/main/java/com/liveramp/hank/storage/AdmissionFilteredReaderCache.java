@@ -0,0 +1,99 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+
+import com.liveramp.hank.util.FrequencySketch;
+import com.liveramp.hank.util.StripedLongCollection;
+
+/**
+ * ReaderCache that only admits keys that were recently accessed more than once into the cache it
+ * wraps. Accesses are recorded in a frequency sketch, in the spirit of TinyLFU, so that keys read
+ * once by a scan do not evict the hot working set from the underlying LRU cache.
+ */
+public class AdmissionFilteredReaderCache implements ReaderCache {
+
+  private static final int MIN_ADMISSION_FREQUENCY = 2;
+  // Used to estimate the number of items of caches that are only bounded in bytes
+  private static final int ESTIMATED_ITEM_NUM_BYTES = 256;
+
+  private final ReaderCache cache;
+  private final FrequencySketch sketch;
+  // Admitted and rejected puts
+  private final StripedLongCollection admissionCounters = new StripedLongCollection(2);
+
+  public AdmissionFilteredReaderCache(ReaderCache cache, long numBytesCapacity, int numItemsCapacity) {
+    this(cache, new FrequencySketch(getNumSketchItems(numBytesCapacity, numItemsCapacity)));
+  }
+
+  public AdmissionFilteredReaderCache(ReaderCache cache, FrequencySketch sketch) {
+    this.cache = cache;
+    this.sketch = sketch;
+  }
+
+  private static long getNumSketchItems(long numBytesCapacity, int numItemsCapacity) {
+    if (numItemsCapacity > 0) {
+      return numItemsCapacity;
+    } else {
+      return numBytesCapacity / ESTIMATED_ITEM_NUM_BYTES;
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return cache.isEnabled();
+  }
+
+  @Override
+  public boolean get(ByteBuffer key, ReaderResult result) {
+    sketch.increment(key.hashCode());
+    return cache.get(key, result);
+  }
+
+  @Override
+  public void put(ByteBuffer key, ByteBuffer value) {
+    if (admit(key)) {
+      cache.put(key, value);
+    }
+  }
+
+  @Override
+  public void putNotFound(ByteBuffer key) {
+    if (admit(key)) {
+      cache.putNotFound(key);
+    }
+  }
+
+  private boolean admit(ByteBuffer key) {
+    if (sketch.frequency(key.hashCode()) >= MIN_ADMISSION_FREQUENCY) {
+      admissionCounters.get().increment(0, 1);
+      return true;
+    } else {
+      admissionCounters.get().increment(1, 1);
+      return false;
+    }
+  }
+
+  @Override
+  public CacheStatistics getCacheStatistics() {
+    CacheStatistics result = cache.getCacheStatistics();
+    long[] totals = admissionCounters.getTotals();
+    result.add(new CacheStatistics(0, 0, 0, 0, 0, 0, 0, 0, totals[0], totals[1]));
+    return result;
+  }
+}
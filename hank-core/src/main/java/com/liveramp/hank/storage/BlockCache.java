@@ -0,0 +1,123 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.liveramp.commons.util.MemoryUsageEstimator;
+import com.liveramp.hank.util.ConcurrentMemoryBoundCache;
+import com.liveramp.hank.util.MemoryBoundCache;
+
+/**
+ * Cache of decompressed blocks of partition files, keyed by file and block offset. A single cache is
+ * shared by all readers so that it is bounded by a global byte capacity, and a block decompressed for
+ * one key serves lookups of neighbouring keys from any thread. Each opened file is given a new
+ * identifier, so that blocks of files that were replaced are never served and are eventually evicted.
+ * Cached blocks are shared and must not be modified.
+ * A capacity that is not strictly positive disables the cache.
+ */
+public class BlockCache {
+
+  // Estimated size of a key and of the header of a block array
+  private static final long KEY_NUM_BYTES = 32;
+  private static final long ARRAY_OVERHEAD_NUM_BYTES = 16;
+
+  private final MemoryBoundCache<Key, byte[]> cache;
+  private final AtomicLong nextFileId = new AtomicLong(0);
+
+  public BlockCache(long numBytesCapacity) {
+    this.cache = new ConcurrentMemoryBoundCache<Key, byte[]>(
+        numBytesCapacity > 0,
+        numBytesCapacity,
+        -1,
+        new MemoryUsageEstimator<Key>() {
+          @Override
+          public long estimateMemorySize(Key key) {
+            return KEY_NUM_BYTES;
+          }
+        },
+        new MemoryUsageEstimator<byte[]>() {
+          @Override
+          public long estimateMemorySize(byte[] block) {
+            return ARRAY_OVERHEAD_NUM_BYTES + block.length;
+          }
+        });
+  }
+
+  public boolean isEnabled() {
+    return cache.isEnabled();
+  }
+
+  // Identifier under which the blocks of a newly opened file are cached
+  public long newFileId() {
+    return nextFileId.getAndIncrement();
+  }
+
+  // Return the decompressed block, or null if it is not cached
+  public byte[] get(long fileId, long blockOffset) {
+    if (!cache.isEnabled()) {
+      return null;
+    }
+    return cache.get(new Key(fileId, blockOffset));
+  }
+
+  // Cache a copy of the given decompressed block
+  public void put(long fileId, long blockOffset, byte[] block, int offset, int length) {
+    if (cache.isEnabled()) {
+      byte[] copy = new byte[length];
+      System.arraycopy(block, offset, copy, 0, length);
+      cache.put(new Key(fileId, blockOffset), copy);
+    }
+  }
+
+  public CacheStatistics getCacheStatistics() {
+    return new CacheStatistics(
+        cache.size(),
+        cache.getMaxNumItems(),
+        cache.getNumManagedBytes(),
+        cache.getMaxNumManagedBytes());
+  }
+
+  private static final class Key {
+
+    private final long fileId;
+    private final long blockOffset;
+
+    private Key(long fileId, long blockOffset) {
+      this.fileId = fileId;
+      this.blockOffset = blockOffset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key)o;
+      return fileId == key.fileId && blockOffset == key.blockOffset;
+    }
+
+    @Override
+    public int hashCode() {
+      long hash = fileId * 31 + blockOffset;
+      return (int)(hash ^ (hash >>> 32));
+    }
+  }
+}
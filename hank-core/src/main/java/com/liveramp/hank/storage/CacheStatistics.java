@@ -22,12 +22,57 @@ public class CacheStatistics {
   private long maxNumItems;
   private long numManagedBytes;
   private long maxNumManagedBytes;
+  private long numOffHeapBytes;
+  private long numFilterBytes;
+  private long numFilterNegatives;
+  private long numFilterFalsePositives;
+  private long numAdmissions;
+  private long numAdmissionRejections;
 
   public CacheStatistics(long numItems, long maxNumItems, long numManagedBytes, long maxNumManagedBytes) {
+    this(numItems, maxNumItems, numManagedBytes, maxNumManagedBytes, 0);
+  }
+
+  public CacheStatistics(long numItems,
+                         long maxNumItems,
+                         long numManagedBytes,
+                         long maxNumManagedBytes,
+                         long numOffHeapBytes) {
+    this(numItems, maxNumItems, numManagedBytes, maxNumManagedBytes, numOffHeapBytes, 0, 0, 0);
+  }
+
+  public CacheStatistics(long numItems,
+                         long maxNumItems,
+                         long numManagedBytes,
+                         long maxNumManagedBytes,
+                         long numOffHeapBytes,
+                         long numFilterBytes,
+                         long numFilterNegatives,
+                         long numFilterFalsePositives) {
+    this(numItems, maxNumItems, numManagedBytes, maxNumManagedBytes, numOffHeapBytes,
+        numFilterBytes, numFilterNegatives, numFilterFalsePositives, 0, 0);
+  }
+
+  public CacheStatistics(long numItems,
+                         long maxNumItems,
+                         long numManagedBytes,
+                         long maxNumManagedBytes,
+                         long numOffHeapBytes,
+                         long numFilterBytes,
+                         long numFilterNegatives,
+                         long numFilterFalsePositives,
+                         long numAdmissions,
+                         long numAdmissionRejections) {
     this.numItems = numItems;
     this.maxNumItems = maxNumItems;
     this.numManagedBytes = numManagedBytes;
     this.maxNumManagedBytes = maxNumManagedBytes;
+    this.numOffHeapBytes = numOffHeapBytes;
+    this.numFilterBytes = numFilterBytes;
+    this.numFilterNegatives = numFilterNegatives;
+    this.numFilterFalsePositives = numFilterFalsePositives;
+    this.numAdmissions = numAdmissions;
+    this.numAdmissionRejections = numAdmissionRejections;
   }
 
   public long getNumItems() {
@@ -46,11 +91,65 @@ public class CacheStatistics {
     return maxNumManagedBytes;
   }
 
+  // Number of bytes allocated outside of the Java heap
+  public long getNumOffHeapBytes() {
+    return numOffHeapBytes;
+  }
+
+  // Number of bytes used by key file filters
+  public long getNumFilterBytes() {
+    return numFilterBytes;
+  }
+
+  // Number of lookups of absent keys answered by key file filters
+  public long getNumFilterNegatives() {
+    return numFilterNegatives;
+  }
+
+  // Number of lookups of absent keys that key file filters failed to answer
+  public long getNumFilterFalsePositives() {
+    return numFilterFalsePositives;
+  }
+
+  public double getFilterFalsePositiveRate() {
+    long numAbsentKeyLookups = numFilterNegatives + numFilterFalsePositives;
+    if (numAbsentKeyLookups == 0) {
+      return 0;
+    } else {
+      return (double)numFilterFalsePositives / (double)numAbsentKeyLookups;
+    }
+  }
+
+  // Number of values admitted into caches that filter admissions
+  public long getNumAdmissions() {
+    return numAdmissions;
+  }
+
+  // Number of values that caches that filter admissions refused to store
+  public long getNumAdmissionRejections() {
+    return numAdmissionRejections;
+  }
+
+  public double getAdmissionRejectionRate() {
+    long numAdmissionCandidates = numAdmissions + numAdmissionRejections;
+    if (numAdmissionCandidates == 0) {
+      return 0;
+    } else {
+      return (double)numAdmissionRejections / (double)numAdmissionCandidates;
+    }
+  }
+
   public void add(CacheStatistics cacheStatistics) {
     this.numItems += cacheStatistics.numItems;
     this.maxNumItems += cacheStatistics.maxNumItems;
     this.numManagedBytes += cacheStatistics.numManagedBytes;
     this.maxNumManagedBytes += cacheStatistics.maxNumManagedBytes;
+    this.numOffHeapBytes += cacheStatistics.numOffHeapBytes;
+    this.numFilterBytes += cacheStatistics.numFilterBytes;
+    this.numFilterNegatives += cacheStatistics.numFilterNegatives;
+    this.numFilterFalsePositives += cacheStatistics.numFilterFalsePositives;
+    this.numAdmissions += cacheStatistics.numAdmissions;
+    this.numAdmissionRejections += cacheStatistics.numAdmissionRejections;
     if (this.maxNumItems < 0) {
       this.maxNumItems = -1;
     }
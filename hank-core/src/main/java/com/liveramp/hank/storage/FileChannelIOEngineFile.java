@@ -0,0 +1,69 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.storage;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// File read through a file channel. Submitted reads are executed by the given executor,
+// or immediately in the calling thread when there is none.
+class FileChannelIOEngineFile implements IOEngineFile {
+
+  private final FileChannel channel;
+  private final Executor executor;
+
+  FileChannelIOEngineFile(String path, Executor executor) throws IOException {
+    this.channel = new FileInputStream(path).getChannel();
+    this.executor = executor;
+  }
+
+  @Override
+  public FileChannel getChannel() {
+    return channel;
+  }
+
+  @Override
+  public int read(ByteBuffer buffer, long position) throws IOException {
+    return channel.read(buffer, position);
+  }
+
+  @Override
+  public Future<Integer> submitRead(final ByteBuffer buffer, final long position) {
+    FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+      @Override
+      public Integer call() throws IOException {
+        return channel.read(buffer, position);
+      }
+    });
+    if (executor == null) {
+      task.run();
+    } else {
+      executor.execute(task);
+    }
+    return task;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
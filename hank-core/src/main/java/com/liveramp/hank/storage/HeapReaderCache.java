@@ -0,0 +1,89 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+
+import com.liveramp.commons.util.ByteBufferMemoryUsageEstimator;
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.util.ConcurrentMemoryBoundCache;
+import com.liveramp.hank.util.MemoryBoundCache;
+
+public class HeapReaderCache implements ReaderCache {
+
+  private static final ByteBuffer NOT_FOUND_MARKER = ByteBuffer.wrap(new byte[]{});
+
+  private final MemoryBoundCache<ByteBuffer, ByteBuffer> cache;
+
+  public HeapReaderCache(long numBytesCapacity, int numItemsCapacity) {
+    this(new ConcurrentMemoryBoundCache<ByteBuffer, ByteBuffer>(
+        numBytesCapacity > 0 || numItemsCapacity > 0,
+        numBytesCapacity,
+        numItemsCapacity,
+        new ByteBufferMemoryUsageEstimator(),
+        new ByteBufferMemoryUsageEstimator()));
+  }
+
+  public HeapReaderCache(MemoryBoundCache<ByteBuffer, ByteBuffer> cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return cache.isEnabled();
+  }
+
+  @Override
+  public boolean get(ByteBuffer key, ReaderResult result) {
+    ByteBuffer value = cache.get(key);
+    if (value == null) {
+      return false;
+    }
+    // Compare against the not found marker (note that this is an address equality
+    // and not an object equality on purpose)
+    if (value != NOT_FOUND_MARKER) {
+      result.deepCopyIntoResultBuffer(value);
+      result.found();
+    } else {
+      result.notFound();
+    }
+    return true;
+  }
+
+  @Override
+  public void put(ByteBuffer key, ByteBuffer value) {
+    if (cache.isEnabled()) {
+      cache.put(BytesUtils.byteBufferDeepCopy(key), BytesUtils.byteBufferDeepCopy(value));
+    }
+  }
+
+  @Override
+  public void putNotFound(ByteBuffer key) {
+    if (cache.isEnabled()) {
+      cache.put(BytesUtils.byteBufferDeepCopy(key), NOT_FOUND_MARKER);
+    }
+  }
+
+  @Override
+  public CacheStatistics getCacheStatistics() {
+    return new CacheStatistics(
+        cache.size(),
+        cache.getMaxNumItems(),
+        cache.getNumManagedBytes(),
+        cache.getMaxNumManagedBytes());
+  }
+}
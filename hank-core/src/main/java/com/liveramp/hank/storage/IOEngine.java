@@ -0,0 +1,33 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.storage;
+
+import java.io.IOException;
+
+/**
+ * Performs the positional reads of partition files. Engines decide where and when reads are
+ * executed, which lets batched lookups keep several reads in flight at once, while single
+ * lookups keep reading in the calling thread.
+ */
+public interface IOEngine {
+
+  public IOEngineFile open(String path) throws IOException;
+
+  // Number of reads that a single batch of lookups should keep in flight
+  public int getMaxNumReadsInFlight();
+
+  public void close();
+}
@@ -0,0 +1,39 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Future;
+
+/**
+ * File opened through an IOEngine.
+ */
+public interface IOEngineFile {
+
+  // Channel of the underlying file, for reads that do not go through the engine (footers, mappings)
+  public FileChannel getChannel();
+
+  // Read from the given position into the given buffer in the calling thread
+  public int read(ByteBuffer buffer, long position) throws IOException;
+
+  // Start reading from the given position into the given buffer. The buffer must not be accessed
+  // until the returned read is done.
+  public Future<Integer> submitRead(ByteBuffer buffer, long position);
+
+  public void close() throws IOException;
+}
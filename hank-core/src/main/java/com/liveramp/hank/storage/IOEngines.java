@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.storage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+public class IOEngines {
+
+  private IOEngines() {
+  }
+
+  public static IOEngine create(Collection<String> dataDirectories, int numThreadsPerDataDirectory) {
+    if (numThreadsPerDataDirectory > 0) {
+      return new ThreadPoolIOEngine(dataDirectories, numThreadsPerDataDirectory);
+    } else {
+      return new SynchronousIOEngine();
+    }
+  }
+
+  // Wait for the given read to be done and return the number of bytes read
+  public static int waitFor(Future<Integer> read) throws IOException {
+    try {
+      return read.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for read");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      } else {
+        throw new IOException("Read failed", e.getCause());
+      }
+    }
+  }
+
+  // Wait for all the given reads to be done, ignoring their failures
+  public static void waitForAll(List<Future<Integer>> reads) {
+    boolean interrupted = false;
+    for (Future<Integer> read : reads) {
+      while (true) {
+        try {
+          read.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
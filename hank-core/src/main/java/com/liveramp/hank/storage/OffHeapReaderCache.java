@@ -0,0 +1,345 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ReaderCache that stores keys and values outside of the Java heap, so that large caches do not
+ * put pressure on the garbage collector. The cache is split into independently locked stripes.
+ * Each stripe owns one slab of direct memory that is used as a circular log: entries are appended
+ * at the head, and the oldest entries are evicted from the tail when the slab or the item capacity
+ * is exhausted. Keys are indexed by an open addressing hash table made of primitive arrays.
+ * <p/>
+ * Slabs are allocated lazily, the first time a value is added to their stripe.
+ */
+public class OffHeapReaderCache implements ReaderCache {
+
+  private static final int MAX_NUM_STRIPES = 64;
+  private static final int MIN_STRIPE_NUM_BYTES = 1 << 20;
+
+  private final Stripe[] stripes;
+  private final int stripeMask;
+  private final long numBytesCapacity;
+  private final int numItemsCapacity;
+
+  public OffHeapReaderCache(long numBytesCapacity, int numItemsCapacity) {
+    this(numBytesCapacity, numItemsCapacity, getDefaultNumStripes(numBytesCapacity));
+  }
+
+  public OffHeapReaderCache(long numBytesCapacity, int numItemsCapacity, int numStripes) {
+    if (numBytesCapacity <= 0) {
+      throw new IllegalArgumentException("Off-heap cache requires a positive byte capacity: " + numBytesCapacity);
+    }
+    if (numStripes <= 0 || (numStripes & (numStripes - 1)) != 0) {
+      throw new IllegalArgumentException("Number of stripes must be a positive power of two: " + numStripes);
+    }
+    if (numBytesCapacity / numStripes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Stripes cannot be larger than " + Integer.MAX_VALUE + " bytes");
+    }
+    int stripeNumBytesCapacity = (int)(numBytesCapacity / numStripes);
+    int stripeNumItemsCapacity = numItemsCapacity > 0 ? Math.max(1, numItemsCapacity / numStripes) : -1;
+    this.stripes = new Stripe[numStripes];
+    for (int i = 0; i < numStripes; ++i) {
+      stripes[i] = new Stripe(stripeNumBytesCapacity, stripeNumItemsCapacity);
+    }
+    this.stripeMask = numStripes - 1;
+    this.numBytesCapacity = (long)stripeNumBytesCapacity * numStripes;
+    this.numItemsCapacity = numItemsCapacity > 0 ? stripeNumItemsCapacity * numStripes : -1;
+  }
+
+  static int getDefaultNumStripes(long numBytesCapacity) {
+    int numStripes = Math.min(MAX_NUM_STRIPES, Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors()));
+    while (numStripes > 1 && numBytesCapacity / numStripes < MIN_STRIPE_NUM_BYTES) {
+      numStripes >>= 1;
+    }
+    // A single slab is limited to 2GB
+    while (numBytesCapacity / numStripes > Integer.MAX_VALUE) {
+      numStripes <<= 1;
+    }
+    return numStripes;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public boolean get(ByteBuffer key, ReaderResult result) {
+    int hash = hash(key);
+    return getStripe(hash).get(key, hash, result);
+  }
+
+  @Override
+  public void put(ByteBuffer key, ByteBuffer value) {
+    int hash = hash(key);
+    getStripe(hash).put(key, hash, value);
+  }
+
+  @Override
+  public void putNotFound(ByteBuffer key) {
+    int hash = hash(key);
+    getStripe(hash).put(key, hash, null);
+  }
+
+  @Override
+  public CacheStatistics getCacheStatistics() {
+    long numItems = 0;
+    long numManagedBytes = 0;
+    long numOffHeapBytes = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        numItems += stripe.numItems;
+        numManagedBytes += stripe.numUsedBytes;
+        numOffHeapBytes += stripe.slab == null ? 0 : stripe.capacity;
+      }
+    }
+    return new CacheStatistics(numItems, numItemsCapacity, numManagedBytes, numBytesCapacity, numOffHeapBytes);
+  }
+
+  int getNumStripes() {
+    return stripes.length;
+  }
+
+  private Stripe getStripe(int hash) {
+    // Use different bits than the stripe's index to select the stripe
+    return stripes[((hash * 0x9E3779B9) >>> 16) & stripeMask];
+  }
+
+  private static int hash(ByteBuffer key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static class Stripe {
+
+    // Entry layout: entry length, key hash, key length, value length, key, value
+    private static final int HEADER_SIZE = 16;
+    private static final int NOT_FOUND_VALUE_LENGTH = -1;
+    // Marks the unused end of the slab when the head wraps around
+    private static final int WRAP_MARKER = -1;
+    private static final int INITIAL_INDEX_CAPACITY = 16;
+
+    private final int capacity;
+    private final int maxNumItems;
+
+    private ByteBuffer slab;
+    // Used under the stripe lock to copy from and to the slab without allocating
+    private ByteBuffer slabView;
+    private int head = 0;
+    private int tail = 0;
+    private int numUsedBytes = 0;
+
+    // Index slots hold the entry offset plus one (zero means empty) and the key hash
+    private int[] indexOffsets = new int[INITIAL_INDEX_CAPACITY];
+    private int[] indexHashes = new int[INITIAL_INDEX_CAPACITY];
+    private int numItems = 0;
+
+    Stripe(int capacity, int maxNumItems) {
+      this.capacity = capacity;
+      this.maxNumItems = maxNumItems;
+    }
+
+    synchronized boolean get(ByteBuffer key, int hash, ReaderResult result) {
+      if (slab == null) {
+        return false;
+      }
+      int slot = findSlot(key, hash);
+      if (slot < 0) {
+        return false;
+      }
+      int offset = indexOffsets[slot] - 1;
+      int keyLength = slab.getInt(offset + 8);
+      int valueLength = slab.getInt(offset + 12);
+      if (valueLength == NOT_FOUND_VALUE_LENGTH) {
+        result.notFound();
+      } else {
+        int valueOffset = offset + HEADER_SIZE + keyLength;
+        result.requiresBufferSize(valueLength);
+        ByteBuffer buffer = result.getBuffer();
+        buffer.clear();
+        slabView.limit(valueOffset + valueLength);
+        slabView.position(valueOffset);
+        buffer.put(slabView);
+        buffer.flip();
+        result.found();
+      }
+      return true;
+    }
+
+    synchronized void put(ByteBuffer key, int hash, ByteBuffer value) {
+      int keyLength = key.remaining();
+      int valueLength = value == null ? NOT_FOUND_VALUE_LENGTH : value.remaining();
+      long entryLength = (long)HEADER_SIZE + keyLength + Math.max(0, valueLength);
+      if (entryLength > capacity) {
+        return;
+      }
+      if (slab == null) {
+        slab = ByteBuffer.allocateDirect(capacity);
+        slabView = slab.duplicate();
+      }
+      // Replaced entries are left in the slab and skipped when evicted
+      int existingSlot = findSlot(key, hash);
+      if (existingSlot >= 0) {
+        removeSlot(existingSlot);
+      }
+      while (maxNumItems > 0 && numItems >= maxNumItems) {
+        evictTail();
+      }
+      int offset = allocate((int)entryLength);
+      slab.putInt(offset, (int)entryLength);
+      slab.putInt(offset + 4, hash);
+      slab.putInt(offset + 8, keyLength);
+      slab.putInt(offset + 12, valueLength);
+      slabView.clear();
+      slabView.position(offset + HEADER_SIZE);
+      slabView.put(key.duplicate());
+      if (value != null) {
+        slabView.put(value.duplicate());
+      }
+      insertSlot(offset, hash);
+    }
+
+    // Return the offset of a contiguous region of the given length, evicting entries as needed
+    private int allocate(int length) {
+      while (true) {
+        if (numUsedBytes == 0) {
+          head = 0;
+          tail = 0;
+        }
+        if (numUsedBytes == 0 || head > tail) {
+          if (capacity - head >= length) {
+            break;
+          }
+          // Not enough room before the end of the slab, wrap around
+          if (capacity - head >= 4) {
+            slab.putInt(head, WRAP_MARKER);
+          }
+          numUsedBytes += capacity - head;
+          head = 0;
+        } else {
+          if (tail - head >= length) {
+            break;
+          }
+          evictTail();
+        }
+      }
+      int offset = head;
+      head += length;
+      numUsedBytes += length;
+      return offset;
+    }
+
+    private void evictTail() {
+      if (capacity - tail < 4 || slab.getInt(tail) == WRAP_MARKER) {
+        numUsedBytes -= capacity - tail;
+        tail = 0;
+        return;
+      }
+      int entryLength = slab.getInt(tail);
+      int hash = slab.getInt(tail + 4);
+      int mask = indexOffsets.length - 1;
+      for (int i = hash & mask; indexOffsets[i] != 0; i = (i + 1) & mask) {
+        if (indexOffsets[i] - 1 == tail) {
+          removeSlot(i);
+          break;
+        }
+      }
+      numUsedBytes -= entryLength;
+      tail += entryLength;
+    }
+
+    private int findSlot(ByteBuffer key, int hash) {
+      int mask = indexOffsets.length - 1;
+      for (int i = hash & mask; indexOffsets[i] != 0; i = (i + 1) & mask) {
+        if (indexHashes[i] == hash && keyEquals(indexOffsets[i] - 1, key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private boolean keyEquals(int offset, ByteBuffer key) {
+      int keyLength = key.remaining();
+      if (slab.getInt(offset + 8) != keyLength) {
+        return false;
+      }
+      int keyOffset = offset + HEADER_SIZE;
+      int position = key.position();
+      for (int i = 0; i < keyLength; ++i) {
+        if (slab.get(keyOffset + i) != key.get(position + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void insertSlot(int offset, int hash) {
+      if ((numItems + 1) * 2 > indexOffsets.length) {
+        resizeIndex(indexOffsets.length * 2);
+      }
+      int mask = indexOffsets.length - 1;
+      int i = hash & mask;
+      while (indexOffsets[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      indexOffsets[i] = offset + 1;
+      indexHashes[i] = hash;
+      ++numItems;
+    }
+
+    // Backward shift deletion, so that probe sequences never contain holes
+    private void removeSlot(int i) {
+      int mask = indexOffsets.length - 1;
+      int j = i;
+      while (true) {
+        j = (j + 1) & mask;
+        if (indexOffsets[j] == 0) {
+          break;
+        }
+        int k = indexHashes[j] & mask;
+        boolean inPlace = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+        if (!inPlace) {
+          indexOffsets[i] = indexOffsets[j];
+          indexHashes[i] = indexHashes[j];
+          i = j;
+        }
+      }
+      indexOffsets[i] = 0;
+      --numItems;
+    }
+
+    private void resizeIndex(int newCapacity) {
+      int[] oldOffsets = indexOffsets;
+      int[] oldHashes = indexHashes;
+      indexOffsets = new int[newCapacity];
+      indexHashes = new int[newCapacity];
+      int mask = newCapacity - 1;
+      for (int i = 0; i < oldOffsets.length; ++i) {
+        if (oldOffsets[i] != 0) {
+          int j = oldHashes[i] & mask;
+          while (indexOffsets[j] != 0) {
+            j = (j + 1) & mask;
+          }
+          indexOffsets[j] = oldOffsets[i];
+          indexHashes[j] = oldHashes[i];
+        }
+      }
+    }
+  }
+}
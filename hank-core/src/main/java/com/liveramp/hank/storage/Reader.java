@@ -17,6 +17,7 @@ package com.liveramp.hank.storage;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * Interface through which individual partitions are queried.
@@ -25,6 +26,10 @@ public interface Reader {
 
   public void get(ByteBuffer key, ReaderResult result) throws IOException;
 
+  // Look up a batch of keys. The result of each key is stored in the result at the same index.
+  // Implementations can reorder lookups so that data shared by several keys is only read once.
+  public void getBulk(List<ByteBuffer> keys, List<ReaderResult> results) throws IOException;
+
   // null means no versioning
   public Integer getVersionNumber();
 
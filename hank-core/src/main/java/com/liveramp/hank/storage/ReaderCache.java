@@ -0,0 +1,38 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cache used by Readers to store values (or the fact that a key was not found) by key.
+ * Implementations copy the keys and values they retain, so callers can reuse their buffers.
+ */
+public interface ReaderCache {
+
+  public boolean isEnabled();
+
+  // Return true if the key is cached. In that case, result is marked found and the value is copied
+  // into its buffer, or result is marked not found if the key is cached as not found.
+  public boolean get(ByteBuffer key, ReaderResult result);
+
+  public void put(ByteBuffer key, ByteBuffer value);
+
+  public void putNotFound(ByteBuffer key);
+
+  public CacheStatistics getCacheStatistics();
+}
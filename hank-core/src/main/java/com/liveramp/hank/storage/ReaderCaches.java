@@ -0,0 +1,55 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.hank.config.ReaderConfigurator;
+
+public class ReaderCaches {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReaderCaches.class);
+
+  private ReaderCaches() {
+  }
+
+  public static ReaderCache create(ReaderConfigurator configurator) {
+    ReaderCache cache = create(configurator.getCacheNumBytesCapacity(),
+        (int)configurator.getCacheNumItemsCapacity(),
+        configurator.getUseOffHeapCache());
+    if (configurator.getUseCacheAdmissionFilter() && cache.isEnabled()) {
+      return new AdmissionFilteredReaderCache(cache,
+          configurator.getCacheNumBytesCapacity(),
+          (int)configurator.getCacheNumItemsCapacity());
+    } else {
+      return cache;
+    }
+  }
+
+  public static ReaderCache create(long numBytesCapacity, int numItemsCapacity, boolean useOffHeapCache) {
+    if (useOffHeapCache) {
+      if (numBytesCapacity > 0) {
+        return new OffHeapReaderCache(numBytesCapacity, numItemsCapacity);
+      } else if (numItemsCapacity > 0) {
+        LOG.warn("Off-heap cache requires a byte capacity. Using an on-heap cache bounded by "
+            + numItemsCapacity + " items instead.");
+      }
+    }
+    return new HeapReaderCache(numBytesCapacity, numItemsCapacity);
+  }
+}
@@ -24,8 +24,13 @@ public class ReaderResult {
   private boolean isFound = false;
 
   private ByteBuffer buffer;
+  // Value owned by the Reader (e.g. a region of a memory mapped file) that is exposed instead of buffer
+  private ByteBuffer view;
   private boolean l1CacheHit = false;
   private boolean l2CacheHit = false;
+  private boolean memoryMappedRead = false;
+  // The value was found in a block served by the shared decompressed block cache
+  private boolean blockCacheHit = false;
 
   public ReaderResult() {
   }
@@ -38,6 +43,9 @@ public class ReaderResult {
     isFound = false;
     l1CacheHit = false;
     l2CacheHit = false;
+    memoryMappedRead = false;
+    blockCacheHit = false;
+    view = null;
     if (buffer != null) {
       buffer.clear();
     }
@@ -56,15 +64,29 @@ public class ReaderResult {
   }
 
   public void requiresBufferSize(int size) {
+    view = null;
     if (buffer == null || buffer.capacity() < size) {
       buffer = ByteBuffer.wrap(new byte[size]);
     }
   }
 
   public ByteBuffer getBuffer() {
+    if (view != null) {
+      return view;
+    }
     return buffer;
   }
 
+  // Expose the given value without copying it. The view is not necessarily backed by an array and
+  // is dropped by the next call to clear() or requiresBufferSize().
+  public void setView(ByteBuffer view) {
+    this.view = view;
+  }
+
+  public boolean isView() {
+    return view != null;
+  }
+
   public boolean getL1CacheHit() {
     return l1CacheHit;
   }
@@ -81,10 +103,31 @@ public class ReaderResult {
     this.l2CacheHit = l2CacheHit;
   }
 
+  public boolean getMemoryMappedRead() {
+    return memoryMappedRead;
+  }
+
+  public void setMemoryMappedRead(boolean memoryMappedRead) {
+    this.memoryMappedRead = memoryMappedRead;
+  }
+
+  public boolean getBlockCacheHit() {
+    return blockCacheHit;
+  }
+
+  public void setBlockCacheHit(boolean blockCacheHit) {
+    this.blockCacheHit = blockCacheHit;
+  }
+
   public void deepCopyIntoResultBuffer(ByteBuffer value) {
     requiresBufferSize(value.remaining());
     buffer.clear();
-    buffer.put(value.slice());
+    if (value.hasArray()) {
+      // Copy from the backing array, without creating a slice or modifying the shared value
+      buffer.put(value.array(), value.arrayOffset() + value.position(), value.remaining());
+    } else {
+      buffer.put(value.slice());
+    }
     buffer.flip();
   }
 
@@ -94,7 +137,7 @@ public class ReaderResult {
     sb.append(isFound);
     if (isFound) {
       sb.append(", data=");
-      sb.append(BytesUtils.bytesToHexString(buffer));
+      sb.append(BytesUtils.bytesToHexString(getBuffer()));
     }
     sb.append("]");
     return sb.toString();
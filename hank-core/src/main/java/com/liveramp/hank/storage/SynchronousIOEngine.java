@@ -0,0 +1,43 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.storage;
+
+import java.io.IOException;
+
+/**
+ * Reads in the calling thread, one read at a time.
+ */
+public class SynchronousIOEngine implements IOEngine {
+
+  @Override
+  public IOEngineFile open(String path) throws IOException {
+    return new FileChannelIOEngineFile(path, null);
+  }
+
+  @Override
+  public int getMaxNumReadsInFlight() {
+    return 1;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public String toString() {
+    return "SynchronousIOEngine";
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.storage;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes submitted reads on a pool of threads per data directory, so that each disk has its own
+ * queue of reads and a slow disk does not hold up reads of the others. Files outside of the given
+ * data directories share an additional pool. Idle threads are released.
+ */
+public class ThreadPoolIOEngine implements IOEngine {
+
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+  private static final String DEFAULT_POOL_NAME = "default";
+
+  private final Map<String, ThreadPoolExecutor> dataDirectoryToExecutor = new HashMap<String, ThreadPoolExecutor>();
+  private final ThreadPoolExecutor defaultExecutor;
+  private final int numThreadsPerDataDirectory;
+
+  public ThreadPoolIOEngine(Collection<String> dataDirectories, int numThreadsPerDataDirectory) {
+    if (numThreadsPerDataDirectory <= 0) {
+      throw new IllegalArgumentException("Number of threads per data directory must be positive: " + numThreadsPerDataDirectory);
+    }
+    this.numThreadsPerDataDirectory = numThreadsPerDataDirectory;
+    for (String dataDirectory : dataDirectories) {
+      dataDirectoryToExecutor.put(dataDirectory, createExecutor(dataDirectory));
+    }
+    defaultExecutor = createExecutor(DEFAULT_POOL_NAME);
+  }
+
+  private ThreadPoolExecutor createExecutor(String name) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        numThreadsPerDataDirectory,
+        numThreadsPerDataDirectory,
+        THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new IOEngineThreadFactory(name));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  @Override
+  public IOEngineFile open(String path) throws IOException {
+    return new FileChannelIOEngineFile(path, getExecutor(path));
+  }
+
+  // Pick the pool of the longest data directory containing the given path
+  private ExecutorService getExecutor(String path) {
+    String bestDataDirectory = null;
+    for (String dataDirectory : dataDirectoryToExecutor.keySet()) {
+      if (path.startsWith(dataDirectory)
+          && (bestDataDirectory == null || dataDirectory.length() > bestDataDirectory.length())) {
+        bestDataDirectory = dataDirectory;
+      }
+    }
+    return bestDataDirectory == null ? defaultExecutor : dataDirectoryToExecutor.get(bestDataDirectory);
+  }
+
+  @Override
+  public int getMaxNumReadsInFlight() {
+    return numThreadsPerDataDirectory;
+  }
+
+  @Override
+  public void close() {
+    for (ExecutorService executor : dataDirectoryToExecutor.values()) {
+      executor.shutdown();
+    }
+    defaultExecutor.shutdown();
+  }
+
+  @Override
+  public String toString() {
+    return "ThreadPoolIOEngine [dataDirectories=" + dataDirectoryToExecutor.keySet()
+        + ", numThreadsPerDataDirectory=" + numThreadsPerDataDirectory
+        + "]";
+  }
+
+  private static class IOEngineThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final AtomicInteger threadId = new AtomicInteger(0);
+
+    public IOEngineThreadFactory(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "IO Engine Thread: " + name + " #" + threadId.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
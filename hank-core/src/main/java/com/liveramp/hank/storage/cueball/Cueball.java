@@ -43,6 +43,7 @@ import com.liveramp.hank.storage.PartitionRemoteFileOps;
 import com.liveramp.hank.storage.PartitionRemoteFileOpsFactory;
 import com.liveramp.hank.storage.PartitionUpdater;
 import com.liveramp.hank.storage.Reader;
+import com.liveramp.hank.storage.ReaderCaches;
 import com.liveramp.hank.storage.RemoteDomainCleaner;
 import com.liveramp.hank.storage.RemoteDomainVersionDeleter;
 import com.liveramp.hank.storage.StorageEngine;
@@ -185,8 +186,11 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
         valueSize,
         hashIndexBits,
         getCompressionCodec(),
-        configurator.getCacheNumBytesCapacity(),
-        (int)configurator.getCacheNumItemsCapacity());
+        ReaderCaches.create(configurator),
+        configurator.getUseMemoryMappedFiles(),
+        configurator.getKeyFileFilterBitsPerKey(),
+        configurator.getIOEngine(),
+        configurator.getBlockCache());
   }
 
   private CueballCompressionCodec getCompressionCodec() throws IOException {
@@ -231,12 +235,13 @@ public class Cueball extends IncrementalStorageEngine implements StorageEngine {
     String localDir = getTargetDirectory(configurator, partitionNumber);
     return new CueballPartitionUpdater(domain,
         getPartitionRemoteFileOps(partitionNumber),
-        new CueballMerger(),
+        new CueballMerger(configurator.getUpdateMergeParallelism(), configurator.getKeyFileFilterBitsPerKey()),
         keyHashSize,
         valueSize,
         hashIndexBits,
         getCompressionCodec(),
-        localDir);
+        localDir,
+        configurator.getUpdateStreamDeltas());
   }
 
   @Override
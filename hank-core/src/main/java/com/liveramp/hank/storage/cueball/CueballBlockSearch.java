@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage.cueball;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Search of key hashes among the records of a decompressed Cueball block. Records have a fixed
+ * size and are sorted by key hash, so the record at any index can be addressed directly and the
+ * block can be searched by bisection instead of being scanned from its start.
+ */
+public final class CueballBlockSearch {
+
+  // Below this number of candidate records, scanning them is cheaper than bisecting further
+  static final int MAX_NUM_RECORDS_SCANNED = 16;
+
+  private CueballBlockSearch() {
+  }
+
+  /**
+   * Return the offset of the first record in [offset, limit) whose key hash is not less than the
+   * given key hash, or limit if there is no such record.
+   */
+  public static int lowerBound(byte[] block, int offset, int limit, int recordSize,
+                               byte[] keyHash, int keyHashOffset, int keyHashSize) {
+    // The result is the record at an index in [low, high]
+    int low = 0;
+    int high = (limit - offset) / recordSize;
+    while (high - low > MAX_NUM_RECORDS_SCANNED) {
+      int middle = (low + high) >>> 1;
+      if (compareKeyHashes(block, offset + middle * recordSize, keyHash, keyHashOffset, keyHashSize) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return scanLowerBound(block, offset + low * recordSize, offset + high * recordSize, recordSize,
+        keyHash, keyHashOffset, keyHashSize);
+  }
+
+  /**
+   * Same as lowerBound, by scanning records in order. This is preferable when the result is
+   * expected to be within the first few records.
+   */
+  public static int scanLowerBound(byte[] block, int offset, int limit, int recordSize,
+                                   byte[] keyHash, int keyHashOffset, int keyHashSize) {
+    while (offset < limit && compareKeyHashes(block, offset, keyHash, keyHashOffset, keyHashSize) < 0) {
+      offset += recordSize;
+    }
+    return offset;
+  }
+
+  /**
+   * Unsigned lexicographic comparison of two key hashes, eight bytes at a time. Return -1, 0 or 1.
+   * Heap buffers read big endian longs with a single load, and wrapping them does not allocate
+   * once compiled.
+   */
+  public static int compareKeyHashes(byte[] a, int aOffset, byte[] b, int bOffset, int keyHashSize) {
+    int i = 0;
+    if (keyHashSize >= 8) {
+      ByteBuffer aBuffer = ByteBuffer.wrap(a);
+      ByteBuffer bBuffer = ByteBuffer.wrap(b);
+      for (; i + 8 <= keyHashSize; i += 8) {
+        long x = aBuffer.getLong(aOffset + i);
+        long y = bBuffer.getLong(bOffset + i);
+        if (x != y) {
+          // Flipping the sign bit orders longs as unsigned values
+          return (x ^ Long.MIN_VALUE) < (y ^ Long.MIN_VALUE) ? -1 : 1;
+        }
+      }
+    }
+    for (; i < keyHashSize; ++i) {
+      int x = a[aOffset + i] & 0xff;
+      int y = b[bOffset + i] & 0xff;
+      if (x != y) {
+        return x < y ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+}
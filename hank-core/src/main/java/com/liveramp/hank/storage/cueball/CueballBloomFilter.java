@@ -0,0 +1,281 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage.cueball;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.util.EncodingHelper;
+
+/**
+ * Bloom filter over the key hashes of a Cueball file, used to answer most lookups of absent keys
+ * without reading a block. The filter is made of one independent section per hash prefix, sized
+ * by the number of keys in the corresponding block, so that it can be built block by block while
+ * writing and so that filters covering disjoint ranges of hash prefixes can be combined.
+ *
+ * It is stored in its own file next to the key file, as the section bits followed by the offset
+ * of each section, the number of hash functions and the number of keys.
+ */
+public final class CueballBloomFilter {
+
+  public static final String FILE_SUFFIX = ".filter";
+
+  private final int[] sectionOffsets;
+  private final byte[] bits;
+  private final int numHashFunctions;
+  private final long numKeys;
+
+  private CueballBloomFilter(int[] sectionOffsets, byte[] bits, int numHashFunctions, long numKeys) {
+    this.sectionOffsets = sectionOffsets;
+    this.bits = bits;
+    this.numHashFunctions = numHashFunctions;
+    this.numKeys = numKeys;
+  }
+
+  public static String getPath(String keyFilePath) {
+    return keyFilePath + FILE_SUFFIX;
+  }
+
+  /**
+   * @return false if the given key hash is definitely not in the block of the given hash prefix
+   */
+  public boolean mightContain(byte[] keyHash, int off, int keyHashSize, int hashPrefix) {
+    int sectionOffset = sectionOffsets[hashPrefix];
+    int sectionNumBytes = sectionOffsets[hashPrefix + 1] - sectionOffset;
+    if (sectionNumBytes == 0) {
+      return false;
+    }
+    long sectionNumBits = (long)sectionNumBytes << 3;
+    long hash = hash(keyHash, off, keyHashSize);
+    long h1 = hash & 0xffffffffL;
+    long h2 = hash >>> 32;
+    for (int i = 0; i < numHashFunctions; ++i) {
+      long bit = (h1 + i * h2) % sectionNumBits;
+      if ((bits[sectionOffset + (int)(bit >>> 3)] & (1 << (bit & 7))) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long getNumKeys() {
+    return numKeys;
+  }
+
+  // Memory used by the filter
+  public long getNumBytes() {
+    return bits.length + 4L * sectionOffsets.length;
+  }
+
+  public double getExpectedFalsePositiveRate() {
+    if (bits.length == 0) {
+      return 0;
+    }
+    double numBits = (double)bits.length * 8;
+    return Math.pow(1 - Math.exp(-numHashFunctions * numKeys / numBits), numHashFunctions);
+  }
+
+  public void write(OutputStream outputStream) throws IOException {
+    outputStream.write(bits);
+    byte[] trailer = new byte[getTrailerLength(sectionOffsets.length)];
+    for (int i = 0; i < sectionOffsets.length; ++i) {
+      EncodingHelper.encodeLittleEndianFixedWidthLong(sectionOffsets[i], trailer, i * 4, 4);
+    }
+    EncodingHelper.encodeLittleEndianFixedWidthLong(numHashFunctions, trailer, trailer.length - 12, 4);
+    EncodingHelper.encodeLittleEndianFixedWidthLong(numKeys, trailer, trailer.length - 8, 8);
+    outputStream.write(trailer);
+  }
+
+  public void write(String path) throws IOException {
+    OutputStream outputStream = new FileOutputStream(path);
+    try {
+      write(outputStream);
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  public static CueballBloomFilter read(String path, int hashIndexBits) throws IOException {
+    byte[] data = Files.readAllBytes(new File(path).toPath());
+    int numSectionOffsets = (1 << hashIndexBits) + 1;
+    int trailerOffset = data.length - getTrailerLength(numSectionOffsets);
+    if (trailerOffset < 0) {
+      throw new IOException("Filter " + path + " is too short: " + data.length + " bytes");
+    }
+    int[] sectionOffsets = new int[numSectionOffsets];
+    for (int i = 0; i < numSectionOffsets; ++i) {
+      sectionOffsets[i] = (int)EncodingHelper.decodeLittleEndianFixedWidthLong(data, trailerOffset + i * 4, 4);
+      if (i > 0 && sectionOffsets[i] < sectionOffsets[i - 1]) {
+        throw new IOException("Filter " + path + " has decreasing section offsets at hash prefix " + i);
+      }
+    }
+    if (sectionOffsets[0] != 0 || sectionOffsets[numSectionOffsets - 1] != trailerOffset) {
+      throw new IOException("Filter " + path + " section offsets do not match its size of " + data.length + " bytes");
+    }
+    int numHashFunctions = (int)EncodingHelper.decodeLittleEndianFixedWidthLong(data, data.length - 12, 4);
+    long numKeys = EncodingHelper.decodeLittleEndianFixedWidthLong(data, data.length - 8, 8);
+    return new CueballBloomFilter(sectionOffsets, Arrays.copyOf(data, trailerOffset), numHashFunctions, numKeys);
+  }
+
+  /**
+   * Build the filter of an existing key file by reading all its blocks.
+   */
+  public static CueballBloomFilter build(String keyFilePath,
+                                         int keyHashSize,
+                                         int valueSize,
+                                         int hashIndexBits,
+                                         CueballCompressionCodec compressionCodec,
+                                         int bitsPerKey) throws IOException {
+    Builder builder = new Builder(hashIndexBits, bitsPerKey);
+    CueballStreamBuffer streamBuffer =
+        new CueballStreamBuffer(keyFilePath, 0, keyHashSize, valueSize, hashIndexBits, compressionCodec);
+    try {
+      while (streamBuffer.anyRemaining()) {
+        builder.addBlock(streamBuffer.getCurrentHashIndexIdx(), streamBuffer.getBuffer(),
+            streamBuffer.getCurrentOffset(), streamBuffer.getCurrentLimit(), keyHashSize, keyHashSize + valueSize);
+        streamBuffer.consumeBlock();
+      }
+    } finally {
+      streamBuffer.close();
+    }
+    return builder.build();
+  }
+
+  /**
+   * Combine filters of files covering disjoint ranges of hash prefixes.
+   */
+  public static CueballBloomFilter combine(List<CueballBloomFilter> filters) {
+    int numSectionOffsets = filters.get(0).sectionOffsets.length;
+    int numHashFunctions = filters.get(0).numHashFunctions;
+    int numBytes = 0;
+    long numKeys = 0;
+    for (CueballBloomFilter filter : filters) {
+      if (filter.sectionOffsets.length != numSectionOffsets || filter.numHashFunctions != numHashFunctions) {
+        throw new IllegalArgumentException("Cannot combine filters with different layouts");
+      }
+      numBytes += filter.bits.length;
+      numKeys += filter.numKeys;
+    }
+    int[] sectionOffsets = new int[numSectionOffsets];
+    byte[] bits = new byte[numBytes];
+    int offset = 0;
+    for (int hashPrefix = 0; hashPrefix < numSectionOffsets - 1; ++hashPrefix) {
+      sectionOffsets[hashPrefix] = offset;
+      for (CueballBloomFilter filter : filters) {
+        int sectionOffset = filter.sectionOffsets[hashPrefix];
+        int sectionNumBytes = filter.sectionOffsets[hashPrefix + 1] - sectionOffset;
+        if (sectionNumBytes > 0) {
+          if (offset != sectionOffsets[hashPrefix]) {
+            throw new IllegalArgumentException("Cannot combine filters overlapping at hash prefix " + hashPrefix);
+          }
+          System.arraycopy(filter.bits, sectionOffset, bits, offset, sectionNumBytes);
+          offset += sectionNumBytes;
+        }
+      }
+    }
+    sectionOffsets[numSectionOffsets - 1] = offset;
+    return new CueballBloomFilter(sectionOffsets, bits, numHashFunctions, numKeys);
+  }
+
+  private static int getTrailerLength(int numSectionOffsets) {
+    return numSectionOffsets * 4 + 4 + 8;
+  }
+
+  // Key hashes are uniformly distributed but may be short, and all key hashes of a section share
+  // their prefix, so they are mixed down to 64 bits (FNV-1a followed by the MurmurHash3 finalizer)
+  private static long hash(byte[] keyHash, int off, int keyHashSize) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = off; i < off + keyHashSize; ++i) {
+      h ^= keyHash[i] & 0xff;
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Builds a filter from blocks of key hashes added in increasing hash prefix order.
+   */
+  public static class Builder {
+
+    private final int bitsPerKey;
+    private final int numHashFunctions;
+    private final int[] sectionOffsets;
+    private byte[] bits = new byte[1 << 10];
+    private int numBytes = 0;
+    private long numKeys = 0;
+    private int nextHashPrefix = 0;
+
+    public Builder(int hashIndexBits, int bitsPerKey) {
+      if (bitsPerKey <= 0) {
+        throw new IllegalArgumentException("Number of bits per key must be positive, got " + bitsPerKey);
+      }
+      this.bitsPerKey = bitsPerKey;
+      // Optimal number of hash functions is ln(2) * bits per key
+      this.numHashFunctions = Math.max(1, Math.min(30, (int)Math.round(bitsPerKey * Math.log(2))));
+      this.sectionOffsets = new int[(1 << hashIndexBits) + 1];
+    }
+
+    /**
+     * Add the key hashes of the records in [off, limit) of the given buffer.
+     */
+    public void addBlock(int hashPrefix, byte[] records, int off, int limit, int keyHashSize, int recordSize) {
+      if (hashPrefix < nextHashPrefix) {
+        throw new IllegalStateException("Blocks must be added in increasing hash prefix order, got "
+            + hashPrefix + " after " + (nextHashPrefix - 1));
+      }
+      // Sections of empty blocks are empty
+      while (nextHashPrefix <= hashPrefix) {
+        sectionOffsets[nextHashPrefix++] = numBytes;
+      }
+      int numBlockKeys = (limit - off) / recordSize;
+      int sectionNumBytes = (int)Math.max(1, ((long)numBlockKeys * bitsPerKey + 7) / 8);
+      if (numBytes + sectionNumBytes > bits.length) {
+        bits = Arrays.copyOf(bits, Math.max(numBytes + sectionNumBytes, bits.length * 2));
+      }
+      long sectionNumBits = (long)sectionNumBytes << 3;
+      for (int recordOffset = off; recordOffset < limit; recordOffset += recordSize) {
+        long hash = hash(records, recordOffset, keyHashSize);
+        long h1 = hash & 0xffffffffL;
+        long h2 = hash >>> 32;
+        for (int i = 0; i < numHashFunctions; ++i) {
+          long bit = (h1 + i * h2) % sectionNumBits;
+          bits[numBytes + (int)(bit >>> 3)] |= 1 << (bit & 7);
+        }
+      }
+      numBytes += sectionNumBytes;
+      numKeys += numBlockKeys;
+    }
+
+    public CueballBloomFilter build() {
+      while (nextHashPrefix < sectionOffsets.length) {
+        sectionOffsets[nextHashPrefix++] = numBytes;
+      }
+      return new CueballBloomFilter(sectionOffsets, Arrays.copyOf(bits, numBytes), numHashFunctions, numKeys);
+    }
+  }
+}
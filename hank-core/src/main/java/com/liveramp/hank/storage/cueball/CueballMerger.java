@@ -16,39 +16,206 @@
 package com.liveramp.hank.storage.cueball;
 
 import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.storage.PartitionRemoteFileOps;
+import com.liveramp.hank.util.IOStreamUtils;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-
+/**
+ * Merges a base with deltas. Blocks are partitioned by hash prefix, so with a parallelism greater than one,
+ * disjoint ranges of hash prefixes are merged concurrently into temporary files, which are then concatenated
+ * into the new base under a single stitched hash index. When the number of filter bits per key is positive,
+ * the Bloom filter of the new base is written alongside it.
+ */
 public final class CueballMerger implements ICueballMerger {
 
+  private final int parallelism;
+  private final int filterBitsPerKey;
+
+  public CueballMerger() {
+    this(1);
+  }
+
+  public CueballMerger(int parallelism) {
+    this(parallelism, 0);
+  }
+
+  public CueballMerger(int parallelism, int filterBitsPerKey) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Merge parallelism must be at least 1, got " + parallelism);
+    }
+    this.parallelism = parallelism;
+    this.filterBitsPerKey = filterBitsPerKey;
+  }
+
+  @Override
+  public void merge(CueballFilePath base,
+                    List<CueballFilePath> deltas,
+                    String newBasePath,
+                    final int keyHashSize,
+                    final int valueSize,
+                    ValueTransformer transformer,
+                    final int hashIndexBits,
+                    final CueballCompressionCodec compressionCodec) throws IOException {
+    List<StreamBufferOpener> deltaOpeners = new ArrayList<StreamBufferOpener>(deltas.size());
+    for (final CueballFilePath delta : deltas) {
+      deltaOpeners.add(new StreamBufferOpener() {
+        @Override
+        public CueballStreamBuffer open(int relativeIndex, int fromHashIndexIdx, int toHashIndexIdx) throws IOException {
+          return new CueballStreamBuffer(delta.getPath(), relativeIndex, keyHashSize, valueSize, hashIndexBits,
+              compressionCodec, fromHashIndexIdx, toHashIndexIdx);
+        }
+      });
+    }
+    merge(base, deltaOpeners, deltas.toString(), newBasePath, keyHashSize, valueSize, transformer, hashIndexBits,
+        compressionCodec);
+  }
+
+  /**
+   * Deltas are read from the remote input streams into memory, since the hash index of a Cueball file is
+   * in its footer, and are never written to local disk. Deltas are expected to be small compared to the base.
+   */
   @Override
-  public void merge(final CueballFilePath base,
-                    final List<CueballFilePath> deltas,
-                    final String newBasePath,
+  public void merge(CueballFilePath base,
+                    List<String> deltaRemoteFiles,
+                    PartitionRemoteFileOps partitionRemoteFileOps,
+                    String newBasePath,
                     final int keyHashSize,
                     final int valueSize,
                     ValueTransformer transformer,
-                    int hashIndexBits,
-                    CueballCompressionCodec compressionCodec) throws IOException {
+                    final int hashIndexBits,
+                    final CueballCompressionCodec compressionCodec) throws IOException {
+    List<StreamBufferOpener> deltaOpeners = new ArrayList<StreamBufferOpener>(deltaRemoteFiles.size());
+    for (String deltaRemoteFile : deltaRemoteFiles) {
+      final byte[] data = readRemoteFile(partitionRemoteFileOps, deltaRemoteFile);
+      deltaOpeners.add(new StreamBufferOpener() {
+        @Override
+        public CueballStreamBuffer open(int relativeIndex, int fromHashIndexIdx, int toHashIndexIdx) throws IOException {
+          return new CueballStreamBuffer(data, relativeIndex, keyHashSize, valueSize, hashIndexBits,
+              compressionCodec, fromHashIndexIdx, toHashIndexIdx);
+        }
+      });
+    }
+    merge(base, deltaOpeners, deltaRemoteFiles.toString(), newBasePath, keyHashSize, valueSize, transformer,
+        hashIndexBits, compressionCodec);
+  }
+
+  private void merge(final CueballFilePath base,
+                     final List<StreamBufferOpener> deltas,
+                     String deltasDescription,
+                     final String newBasePath,
+                     final int keyHashSize,
+                     final int valueSize,
+                     final ValueTransformer transformer,
+                     final int hashIndexBits,
+                     final CueballCompressionCodec compressionCodec) throws IOException {
+    final int hashIndexSize = 1 << hashIndexBits;
+    final int numRanges = Math.min(parallelism, hashIndexSize);
 
-    CueballStreamBufferMergeSort cueballStreamBufferMergeSort = new CueballStreamBufferMergeSort(base,
-        deltas,
-        keyHashSize,
-        valueSize,
-        hashIndexBits,
-        compressionCodec,
-        transformer);
+    if (numRanges == 1) {
+      merge(base, deltas, newBasePath, keyHashSize, valueSize, transformer, hashIndexBits, compressionCodec,
+          filterBitsPerKey, 0, hashIndexSize);
+      return;
+    }
+
+    // Merge each range of hash prefixes into its own file
+    final List<String> rangePaths = new ArrayList<String>(numRanges);
+    List<Future<Void>> rangeMerges = new ArrayList<Future<Void>>(numRanges);
+    ExecutorService executor = Executors.newFixedThreadPool(numRanges, new MergerThreadFactory(newBasePath));
+    try {
+      for (int i = 0; i < numRanges; ++i) {
+        final String rangePath = newBasePath + ".range" + i;
+        final int fromHashIndexIdx = (int)((long)hashIndexSize * i / numRanges);
+        final int toHashIndexIdx = (int)((long)hashIndexSize * (i + 1) / numRanges);
+        rangePaths.add(rangePath);
+        rangeMerges.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            merge(base, deltas, rangePath, keyHashSize, valueSize, transformer, hashIndexBits, compressionCodec,
+                filterBitsPerKey, fromHashIndexIdx, toHashIndexIdx);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> rangeMerge : rangeMerges) {
+        try {
+          rangeMerge.get();
+        } catch (InterruptedException e) {
+          throw new IOException("Interrupted while merging " + base + " with " + deltasDescription, e);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException)e.getCause();
+          }
+          throw new IOException("Failed to merge " + base + " with " + deltasDescription, e.getCause());
+        }
+      }
+      concatenate(rangePaths, newBasePath, hashIndexBits);
+      if (filterBitsPerKey > 0) {
+        List<CueballBloomFilter> rangeFilters = new ArrayList<CueballBloomFilter>(numRanges);
+        for (String rangePath : rangePaths) {
+          rangeFilters.add(CueballBloomFilter.read(CueballBloomFilter.getPath(rangePath), hashIndexBits));
+        }
+        CueballBloomFilter.combine(rangeFilters).write(CueballBloomFilter.getPath(newBasePath));
+      }
+    } finally {
+      executor.shutdownNow();
+      for (String rangePath : rangePaths) {
+        new File(rangePath).delete();
+        new File(CueballBloomFilter.getPath(rangePath)).delete();
+      }
+    }
+  }
+
+  private static void merge(CueballFilePath base,
+                            List<StreamBufferOpener> deltas,
+                            String newBasePath,
+                            int keyHashSize,
+                            int valueSize,
+                            ValueTransformer transformer,
+                            int hashIndexBits,
+                            CueballCompressionCodec compressionCodec,
+                            int filterBitsPerKey,
+                            int fromHashIndexIdx,
+                            int toHashIndexIdx) throws IOException {
+
+    CueballStreamBuffer[] cueballStreamBuffers = new CueballStreamBuffer[deltas.size() + 1];
+    cueballStreamBuffers[0] = new CueballStreamBuffer(base.getPath(), 0, keyHashSize, valueSize, hashIndexBits,
+        compressionCodec, fromHashIndexIdx, toHashIndexIdx);
+    for (int i = 0; i < deltas.size(); ++i) {
+      cueballStreamBuffers[i + 1] = deltas.get(i).open(i + 1, fromHashIndexIdx, toHashIndexIdx);
+    }
+    CueballStreamBufferMergeSort cueballStreamBufferMergeSort =
+        new CueballStreamBufferMergeSort(cueballStreamBuffers, keyHashSize, valueSize, transformer);
 
     // Output stream for the new base to be written. intentionally unbuffered, the writer below will do that on its own.
     OutputStream newCueballBaseOutputStream = new FileOutputStream(newBasePath);
 
+    OutputStream filterOutputStream = null;
+    if (filterBitsPerKey > 0) {
+      filterOutputStream = new FileOutputStream(CueballBloomFilter.getPath(newBasePath));
+    }
+
     // Note that we intentionally omit the hasher here, since it will *not* be used
-    CueballWriter newCueballBaseWriter =
-        new CueballWriter(newCueballBaseOutputStream, keyHashSize, null, valueSize, compressionCodec, hashIndexBits);
+    CueballWriter newCueballBaseWriter = new CueballWriter(newCueballBaseOutputStream, keyHashSize, null, valueSize,
+        compressionCodec, hashIndexBits, filterOutputStream, filterBitsPerKey);
 
     while (true) {
       KeyHashAndValueAndStreamIndex keyValuePair = cueballStreamBufferMergeSort.nextKeyHashAndValueAndStreamIndex();
@@ -64,4 +231,87 @@ public final class CueballMerger implements ICueballMerger {
     cueballStreamBufferMergeSort.close();
     newCueballBaseWriter.close();
   }
+
+  // Concatenate the blocks of files covering disjoint and increasing ranges of hash prefixes,
+  // shifting their block offsets to build the hash index of the result
+  private static void concatenate(List<String> rangePaths,
+                                  String newBasePath,
+                                  int hashIndexBits) throws IOException {
+    long[] hashIndex = new long[1 << hashIndexBits];
+    Arrays.fill(hashIndex, -1);
+    long maxUncompressedBufferSize = 0;
+    long maxCompressedBufferSize = 0;
+    long numBytesWritten = 0;
+    byte[] buffer = new byte[IOStreamUtils.DEFAULT_BUFFER_SIZE];
+
+    OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(newBasePath), IOStreamUtils.DEFAULT_BUFFER_SIZE);
+    try {
+      for (String rangePath : rangePaths) {
+        FileInputStream inputStream = new FileInputStream(rangePath);
+        try {
+          FileChannel channel = inputStream.getChannel();
+          Footer footer = new Footer(channel, hashIndexBits);
+          long[] rangeHashIndex = footer.getHashIndex();
+          for (int i = 0; i < rangeHashIndex.length; ++i) {
+            if (rangeHashIndex[i] != -1) {
+              hashIndex[i] = numBytesWritten + rangeHashIndex[i];
+            }
+          }
+          maxUncompressedBufferSize = Math.max(maxUncompressedBufferSize, footer.getMaxUncompressedBufferSize());
+          maxCompressedBufferSize = Math.max(maxCompressedBufferSize, footer.getMaxCompressedBufferSize());
+          numBytesWritten += copy(inputStream, outputStream, footer.getDataLength(), buffer);
+        } finally {
+          inputStream.close();
+        }
+      }
+      outputStream.write(Footer.serialize(hashIndex, maxUncompressedBufferSize, maxCompressedBufferSize));
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  private static long copy(InputStream inputStream, OutputStream outputStream, long length, byte[] buffer) throws IOException {
+    long remaining = length;
+    while (remaining > 0) {
+      int read = inputStream.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+      if (read < 0) {
+        throw new IOException("Unexpected end of file with " + remaining + " bytes left to copy");
+      }
+      outputStream.write(buffer, 0, read);
+      remaining -= read;
+    }
+    return length;
+  }
+
+  private static byte[] readRemoteFile(PartitionRemoteFileOps partitionRemoteFileOps,
+                                       String remoteRelativePath) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    InputStream inputStream = partitionRemoteFileOps.getInputStream(remoteRelativePath);
+    try {
+      IOStreamUtils.copy(inputStream, outputStream);
+    } finally {
+      inputStream.close();
+    }
+    return outputStream.toByteArray();
+  }
+
+  // Opens a stream buffer over a range of hash prefixes of a delta
+  private interface StreamBufferOpener {
+    CueballStreamBuffer open(int relativeIndex, int fromHashIndexIdx, int toHashIndexIdx) throws IOException;
+  }
+
+  private static class MergerThreadFactory implements ThreadFactory {
+
+    private final String newBasePath;
+    private AtomicInteger threadID = new AtomicInteger(0);
+
+    public MergerThreadFactory(String newBasePath) {
+      this.newBasePath = newBasePath;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      return new Thread(r, "Cueball Merger Thread: " + newBasePath + " #" + threadID.getAndIncrement());
+    }
+  }
 }
@@ -21,6 +21,7 @@ import com.liveramp.hank.coordinator.Domain;
 import com.liveramp.hank.coordinator.DomainVersion;
 import com.liveramp.hank.partition_server.PartitionUpdateTaskStatistics;
 import com.liveramp.hank.storage.PartitionRemoteFileOps;
+import com.liveramp.hank.storage.incremental.IncrementalDomainVersionProperties;
 import com.liveramp.hank.storage.incremental.IncrementalPartitionUpdater;
 import com.liveramp.hank.storage.incremental.IncrementalUpdatePlan;
 import com.liveramp.hank.util.HankTimer;
@@ -41,6 +42,7 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
   private final ICueballMerger cueballMerger;
   private final CueballCompressionCodec compressionCodec;
   private final int hashIndexBits;
+  private final boolean streamDeltas;
 
   public CueballPartitionUpdater(Domain domain,
                                  PartitionRemoteFileOps partitionRemoteFileOps,
@@ -50,6 +52,23 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
                                  int hashIndexBits,
                                  CueballCompressionCodec compressionCodec,
                                  String localPartitionRoot) throws IOException {
+    this(domain, partitionRemoteFileOps, cueballMerger, keyHashSize, valueSize, hashIndexBits, compressionCodec,
+        localPartitionRoot, false);
+  }
+
+  /**
+   * When streamDeltas is true, deltas are not fetched to local disk but merged directly from their remote
+   * input streams, so that only the base and the new base are ever written locally.
+   */
+  public CueballPartitionUpdater(Domain domain,
+                                 PartitionRemoteFileOps partitionRemoteFileOps,
+                                 ICueballMerger cueballMerger,
+                                 int keyHashSize,
+                                 int valueSize,
+                                 int hashIndexBits,
+                                 CueballCompressionCodec compressionCodec,
+                                 String localPartitionRoot,
+                                 boolean streamDeltas) throws IOException {
     super(domain, localPartitionRoot, new CueballUpdatePlanner(domain));
     this.partitionRemoteFileOps = partitionRemoteFileOps;
     this.cueballMerger = cueballMerger;
@@ -57,6 +76,7 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
     this.valueSize = valueSize;
     this.hashIndexBits = hashIndexBits;
     this.compressionCodec = compressionCodec;
+    this.streamDeltas = streamDeltas;
   }
 
   @Override
@@ -104,6 +124,10 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
 
   @Override
   protected void fetchVersion(DomainVersion domainVersion, String fetchRoot) throws IOException {
+    // Streamed deltas are read remotely during the update
+    if (streamDeltas && !IncrementalDomainVersionProperties.isBase(domainVersion)) {
+      return;
+    }
     String fileToFetch = Cueball.getName(domainVersion);
     LOG.info("Fetching from " + partitionRemoteFileOps + " file " + fileToFetch + " to " + fetchRoot);
     partitionRemoteFileOps.copyToLocalRoot(fileToFetch, fetchRoot);
@@ -128,6 +152,7 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
         hashIndexBits,
         compressionCodec,
         null,
+        streamDeltas ? partitionRemoteFileOps : null,
         statistics);
   }
 
@@ -144,6 +169,29 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
                                    CueballCompressionCodec compressionCodec,
                                    ValueTransformer valueTransformer,
                                    PartitionUpdateTaskStatistics statistics) throws IOException {
+    runUpdateCore(currentVersion, updatingToVersion, updatePlan, updateWorkRoot, localPartitionRoot,
+        localPartitionRootCache, cueballMerger, keyHashSize, valueSize, hashIndexBits, compressionCodec,
+        valueTransformer, null, statistics);
+  }
+
+  /**
+   * @param deltaRemoteFileOps If not null, deltas are streamed from these remote file ops instead of
+   *                           being read from the local cache
+   */
+  public static void runUpdateCore(DomainVersion currentVersion,
+                                   DomainVersion updatingToVersion,
+                                   IncrementalUpdatePlan updatePlan,
+                                   String updateWorkRoot,
+                                   String localPartitionRoot,
+                                   String localPartitionRootCache,
+                                   ICueballMerger cueballMerger,
+                                   int keyHashSize,
+                                   int valueSize,
+                                   int hashIndexBits,
+                                   CueballCompressionCodec compressionCodec,
+                                   ValueTransformer valueTransformer,
+                                   PartitionRemoteFileOps deltaRemoteFileOps,
+                                   PartitionUpdateTaskStatistics statistics) throws IOException {
 
     // Determine new base path
     String newBasePath = updateWorkRoot + "/"
@@ -153,9 +201,14 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
     CueballFilePath base = getCueballFilePathForVersion(updatePlan.getBase(), currentVersion,
         localPartitionRoot, localPartitionRootCache, true);
     List<CueballFilePath> deltas = new ArrayList<CueballFilePath>();
+    List<String> deltaRemoteFiles = new ArrayList<String>();
     for (DomainVersion delta : updatePlan.getDeltasOrdered()) {
-      deltas.add(getCueballFilePathForVersion(delta, currentVersion,
-          localPartitionRoot, localPartitionRootCache, false));
+      if (deltaRemoteFileOps != null) {
+        deltaRemoteFiles.add(Cueball.getName(delta.getVersionNumber(), false));
+      } else {
+        deltas.add(getCueballFilePathForVersion(delta, currentVersion,
+            localPartitionRoot, localPartitionRootCache, false));
+      }
     }
 
     // Check that all required files are available
@@ -167,19 +220,39 @@ public class CueballPartitionUpdater extends IncrementalPartitionUpdater {
     HankTimer timer = new HankTimer();
     // If there are no deltas, simply move the required base to the target version.
     // Otherwise, perform merging.
-    if (deltas.size() == 0) {
+    if (deltas.size() == 0 && deltaRemoteFiles.size() == 0) {
       if (!new File(base.getPath()).renameTo(new File(newBasePath))) {
         throw new IOException("Failed to rename Cueball base: " + base.getPath() + " to: " + newBasePath);
       }
+      // Keep the base filter if there is one, readers go without a filter otherwise
+      File baseFilter = new File(CueballBloomFilter.getPath(base.getPath()));
+      if (baseFilter.exists() && !baseFilter.renameTo(new File(CueballBloomFilter.getPath(newBasePath)))) {
+        LOG.warn("Failed to rename Cueball base filter: " + baseFilter.getAbsolutePath());
+      }
     } else {
-      cueballMerger.merge(base,
-          deltas,
-          newBasePath,
-          keyHashSize,
-          valueSize,
-          valueTransformer,
-          hashIndexBits,
-          compressionCodec);
+      if (deltaRemoteFileOps != null) {
+        LOG.info("Merging Cueball base " + base + " with remote deltas " + deltaRemoteFiles + " from " + deltaRemoteFileOps);
+        cueballMerger.merge(base,
+            deltaRemoteFiles,
+            deltaRemoteFileOps,
+            newBasePath,
+            keyHashSize,
+            valueSize,
+            valueTransformer,
+            hashIndexBits,
+            compressionCodec);
+      } else {
+        cueballMerger.merge(base,
+            deltas,
+            newBasePath,
+            keyHashSize,
+            valueSize,
+            valueTransformer,
+            hashIndexBits,
+            compressionCodec);
+      }
+      statistics.addNumBytesWritten(new File(newBasePath).length());
+      statistics.addNumBytesWritten(new File(CueballBloomFilter.getPath(newBasePath)).length());
     }
     statistics.getDurationsMs().put("Cueball merge", timer.getDurationMs());
   }
@@ -15,30 +15,58 @@
  */
 package com.liveramp.hank.storage.cueball;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.liveramp.commons.util.ByteBufferMemoryUsageEstimator;
 import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
 import com.liveramp.hank.hasher.Hasher;
+import com.liveramp.hank.storage.BlockCache;
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.HeapReaderCache;
+import com.liveramp.hank.storage.IOEngine;
+import com.liveramp.hank.storage.IOEngineFile;
+import com.liveramp.hank.storage.IOEngines;
 import com.liveramp.hank.storage.Reader;
+import com.liveramp.hank.storage.ReaderCache;
 import com.liveramp.hank.storage.ReaderResult;
-import com.liveramp.hank.util.SynchronizedMemoryBoundCache;
+import com.liveramp.hank.storage.SynchronousIOEngine;
+import com.liveramp.hank.util.MemoryMappedFile;
+import com.liveramp.hank.util.ObjectPool;
+import com.liveramp.hank.util.StripedLongCollection;
 
 public class CueballReader implements Reader {
 
-  private static final KeyHashBufferThreadLocal keyHashBufferThreadLocal = new KeyHashBufferThreadLocal();
-  private static final ByteBuffer NOT_FOUND_MARKER = ByteBuffer.wrap(new byte[]{});
+  private static final Logger LOG = LoggerFactory.getLogger(CueballReader.class);
+  private static final BufferThreadLocal keyHashBufferThreadLocal = new BufferThreadLocal(8);
+  // Buffers of GET BULK, shared by all readers. They are held while blocks are read, so more of them can be
+  // in use than there are processors.
+  private static final ObjectPool<byte[]> blockBufferPool =
+      new ObjectPool<byte[]>(4 * Runtime.getRuntime().availableProcessors()) {
+        @Override
+        protected byte[] create() {
+          return new byte[1 << 10];
+        }
+      };
 
   private final Hasher hasher;
   private final int valueSize;
   private final long[] hashIndex;
-  private final FileChannel channel;
+  private final IOEngineFile file;
+  private final int maxNumReadsInFlight;
+  private final long dataLength;
+  private MemoryMappedFile mappedFile;
   private final int keyHashSize;
   private final int fullRecordSize;
   private final CueballCompressionCodec compressionCodec;
@@ -46,7 +74,13 @@ public class CueballReader implements Reader {
   private int maxCompressedBufferSize;
   private final HashPrefixCalculator prefixer;
   private final int versionNumber;
-  private SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer> cache;
+  private ReaderCache cache;
+  private final CueballBloomFilter filter;
+  // Lookups of absent keys answered by the filter, and those it failed to answer
+  private final StripedLongCollection filterCounters = new StripedLongCollection(2);
+  // Only compressed blocks are cached, uncompressed ones are as cheap to read again
+  private final BlockCache blockCache;
+  private final long blockCacheFileId;
 
   public CueballReader(String partitionRoot,
                        int keyHashSize,
@@ -56,6 +90,78 @@ public class CueballReader implements Reader {
                        CueballCompressionCodec compressionCodec,
                        long cacheNumBytesCapacity,
                        int cacheNumItemsCapacity) throws IOException {
+    this(partitionRoot, keyHashSize, hasher, valueSize, hashIndexBits, compressionCodec,
+        cacheNumBytesCapacity, cacheNumItemsCapacity, false);
+  }
+
+  public CueballReader(String partitionRoot,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       int hashIndexBits,
+                       CueballCompressionCodec compressionCodec,
+                       long cacheNumBytesCapacity,
+                       int cacheNumItemsCapacity,
+                       boolean useMemoryMappedFile) throws IOException {
+    this(partitionRoot, keyHashSize, hasher, valueSize, hashIndexBits, compressionCodec,
+        new HeapReaderCache(cacheNumBytesCapacity, cacheNumItemsCapacity), useMemoryMappedFile);
+  }
+
+  public CueballReader(String partitionRoot,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       int hashIndexBits,
+                       CueballCompressionCodec compressionCodec,
+                       ReaderCache cache,
+                       boolean useMemoryMappedFile) throws IOException {
+    this(partitionRoot, keyHashSize, hasher, valueSize, hashIndexBits, compressionCodec, cache,
+        useMemoryMappedFile, 0);
+  }
+
+  /**
+   * When the number of filter bits per key is positive, lookups first consult the Bloom filter of the
+   * key file. It is read from the file written alongside the key file. Without that file, lookups do not
+   * use a filter.
+   */
+  public CueballReader(String partitionRoot,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       int hashIndexBits,
+                       CueballCompressionCodec compressionCodec,
+                       ReaderCache cache,
+                       boolean useMemoryMappedFile,
+                       int filterBitsPerKey) throws IOException {
+    this(partitionRoot, keyHashSize, hasher, valueSize, hashIndexBits, compressionCodec, cache,
+        useMemoryMappedFile, filterBitsPerKey, new SynchronousIOEngine());
+  }
+
+  public CueballReader(String partitionRoot,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       int hashIndexBits,
+                       CueballCompressionCodec compressionCodec,
+                       ReaderCache cache,
+                       boolean useMemoryMappedFile,
+                       int filterBitsPerKey,
+                       IOEngine ioEngine) throws IOException {
+    this(partitionRoot, keyHashSize, hasher, valueSize, hashIndexBits, compressionCodec, cache,
+        useMemoryMappedFile, filterBitsPerKey, ioEngine, new BlockCache(0));
+  }
+
+  public CueballReader(String partitionRoot,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       int hashIndexBits,
+                       CueballCompressionCodec compressionCodec,
+                       ReaderCache cache,
+                       boolean useMemoryMappedFile,
+                       int filterBitsPerKey,
+                       IOEngine ioEngine,
+                       BlockCache blockCache) throws IOException {
     SortedSet<CueballFilePath> bases = Cueball.getBases(partitionRoot);
     if (bases == null || bases.size() == 0) {
       throw new IOException("Could not detect any Cueball base in " + partitionRoot);
@@ -68,25 +174,59 @@ public class CueballReader implements Reader {
     this.fullRecordSize = valueSize + keyHashSize;
     this.prefixer = new HashPrefixCalculator(hashIndexBits);
     this.versionNumber = latestBase.getVersion();
+    this.cache = cache;
 
-    channel = new FileInputStream(latestBase.getPath()).getChannel();
-    Footer footer = new Footer(channel, hashIndexBits);
+    file = ioEngine.open(latestBase.getPath());
+    maxNumReadsInFlight = Math.max(1, ioEngine.getMaxNumReadsInFlight());
+    Footer footer = new Footer(file.getChannel(), hashIndexBits);
     hashIndex = footer.getHashIndex();
     maxUncompressedBufferSize = footer.getMaxUncompressedBufferSize();
     maxCompressedBufferSize = footer.getMaxCompressedBufferSize();
-    cache = new SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer>(
-        cacheNumBytesCapacity > 0 || cacheNumItemsCapacity > 0,
-        cacheNumBytesCapacity,
-        cacheNumItemsCapacity,
-        new ByteBufferMemoryUsageEstimator(),
-        new ByteBufferMemoryUsageEstimator());
+    dataLength = footer.getDataLength();
+    if (useMemoryMappedFile) {
+      try {
+        // Chunks overlap by the max compressed block size so that no block straddles two chunks
+        mappedFile = new MemoryMappedFile(file.getChannel(), dataLength, maxCompressedBufferSize);
+      } catch (IOException e) {
+        LOG.warn("Failed to memory map " + latestBase.getPath() + ", falling back to reading through file channel", e);
+        mappedFile = null;
+      }
+    }
+    if (filterBitsPerKey > 0) {
+      filter = loadFilter(latestBase.getPath(), hashIndexBits);
+    } else {
+      filter = null;
+    }
+    if (blockCache.isEnabled() && !(compressionCodec instanceof NoCueballCompressionCodec)) {
+      this.blockCache = blockCache;
+      this.blockCacheFileId = blockCache.newFileId();
+    } else {
+      this.blockCache = null;
+      this.blockCacheFileId = -1;
+    }
+  }
+
+  // Filters are written by the writer and the merger. Building a missing one would read the whole key file
+  // and write into the partition directory while opening, so the reader goes without it instead.
+  private CueballBloomFilter loadFilter(String keyFilePath, int hashIndexBits) {
+    String filterPath = CueballBloomFilter.getPath(keyFilePath);
+    if (!new File(filterPath).exists()) {
+      LOG.warn("Could not find filter " + filterPath + ", reading without it");
+      return null;
+    }
+    try {
+      return CueballBloomFilter.read(filterPath, hashIndexBits);
+    } catch (IOException e) {
+      LOG.warn("Failed to read filter " + filterPath + ", reading without it", e);
+      return null;
+    }
   }
 
   @Override
   public void get(ByteBuffer key, ReaderResult result) throws IOException {
-    // Note: keyHash buffer might be larger than keyHashSize
-    byte[] keyHash = computeKeyHash(key);
-    ByteBuffer keyHashByteBuffer = ByteBuffer.wrap(keyHash);
+    // Note: keyHash array might be larger than keyHashSize, but the buffer is limited to keyHashSize
+    ByteBuffer keyHashByteBuffer = computeKeyHash(key);
+    byte[] keyHash = keyHashByteBuffer.array();
 
     int hashPrefix = prefixer.getHashPrefix(keyHash, 0);
     long baseOffset = hashIndex[hashPrefix];
@@ -96,29 +236,61 @@ public class CueballReader implements Reader {
 
     // baseOffset of -1 means that our hashPrefix doesn't map to any blocks
     if (baseOffset >= 0) {
+      // The filter answers most lookups of absent keys without reading the block
+      if (filter != null && !filter.mightContain(keyHash, 0, keyHashSize, hashPrefix)) {
+        filterCounters.get().increment(0, 1);
+        return;
+      }
       // Attempt to load value from the cache
       if (loadValueFromCache(keyHashByteBuffer, result)) {
+        if (filter != null && !result.isFound()) {
+          filterCounters.get().increment(1, 1);
+        }
         return;
       }
-      // We will read the compressed buffer and decompress it in the same buffer.
-      result.requiresBufferSize(maxCompressedBufferSize + maxUncompressedBufferSize);
-      // set up to read a chunk from the datafile
-      ByteBuffer buffer = result.getBuffer();
-      buffer.rewind();
-      buffer.limit(maxCompressedBufferSize);
-      int bytesRead = channel.read(buffer, baseOffset);
-
-      // decompress from the beginning of the buffer into the unoccupied end of
-      // the buffer
-      final int uncompressedStart = bytesRead;
-      int decompressedLength = compressionCodec.decompress(buffer.array(),
-          0,
-          bytesRead, buffer.array(),
-          uncompressedStart);
-
-      // scan the chunk we read to find a matching key, if there is one,
+      // The block was possibly decompressed before
+      byte[] cachedBlock = blockCache == null ? null : blockCache.get(blockCacheFileId, baseOffset);
+      final byte[] block;
+      final int uncompressedStart;
+      final int decompressedLength;
+      if (cachedBlock != null) {
+        block = cachedBlock;
+        uncompressedStart = 0;
+        decompressedLength = cachedBlock.length;
+        result.setBlockCacheHit(true);
+      } else if (mappedFile != null) {
+        // Decompress directly from the mapped block into the result buffer
+        result.requiresBufferSize(maxUncompressedBufferSize);
+        block = result.getBuffer().array();
+        uncompressedStart = 0;
+        decompressedLength = compressionCodec.decompress(
+            mappedFile.getRegion(baseOffset, maxCompressedBufferSize), block, uncompressedStart);
+        result.setMemoryMappedRead(true);
+      } else {
+        // We will read the compressed buffer and decompress it in the same buffer.
+        result.requiresBufferSize(maxCompressedBufferSize + maxUncompressedBufferSize);
+        // set up to read a chunk from the datafile
+        ByteBuffer buffer = result.getBuffer();
+        buffer.rewind();
+        buffer.limit(maxCompressedBufferSize);
+        int bytesRead = file.read(buffer, baseOffset);
+
+        // decompress from the beginning of the buffer into the unoccupied end of
+        // the buffer
+        block = buffer.array();
+        uncompressedStart = bytesRead;
+        decompressedLength = compressionCodec.decompress(block,
+            0,
+            bytesRead, block,
+            uncompressedStart);
+      }
+      if (blockCache != null && cachedBlock == null) {
+        blockCache.put(blockCacheFileId, baseOffset, block, uncompressedStart, decompressedLength);
+      }
+
+      // search the chunk we read to find a matching key, if there is one,
       // returning the recordfile offset
-      int bufferOffset = getValueOffset(buffer.array(),
+      int bufferOffset = getValueOffset(block,
           uncompressedStart,
           uncompressedStart + decompressedLength,
           keyHash);
@@ -126,103 +298,268 @@ public class CueballReader implements Reader {
       // -1 means that we didn't find the key
       if (bufferOffset > -1) {
         result.found();
-        buffer.limit(bufferOffset + valueSize);
-        buffer.position(bufferOffset);
-        addValueToCache(keyHashByteBuffer, buffer);
+        if (cachedBlock != null) {
+          // Cached blocks are shared, copy the value out
+          result.deepCopyIntoResultBuffer(ByteBuffer.wrap(cachedBlock, bufferOffset, valueSize));
+        } else {
+          ByteBuffer buffer = result.getBuffer();
+          buffer.limit(bufferOffset + valueSize);
+          buffer.position(bufferOffset);
+        }
+        addValueToCache(keyHashByteBuffer, result.getBuffer());
       } else {
         // key not found
+        if (filter != null) {
+          filterCounters.get().increment(1, 1);
+        }
         addNotFoundToCache(keyHashByteBuffer);
       }
     }
   }
 
+  /**
+   * Keys are sorted by block and by key hash, so that each block is read and decompressed once, or taken
+   * from the shared block cache, and scanned once for all the keys it may contain. Reads of the next blocks are kept in flight through
+   * the I/O engine while a block is scanned.
+   */
+  @Override
+  public void getBulk(List<ByteBuffer> keys, List<ReaderResult> results) throws IOException {
+    int numKeys = keys.size();
+    // Key hashes and block offsets of keys that require reading a block
+    final byte[] keyHashes = new byte[numKeys * keyHashSize];
+    final long[] blockOffsets = new long[numKeys];
+    Integer[] pendingKeys = new Integer[numKeys];
+    int numPendingKeys = 0;
+    for (int i = 0; i < numKeys; ++i) {
+      ReaderResult result = results.get(i);
+      result.notFound();
+      ByteBuffer keyHashByteBuffer = computeKeyHash(keys.get(i));
+      byte[] keyHash = keyHashByteBuffer.array();
+      int hashPrefix = prefixer.getHashPrefix(keyHash, 0);
+      long baseOffset = hashIndex[hashPrefix];
+      if (baseOffset < 0) {
+        continue;
+      }
+      if (filter != null && !filter.mightContain(keyHash, 0, keyHashSize, hashPrefix)) {
+        filterCounters.get().increment(0, 1);
+        continue;
+      }
+      if (loadValueFromCache(keyHashByteBuffer, result)) {
+        if (filter != null && !result.isFound()) {
+          filterCounters.get().increment(1, 1);
+        }
+        continue;
+      }
+      System.arraycopy(keyHash, 0, keyHashes, i * keyHashSize, keyHashSize);
+      blockOffsets[i] = baseOffset;
+      pendingKeys[numPendingKeys++] = i;
+    }
+    if (numPendingKeys == 0) {
+      return;
+    }
+    Arrays.sort(pendingKeys, 0, numPendingKeys, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        if (blockOffsets[a] != blockOffsets[b]) {
+          return blockOffsets[a] < blockOffsets[b] ? -1 : 1;
+        }
+        return BytesUtils.compareBytesUnsigned(keyHashes, a * keyHashSize, keyHashes, b * keyHashSize, keyHashSize);
+      }
+    });
+
+    // Offsets of the distinct blocks, in file order
+    long[] blocks = new long[numPendingKeys];
+    int numBlocks = 0;
+    for (int p = 0; p < numPendingKeys; ++p) {
+      long blockOffset = blockOffsets[pendingKeys[p]];
+      if (numBlocks == 0 || blocks[numBlocks - 1] != blockOffset) {
+        blocks[numBlocks++] = blockOffset;
+      }
+    }
+    // Blocks found in the shared block cache are not read again. Offsets of the others, in file order.
+    byte[][] cachedBlocks = new byte[numBlocks][];
+    long[] blocksToRead = new long[numBlocks];
+    int numBlocksToRead = 0;
+    for (int b = 0; b < numBlocks; ++b) {
+      if (blockCache != null) {
+        cachedBlocks[b] = blockCache.get(blockCacheFileId, blocks[b]);
+      }
+      if (cachedBlocks[b] == null) {
+        blocksToRead[numBlocksToRead++] = blocks[b];
+      }
+    }
+
+    // Compressed blocks are read into slots at the beginning of the buffer, with up to one read in flight
+    // per slot. Blocks are decompressed after the slots.
+    int numSlots = mappedFile == null ? Math.min(maxNumReadsInFlight, numBlocksToRead) : 0;
+    int uncompressedStart = numSlots * maxCompressedBufferSize;
+    byte[] buffer = blockBufferPool.acquire();
+    if (buffer.length < uncompressedStart + maxUncompressedBufferSize) {
+      buffer = new byte[uncompressedStart + maxUncompressedBufferSize];
+    }
+    List<Future<Integer>> reads = new ArrayList<Future<Integer>>(numBlocksToRead);
+    for (int r = 0; r < numSlots; ++r) {
+      reads.add(submitBlockRead(blocksToRead[r], buffer, r));
+    }
+    int blockIndex = -1;
+    int readIndex = -1;
+    try {
+      byte[] block = buffer;
+      boolean isCachedBlock = false;
+      int blockLimit = 0;
+      int recordOffset = 0;
+      for (int p = 0; p < numPendingKeys; ++p) {
+        int i = pendingKeys[p];
+        ReaderResult result = results.get(i);
+        if (blockIndex < 0 || blockOffsets[i] != blocks[blockIndex]) {
+          ++blockIndex;
+          isCachedBlock = cachedBlocks[blockIndex] != null;
+          if (isCachedBlock) {
+            block = cachedBlocks[blockIndex];
+            recordOffset = 0;
+            blockLimit = block.length;
+          } else {
+            ++readIndex;
+            int decompressedLength;
+            if (mappedFile != null) {
+              decompressedLength = compressionCodec.decompress(
+                  mappedFile.getRegion(blocksToRead[readIndex], maxCompressedBufferSize), buffer, uncompressedStart);
+            } else {
+              int slot = readIndex % numSlots;
+              int bytesRead = IOEngines.waitFor(reads.get(readIndex));
+              decompressedLength = compressionCodec.decompress(buffer, slot * maxCompressedBufferSize, bytesRead,
+                  buffer, uncompressedStart);
+              // The slot is free again, read ahead into it
+              if (readIndex + numSlots < numBlocksToRead) {
+                reads.add(submitBlockRead(blocksToRead[readIndex + numSlots], buffer, slot));
+              }
+            }
+            if (blockCache != null) {
+              blockCache.put(blockCacheFileId, blocksToRead[readIndex], buffer, uncompressedStart, decompressedLength);
+            }
+            block = buffer;
+            recordOffset = uncompressedStart;
+            blockLimit = uncompressedStart + decompressedLength;
+          }
+        }
+        result.setBlockCacheHit(isCachedBlock);
+        result.setMemoryMappedRead(mappedFile != null && !isCachedBlock);
+        // Keys of a block are sorted, so the search resumes where the previous key stopped
+        int keyHashOffset = i * keyHashSize;
+        recordOffset = CueballBlockSearch.lowerBound(block, recordOffset, blockLimit, fullRecordSize,
+            keyHashes, keyHashOffset, keyHashSize);
+        ByteBuffer keyHashByteBuffer = ByteBuffer.wrap(keyHashes, keyHashOffset, keyHashSize);
+        if (recordOffset < blockLimit
+            && CueballBlockSearch.compareKeyHashes(block, recordOffset, keyHashes, keyHashOffset, keyHashSize) == 0) {
+          result.deepCopyIntoResultBuffer(ByteBuffer.wrap(block, recordOffset + keyHashSize, valueSize));
+          result.found();
+          addValueToCache(keyHashByteBuffer, result.getBuffer());
+        } else {
+          if (filter != null) {
+            filterCounters.get().increment(1, 1);
+          }
+          addNotFoundToCache(keyHashByteBuffer);
+        }
+      }
+    } finally {
+      // Reads still in flight after a failure must not write into the buffer once it is reused
+      IOEngines.waitForAll(reads.subList(Math.min(readIndex + 1, reads.size()), reads.size()));
+      blockBufferPool.release(buffer);
+    }
+  }
+
+  // Start reading the compressed block at the given offset into the given slot of the buffer
+  private Future<Integer> submitBlockRead(long blockOffset, byte[] buffer, int slot) {
+    return file.submitRead(ByteBuffer.wrap(buffer, slot * maxCompressedBufferSize, maxCompressedBufferSize), blockOffset);
+  }
+
   public Integer getVersionNumber() {
     return versionNumber;
   }
 
+  public boolean isMemoryMapped() {
+    return mappedFile != null;
+  }
+
   @Override
   public CacheStatistics getCacheStatistics() {
-    return new CacheStatistics(
-        cache.size(),
-        cache.getMaxNumItems(),
-        cache.getNumManagedBytes(),
-        cache.getMaxNumManagedBytes());
+    CacheStatistics cacheStatistics = cache.getCacheStatistics();
+    if (filter != null) {
+      long[] filterCounts = filterCounters.getTotals();
+      cacheStatistics.add(new CacheStatistics(0, 0, 0, 0, 0, filter.getNumBytes(), filterCounts[0], filterCounts[1]));
+    }
+    return cacheStatistics;
   }
 
   @Override
   public void close() throws IOException {
-    channel.close();
+    file.close();
+    mappedFile = null;
     cache = null;
   }
 
   private int getValueOffset(byte[] keyfileBufferChunk, int off, int limit, byte[] key) {
-    for (; off < limit; off += fullRecordSize) {
-      int comparison = BytesUtils.compareBytesUnsigned(keyfileBufferChunk, off,
-          key, 0, keyHashSize);
-      // found match
-      if (comparison == 0) {
-        return off + keyHashSize;
-      }
-
-      // passed the spot where our key could have been found, so not going to
-      // find it
-      if (comparison == 1) {
-        break;
-      }
+    // records are sorted by key hash, so search for the first one that is not
+    // less than our key
+    off = CueballBlockSearch.lowerBound(keyfileBufferChunk, off, limit, fullRecordSize, key, 0, keyHashSize);
+    // found match
+    if (off < limit && CueballBlockSearch.compareKeyHashes(keyfileBufferChunk, off, key, 0, keyHashSize) == 0) {
+      return off + keyHashSize;
     }
-    // looked everywhere, didn't find it!
+    // looked where it should have been, didn't find it!
     return -1;
   }
 
-  private static class KeyHashBufferThreadLocal extends ThreadLocal<byte[]> {
+  private static class BufferThreadLocal extends ThreadLocal<ByteBuffer> {
+
+    private final int initialSize;
 
-    private static int KEY_HASH_BUFFER_INITIAL_SIZE = 8;
+    private BufferThreadLocal(int initialSize) {
+      this.initialSize = initialSize;
+    }
 
     @Override
-    protected byte[] initialValue() {
-      return new byte[KEY_HASH_BUFFER_INITIAL_SIZE];
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.wrap(new byte[initialSize]);
     }
 
-    protected byte[] getAndRequireBufferSize(int size) {
-      byte[] buffer = this.get();
-      if (buffer.length < size) {
-        buffer = new byte[size];
+    // The returned buffer is positioned at 0 and limited to the given size
+    protected ByteBuffer getAndRequireBufferSize(int size) {
+      ByteBuffer buffer = this.get();
+      if (buffer.capacity() < size) {
+        buffer = ByteBuffer.wrap(new byte[size]);
         this.set(buffer);
       }
+      buffer.limit(size);
+      buffer.position(0);
       return buffer;
     }
   }
 
-  // Note: result buffer might be larger than keyHashSize
-  private byte[] computeKeyHash(ByteBuffer key) {
+  // Note: the backing array of the result buffer might be larger than keyHashSize
+  private ByteBuffer computeKeyHash(ByteBuffer key) {
     // Reuse a thread local buffer, but first make sure it is at least of the required size
-    byte[] keyHash = keyHashBufferThreadLocal.getAndRequireBufferSize(keyHashSize);
-    hasher.hash(key, keyHashSize, keyHash);
+    ByteBuffer keyHash = keyHashBufferThreadLocal.getAndRequireBufferSize(keyHashSize);
+    hasher.hash(key, keyHashSize, keyHash.array());
     return keyHash;
   }
 
   private void addValueToCache(ByteBuffer keyHash, ByteBuffer value) {
-    cache.put(BytesUtils.byteBufferDeepCopy(keyHash), BytesUtils.byteBufferDeepCopy(value));
+    if (cache.isEnabled()) {
+      cache.put(keyHash, value);
+    }
   }
 
   private void addNotFoundToCache(ByteBuffer keyHash) {
-    cache.put(BytesUtils.byteBufferDeepCopy(keyHash), NOT_FOUND_MARKER);
+    if (cache.isEnabled()) {
+      cache.putNotFound(keyHash);
+    }
   }
 
   // Return true if managed to read the corresponding value from the cache and into result
   private boolean loadValueFromCache(ByteBuffer keyHash, ReaderResult result) {
-    ByteBuffer value;
-    value = cache.get(keyHash);
-    if (value != null) {
-      // Compare against the not found marker (note that this is an address equality
-      // and not an object equality on purpose)
-      if (value != NOT_FOUND_MARKER) {
-        // Load cached value into result
-        result.deepCopyIntoResultBuffer(value);
-        result.found();
-      } else {
-        result.notFound();
-      }
+    // The cache copies the value (or the fact that it was not found) into result
+    if (cache.isEnabled() && cache.get(keyHash, result)) {
       // Was found in cache
       result.setL1CacheHit(true);
       return true;
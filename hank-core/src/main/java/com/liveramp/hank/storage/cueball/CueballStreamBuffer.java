@@ -23,6 +23,7 @@ import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
 import com.liveramp.hank.util.IOStreamUtils;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,7 +42,8 @@ public final class CueballStreamBuffer {
   private final byte[] uncompressedBuffer;
   private final byte[] compressedBuffer;
 
-  private int currentHashIndexIdx = -1;
+  private int currentHashIndexIdx;
+  private final int toHashIndexIdx;
   private final CueballCompressionCodec compressionCodec;
   private final long dataLength;
 
@@ -52,19 +54,89 @@ public final class CueballStreamBuffer {
                              int hashIndexBits,
                              CueballCompressionCodec compressionCodec)
       throws IOException {
+    this(filePath, relativeIndex, keyHashSize, valueSize, hashIndexBits, compressionCodec, 0, 1 << hashIndexBits);
+  }
+
+  /**
+   * Only stream the blocks of key hashes with a prefix in [fromHashIndexIdx, toHashIndexIdx).
+   */
+  public CueballStreamBuffer(String filePath,
+                             int relativeIndex,
+                             int keyHashSize,
+                             int valueSize,
+                             int hashIndexBits,
+                             CueballCompressionCodec compressionCodec,
+                             int fromHashIndexIdx,
+                             int toHashIndexIdx)
+      throws IOException {
+    this(new FileInputStream(filePath), relativeIndex, keyHashSize, valueSize, hashIndexBits, compressionCodec,
+        fromHashIndexIdx, toHashIndexIdx);
+  }
+
+  /**
+   * Stream the blocks of a file that is entirely held in memory, such as a delta read from a remote
+   * input stream, with a key hash prefix in [fromHashIndexIdx, toHashIndexIdx).
+   */
+  public CueballStreamBuffer(byte[] data,
+                             int relativeIndex,
+                             int keyHashSize,
+                             int valueSize,
+                             int hashIndexBits,
+                             CueballCompressionCodec compressionCodec,
+                             int fromHashIndexIdx,
+                             int toHashIndexIdx)
+      throws IOException {
+    this(new ByteArrayInputStream(data), new Footer(data, hashIndexBits), relativeIndex, keyHashSize, valueSize,
+        compressionCodec, fromHashIndexIdx, toHashIndexIdx);
+  }
+
+  private CueballStreamBuffer(FileInputStream fileInputStream,
+                              int relativeIndex,
+                              int keyHashSize,
+                              int valueSize,
+                              int hashIndexBits,
+                              CueballCompressionCodec compressionCodec,
+                              int fromHashIndexIdx,
+                              int toHashIndexIdx)
+      throws IOException {
+    this(new BufferedInputStream(fileInputStream, IOStreamUtils.DEFAULT_BUFFER_SIZE),
+        new Footer(fileInputStream.getChannel(), hashIndexBits), relativeIndex, keyHashSize, valueSize,
+        compressionCodec, fromHashIndexIdx, toHashIndexIdx);
+  }
+
+  private CueballStreamBuffer(InputStream stream,
+                              Footer footer,
+                              int relativeIndex,
+                              int keyHashSize,
+                              int valueSize,
+                              CueballCompressionCodec compressionCodec,
+                              int fromHashIndexIdx,
+                              int toHashIndexIdx)
+      throws IOException {
     this.relativeIndex = relativeIndex;
     this.compressionCodec = compressionCodec;
-    FileInputStream fileInputStream = new FileInputStream(filePath);
-    this.stream = new BufferedInputStream(fileInputStream, IOStreamUtils.DEFAULT_BUFFER_SIZE);
+    this.stream = stream;
 
     this.keyHashSize = keyHashSize;
     this.fullRecordSize = valueSize + keyHashSize;
 
-    Footer footer = new Footer(fileInputStream.getChannel(), hashIndexBits);
     dataLength = footer.getDataLength();
     hashIndex = footer.getHashIndex();
     uncompressedBuffer = new byte[footer.getMaxUncompressedBufferSize()];
     compressedBuffer = new byte[footer.getMaxCompressedBufferSize()];
+
+    this.currentHashIndexIdx = fromHashIndexIdx - 1;
+    this.toHashIndexIdx = toHashIndexIdx;
+    // skip to the first non-empty block of the range
+    for (int i = fromHashIndexIdx; i < toHashIndexIdx; i++) {
+      if (hashIndex[i] != -1) {
+        long skipped = stream.skip(hashIndex[i]);
+        if (skipped != hashIndex[i]) {
+          throw new IOException("Failed to skip to block at offset " + hashIndex[i] + ", only skipped " + skipped + " bytes");
+        }
+        break;
+      }
+    }
   }
 
   public boolean anyRemaining() throws IOException {
@@ -79,14 +151,14 @@ public final class CueballStreamBuffer {
 
     // advance to the next non-empty block
     currentHashIndexIdx++;
-    while (currentHashIndexIdx < hashIndex.length) {
+    while (currentHashIndexIdx < toHashIndexIdx) {
       if (hashIndex[currentHashIndexIdx] != -1) {
         break;
       }
       currentHashIndexIdx++;
     }
 
-    if (currentHashIndexIdx >= hashIndex.length) {
+    if (currentHashIndexIdx >= toHashIndexIdx) {
       // there are no more blocks. we're all done
       complete = true;
       return false;
@@ -164,6 +236,21 @@ public final class CueballStreamBuffer {
     return currentOffset;
   }
 
+  // End of the records of the current block in the buffer
+  public int getCurrentLimit() {
+    return currentLimit;
+  }
+
+  // Hash prefix of the current block
+  public int getCurrentHashIndexIdx() {
+    return currentHashIndexIdx;
+  }
+
+  // Skip the remaining records of the current block
+  public void consumeBlock() {
+    currentOffset = currentLimit;
+  }
+
   public void close() throws IOException {
     stream.close();
   }
@@ -70,24 +70,63 @@ public class CueballStreamBufferMergeSort implements IKeyFileStreamBufferMergeSo
                                       int hashIndexBits,
                                       CueballCompressionCodec compressionCodec,
                                       ValueTransformer transformer) throws IOException {
+    this(cueballBase, cueballDeltas, keyHashSize, valueSize, hashIndexBits, compressionCodec, transformer,
+        0, 1 << hashIndexBits);
+  }
+
+  /**
+   * Only merge the key hashes with a prefix in [fromHashIndexIdx, toHashIndexIdx).
+   */
+  public CueballStreamBufferMergeSort(CueballFilePath cueballBase,
+                                      List<CueballFilePath> cueballDeltas,
+                                      int keyHashSize,
+                                      int valueSize,
+                                      int hashIndexBits,
+                                      CueballCompressionCodec compressionCodec,
+                                      ValueTransformer transformer,
+                                      int fromHashIndexIdx,
+                                      int toHashIndexIdx) throws IOException {
+    this(openStreamBuffers(cueballBase, cueballDeltas, keyHashSize, valueSize, hashIndexBits, compressionCodec,
+        fromHashIndexIdx, toHashIndexIdx), keyHashSize, valueSize, transformer);
+  }
+
+  /**
+   * Merge already opened stream buffers. The stream buffer at index 0 is the base, followed by the deltas in order.
+   */
+  public CueballStreamBufferMergeSort(CueballStreamBuffer[] cueballStreamBuffers,
+                                      int keyHashSize,
+                                      int valueSize,
+                                      ValueTransformer transformer) {
+    this.cueballStreamBuffers = cueballStreamBuffers;
     this.keyHashSize = keyHashSize;
     this.valueSize = valueSize;
     this.transformer = transformer;
+  }
 
-    cueballStreamBuffers = new CueballStreamBuffer[cueballDeltas.size() + 1];
+  private static CueballStreamBuffer[] openStreamBuffers(CueballFilePath cueballBase,
+                                                         List<CueballFilePath> cueballDeltas,
+                                                         int keyHashSize,
+                                                         int valueSize,
+                                                         int hashIndexBits,
+                                                         CueballCompressionCodec compressionCodec,
+                                                         int fromHashIndexIdx,
+                                                         int toHashIndexIdx) throws IOException {
+    CueballStreamBuffer[] cueballStreamBuffers = new CueballStreamBuffer[cueballDeltas.size() + 1];
 
     // Open the base
     CueballStreamBuffer cueballBaseStreamBuffer = new CueballStreamBuffer(cueballBase.getPath(), 0,
-        keyHashSize, valueSize, hashIndexBits, compressionCodec);
+        keyHashSize, valueSize, hashIndexBits, compressionCodec, fromHashIndexIdx, toHashIndexIdx);
     cueballStreamBuffers[0] = cueballBaseStreamBuffer;
 
     // Open all the deltas
     int i = 1;
     for (CueballFilePath delta : cueballDeltas) {
       CueballStreamBuffer cueballStreamBuffer =
-          new CueballStreamBuffer(delta.getPath(), i, keyHashSize, valueSize, hashIndexBits, compressionCodec);
+          new CueballStreamBuffer(delta.getPath(), i, keyHashSize, valueSize, hashIndexBits, compressionCodec,
+              fromHashIndexIdx, toHashIndexIdx);
       cueballStreamBuffers[i++] = cueballStreamBuffer;
     }
+    return cueballStreamBuffers;
   }
 
   // Return null when there is nothing more to use
@@ -19,7 +19,6 @@ import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
 import com.liveramp.hank.hasher.Hasher;
 import com.liveramp.hank.storage.Writer;
-import com.liveramp.hank.util.EncodingHelper;
 import com.liveramp.hank.util.IOStreamUtils;
 
 import java.io.BufferedOutputStream;
@@ -49,6 +48,8 @@ public class CueballWriter implements Writer {
   private final long[] hashIndex;
 
   private final HashPrefixCalculator prefixer;
+  private final OutputStream filterStream;
+  private final CueballBloomFilter.Builder filterBuilder;
   private int lastHashPrefix = -1;
   private int uncompressedOffset = 0;
   private int numEntriesInBlock = 0;
@@ -64,6 +65,21 @@ public class CueballWriter implements Writer {
                        int valueSize,
                        CueballCompressionCodec compressionCodec,
                        int hashIndexBits) {
+    this(outputStream, keyHashSize, hasher, valueSize, compressionCodec, hashIndexBits, null, 0);
+  }
+
+  /**
+   * When a filter output stream is given, a Bloom filter of the written key hashes is built block
+   * by block and written to it on close.
+   */
+  public CueballWriter(OutputStream outputStream,
+                       int keyHashSize,
+                       Hasher hasher,
+                       int valueSize,
+                       CueballCompressionCodec compressionCodec,
+                       int hashIndexBits,
+                       OutputStream filterOutputStream,
+                       int filterBitsPerKey) {
     // Buffer output
     this.stream = new BufferedOutputStream(outputStream, IOStreamUtils.DEFAULT_BUFFER_SIZE);
     this.keyHashSize = keyHashSize;
@@ -82,6 +98,14 @@ public class CueballWriter implements Writer {
 
     hashIndex = new long[1 << hashIndexBits];
     Arrays.fill(hashIndex, -1);
+
+    if (filterOutputStream != null) {
+      filterStream = new BufferedOutputStream(filterOutputStream, IOStreamUtils.DEFAULT_BUFFER_SIZE);
+      filterBuilder = new CueballBloomFilter.Builder(hashIndexBits, filterBitsPerKey);
+    } else {
+      filterStream = null;
+      filterBuilder = null;
+    }
   }
 
   @Override
@@ -180,6 +204,11 @@ public class CueballWriter implements Writer {
   }
 
   private void clearUncompressed() throws IOException {
+    // add the key hashes of the block to the filter
+    if (filterBuilder != null && uncompressedOffset > 0) {
+      filterBuilder.addBlock(lastHashPrefix, uncompressedBuffer, 0, uncompressedOffset, keyHashSize,
+          keyHashSize + valueSize);
+    }
     // compress the block
     int compressedSize = compressionCodec.compress(uncompressedBuffer, 0, uncompressedOffset, compressedBuffer, 0);
     // write the compressed block to the data stream
@@ -207,15 +236,7 @@ public class CueballWriter implements Writer {
     }
 
     // serialize the footer
-    byte[] footer = new byte[8 * hashIndex.length + 4 + 4];
-
-    for (int i = 0; i < hashIndex.length; i++) {
-      EncodingHelper.encodeLittleEndianFixedWidthLong(hashIndex[i], footer, i * 8, 8);
-    }
-
-    // write the buffer size hints
-    EncodingHelper.encodeLittleEndianFixedWidthLong(maxUncompressedBlockSize, footer, footer.length - 8, 4);
-    EncodingHelper.encodeLittleEndianFixedWidthLong(maxCompressedBlockSize, footer, footer.length - 4, 4);
+    byte[] footer = Footer.serialize(hashIndex, maxUncompressedBlockSize, maxCompressedBlockSize);
 
     stream.write(footer);
 
@@ -224,6 +245,12 @@ public class CueballWriter implements Writer {
     // flush everything and close
     stream.flush();
     stream.close();
+
+    if (filterStream != null) {
+      filterBuilder.build().write(filterStream);
+      filterStream.flush();
+      filterStream.close();
+    }
   }
 
   @Override
@@ -3,6 +3,7 @@ package com.liveramp.hank.storage.cueball;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 import com.liveramp.hank.util.EncodingHelper;
 
@@ -14,15 +15,25 @@ final class Footer {
   private final int footerLength;
 
   public Footer(FileChannel channel, int hashIndexBits) throws IOException {
-    fileSize = channel.size();
+    this(readFooter(channel, hashIndexBits), channel.size(), hashIndexBits);
+  }
+
+  /**
+   * Read the footer of a file that is entirely held in memory.
+   */
+  public Footer(byte[] data, int hashIndexBits) throws IOException {
+    this(Arrays.copyOfRange(data, Math.max(0, data.length - getFooterLength(hashIndexBits)), data.length),
+        data.length, hashIndexBits);
+  }
+
+  private Footer(byte[] footer, long fileSize, int hashIndexBits) throws IOException {
+    this.fileSize = fileSize;
 
     final int hashIndexSize = 1 << hashIndexBits;
-    footerLength = hashIndexSize * 8 + 8;
+    footerLength = getFooterLength(hashIndexBits);
 
-    byte[] footer = new byte[getFooterLength()];
-    int read = channel.read(ByteBuffer.wrap(footer), getFileSize() - getFooterLength());
-    if (read != getFooterLength()) {
-      throw new IOException("Tried to read " + getFooterLength() + " bytes of footer, but only got " + read + " bytes!");
+    if (footer.length != footerLength) {
+      throw new IOException("Tried to read " + footerLength + " bytes of footer, but only got " + footer.length + " bytes!");
     }
 
     hashIndex = new long[hashIndexSize];
@@ -47,6 +58,33 @@ final class Footer {
     }
   }
 
+  private static int getFooterLength(int hashIndexBits) {
+    return (1 << hashIndexBits) * 8 + 8;
+  }
+
+  private static byte[] readFooter(FileChannel channel, int hashIndexBits) throws IOException {
+    int footerLength = getFooterLength(hashIndexBits);
+    byte[] footer = new byte[footerLength];
+    int read = channel.read(ByteBuffer.wrap(footer), channel.size() - footerLength);
+    if (read != footerLength) {
+      throw new IOException("Tried to read " + footerLength + " bytes of footer, but only got " + read + " bytes!");
+    }
+    return footer;
+  }
+
+  // Serialize a footer: the offset of each block (-1 for empty blocks) followed by the buffer size hints
+  static byte[] serialize(long[] hashIndex, long maxUncompressedBufferSize, long maxCompressedBufferSize) {
+    byte[] footer = new byte[8 * hashIndex.length + 4 + 4];
+
+    for (int i = 0; i < hashIndex.length; i++) {
+      EncodingHelper.encodeLittleEndianFixedWidthLong(hashIndex[i], footer, i * 8, 8);
+    }
+
+    EncodingHelper.encodeLittleEndianFixedWidthLong(maxUncompressedBufferSize, footer, footer.length - 8, 4);
+    EncodingHelper.encodeLittleEndianFixedWidthLong(maxCompressedBufferSize, footer, footer.length - 4, 4);
+    return footer;
+  }
+
   public long[] getHashIndex() {
     return hashIndex;
   }
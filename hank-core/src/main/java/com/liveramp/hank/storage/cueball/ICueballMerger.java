@@ -16,6 +16,7 @@
 package com.liveramp.hank.storage.cueball;
 
 import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.storage.PartitionRemoteFileOps;
 
 import java.io.IOException;
 import java.util.List;
@@ -31,4 +32,18 @@ public interface ICueballMerger {
                     int hashIndexBits,
                     CueballCompressionCodec compressionCodec)
       throws IOException;
+
+  /**
+   * Merge deltas that are read directly from the remote input streams, without being fetched to local disk first.
+   */
+  public void merge(final CueballFilePath latestBase,
+                    final List<String> deltaRemoteFiles,
+                    final PartitionRemoteFileOps partitionRemoteFileOps,
+                    final String newBasePath,
+                    final int keyHashSize,
+                    final int valueSize,
+                    ValueTransformer transformer,
+                    int hashIndexBits,
+                    CueballCompressionCodec compressionCodec)
+      throws IOException;
 }
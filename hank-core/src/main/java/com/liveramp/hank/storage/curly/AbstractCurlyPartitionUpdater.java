@@ -124,10 +124,15 @@ public abstract class AbstractCurlyPartitionUpdater extends IncrementalPartition
 
   protected abstract boolean shouldFetchCurlyVersion(DomainVersion version) throws IOException;
 
+  protected boolean shouldFetchCueballVersion(DomainVersion version) throws IOException {
+    return true;
+  }
+
   @Override
   protected void fetchVersion(DomainVersion version, String fetchRoot) throws IOException {
-    // Fetch Cueball version.
-    fetchCueballVersion(version, fetchRoot);
+    if (shouldFetchCueballVersion(version)) {
+      fetchCueballVersion(version, fetchRoot);
+    }
     if (shouldFetchCurlyVersion(version)) {
       fetchCurlyVersion(version, fetchRoot);
     }
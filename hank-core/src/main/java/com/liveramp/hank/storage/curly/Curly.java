@@ -43,6 +43,7 @@ import com.liveramp.hank.storage.PartitionRemoteFileOps;
 import com.liveramp.hank.storage.PartitionRemoteFileOpsFactory;
 import com.liveramp.hank.storage.PartitionUpdater;
 import com.liveramp.hank.storage.Reader;
+import com.liveramp.hank.storage.ReaderCaches;
 import com.liveramp.hank.storage.RemoteDomainCleaner;
 import com.liveramp.hank.storage.RemoteDomainVersionDeleter;
 import com.liveramp.hank.storage.StorageEngine;
@@ -81,6 +82,7 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
     private static final String BLOCK_COMPRESSION_CODEC = "block_compression_codec";
     private static final String COMPRESSED_BLOCK_SIZE_THRESHOLD = "compressed_block_size_threshold";
     private static final String OFFSET_IN_BLOCK_NUM_BYTES = "offset_in_block_num_bytes";
+    private static final String BLOCK_COMPRESSION_DICTIONARY_NUM_BYTES = "block_compression_dictionary_num_bytes";
 
     private static final Set<String> REQUIRED_KEYS = new HashSet<String>(Arrays.asList(REMOTE_DOMAIN_ROOT_KEY,
         RECORD_FILE_READ_BUFFER_BYTES_KEY, HASH_INDEX_BITS_KEY, MAX_ALLOWED_PART_SIZE_KEY, KEY_HASH_SIZE_KEY,
@@ -137,6 +139,10 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
       if (offsetInBlockNumBytes == null) {
         offsetInBlockNumBytes = -1;
       }
+      Integer blockCompressionDictionaryNumBytes = (Integer)options.get(BLOCK_COMPRESSION_DICTIONARY_NUM_BYTES);
+      if (blockCompressionDictionaryNumBytes == null) {
+        blockCompressionDictionaryNumBytes = -1;
+      }
 
       return new Curly((Integer)options.get(KEY_HASH_SIZE_KEY),
           hasher,
@@ -151,7 +157,8 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
           valueFoldingCacheCapacity,
           blockCompressionCodec,
           compressedBlockSizeThreshold,
-          offsetInBlockNumBytes);
+          offsetInBlockNumBytes,
+          blockCompressionDictionaryNumBytes);
     }
 
     @Override
@@ -181,6 +188,7 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
   private final CompressionCodec blockCompressionCodec;
   private final int compressedBlockSizeThreshold;
   private final int offsetInBlockNumBytes;
+  private final int blockCompressionDictionaryNumBytes;
   private final int cueballValueNumBytes;
 
   public Curly(int keyHashSize,
@@ -197,6 +205,26 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
                CompressionCodec blockCompressionCodec,
                int compressedBlockSizeThreshold,
                int offsetInBlockNumBytes) {
+    this(keyHashSize, hasher, maxAllowedPartSize, hashIndexBits, recordFileReadBufferBytes, remoteDomainRoot,
+        partitionRemoteFileOpsFactory, keyFileCompressionCodecClass, domain, numRemoteLeafVersionsToKeep,
+        valueFoldingCacheCapacity, blockCompressionCodec, compressedBlockSizeThreshold, offsetInBlockNumBytes, -1);
+  }
+
+  public Curly(int keyHashSize,
+               Hasher hasher,
+               long maxAllowedPartSize,
+               int hashIndexBits,
+               int recordFileReadBufferBytes,
+               String remoteDomainRoot,
+               PartitionRemoteFileOpsFactory partitionRemoteFileOpsFactory,
+               Class<? extends CueballCompressionCodec> keyFileCompressionCodecClass,
+               Domain domain,
+               int numRemoteLeafVersionsToKeep,
+               int valueFoldingCacheCapacity,
+               CompressionCodec blockCompressionCodec,
+               int compressedBlockSizeThreshold,
+               int offsetInBlockNumBytes,
+               int blockCompressionDictionaryNumBytes) {
     this.keyHashSize = keyHashSize;
     this.hashIndexBits = hashIndexBits;
     this.recordFileReadBufferBytes = recordFileReadBufferBytes;
@@ -209,6 +237,7 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
     this.blockCompressionCodec = blockCompressionCodec;
     this.compressedBlockSizeThreshold = compressedBlockSizeThreshold;
     this.offsetInBlockNumBytes = offsetInBlockNumBytes;
+    this.blockCompressionDictionaryNumBytes = blockCompressionDictionaryNumBytes;
 
     this.offsetNumBytes = (int)(Math.ceil(Math.ceil(Math.log(maxAllowedPartSize) / Math.log(2)) / 8.0));
 
@@ -240,18 +269,25 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
         configurator.getCacheNumBytesCapacity(),
         configurator.getCacheNumItemsCapacity(),
         configurator.getBufferReuseMaxSize(),
-        2);
+        2,
+        configurator.getUseMemoryMappedFiles(),
+        configurator.getUseOffHeapCache(),
+        configurator.getUseCacheAdmissionFilter(),
+        configurator.getIOEngine(),
+        configurator.getBlockCache());
 
     return new CurlyReader(CurlyReader.getLatestBase(getTargetDirectory(configurator, partitionNumber)),
         recordFileReadBufferBytes,
         cueballStorageEngine.getReader(subConfigurator, partitionNumber),
-        subConfigurator.getCacheNumBytesCapacity(),
-        (int)subConfigurator.getCacheNumItemsCapacity(),
+        ReaderCaches.create(subConfigurator),
         blockCompressionCodec,
         offsetNumBytes,
         offsetInBlockNumBytes,
         false,
-        subConfigurator.getBufferReuseMaxSize());
+        subConfigurator.getBufferReuseMaxSize(),
+        subConfigurator.getUseMemoryMappedFiles(),
+        subConfigurator.getIOEngine(),
+        subConfigurator.getBlockCache());
   }
 
   @Override
@@ -271,7 +307,7 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
     OutputStream outputStream = partitionRemoteFileOps.getOutputStream(getName(domainVersion.getVersionNumber(),
         domainVersionProperties.isBase()));
     return new CurlyWriter(outputStream, keyFileWriter, offsetNumBytes, valueFoldingCacheCapacity,
-        blockCompressionCodec, compressedBlockSizeThreshold, offsetInBlockNumBytes);
+        blockCompressionCodec, compressedBlockSizeThreshold, offsetInBlockNumBytes, blockCompressionDictionaryNumBytes);
   }
 
   private IncrementalDomainVersionProperties getDomainVersionProperties(DomainVersion domainVersion) throws IOException {
@@ -302,7 +338,8 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
     if (!localDir.exists() && !localDir.mkdirs()) {
       throw new RuntimeException("Failed to create directory " + localDir.getAbsolutePath());
     }
-    return getFastPartitionUpdater(localDir.getAbsolutePath(), partitionNumber);
+    return getFastPartitionUpdater(localDir.getAbsolutePath(), partitionNumber, configurator.getUpdateMergeParallelism(),
+        configurator.getUpdateStreamDeltas(), configurator.getKeyFileFilterBitsPerKey());
   }
 
   @Override
@@ -345,17 +382,22 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
     );
   }
 
-  private CurlyFastPartitionUpdater getFastPartitionUpdater(String localDir, int partNum) throws IOException {
+  private CurlyFastPartitionUpdater getFastPartitionUpdater(String localDir,
+                                                            int partNum,
+                                                            int mergeParallelism,
+                                                            boolean streamDeltas,
+                                                            int filterBitsPerKey) throws IOException {
     return new CurlyFastPartitionUpdater(domain,
         getPartitionRemoteFileOps(partNum),
         new CurlyMerger(),
-        new CueballMerger(),
+        new CueballMerger(mergeParallelism, filterBitsPerKey),
         keyHashSize,
         offsetNumBytes,
         offsetInBlockNumBytes,
         hashIndexBits,
         getCompressionCodec(),
-        localDir);
+        localDir,
+        streamDeltas);
   }
 
   private CueballCompressionCodec getCompressionCodec() throws IOException {
@@ -473,6 +515,7 @@ public class Curly extends IncrementalStorageEngine implements StorageEngine {
         + ", blockCompressionCodec=" + blockCompressionCodec
         + ", compressedBlockSizeThreshold=" + compressedBlockSizeThreshold
         + ", offsetInBlockNumBytes=" + offsetInBlockNumBytes
+        + ", blockCompressionDictionaryNumBytes=" + blockCompressionDictionaryNumBytes
         + "]";
   }
 }
@@ -45,6 +45,7 @@ public class CurlyFastPartitionUpdater extends AbstractCurlyPartitionUpdater {
   private final CueballCompressionCodec compressionCodec;
   private final ICurlyMerger curlyMerger;
   private final ICueballMerger cueballMerger;
+  private final boolean streamCueballDeltas;
 
   public CurlyFastPartitionUpdater(Domain domain,
                                    PartitionRemoteFileOps partitionRemoteFileOps,
@@ -56,6 +57,25 @@ public class CurlyFastPartitionUpdater extends AbstractCurlyPartitionUpdater {
                                    int hashIndexBits,
                                    CueballCompressionCodec compressionCodec,
                                    String localPartitionRoot) throws IOException {
+    this(domain, partitionRemoteFileOps, curlyMerger, cueballMerger, keyHashSize, offsetNumBytes,
+        offsetInBlockNumBytes, hashIndexBits, compressionCodec, localPartitionRoot, false);
+  }
+
+  /**
+   * When streamCueballDeltas is true, Cueball deltas are merged directly from their remote input streams,
+   * the same way Curly deltas are, instead of being fetched to local disk first.
+   */
+  public CurlyFastPartitionUpdater(Domain domain,
+                                   PartitionRemoteFileOps partitionRemoteFileOps,
+                                   ICurlyMerger curlyMerger,
+                                   ICueballMerger cueballMerger,
+                                   int keyHashSize,
+                                   int offsetNumBytes,
+                                   int offsetInBlockNumBytes,
+                                   int hashIndexBits,
+                                   CueballCompressionCodec compressionCodec,
+                                   String localPartitionRoot,
+                                   boolean streamCueballDeltas) throws IOException {
     super(domain, partitionRemoteFileOps, localPartitionRoot);
     this.keyHashSize = keyHashSize;
     this.offsetNumBytes = offsetNumBytes;
@@ -68,6 +88,7 @@ public class CurlyFastPartitionUpdater extends AbstractCurlyPartitionUpdater {
     this.compressionCodec = compressionCodec;
     this.curlyMerger = curlyMerger;
     this.cueballMerger = cueballMerger;
+    this.streamCueballDeltas = streamCueballDeltas;
   }
 
   @Override
@@ -77,6 +98,11 @@ public class CurlyFastPartitionUpdater extends AbstractCurlyPartitionUpdater {
     return IncrementalDomainVersionProperties.isBase(version);
   }
 
+  @Override
+  protected boolean shouldFetchCueballVersion(DomainVersion version) throws IOException {
+    return !streamCueballDeltas || IncrementalDomainVersionProperties.isBase(version);
+  }
+
   @Override
   protected void runUpdateCore(DomainVersion currentVersion,
                                DomainVersion updatingToVersion,
@@ -114,8 +140,10 @@ public class CurlyFastPartitionUpdater extends AbstractCurlyPartitionUpdater {
 
     // Merge the Curly delta files into the base
     HankTimer timer = new HankTimer();
+    long curlyBaseLength = newCurlyBaseFile.length();
     long[] offsetAdjustments = curlyMerger.merge(newCurlyBasePath, curlyDeltaRemoteFiles, partitionRemoteFileOps);
     long curlyTimeMs = timer.getDurationMs();
+    statistics.addNumBytesWritten(newCurlyBaseFile.length() - curlyBaseLength);
 
     // Run Cueball update
     timer.restart();
@@ -132,6 +160,7 @@ public class CurlyFastPartitionUpdater extends AbstractCurlyPartitionUpdater {
         hashIndexBits,
         compressionCodec,
         new OffsetTransformer(offsetNumBytes, offsetAdjustments),
+        streamCueballDeltas ? partitionRemoteFileOps : null,
         statistics);
     long cueballTimeMs = timer.getDurationMs();
 
@@ -16,33 +16,56 @@
 
 package com.liveramp.hank.storage.curly;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.liveramp.commons.util.ByteBufferMemoryUsageEstimator;
 import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.compression.CompressionDictionary;
+import com.liveramp.hank.compression.CompressionFactory;
 import com.liveramp.hank.compression.Decompressor;
+import com.liveramp.hank.compression.DictionaryCompressionFactory;
+import com.liveramp.hank.compression.DictionaryDecompressor;
+import com.liveramp.hank.storage.BlockCache;
 import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.HeapReaderCache;
+import com.liveramp.hank.storage.IOEngine;
+import com.liveramp.hank.storage.IOEngineFile;
+import com.liveramp.hank.storage.IOEngines;
 import com.liveramp.hank.storage.Reader;
+import com.liveramp.hank.storage.ReaderCache;
 import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.storage.SynchronousIOEngine;
 import com.liveramp.hank.util.EncodingHelper;
-import com.liveramp.hank.util.SynchronizedMemoryBoundCache;
+import com.liveramp.hank.util.MemoryMappedFile;
+import com.liveramp.hank.util.ObjectPool;
 import com.liveramp.hank.util.UnsafeByteArrayOutputStream;
 
 public class CurlyReader implements Reader, ICurlyReader {
 
+  private static final Logger LOG = LoggerFactory.getLogger(CurlyReader.class);
+
   private final Reader keyFileReader;
   private final int readBufferSize;
-  private final FileChannel recordFile;
+  private final IOEngineFile recordFile;
+  private final int maxNumReadsInFlight;
+  private MemoryMappedFile mappedRecordFile;
   private final int versionNumber;
   private final int bufferReuseMaxSize;
-  private SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer> cache;
+  private ReaderCache cache;
   private final CompressionCodec blockCompressionCodec;
   private final int offsetNumBytes;
   private final int offsetInBlockNumBytes;
@@ -52,14 +75,25 @@ public class CurlyReader implements Reader, ICurlyReader {
   private ByteBuffer lastDecompressedBlock;
   private long lastDecompressedBlockOffset = -1;
 
+  // Decompressed block cache shared with other readers, when using block compression
+  private final BlockCache blockCache;
+  private final long blockCacheFileId;
+
+  // Dictionaries of codecs that support them, by offset of the record they are stored in
+  private final DictionaryCompressionFactory dictionaryCompressionFactory;
+  private final ConcurrentMap<Long, CompressionDictionary> dictionaries =
+      new ConcurrentHashMap<Long, CompressionDictionary>();
+
   private static class Local {
 
     private final Map<CompressionCodec, Decompressor> blockDecompressors;
     private UnsafeByteArrayOutputStream decompressionOutputStream;
+    private ByteBuffer locationCopy;
 
     public Local() {
       this.blockDecompressors = new HashMap<CompressionCodec, Decompressor>();
       this.decompressionOutputStream = new UnsafeByteArrayOutputStream();
+      this.locationCopy = ByteBuffer.allocate(0);
     }
 
     public Decompressor getBlockDecompressor(CompressionCodec blockDecompressorCodec) {
@@ -75,6 +109,12 @@ public class CurlyReader implements Reader, ICurlyReader {
       return decompressionOutputStream;
     }
 
+    // Copy the given location into a reused buffer
+    public ByteBuffer copyLocation(ByteBuffer location) {
+      locationCopy = BytesUtils.byteBufferDeepCopy(location, locationCopy);
+      return locationCopy;
+    }
+
     public void clear() {
       decompressionOutputStream.reset();
     }
@@ -84,12 +124,15 @@ public class CurlyReader implements Reader, ICurlyReader {
     }
   }
 
-  private static final ThreadLocal<Local> threadLocal = new ThreadLocal<Local>() {
-    @Override
-    public Local initialValue() {
-      return new Local();
-    }
-  };
+  // Shared by all readers. Locals are held while records are read, so more of them can be in use than
+  // there are processors.
+  private static final ObjectPool<Local> localPool =
+      new ObjectPool<Local>(4 * Runtime.getRuntime().availableProcessors()) {
+        @Override
+        protected Local create() {
+          return new Local();
+        }
+      };
 
   public static CurlyFilePath getLatestBase(String partitionRoot) throws IOException {
     SortedSet<CurlyFilePath> bases = Curly.getBases(partitionRoot);
@@ -117,7 +160,72 @@ public class CurlyReader implements Reader, ICurlyReader {
                      int offsetInBlockNumBytes,
                      boolean cacheLastDecompressedBlock,
                      int bufferReuseMaxSize) throws IOException {
-    this.recordFile = new FileInputStream(curlyFile.getPath()).getChannel();
+    this(curlyFile, recordFileReadBufferBytes, keyFileReader, cacheNumBytesCapacity, cacheNumItemsCapacity,
+        blockCompressionCodec, offsetNumBytes, offsetInBlockNumBytes, cacheLastDecompressedBlock, bufferReuseMaxSize, false);
+  }
+
+  public CurlyReader(CurlyFilePath curlyFile,
+                     int recordFileReadBufferBytes,
+                     Reader keyFileReader,
+                     long cacheNumBytesCapacity,
+                     int cacheNumItemsCapacity,
+                     CompressionCodec blockCompressionCodec,
+                     int offsetNumBytes,
+                     int offsetInBlockNumBytes,
+                     boolean cacheLastDecompressedBlock,
+                     int bufferReuseMaxSize,
+                     boolean useMemoryMappedFile) throws IOException {
+    this(curlyFile, recordFileReadBufferBytes, keyFileReader,
+        new HeapReaderCache(cacheNumBytesCapacity, cacheNumItemsCapacity),
+        blockCompressionCodec, offsetNumBytes, offsetInBlockNumBytes, cacheLastDecompressedBlock, bufferReuseMaxSize,
+        useMemoryMappedFile);
+  }
+
+  public CurlyReader(CurlyFilePath curlyFile,
+                     int recordFileReadBufferBytes,
+                     Reader keyFileReader,
+                     ReaderCache cache,
+                     CompressionCodec blockCompressionCodec,
+                     int offsetNumBytes,
+                     int offsetInBlockNumBytes,
+                     boolean cacheLastDecompressedBlock,
+                     int bufferReuseMaxSize,
+                     boolean useMemoryMappedFile) throws IOException {
+    this(curlyFile, recordFileReadBufferBytes, keyFileReader, cache, blockCompressionCodec, offsetNumBytes,
+        offsetInBlockNumBytes, cacheLastDecompressedBlock, bufferReuseMaxSize, useMemoryMappedFile,
+        new SynchronousIOEngine());
+  }
+
+  public CurlyReader(CurlyFilePath curlyFile,
+                     int recordFileReadBufferBytes,
+                     Reader keyFileReader,
+                     ReaderCache cache,
+                     CompressionCodec blockCompressionCodec,
+                     int offsetNumBytes,
+                     int offsetInBlockNumBytes,
+                     boolean cacheLastDecompressedBlock,
+                     int bufferReuseMaxSize,
+                     boolean useMemoryMappedFile,
+                     IOEngine ioEngine) throws IOException {
+    this(curlyFile, recordFileReadBufferBytes, keyFileReader, cache, blockCompressionCodec, offsetNumBytes,
+        offsetInBlockNumBytes, cacheLastDecompressedBlock, bufferReuseMaxSize, useMemoryMappedFile, ioEngine,
+        new BlockCache(0));
+  }
+
+  public CurlyReader(CurlyFilePath curlyFile,
+                     int recordFileReadBufferBytes,
+                     Reader keyFileReader,
+                     ReaderCache cache,
+                     CompressionCodec blockCompressionCodec,
+                     int offsetNumBytes,
+                     int offsetInBlockNumBytes,
+                     boolean cacheLastDecompressedBlock,
+                     int bufferReuseMaxSize,
+                     boolean useMemoryMappedFile,
+                     IOEngine ioEngine,
+                     BlockCache blockCache) throws IOException {
+    this.recordFile = ioEngine.open(curlyFile.getPath());
+    this.maxNumReadsInFlight = Math.max(1, ioEngine.getMaxNumReadsInFlight());
     this.keyFileReader = keyFileReader;
     this.readBufferSize = recordFileReadBufferBytes;
     this.versionNumber = curlyFile.getVersion();
@@ -125,12 +233,7 @@ public class CurlyReader implements Reader, ICurlyReader {
     this.offsetNumBytes = offsetNumBytes;
     this.offsetInBlockNumBytes = offsetInBlockNumBytes;
     this.cacheLastDecompressedBlock = cacheLastDecompressedBlock;
-    this.cache = new SynchronizedMemoryBoundCache<ByteBuffer, ByteBuffer>(
-        cacheNumBytesCapacity > 0 || cacheNumItemsCapacity > 0,
-        cacheNumBytesCapacity,
-        cacheNumItemsCapacity,
-        new ByteBufferMemoryUsageEstimator(),
-        new ByteBufferMemoryUsageEstimator());
+    this.cache = cache;
     // Check that key file is at the same version
     if (keyFileReader != null &&
         keyFileReader.getVersionNumber() != null &&
@@ -141,7 +244,30 @@ public class CurlyReader implements Reader, ICurlyReader {
     if (cacheLastDecompressedBlock) {
       lastDecompressedBlock = ByteBuffer.allocate(1);
     }
+    if (blockCompressionCodec != null && blockCache.isEnabled()) {
+      this.blockCache = blockCache;
+      this.blockCacheFileId = blockCache.newFileId();
+    } else {
+      this.blockCache = null;
+      this.blockCacheFileId = -1;
+    }
+    CompressionFactory blockCompressionFactory = blockCompressionCodec == null ? null : blockCompressionCodec.getFactory();
+    if (blockCompressionFactory instanceof DictionaryCompressionFactory) {
+      this.dictionaryCompressionFactory = (DictionaryCompressionFactory)blockCompressionFactory;
+    } else {
+      this.dictionaryCompressionFactory = null;
+    }
     this.bufferReuseMaxSize = bufferReuseMaxSize;
+    if (useMemoryMappedFile) {
+      try {
+        // Records that fit in the read buffer never straddle two chunks of the mapping
+        mappedRecordFile = new MemoryMappedFile(recordFile.getChannel(), recordFile.getChannel().size(),
+            Math.max(recordFileReadBufferBytes, EncodingHelper.MAX_VARINT_SIZE));
+      } catch (IOException e) {
+        LOG.warn("Failed to memory map " + curlyFile.getPath() + ", falling back to reading through file channel", e);
+        mappedRecordFile = null;
+      }
+    }
   }
 
   @Override
@@ -151,13 +277,32 @@ public class CurlyReader implements Reader, ICurlyReader {
     if (loadValueFromCache(location, result)) {
       return;
     }
-    // Deep copy the location if caching is active, since result might point to location and overwrite it
-    ByteBuffer locationDeepCopy = cache.isEnabled() ? BytesUtils.byteBufferDeepCopy(location) : null;
+    Local local = cache.isEnabled() || blockCompressionCodec != null ? localPool.acquire() : null;
+    try {
+      readRecord(location, result, local);
+    } finally {
+      if (local != null) {
+        // Drop decompression buffer if needed, it's not used anymore
+        dropDecompressionBuffer(local);
+        localPool.release(local);
+      }
+    }
+  }
+
+  private void readRecord(ByteBuffer location, ReaderResult result, Local local) throws IOException {
+    // Copy the location if caching is active, since result might point to location and overwrite it
+    ByteBuffer locationCopy = cache.isEnabled() ? local.copyLocation(location) : null;
     if (blockCompressionCodec == null) {
       // When not using block compression, location just contains an offset. Decode it.
       long recordFileOffset = EncodingHelper.decodeLittleEndianFixedWidthLong(location);
-      // Directly read record into result
-      readRecordAtOffset(recordFileOffset, result);
+      if (mappedRecordFile != null) {
+        // Expose the value directly from the mapping
+        result.setView(readMappedRecordAtOffset(recordFileOffset));
+        result.setMemoryMappedRead(true);
+      } else {
+        // Directly read record into result
+        readRecordAtOffset(recordFileOffset, result);
+      }
     } else {
       // When using block compression, location contains the block's offset and an offset in the block. Decode them.
       long recordFileBlockOffset = EncodingHelper.decodeLittleEndianFixedWidthLong(location.array(),
@@ -170,10 +315,7 @@ public class CurlyReader implements Reader, ICurlyReader {
         // This block has been decompressed just before, reuse it
         decompressedBlockByteBuffer = lastDecompressedBlock;
       } else {
-        // Read in the compressed block into the result
-        readRecordAtOffset(recordFileBlockOffset, result);
-        // Decompress block
-        decompressedBlockByteBuffer = decompressBlock(result.getBuffer());
+        decompressedBlockByteBuffer = readBlockThroughCache(local, recordFileBlockOffset, result);
         // Cache the decompressed block if requested
         if (cacheLastDecompressedBlock) {
           lastDecompressedBlockOffset = recordFileBlockOffset;
@@ -181,56 +323,149 @@ public class CurlyReader implements Reader, ICurlyReader {
         }
       }
 
-      // Position ourselves at the beginning of the actual value
-      decompressedBlockByteBuffer.position((int)offsetInBlock);
-      // Determine result value size
-      int valueSize = EncodingHelper.decodeLittleEndianVarInt(decompressedBlockByteBuffer);
-
-      // Copy decompressed result into final result buffer
-      result.requiresBufferSize(valueSize);
-      result.getBuffer().clear();
-      // We can exactly wrap our value
-      result.getBuffer().put(
-          decompressedBlockByteBuffer.array(),
-          decompressedBlockByteBuffer.arrayOffset() + decompressedBlockByteBuffer.position(),
-          valueSize);
-      result.getBuffer().flip();
-      // Drop decompression buffer if needed, it's not used anymore
-      dropDecompressionBuffer();
+      readValueInBlock(decompressedBlockByteBuffer, offsetInBlock, result);
     }
     // Store result in cache if needed
-    addValueToCache(locationDeepCopy, result.getBuffer());
+    addValueToCache(locationCopy, result.getBuffer());
+  }
+
+  // Return the decompressed block at the given offset, from the shared block cache if it is there
+  private ByteBuffer readBlockThroughCache(Local local, long recordFileBlockOffset, ReaderResult result)
+      throws IOException {
+    if (blockCache == null) {
+      return readBlock(local, recordFileBlockOffset, result);
+    }
+    byte[] cachedBlock = blockCache.get(blockCacheFileId, recordFileBlockOffset);
+    if (cachedBlock != null) {
+      result.setBlockCacheHit(true);
+      // Wrap it so that concurrent readers of the block do not share a position
+      return ByteBuffer.wrap(cachedBlock);
+    }
+    ByteBuffer decompressedBlockByteBuffer = readBlock(local, recordFileBlockOffset, result);
+    putBlockInCache(recordFileBlockOffset, decompressedBlockByteBuffer);
+    return decompressedBlockByteBuffer;
+  }
+
+  private void putBlockInCache(long recordFileBlockOffset, ByteBuffer decompressedBlockByteBuffer) {
+    blockCache.put(blockCacheFileId, recordFileBlockOffset, decompressedBlockByteBuffer.array(),
+        decompressedBlockByteBuffer.arrayOffset() + decompressedBlockByteBuffer.position(),
+        decompressedBlockByteBuffer.remaining());
   }
 
-  private ByteBuffer decompressBlock(ByteBuffer block) throws IOException {
-    Local local = threadLocal.get();
+  // Read the compressed block at the given offset into the result, and return it decompressed
+  private ByteBuffer readBlock(Local local, long recordFileBlockOffset, ReaderResult result) throws IOException {
+    // Read in the compressed block into the result
+    if (mappedRecordFile != null) {
+      // Decompressors operate on arrays, so copy the compressed block out of the mapping
+      result.deepCopyIntoResultBuffer(readMappedRecordAtOffset(recordFileBlockOffset));
+      result.setMemoryMappedRead(true);
+    } else {
+      readRecordAtOffset(recordFileBlockOffset, result);
+    }
+    // Decompress block
+    return decompressBlock(local, recordFileBlockOffset, result.getBuffer());
+  }
+
+  // Copy the value at the given offset of the decompressed block into the result
+  private void readValueInBlock(ByteBuffer decompressedBlockByteBuffer, long offsetInBlock, ReaderResult result) {
+    // Position ourselves at the beginning of the actual value
+    decompressedBlockByteBuffer.position((int)offsetInBlock);
+    // Determine result value size
+    int valueSize = EncodingHelper.decodeLittleEndianVarInt(decompressedBlockByteBuffer);
+
+    // Copy decompressed result into final result buffer
+    result.requiresBufferSize(valueSize);
+    result.getBuffer().clear();
+    // We can exactly wrap our value
+    result.getBuffer().put(
+        decompressedBlockByteBuffer.array(),
+        decompressedBlockByteBuffer.arrayOffset() + decompressedBlockByteBuffer.position(),
+        valueSize);
+    result.getBuffer().flip();
+  }
+
+  private ByteBuffer decompressBlock(Local local, long recordFileBlockOffset, ByteBuffer block) throws IOException {
     local.clear();
-    local.getBlockDecompressor(blockCompressionCodec).decompressBlock(
-        block.array(),
-        block.arrayOffset() + block.position(),
-        block.remaining(),
-        local.getDecompressionOutputStream());
+    Decompressor decompressor = local.getBlockDecompressor(blockCompressionCodec);
+    if (dictionaryCompressionFactory == null) {
+      decompressor.decompressBlock(
+          block.array(),
+          block.arrayOffset() + block.position(),
+          block.remaining(),
+          local.getDecompressionOutputStream());
+    } else {
+      // Blocks start with their distance back to the record holding the dictionary (0 when there is none)
+      long dictionaryDistance = EncodingHelper.decodeLittleEndianFixedWidthLong(
+          block.array(), block.arrayOffset() + block.position(), offsetNumBytes);
+      CompressionDictionary dictionary = null;
+      if (dictionaryDistance > 0) {
+        dictionary = getDictionary(recordFileBlockOffset - dictionaryDistance);
+      }
+      ((DictionaryDecompressor)decompressor).decompressBlock(
+          block.array(),
+          block.arrayOffset() + block.position() + offsetNumBytes,
+          block.remaining() - offsetNumBytes,
+          dictionary,
+          local.getDecompressionOutputStream());
+    }
     return local.getDecompressionOutputStream().getByteBuffer();
   }
 
-  private void dropDecompressionBuffer() {
-    Local local = threadLocal.get();
+  // Load the dictionary stored in the record at the given offset. Dictionaries are loaded once and shared.
+  private CompressionDictionary getDictionary(long recordFileOffset) throws IOException {
+    CompressionDictionary dictionary = dictionaries.get(recordFileOffset);
+    if (dictionary != null) {
+      return dictionary;
+    }
+    ByteBuffer record;
+    if (mappedRecordFile != null) {
+      record = readMappedRecordAtOffset(recordFileOffset);
+    } else {
+      ReaderResult result = new ReaderResult(readBufferSize);
+      readRecordAtOffset(recordFileOffset, result);
+      record = result.getBuffer();
+    }
+    byte[] bytes = new byte[record.remaining()];
+    record.get(bytes);
+    dictionary = dictionaryCompressionFactory.loadDictionary(bytes);
+    CompressionDictionary previous = dictionaries.putIfAbsent(recordFileOffset, dictionary);
+    return previous == null ? dictionary : previous;
+  }
+
+  private void dropDecompressionBuffer(Local local) {
     if (local.getDecompressionOutputStream().getByteBuffer() != null &&
         local.getDecompressionOutputStream().getByteBuffer().capacity() > bufferReuseMaxSize) {
       local.dropDecompressionOutputStream();
     }
   }
 
+  // Return a view of the record at the given offset in the mapped record file. The record size
+  // is decoded from the mapping, so there is no need to guess it and read again.
+  private ByteBuffer readMappedRecordAtOffset(long recordFileOffset) {
+    ByteBuffer recordSizeBuffer = mappedRecordFile.getRegion(recordFileOffset, EncodingHelper.MAX_VARINT_SIZE);
+    int recordSize = EncodingHelper.decodeLittleEndianVarInt(recordSizeBuffer);
+    return mappedRecordFile.getRegion(recordFileOffset + recordSizeBuffer.position(), recordSize);
+  }
+
   // Note: the buffer in result must be at least readBufferSize long
   private void readRecordAtOffset(long recordFileOffset, ReaderResult result) throws IOException {
+    recordFile.read(prepareRecordRead(result), recordFileOffset);
+    completeRecordRead(recordFileOffset, result);
+  }
+
+  // Return the buffer of the result, ready for the first read of a record
+  private ByteBuffer prepareRecordRead(ReaderResult result) {
     // Let's reset the buffer so we can do our read.
     result.getBuffer().rewind();
     // the buffer is already at least this big, so we'll extend it back out.
     result.getBuffer().limit(readBufferSize);
+    return result.getBuffer();
+  }
 
-    // TODO: it does seem like there's a chance that this could return too few
+  // Decode the record from the first read into the result, and read the rest of it if needed
+  private void completeRecordRead(long recordFileOffset, ReaderResult result) throws IOException {
+    // TODO: it does seem like there's a chance that the first read returned too few
     // bytes to do the varint decoding.
-    recordFile.read(result.getBuffer(), recordFileOffset);
     result.getBuffer().rewind();
     int recordSize = EncodingHelper.decodeLittleEndianVarInt(result.getBuffer());
 
@@ -292,6 +527,158 @@ public class CurlyReader implements Reader, ICurlyReader {
     }
   }
 
+  /**
+   * Locations of all keys are first read from the key file in a single batch. Records are then read
+   * in record file order, so that reads are sequential and each compressed block is only read and
+   * decompressed once, or taken from the shared block cache. Reads of the next records are kept in
+   * flight through the I/O engine while a record is decoded.
+   */
+  @Override
+  public void getBulk(List<ByteBuffer> keys, List<ReaderResult> results) throws IOException {
+    int numKeys = keys.size();
+    for (int i = 0; i < numKeys; ++i) {
+      results.get(i).requiresBufferSize(readBufferSize);
+    }
+    keyFileReader.getBulk(keys, results);
+
+    // Decode the locations of keys that were found and are not cached
+    final long[] recordFileOffsets = new long[numKeys];
+    final long[] offsetsInBlock = new long[numKeys];
+    ByteBuffer[] locationCopies = cache.isEnabled() ? new ByteBuffer[numKeys] : null;
+    Integer[] pendingKeys = new Integer[numKeys];
+    int numPendingKeys = 0;
+    for (int i = 0; i < numKeys; ++i) {
+      ReaderResult result = results.get(i);
+      if (!result.isFound()) {
+        continue;
+      }
+      ByteBuffer location = result.getBuffer();
+      if (loadValueFromCache(location, result)) {
+        continue;
+      }
+      if (locationCopies != null) {
+        locationCopies[i] = BytesUtils.byteBufferDeepCopy(location);
+      }
+      if (blockCompressionCodec == null) {
+        recordFileOffsets[i] = EncodingHelper.decodeLittleEndianFixedWidthLong(location);
+      } else {
+        recordFileOffsets[i] = EncodingHelper.decodeLittleEndianFixedWidthLong(location.array(),
+            location.arrayOffset() + location.position(), offsetNumBytes);
+        offsetsInBlock[i] = EncodingHelper.decodeLittleEndianFixedWidthLong(location.array(),
+            location.arrayOffset() + location.position() + offsetNumBytes, offsetInBlockNumBytes);
+      }
+      pendingKeys[numPendingKeys++] = i;
+    }
+    if (numPendingKeys == 0) {
+      return;
+    }
+    Arrays.sort(pendingKeys, 0, numPendingKeys, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        if (recordFileOffsets[a] != recordFileOffsets[b]) {
+          return recordFileOffsets[a] < recordFileOffsets[b] ? -1 : 1;
+        }
+        return Long.compare(offsetsInBlock[a], offsetsInBlock[b]);
+      }
+    });
+
+    // Group keys: one group per record, or one per block when using block compression.
+    // A group is read into the result of its first key.
+    int[] groupStarts = new int[numPendingKeys + 1];
+    int numGroups = 0;
+    for (int p = 0; p < numPendingKeys; ++p) {
+      if (blockCompressionCodec == null || p == 0
+          || recordFileOffsets[pendingKeys[p]] != recordFileOffsets[pendingKeys[p - 1]]) {
+        groupStarts[numGroups++] = p;
+      }
+    }
+    groupStarts[numGroups] = numPendingKeys;
+    // Blocks found in the shared block cache are not read again
+    byte[][] cachedBlocks = new byte[numGroups][];
+    int[] groupsToRead = new int[numGroups];
+    int numGroupsToRead = 0;
+    for (int g = 0; g < numGroups; ++g) {
+      if (blockCache != null) {
+        cachedBlocks[g] = blockCache.get(blockCacheFileId, recordFileOffsets[pendingKeys[groupStarts[g]]]);
+      }
+      if (cachedBlocks[g] == null) {
+        groupsToRead[numGroupsToRead++] = g;
+      }
+    }
+
+    // Reads through the I/O engine are kept in flight ahead of the record being decoded
+    int numReadsAhead = mappedRecordFile == null ? Math.min(maxNumReadsInFlight, numGroupsToRead) : 0;
+    List<Future<Integer>> reads = new ArrayList<Future<Integer>>(numGroupsToRead);
+    for (int r = 0; r < numReadsAhead; ++r) {
+      reads.add(submitRecordRead(recordFileOffsets, pendingKeys[groupStarts[groupsToRead[r]]], results));
+    }
+    Local local = blockCompressionCodec != null ? localPool.acquire() : null;
+    int readIndex = -1;
+    try {
+      for (int g = 0; g < numGroups; ++g) {
+        int first = pendingKeys[groupStarts[g]];
+        ReaderResult firstResult = results.get(first);
+        boolean isCachedBlock = cachedBlocks[g] != null;
+        ByteBuffer decompressedBlockByteBuffer = null;
+        if (isCachedBlock) {
+          decompressedBlockByteBuffer = ByteBuffer.wrap(cachedBlocks[g]);
+        } else {
+          ++readIndex;
+          if (mappedRecordFile != null) {
+            if (blockCompressionCodec == null) {
+              // Expose the value directly from the mapping
+              firstResult.setView(readMappedRecordAtOffset(recordFileOffsets[first]));
+            } else {
+              // Decompressors operate on arrays, so copy the compressed block out of the mapping
+              firstResult.deepCopyIntoResultBuffer(readMappedRecordAtOffset(recordFileOffsets[first]));
+            }
+          } else {
+            IOEngines.waitFor(reads.get(readIndex));
+            completeRecordRead(recordFileOffsets[first], firstResult);
+            if (readIndex + numReadsAhead < numGroupsToRead) {
+              reads.add(submitRecordRead(recordFileOffsets,
+                  pendingKeys[groupStarts[groupsToRead[readIndex + numReadsAhead]]], results));
+            }
+          }
+          if (blockCompressionCodec != null) {
+            decompressedBlockByteBuffer = decompressBlock(local, recordFileOffsets[first], firstResult.getBuffer());
+            if (blockCache != null) {
+              putBlockInCache(recordFileOffsets[first], decompressedBlockByteBuffer);
+            }
+          }
+        }
+        for (int p = groupStarts[g]; p < groupStarts[g + 1]; ++p) {
+          int i = pendingKeys[p];
+          ReaderResult result = results.get(i);
+          if (isCachedBlock) {
+            result.setBlockCacheHit(true);
+          } else if (mappedRecordFile != null) {
+            result.setMemoryMappedRead(true);
+          }
+          if (decompressedBlockByteBuffer != null) {
+            readValueInBlock(decompressedBlockByteBuffer, offsetsInBlock[i], result);
+          }
+          if (locationCopies != null) {
+            addValueToCache(locationCopies[i], result.getBuffer());
+          }
+        }
+      }
+    } finally {
+      // Reads still in flight after a failure must not write into results once they are reused
+      IOEngines.waitForAll(reads.subList(Math.min(readIndex + 1, reads.size()), reads.size()));
+      if (local != null) {
+        // Drop decompression buffer if needed, it's not used anymore
+        dropDecompressionBuffer(local);
+        localPool.release(local);
+      }
+    }
+  }
+
+  // Start the first read of the record at the offset of the given key, into its result
+  private Future<Integer> submitRecordRead(long[] recordFileOffsets, int key, List<ReaderResult> results) {
+    return recordFile.submitRead(prepareRecordRead(results.get(key)), recordFileOffsets[key]);
+  }
+
   @Override
   public Integer getVersionNumber() {
     return versionNumber;
@@ -299,25 +686,22 @@ public class CurlyReader implements Reader, ICurlyReader {
 
   @Override
   public CacheStatistics getCacheStatistics() {
-    CacheStatistics keyReaderCacheStatistics = keyFileReader.getCacheStatistics();
-    return new CacheStatistics(
-        keyReaderCacheStatistics.getNumItems() + cache.size(),
-        keyReaderCacheStatistics.getMaxNumItems() + cache.getMaxNumItems(),
-        keyReaderCacheStatistics.getNumManagedBytes() + cache.getNumManagedBytes(),
-        keyReaderCacheStatistics.getMaxNumManagedBytes() + cache.getMaxNumManagedBytes());
+    CacheStatistics cacheStatistics = cache.getCacheStatistics();
+    cacheStatistics.add(keyFileReader.getCacheStatistics());
+    return cacheStatistics;
   }
 
-  // Note: location should already be a deep copy that won't get modified
+  // Note: location should be a copy that was not modified by the read
   private void addValueToCache(ByteBuffer location, ByteBuffer value) {
-    cache.put(location, BytesUtils.byteBufferDeepCopy(value));
+    if (cache.isEnabled()) {
+      cache.put(location, value);
+    }
   }
 
   // Return true if managed to read the corresponding value from the cache and into result
   private boolean loadValueFromCache(ByteBuffer location, ReaderResult result) {
-    ByteBuffer value = cache.get(location);
-    if (value != null) {
-      result.deepCopyIntoResultBuffer(value);
-      result.found();
+    // The cache copies the value into result
+    if (cache.isEnabled() && cache.get(location, result)) {
       result.setL2CacheHit(true);
       return true;
     } else {
@@ -330,6 +714,7 @@ public class CurlyReader implements Reader, ICurlyReader {
     if (recordFile != null) {
       recordFile.close();
     }
+    mappedRecordFile = null;
     if (keyFileReader != null) {
       keyFileReader.close();
     }
@@ -20,10 +20,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.liveramp.commons.collections.LruHashMap;
 import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.compression.CompressionDictionary;
+import com.liveramp.hank.compression.CompressionFactory;
+import com.liveramp.hank.compression.Compressor;
+import com.liveramp.hank.compression.DictionaryCompressionFactory;
+import com.liveramp.hank.compression.common.BlockCompressionOutputStream;
 import com.liveramp.hank.hasher.Murmur64Hasher;
 import com.liveramp.hank.storage.Writer;
 import com.liveramp.hank.util.EncodingHelper;
@@ -32,6 +39,8 @@ import com.liveramp.hank.util.IOStreamUtils;
 public class CurlyWriter implements Writer {
 
   private static final int VALUE_FOLDING_HASH_NUM_BYTES = 16;
+  // Dictionaries are trained from values about a hundred times their size
+  private static final int DICTIONARY_SAMPLES_NUM_BYTES_RATIO = 100;
 
   private static final Murmur64Hasher murmur64Hasher = new Murmur64Hasher();
 
@@ -48,12 +57,22 @@ public class CurlyWriter implements Writer {
 
   // Compression
   private final CompressionCodec blockCompressionCodec;
+  private Compressor blockCompressor;
   private ByteArrayOutputStream compressedBlockOutputStream;
   private OutputStream compressionOutputStream;
   private final int compressedBlockSizeThreshold;
   private final int offsetInBlockNumBytes;
   private int offsetInDecompressedBlock = 0;
 
+  // Dictionary, when the block compression codec supports them. The first values are held until
+  // there are enough of them to train the dictionary, which is then written as the first record.
+  private final DictionaryCompressionFactory dictionaryCompressionFactory;
+  private final int dictionaryNumBytes;
+  private List<ByteBuffer> dictionarySampleKeys;
+  private List<byte[]> dictionarySamples;
+  private long dictionarySamplesNumBytes = 0;
+  private long dictionaryOffset = -1;
+
   // Cache
   private final LruHashMap<ByteBuffer, ByteBuffer> hashedValueToEncodedRecordOffsetCache;
 
@@ -71,6 +90,18 @@ public class CurlyWriter implements Writer {
                      CompressionCodec blockCompressionCodec,
                      int compressedBlockSizeThreshold,
                      int offsetInBlockNumBytes) throws IOException {
+    this(recordfileStream, keyfileWriter, offsetNumBytes, valueFoldingCacheCapacity, blockCompressionCodec,
+        compressedBlockSizeThreshold, offsetInBlockNumBytes, -1);
+  }
+
+  public CurlyWriter(OutputStream recordfileStream,
+                     Writer keyfileWriter,
+                     int offsetNumBytes,
+                     int valueFoldingCacheCapacity,
+                     CompressionCodec blockCompressionCodec,
+                     int compressedBlockSizeThreshold,
+                     int offsetInBlockNumBytes,
+                     int dictionaryNumBytes) throws IOException {
     // Buffer output
     this.recordFileStream = new BufferedOutputStream(recordfileStream, IOStreamUtils.DEFAULT_BUFFER_SIZE);
     this.keyfileWriter = keyfileWriter;
@@ -80,6 +111,7 @@ public class CurlyWriter implements Writer {
     this.currentRecordOffset = 0;
     this.compressedBlockSizeThreshold = compressedBlockSizeThreshold;
     this.offsetInBlockNumBytes = offsetInBlockNumBytes;
+    this.dictionaryNumBytes = dictionaryNumBytes;
 
     // Initialize LRU cache only when needed
     if (valueFoldingCacheCapacity > 0) {
@@ -93,16 +125,31 @@ public class CurlyWriter implements Writer {
       valueOffsetBuffer = ByteBuffer.wrap(new byte[offsetNumBytes]);
       compressedBlockOutputStream = null;
       compressionOutputStream = null;
+      dictionaryCompressionFactory = null;
     } else {
       // Initialize block compression
       valueOffsetBuffer = ByteBuffer.wrap(new byte[offsetNumBytes + offsetInBlockNumBytes]);
       compressedBlockOutputStream = new ByteArrayOutputStream();
       compressionOutputStream = null;
+      CompressionFactory compressionFactory = blockCompressionCodec.getFactory();
+      blockCompressor = compressionFactory.getCompressor();
+      if (compressionFactory instanceof DictionaryCompressionFactory) {
+        dictionaryCompressionFactory = (DictionaryCompressionFactory)compressionFactory;
+        if (dictionaryNumBytes > 0) {
+          dictionarySampleKeys = new ArrayList<ByteBuffer>();
+          dictionarySamples = new ArrayList<byte[]>();
+        }
+      } else {
+        dictionaryCompressionFactory = null;
+      }
     }
   }
 
   @Override
   public void close() throws IOException {
+    if (dictionarySamples != null) {
+      trainDictionary();
+    }
     if (blockCompressionCodec != null) {
       flushCompressedBlock();
     }
@@ -116,6 +163,42 @@ public class CurlyWriter implements Writer {
 
   @Override
   public void write(ByteBuffer key, ByteBuffer value) throws IOException {
+    if (dictionarySamples != null) {
+      byte[] sample = new byte[value.remaining()];
+      System.arraycopy(value.array(), value.arrayOffset() + value.position(), sample, 0, sample.length);
+      dictionarySampleKeys.add(BytesUtils.byteBufferDeepCopy(key));
+      dictionarySamples.add(sample);
+      dictionarySamplesNumBytes += sample.length;
+      if (dictionarySamplesNumBytes >= (long)dictionaryNumBytes * DICTIONARY_SAMPLES_NUM_BYTES_RATIO) {
+        trainDictionary();
+      }
+    } else {
+      doWrite(key, value);
+    }
+  }
+
+  // Train the dictionary from the values held so far, write it, and then write these values
+  private void trainDictionary() throws IOException {
+    List<ByteBuffer> keys = dictionarySampleKeys;
+    List<byte[]> samples = dictionarySamples;
+    dictionarySampleKeys = null;
+    dictionarySamples = null;
+    CompressionDictionary dictionary = dictionaryCompressionFactory.trainDictionary(samples, dictionaryNumBytes);
+    if (dictionary != null) {
+      dictionaryOffset = currentRecordOffset;
+      byte[] dictionaryBytes = dictionary.getBytes();
+      int dictionaryLengthNumBytes = EncodingHelper.encodeLittleEndianVarInt(dictionaryBytes.length, valueLengthBuffer);
+      recordFileStream.write(valueLengthBuffer, 0, dictionaryLengthNumBytes);
+      recordFileStream.write(dictionaryBytes);
+      currentRecordOffset += dictionaryLengthNumBytes + dictionaryBytes.length;
+      blockCompressor = dictionaryCompressionFactory.getCompressor(dictionary);
+    }
+    for (int i = 0; i < samples.size(); ++i) {
+      doWrite(keys.get(i), ByteBuffer.wrap(samples.get(i)));
+    }
+  }
+
+  private void doWrite(ByteBuffer key, ByteBuffer value) throws IOException {
     if (currentRecordOffset > maxOffset) {
       throw new IOException("Exceeded configured max recordfile size of "
           + maxOffset
@@ -162,7 +245,7 @@ public class CurlyWriter implements Writer {
         //
 
         // Flush the compressed block if needed
-        if (compressedBlockOutputStream.size() >= compressedBlockSizeThreshold) {
+        if (getBlockSize() >= compressedBlockSizeThreshold) {
           flushCompressedBlock();
         }
         // Create a new compression output stream if needed (either this is the first value or we just flushed)
@@ -197,8 +280,25 @@ public class CurlyWriter implements Writer {
     // Reset the byte array output stream and the offset in it
     compressedBlockOutputStream.reset();
     offsetInDecompressedBlock = 0;
+    // Blocks of codecs that support dictionaries start with their distance to the dictionary record,
+    // or 0 when there is none. Distances remain valid when record files are appended to one another.
+    if (dictionaryCompressionFactory != null) {
+      long dictionaryDistance = dictionaryOffset < 0 ? 0 : currentRecordOffset - dictionaryOffset;
+      byte[] dictionaryDistanceBuffer = new byte[offsetNumBytes];
+      EncodingHelper.encodeLittleEndianFixedWidthLong(dictionaryDistance, dictionaryDistanceBuffer);
+      compressedBlockOutputStream.write(dictionaryDistanceBuffer);
+    }
     // Initialize new compression stream
-    compressionOutputStream = blockCompressionCodec.getFactory().getCompressor().getOutputStream(compressedBlockOutputStream);
+    compressionOutputStream = blockCompressor.getOutputStream(compressedBlockOutputStream);
+  }
+
+  // Size of the current block. Block codecs only compress a block once it is complete,
+  // so the threshold applies to its uncompressed size instead.
+  private int getBlockSize() {
+    if (compressionOutputStream instanceof BlockCompressionOutputStream) {
+      return ((BlockCompressionOutputStream)compressionOutputStream).getNumUncompressedBytes();
+    }
+    return compressedBlockOutputStream.size();
   }
 
   private void flushCompressedBlock() throws IOException {
@@ -243,6 +343,7 @@ public class CurlyWriter implements Writer {
         + ", blockCompressionCodec=" + blockCompressionCodec
         + ", compressedBlockSizeThreshold=" + compressedBlockSizeThreshold
         + ", offsetInBlockNumBytes=" + offsetInBlockNumBytes
+        + ", dictionaryNumBytes=" + dictionaryNumBytes
         + "]";
   }
 }
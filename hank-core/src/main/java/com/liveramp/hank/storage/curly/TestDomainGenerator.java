@@ -17,12 +17,16 @@
 package com.liveramp.hank.storage.curly;
 
 import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.compression.CompressionCodec;
 import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.coordinator.DomainVersion;
 import com.liveramp.hank.coordinator.mock.MockDomainVersion;
 import com.liveramp.hank.hasher.Hasher;
 import com.liveramp.hank.partitioner.Partitioner;
 import com.liveramp.hank.storage.LocalPartitionRemoteFileOps;
+import com.liveramp.hank.storage.incremental.IncrementalDomainVersionProperties;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,6 +38,11 @@ import java.util.Random;
 
 public class TestDomainGenerator {
 
+  public static final long MAX_ALLOWED_PART_SIZE = 10L * 1024 * 1024 * 1024;
+  public static final int RECORD_FILE_READ_BUFFER_BYTES = 32 * 1024;
+  public static final int COMPRESSED_BLOCK_SIZE_THRESHOLD = 4 * 1024;
+  public static final int OFFSET_IN_BLOCK_NUM_BYTES = 2;
+
   /**
    * @param args
    * @throws Exception
@@ -57,6 +66,31 @@ public class TestDomainGenerator {
     Partitioner p = (Partitioner)Class.forName(partitionerClass).newInstance();
     Hasher h = (Hasher)Class.forName(hasherClassName).newInstance();
 
+    long start = System.currentTimeMillis();
+    generate(outputPath, new MockDomainVersion(0, 0L, new IncrementalDomainVersionProperties.Base()), 7,
+        totalNumRecords, keyLength, hashLength, indexBits, valueLength, h, codecClass, numPartitions, p, null);
+    long end = System.currentTimeMillis();
+    System.out.println("Elapsed ms: " + (end - start));
+  }
+
+  /**
+   * Write one Curly base per partition of random keys and values under outputPath/partitionNumber,
+   * compressing record blocks with the given codec when it is not null.
+   * Return the generated keys, grouped by partition.
+   */
+  public static Map<Integer, List<byte[]>> generate(String outputPath,
+                                                    DomainVersion domainVersion,
+                                                    long seed,
+                                                    int totalNumRecords,
+                                                    int keyLength,
+                                                    int hashLength,
+                                                    int indexBits,
+                                                    int valueLength,
+                                                    Hasher h,
+                                                    Class<? extends CueballCompressionCodec> codecClass,
+                                                    int numPartitions,
+                                                    Partitioner p,
+                                                    CompressionCodec blockCompressionCodec) throws IOException {
     Map<Integer, List<byte[]>> partitionedKeys = new HashMap<Integer, List<byte[]>>();
     for (int i = 0; i < numPartitions; i++) {
       partitionedKeys.put(i, new ArrayList<byte[]>());
@@ -65,7 +99,7 @@ public class TestDomainGenerator {
     Map<byte[], byte[]> hashesToKeys = new HashMap<byte[], byte[]>();
     Map<byte[], byte[]> hashesToValues = new HashMap<byte[], byte[]>();
 
-    Random r = new Random(7);
+    Random r = new Random(seed);
 
     for (int i = 0; i < totalNumRecords; i++) {
       byte[] key = new byte[keyLength];
@@ -80,8 +114,11 @@ public class TestDomainGenerator {
       hashesToValues.put(hash, valueBytes);
     }
 
-    final Curly curly = new Curly(hashLength, h, 10L * 1024 * 1024 * 1024,
-        indexBits, 32 * 1024, "", null, codecClass, null, 0, -1, null, -1, -1);
+    final Curly curly = new Curly(hashLength, h, MAX_ALLOWED_PART_SIZE,
+        indexBits, RECORD_FILE_READ_BUFFER_BYTES, "", null, codecClass, null, 0, -1,
+        blockCompressionCodec,
+        blockCompressionCodec == null ? -1 : COMPRESSED_BLOCK_SIZE_THRESHOLD,
+        blockCompressionCodec == null ? -1 : OFFSET_IN_BLOCK_NUM_BYTES);
 
     for (Map.Entry<Integer, List<byte[]>> part : partitionedKeys.entrySet()) {
       Collections.sort(part.getValue(), new Comparator<byte[]>() {
@@ -92,18 +129,20 @@ public class TestDomainGenerator {
       });
     }
 
-    long start = System.currentTimeMillis();
+    Map<Integer, List<byte[]>> result = new HashMap<Integer, List<byte[]>>();
     for (Map.Entry<Integer, List<byte[]>> part : partitionedKeys.entrySet()) {
-      final CurlyWriter writer = (CurlyWriter)curly.getWriter(new MockDomainVersion(0, 0L),
+      final CurlyWriter writer = (CurlyWriter)curly.getWriter(domainVersion,
           new LocalPartitionRemoteFileOps(outputPath, part.getKey()), part.getKey());
+      List<byte[]> keys = new ArrayList<byte[]>();
       for (int i = 0; i < part.getValue().size(); i++) {
         final byte[] keyHash = part.getValue().get(i);
+        keys.add(hashesToKeys.get(keyHash));
         writer.write(ByteBuffer.wrap(hashesToKeys.get(keyHash)), ByteBuffer.wrap(hashesToValues.get(keyHash)));
       }
       writer.close();
+      result.put(part.getKey(), keys);
     }
-    long end = System.currentTimeMillis();
-    System.out.println("Elapsed ms: " + (end - start));
+    return result;
   }
 
 }
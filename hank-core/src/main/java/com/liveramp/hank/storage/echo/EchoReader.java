@@ -7,6 +7,7 @@ import com.liveramp.hank.storage.ReaderResult;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public class EchoReader implements Reader {
   private final int partNum;
@@ -29,6 +30,13 @@ public class EchoReader implements Reader {
     result.found();
   }
 
+  @Override
+  public void getBulk(List<ByteBuffer> keys, List<ReaderResult> results) throws IOException {
+    for (int i = 0; i < keys.size(); ++i) {
+      get(keys.get(i), results.get(i));
+    }
+  }
+
   @Override
   public Integer getVersionNumber() {
     return null;
@@ -93,9 +93,11 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
       closeCoordinatorOpportunistically();
       // Fetch and cache versions needed to update
       HankTimer timer = new HankTimer();
-      cacheVersionsNeededToUpdate(currentVersion, cachedBases, cachedDeltas, updatePlan);
+      long numBytesFetched = cacheVersionsNeededToUpdate(currentVersion, cachedBases, cachedDeltas, updatePlan);
       long fetchTimeMs = timer.getDurationMs();
       statistics.getDurationsMs().put("Update data fetch", fetchTimeMs);
+      statistics.addNumBytesWritten(numBytesFetched);
+      statistics.recordDiskUsageBytes(getDiskUsageBytes());
       // Run update in a workspace
       timer.restart();
       runUpdate(currentVersion, updatingToVersion, updatePlan, statistics);
@@ -103,7 +105,9 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
       statistics.getDurationsMs().put("Update execution", executionTimeMs);
       LOG.info("Update in " + localPartitionRoot + " to " + updatingToVersion
           + ": fetched data in " + FormatUtils.formatSecondsDuration(fetchTimeMs / 1000)
-          + ", executed in " + FormatUtils.formatSecondsDuration(executionTimeMs / 1000));
+          + ", executed in " + FormatUtils.formatSecondsDuration(executionTimeMs / 1000)
+          + ", wrote " + FormatUtils.formatNumBytes(statistics.getNumBytesWritten())
+          + ", peak disk usage " + FormatUtils.formatNumBytes(statistics.getPeakDiskUsageBytes()));
     } finally {
       cleanCachedVersions();
     }
@@ -123,8 +127,12 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
     return detectCachedDeltasCore();
   }
 
-  // Fetch required versions and commit them to cache upon successful fetch
-  protected void cacheVersionsNeededToUpdate(DomainVersion currentVersion,
+  /**
+   * Fetch required versions and commit them to cache upon successful fetch
+   *
+   * @return Number of bytes fetched
+   */
+  protected long cacheVersionsNeededToUpdate(DomainVersion currentVersion,
                                              Set<DomainVersion> cachedBases,
                                              Set<DomainVersion> cachedDeltas,
                                              IncrementalUpdatePlan updatePlan) throws IOException {
@@ -146,8 +154,10 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
         }
         fetchVersion(version, fetchRoot.getAbsolutePath());
       }
+      long numBytesFetched = FileUtils.sizeOfDirectory(fetchRoot);
       // Commit fetched versions to cache
       commitFiles(fetchRoot, localPartitionRootCache);
+      return numBytesFetched;
     } finally {
       // Always delete fetch roots
       deleteFetchRoots();
@@ -165,6 +175,8 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
     try {
       // Execute update
       runUpdateCore(currentVersion, updatingToVersion, updatePlan, updateWorkRoot.getAbsolutePath(), statistics);
+      // Current version, cached versions and update result all coexist at this point
+      statistics.recordDiskUsageBytes(getDiskUsageBytes());
       // Move current version to cache
       commitFiles(new File(localPartitionRoot), localPartitionRootCache);
       // Commit update result files to top level
@@ -230,6 +242,10 @@ public abstract class IncrementalPartitionUpdater implements PartitionUpdater, C
     }
   }
 
+  private long getDiskUsageBytes() {
+    return FileUtils.sizeOfDirectory(new File(localPartitionRoot));
+  }
+
   private File createUpdateWorkRoot() throws IOException {
     return createTmpWorkRoot(UPDATE_WORK_ROOT_PREFIX);
   }
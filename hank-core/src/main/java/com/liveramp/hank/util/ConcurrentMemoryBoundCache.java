@@ -0,0 +1,270 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.liveramp.commons.util.MemoryUsageEstimator;
+
+/**
+ * Memory bound cache that can be accessed concurrently. Hits are lock-free. Insertions and
+ * evictions lock a single stripe, selected by key hash. Each stripe owns an equal share of the
+ * item and byte capacities and evicts with the CLOCK algorithm, an approximation of LRU that
+ * does not need to reorder entries on every hit.
+ * A capacity that is not strictly positive does not bound the cache.
+ */
+public class ConcurrentMemoryBoundCache<K, V> implements MemoryBoundCache<K, V> {
+
+  private static final int MAX_NUM_STRIPES = 256;
+  // Stripes are merged for small caches so that each stripe still holds enough entries
+  private static final int MIN_NUM_ITEMS_PER_STRIPE = 16;
+  private static final long MIN_NUM_BYTES_PER_STRIPE = 64 << 10;
+
+  private final ConcurrentHashMap<K, Entry<K, V>> map;
+  private final Stripe<K, V>[] stripes;
+  private final int stripeMask;
+  private final long numBytesCapacity;
+  private final int numItemsCapacity;
+  private final MemoryUsageEstimator<K> keyEstimator;
+  private final MemoryUsageEstimator<V> valueEstimator;
+
+  // A disabled cache will not add any synchronization overhead
+  public ConcurrentMemoryBoundCache(boolean isEnabled,
+                                    long numBytesCapacity,
+                                    int numItemsCapacity,
+                                    MemoryUsageEstimator<K> keyEstimator,
+                                    MemoryUsageEstimator<V> valueEstimator) {
+    this(isEnabled, numBytesCapacity, numItemsCapacity, keyEstimator, valueEstimator,
+        getDefaultNumStripes(numBytesCapacity, numItemsCapacity));
+  }
+
+  @SuppressWarnings("unchecked")
+  public ConcurrentMemoryBoundCache(boolean isEnabled,
+                                    long numBytesCapacity,
+                                    int numItemsCapacity,
+                                    MemoryUsageEstimator<K> keyEstimator,
+                                    MemoryUsageEstimator<V> valueEstimator,
+                                    int numStripes) {
+    if (numStripes <= 0 || Integer.bitCount(numStripes) != 1) {
+      throw new IllegalArgumentException("Number of stripes must be a power of two: " + numStripes);
+    }
+    this.numBytesCapacity = numBytesCapacity;
+    this.numItemsCapacity = numItemsCapacity;
+    this.keyEstimator = keyEstimator;
+    this.valueEstimator = valueEstimator;
+    if (isEnabled) {
+      map = new ConcurrentHashMap<K, Entry<K, V>>(16, 0.75f, numStripes);
+      stripes = new Stripe[numStripes];
+      for (int i = 0; i < numStripes; ++i) {
+        stripes[i] = new Stripe<K, V>(
+            numBytesCapacity > 0 ? Math.max(1, numBytesCapacity / numStripes) : -1,
+            numItemsCapacity > 0 ? Math.max(1, numItemsCapacity / numStripes) : -1);
+      }
+      stripeMask = numStripes - 1;
+    } else {
+      map = null;
+      stripes = null;
+      stripeMask = 0;
+    }
+  }
+
+  static int getDefaultNumStripes(long numBytesCapacity, int numItemsCapacity) {
+    int numStripes = Integer.highestOneBit(Math.min(MAX_NUM_STRIPES, 4 * Runtime.getRuntime().availableProcessors()));
+    while (numStripes > 1
+        && ((numItemsCapacity > 0 && numItemsCapacity / numStripes < MIN_NUM_ITEMS_PER_STRIPE)
+        || (numBytesCapacity > 0 && numBytesCapacity / numStripes < MIN_NUM_BYTES_PER_STRIPE))) {
+      numStripes >>= 1;
+    }
+    return numStripes;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return map != null;
+  }
+
+  @Override
+  public V get(K key) {
+    if (!isEnabled()) {
+      return null;
+    }
+    Entry<K, V> entry = map.get(key);
+    if (entry == null) {
+      return null;
+    }
+    // Only write when needed to avoid invalidating the cache line on every hit
+    if (!entry.referenced) {
+      entry.referenced = true;
+    }
+    return entry.value;
+  }
+
+  @Override
+  public void put(K key, V value) {
+    if (isEnabled()) {
+      if (value == null) {
+        throw new IllegalArgumentException("Value to put in cache should not be null.");
+      }
+      long numBytes = keyEstimator.estimateMemorySize(key) + valueEstimator.estimateMemorySize(value);
+      Stripe<K, V> stripe = getStripe(key);
+      synchronized (stripe) {
+        stripe.put(map, key, value, numBytes);
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    if (!isEnabled()) {
+      return 0;
+    }
+    int result = 0;
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        result += stripe.entries.size();
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int getMaxNumItems() {
+    if (!isEnabled()) {
+      return 0;
+    }
+    return numItemsCapacity;
+  }
+
+  @Override
+  public long getNumManagedBytes() {
+    if (!isEnabled()) {
+      return 0;
+    }
+    long result = 0;
+    for (Stripe<K, V> stripe : stripes) {
+      synchronized (stripe) {
+        result += stripe.numManagedBytes;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public long getMaxNumManagedBytes() {
+    if (!isEnabled()) {
+      return 0;
+    }
+    return numBytesCapacity;
+  }
+
+  private Stripe<K, V> getStripe(K key) {
+    int hash = key.hashCode();
+    // Spread high bits since ConcurrentHashMap uses the low bits as well
+    hash ^= (hash >>> 16);
+    hash ^= (hash >>> 7);
+    return stripes[hash & stripeMask];
+  }
+
+  private static class Entry<K, V> {
+
+    private final K key;
+    private volatile V value;
+    private volatile boolean referenced;
+    // Guarded by the owning stripe
+    private long numBytes;
+
+    private Entry(K key, V value, long numBytes) {
+      this.key = key;
+      this.value = value;
+      this.numBytes = numBytes;
+      this.referenced = false;
+    }
+  }
+
+  private static class Stripe<K, V> {
+
+    private final long numBytesCapacity;
+    private final int numItemsCapacity;
+    private final List<Entry<K, V>> entries;
+    private long numManagedBytes;
+    private int hand;
+
+    private Stripe(long numBytesCapacity, int numItemsCapacity) {
+      this.numBytesCapacity = numBytesCapacity;
+      this.numItemsCapacity = numItemsCapacity;
+      this.entries = new ArrayList<Entry<K, V>>();
+      this.numManagedBytes = 0;
+      this.hand = 0;
+    }
+
+    // Must be called while holding this stripe's monitor
+    private void put(ConcurrentHashMap<K, Entry<K, V>> map, K key, V value, long numBytes) {
+      Entry<K, V> entry = map.get(key);
+      if (entry != null) {
+        numManagedBytes += numBytes - entry.numBytes;
+        entry.numBytes = numBytes;
+        entry.value = value;
+      } else {
+        entry = new Entry<K, V>(key, value, numBytes);
+        entries.add(entry);
+        numManagedBytes += numBytes;
+        map.put(key, entry);
+      }
+      evict(map, entry);
+    }
+
+    private boolean isFull() {
+      return (numItemsCapacity > 0 && entries.size() > numItemsCapacity)
+          || (numBytesCapacity > 0 && numManagedBytes > numBytesCapacity);
+    }
+
+    // Sweep the clock hand, giving referenced entries a second chance. The entry that was just
+    // inserted is only evicted when it does not fit on its own.
+    private void evict(ConcurrentHashMap<K, Entry<K, V>> map, Entry<K, V> inserted) {
+      while (isFull() && entries.size() > 1) {
+        if (hand >= entries.size()) {
+          hand = 0;
+        }
+        Entry<K, V> candidate = entries.get(hand);
+        if (candidate == inserted) {
+          ++hand;
+        } else if (candidate.referenced) {
+          candidate.referenced = false;
+          ++hand;
+        } else {
+          remove(map, hand);
+        }
+      }
+      if (isFull()) {
+        remove(map, 0);
+        hand = 0;
+      }
+    }
+
+    private void remove(ConcurrentHashMap<K, Entry<K, V>> map, int index) {
+      // Move the last entry into the freed slot, the hand will examine it next
+      int lastIndex = entries.size() - 1;
+      Entry<K, V> removed = entries.get(index);
+      entries.set(index, entries.get(lastIndex));
+      entries.remove(lastIndex);
+      numManagedBytes -= removed.numBytes;
+      map.remove(removed.key, removed);
+    }
+  }
+}
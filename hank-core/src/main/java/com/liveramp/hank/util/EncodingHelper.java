@@ -92,4 +92,25 @@ public final class EncodingHelper {
     }
     return result;
   }
+
+  public static int decodeLittleEndianVarInt(byte[] bytes, int off) {
+    int result = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = bytes[off++];
+      result |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  // Number of bytes of the var int encoding of n
+  public static int getLittleEndianVarIntNumBytes(int n) {
+    int numBytes = 1;
+    while ((n >>>= 7) != 0) {
+      ++numBytes;
+    }
+    return numBytes;
+  }
 }
@@ -0,0 +1,128 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate access frequencies of a large set of items, in a count-min sketch of 4-bit counters.
+ * All counters are halved once as many accesses as the expected number of items (rounded up to a
+ * power of two) have been recorded, so that frequencies reflect recent accesses (this is the aging
+ * of TinyLFU). The sketch has 16 counters per expected item, which keeps the estimated frequency
+ * of items accessed once within that window low.
+ * <p/>
+ * Counters are updated without locking. Concurrent updates can be lost, which only makes
+ * estimates slightly less accurate.
+ */
+public class FrequencySketch {
+
+  private static final int MAX_FREQUENCY = 15;
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long[] SEEDS = new long[]{
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final int MIN_TABLE_SIZE = 16;
+  private static final int MAX_TABLE_SIZE = 1 << 22;
+
+  // Each long holds 16 counters
+  private final AtomicLongArray table;
+  private final int tableMask;
+  private final int sampleSize;
+  private final AtomicInteger size = new AtomicInteger();
+
+  /**
+   * @param numItems Expected number of items accessed within the aging window
+   */
+  public FrequencySketch(long numItems) {
+    int tableSize = MIN_TABLE_SIZE;
+    while (tableSize < numItems && tableSize < MAX_TABLE_SIZE) {
+      tableSize <<= 1;
+    }
+    this.table = new AtomicLongArray(tableSize);
+    this.tableMask = tableSize - 1;
+    this.sampleSize = tableSize;
+  }
+
+  // Return the estimated number of recent accesses to the item of the given hash, at most 15
+  public int frequency(int hash) {
+    int result = MAX_FREQUENCY;
+    for (int i = 0; i < SEEDS.length; ++i) {
+      long h = rehash(hash, i);
+      long counters = table.get(getIndex(h));
+      result = Math.min(result, (int)((counters >>> getShift(h)) & 0xf));
+    }
+    return result;
+  }
+
+  // Record an access to the item of the given hash
+  public void increment(int hash) {
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; ++i) {
+      long h = rehash(hash, i);
+      added |= incrementAt(getIndex(h), getShift(h));
+    }
+    if (added && size.incrementAndGet() == sampleSize) {
+      reset();
+    }
+  }
+
+  // Number of bytes used by the counters
+  public long getNumBytes() {
+    return 8L * table.length();
+  }
+
+  private boolean incrementAt(int index, int shift) {
+    while (true) {
+      long counters = table.get(index);
+      if (((counters >>> shift) & 0xf) == MAX_FREQUENCY) {
+        return false;
+      }
+      if (table.compareAndSet(index, counters, counters + (1L << shift))) {
+        return true;
+      }
+    }
+  }
+
+  // Halve all counters
+  private void reset() {
+    for (int i = 0; i < table.length(); ++i) {
+      while (true) {
+        long counters = table.get(i);
+        if (table.compareAndSet(i, counters, (counters >>> 1) & RESET_MASK)) {
+          break;
+        }
+      }
+    }
+    size.set(sampleSize / 2);
+  }
+
+  private int getIndex(long h) {
+    return (int)h & tableMask;
+  }
+
+  // Use the high bits, which are independent from the index, to select one of the 16 counters
+  private static int getShift(long h) {
+    return (int)(h >>> 60) << 2;
+  }
+
+  private static long rehash(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h ^= h >>> 32;
+    h *= 0x9e3779b97f4a7c15L;
+    return h ^ (h >>> 29);
+  }
+}
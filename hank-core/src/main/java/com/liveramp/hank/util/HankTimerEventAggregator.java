@@ -126,6 +126,22 @@ public class HankTimerEventAggregator {
   }
 
   private void logStats() {
+    LOG.info(getStatsString(name, count, totalUnderlyingCount, statsComputationWindowDuration,
+        minDuration, totalDuration, maxDuration));
+    // Aggregate population statistics
+    if (populationStatistics == null) {
+      populationStatistics = new DoublePopulationStatisticsAggregator();
+    }
+    populationStatistics.aggregate(minDuration, maxDuration, count, totalDuration, durations);
+  }
+
+  static String getStatsString(String name,
+                               int count,
+                               long totalUnderlyingCount,
+                               long statsComputationWindowDuration,
+                               double minDuration,
+                               double totalDuration,
+                               double maxDuration) {
     // Build log string
     StringBuilder logStr = new StringBuilder();
     logStr.append("Statistics for Timer: ");
@@ -157,11 +173,6 @@ public class HankTimerEventAggregator {
       logStr.append(", Underlying QPS: ");
       logStr.append(totalUnderlyingCount / (statsComputationWindowDuration / 1000000000d));
     }
-    LOG.info(logStr.toString());
-    // Aggregate population statistics
-    if (populationStatistics == null) {
-      populationStatistics = new DoublePopulationStatisticsAggregator();
-    }
-    populationStatistics.aggregate(minDuration, maxDuration, count, totalDuration, durations);
+    return logStr.toString();
   }
 }
@@ -0,0 +1,34 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+public interface MemoryBoundCache<K, V> {
+
+  public boolean isEnabled();
+
+  public V get(K key);
+
+  public void put(K key, V value);
+
+  public int size();
+
+  public int getMaxNumItems();
+
+  public long getNumManagedBytes();
+
+  public long getMaxNumManagedBytes();
+}
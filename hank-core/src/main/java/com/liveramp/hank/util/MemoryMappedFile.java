@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of a file. A single mapping is limited to 2GB, so larger files
+ * are mapped as a sequence of chunks. Consecutive chunks overlap by a fixed number of bytes,
+ * which guarantees that any region no larger than that overlap is contained in a single chunk
+ * and can be accessed without copying.
+ */
+public class MemoryMappedFile {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+  private final MappedByteBuffer[] chunks;
+  private final long length;
+  private final int chunkSize;
+  private final int overlap;
+
+  public MemoryMappedFile(FileChannel channel, long length, int overlap) throws IOException {
+    this(channel, length, overlap, DEFAULT_CHUNK_SIZE);
+  }
+
+  public MemoryMappedFile(FileChannel channel, long length, int overlap, int chunkSize) throws IOException {
+    if (overlap < 0 || chunkSize <= 0) {
+      throw new IllegalArgumentException("Invalid chunk size (" + chunkSize + ") or overlap (" + overlap + ")");
+    }
+    if ((long)chunkSize + (long)overlap > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Chunk size (" + chunkSize + ") plus overlap (" + overlap
+          + ") must not exceed " + Integer.MAX_VALUE + " bytes");
+    }
+    this.length = length;
+    this.chunkSize = chunkSize;
+    this.overlap = overlap;
+    int numChunks = (int)((length + chunkSize - 1) / chunkSize);
+    chunks = new MappedByteBuffer[numChunks];
+    for (int i = 0; i < numChunks; ++i) {
+      long chunkStart = (long)i * chunkSize;
+      long chunkLength = Math.min(length - chunkStart, (long)chunkSize + overlap);
+      chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkLength);
+    }
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public int getNumChunks() {
+    return chunks.length;
+  }
+
+  public byte get(long offset) {
+    checkBounds(offset, 1);
+    return chunks[(int)(offset / chunkSize)].get((int)(offset % chunkSize));
+  }
+
+  /**
+   * Return a read-only view of the given region, without copying it. The region is truncated
+   * at the end of the file. Regions that are larger than the chunk overlap and that straddle two
+   * chunks cannot be represented as a single view and are copied into a heap buffer instead.
+   */
+  public ByteBuffer getRegion(long offset, int regionLength) {
+    regionLength = (int)Math.min(regionLength, length - offset);
+    checkBounds(offset, regionLength);
+    int chunkIndex = (int)(offset / chunkSize);
+    int chunkOffset = (int)(offset % chunkSize);
+    ByteBuffer chunk = chunks[chunkIndex];
+    if (chunkOffset + regionLength <= chunk.capacity()) {
+      // Duplicate so that concurrent readers do not share position and limit
+      ByteBuffer region = chunk.duplicate();
+      region.limit(chunkOffset + regionLength);
+      region.position(chunkOffset);
+      return region.slice();
+    } else {
+      byte[] copy = new byte[regionLength];
+      get(offset, copy, 0, regionLength);
+      return ByteBuffer.wrap(copy);
+    }
+  }
+
+  /**
+   * Copy the given region into the destination array. This is the only operation that can
+   * cross chunk boundaries for regions of arbitrary size.
+   */
+  public void get(long offset, byte[] dst, int dstOffset, int regionLength) {
+    checkBounds(offset, regionLength);
+    while (regionLength > 0) {
+      int chunkIndex = (int)(offset / chunkSize);
+      int chunkOffset = (int)(offset % chunkSize);
+      ByteBuffer chunk = chunks[chunkIndex].duplicate();
+      int numBytes = Math.min(regionLength, chunk.capacity() - chunkOffset);
+      chunk.position(chunkOffset);
+      chunk.get(dst, dstOffset, numBytes);
+      offset += numBytes;
+      dstOffset += numBytes;
+      regionLength -= numBytes;
+    }
+  }
+
+  private void checkBounds(long offset, int regionLength) {
+    if (offset < 0 || regionLength < 0 || offset + regionLength > length) {
+      throw new IndexOutOfBoundsException("Region [" + offset + ", " + (offset + regionLength)
+          + ") is out of the bounds of mapped file of length " + length);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "MemoryMappedFile [length=" + length
+        + ", numChunks=" + chunks.length
+        + ", chunkSize=" + chunkSize
+        + ", overlap=" + overlap
+        + "]";
+  }
+}
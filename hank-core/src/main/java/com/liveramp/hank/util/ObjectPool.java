@@ -0,0 +1,92 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Objects shared by all the threads serving requests. Unlike thread locals, the number of retained
+ * objects does not grow with the number of threads, and objects are still reused when every task
+ * runs on a new thread. Objects are kept in slots that are claimed and filled with atomic operations,
+ * starting at a random slot so that threads rarely contend for the same one.
+ */
+public abstract class ObjectPool<T> {
+
+  // Number of slots probed before giving up and creating or discarding an object
+  private static final int MAX_NUM_PROBES = 8;
+
+  private final AtomicReferenceArray<T> slots;
+
+  protected ObjectPool(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.slots = new AtomicReferenceArray<T>(capacity);
+  }
+
+  protected abstract T create();
+
+  // Called on an object taken from the pool, before it is returned by acquire()
+  protected void reset(T object) {
+  }
+
+  // Whether the given released object should be kept in the pool
+  protected boolean isReusable(T object) {
+    return true;
+  }
+
+  // Called on released objects that are not kept in the pool
+  protected void discard(T object) {
+  }
+
+  // Return an object from the pool, or a new one if none was found
+  public T acquire() {
+    int numSlots = slots.length();
+    int slot = ThreadLocalRandom.current().nextInt(numSlots);
+    for (int i = 0; i < Math.min(MAX_NUM_PROBES, numSlots); ++i) {
+      T object = slots.get(slot);
+      if (object != null && slots.compareAndSet(slot, object, null)) {
+        reset(object);
+        return object;
+      }
+      slot = slot + 1 == numSlots ? 0 : slot + 1;
+    }
+    return create();
+  }
+
+  // Return the given object to the pool. It must not be used by the caller anymore.
+  public void release(T object) {
+    if (!isReusable(object)) {
+      discard(object);
+      return;
+    }
+    int numSlots = slots.length();
+    int slot = ThreadLocalRandom.current().nextInt(numSlots);
+    for (int i = 0; i < Math.min(MAX_NUM_PROBES, numSlots); ++i) {
+      if (slots.get(slot) == null && slots.compareAndSet(slot, null, object)) {
+        return;
+      }
+      slot = slot + 1 == numSlots ? 0 : slot + 1;
+    }
+    discard(object);
+  }
+
+  public int getCapacity() {
+    return slots.length();
+  }
+}
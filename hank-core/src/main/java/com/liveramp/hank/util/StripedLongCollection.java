@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collection of counters that are incremented by many threads and periodically read by a few.
+ * Threads increment one of a fixed number of stripes, chosen from their id, without locking and
+ * without allocating, and readers sum the counters of all stripes. The number of stripes does not
+ * depend on the number of threads, so short lived threads (e.g. virtual threads, one per request)
+ * do not leave counters behind. Counters are never reset: readers keep track of the totals they
+ * previously returned instead.
+ */
+public class StripedLongCollection {
+
+  static final int NUM_STRIPES = getNumStripes(Runtime.getRuntime().availableProcessors());
+
+  private final int size;
+  private final Counters[] stripes;
+  private final long[] previousTotals;
+
+  public StripedLongCollection(int size) {
+    this.size = size;
+    this.stripes = new Counters[NUM_STRIPES];
+    for (int i = 0; i < NUM_STRIPES; ++i) {
+      stripes[i] = new Counters(size);
+    }
+    this.previousTotals = new long[size];
+  }
+
+  // Return the counters of the stripe the current thread maps to
+  public Counters get() {
+    return stripes[getStripeIndex(Thread.currentThread().getId())];
+  }
+
+  // Return the sum of increments since the previous call
+  public synchronized long[] getAsArrayAndReset() {
+    long[] result = getTotals();
+    for (int i = 0; i < size; ++i) {
+      long total = result[i];
+      result[i] -= previousTotals[i];
+      previousTotals[i] = total;
+    }
+    return result;
+  }
+
+  // Return the sum of all increments
+  public long[] getTotals() {
+    long[] result = new long[size];
+    for (Counters counters : stripes) {
+      for (int i = 0; i < size; ++i) {
+        result[i] += counters.values.get(i);
+      }
+    }
+    return result;
+  }
+
+  // Smallest power of two that is at least twice the number of processors
+  static int getNumStripes(int numProcessors) {
+    int numStripes = 1;
+    while (numStripes < 2 * numProcessors) {
+      numStripes <<= 1;
+    }
+    return numStripes;
+  }
+
+  static int getStripeIndex(long threadId) {
+    // Spread the bits of the id since ids of threads started together are consecutive
+    long hash = threadId * 0x9E3779B97F4A7C15L;
+    return (int) (hash >>> 32) & (NUM_STRIPES - 1);
+  }
+
+  public static class Counters {
+
+    private final AtomicLongArray values;
+
+    private Counters(int size) {
+      values = new AtomicLongArray(size);
+    }
+
+    // Threads sharing a stripe increment concurrently, so the addition has to be atomic
+    public void increment(int index, long increment) {
+      values.addAndGet(index, increment);
+    }
+  }
+}
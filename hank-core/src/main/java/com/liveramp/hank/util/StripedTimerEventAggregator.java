@@ -0,0 +1,220 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.liveramp.hank.partition_server.DoublePopulationStatisticsAggregator;
+import com.liveramp.hank.partition_server.LatencyHistogram;
+
+/**
+ * Aggregates the same statistics as HankTimerEventAggregator, for events that are timed by many
+ * threads concurrently. Threads record durations in one of a fixed number of latency histograms, chosen
+ * the same way as the stripes of StripedLongCollection, without locking or allocating. Histograms of all
+ * stripes are drained and combined when statistics are retrieved, which yields exact counts per latency
+ * bucket rather than a random sample. Timers are primitive: start times
+ * are obtained from getStartTime() and passed to add().
+ */
+public class StripedTimerEventAggregator {
+
+  private static Logger LOG = LoggerFactory.getLogger(StripedTimerEventAggregator.class);
+
+  private final String name;
+  private final int statsComputationWindow;
+  private final boolean isActive;
+  private final Window[] windows;
+  private DoublePopulationStatisticsAggregator previousPopulationStatistics;
+  private DoublePopulationStatisticsAggregator populationStatistics;
+  private final DoublePopulationStatisticsAggregator cumulativePopulationStatistics;
+
+  /**
+   * @param name
+   * @param statsComputationWindow Number of timers to aggregate in each stripe before computing and
+   *                               logging statistics. 0 means no timer aggregation.
+   */
+  public StripedTimerEventAggregator(String name, int statsComputationWindow) {
+    this.name = name;
+    this.statsComputationWindow = statsComputationWindow;
+    this.isActive = statsComputationWindow != 0;
+    this.previousPopulationStatistics = new DoublePopulationStatisticsAggregator();
+    this.populationStatistics = new DoublePopulationStatisticsAggregator();
+    this.cumulativePopulationStatistics = new DoublePopulationStatisticsAggregator();
+    this.windows = new Window[StripedLongCollection.NUM_STRIPES];
+    for (int i = 0; i < windows.length; ++i) {
+      windows[i] = new Window(name + " (stripe " + i + ")");
+    }
+  }
+
+  // Return the current time if active, 0 otherwise
+  public long getStartTime() {
+    if (!isActive) {
+      return 0;
+    }
+    return System.nanoTime();
+  }
+
+  // Aggregate the event started at the given time only if the aggregator is active
+  public void add(long startTimeNanos) {
+    add(startTimeNanos, 1);
+  }
+
+  // underlyingCount is used when the timed event represent a number of underlying events
+  public void add(long startTimeNanos, int underlyingCount) {
+    if (!isActive) {
+      return;
+    }
+    // Since nanoTime can return negative values
+    long durationNanos = Math.abs(System.nanoTime() - startTimeNanos);
+    Window window = windows[StripedLongCollection.getStripeIndex(Thread.currentThread().getId())];
+    window.add(startTimeNanos, durationNanos, underlyingCount);
+  }
+
+  public synchronized DoublePopulationStatisticsAggregator getAndResetPopulationStatistics() {
+    drainWindows();
+    // If there are new statistics, return them and reset the current statistics
+    if (populationStatistics.getHistogram().getTotalCount() > 0) {
+      previousPopulationStatistics = populationStatistics;
+      populationStatistics = new DoublePopulationStatisticsAggregator();
+    }
+    return previousPopulationStatistics;
+  }
+
+  // Statistics of all events since this aggregator was created. Does not reset statistics.
+  public synchronized DoublePopulationStatisticsAggregator getCumulativePopulationStatistics() {
+    drainWindows();
+    DoublePopulationStatisticsAggregator result = new DoublePopulationStatisticsAggregator();
+    result.aggregate(cumulativePopulationStatistics);
+    return result;
+  }
+
+  private void drainWindows() {
+    DoublePopulationStatisticsAggregator drainedPopulationStatistics = new DoublePopulationStatisticsAggregator();
+    for (Window window : windows) {
+      window.drainTo(drainedPopulationStatistics);
+    }
+    populationStatistics.aggregate(drainedPopulationStatistics);
+    cumulativePopulationStatistics.aggregate(drainedPopulationStatistics);
+  }
+
+  private class Window {
+
+    private final String name;
+
+    // Recorded by the threads of this stripe, drained by the thread retrieving statistics
+    private final AtomicLongArray histogramCounts = new AtomicLongArray(LatencyHistogram.NUM_BUCKETS);
+    private final AtomicLong histogramTotalNanos = new AtomicLong(0);
+    private final AtomicLong histogramMinNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong histogramMaxNanos = new AtomicLong(Long.MIN_VALUE);
+
+    // Logged statistics, guarded by the window since threads can share a stripe
+    private int count;
+    private long statsComputationWindowStart;
+    private long statsComputationWindowEnd;
+    private double minDuration;
+    private double maxDuration;
+    private double totalDuration;
+    private long totalUnderlyingCount;
+
+    private Window(String name) {
+      this.name = name;
+      clear();
+    }
+
+    private void add(long startTimeNanos, long durationNanos, int underlyingCount) {
+      // Record in histogram. Atomic operations are mostly uncontended since there are more stripes than processors
+      histogramCounts.incrementAndGet(LatencyHistogram.getBucketIndex(durationNanos / 1000));
+      histogramTotalNanos.addAndGet(durationNanos);
+      updateMin(histogramMinNanos, durationNanos);
+      updateMax(histogramMaxNanos, durationNanos);
+      updateLoggedStatistics(startTimeNanos, durationNanos, underlyingCount);
+    }
+
+    private synchronized void updateLoggedStatistics(long startTimeNanos, long durationNanos, int underlyingCount) {
+      ++count;
+      // Determine computation window start and end
+      if (startTimeNanos < statsComputationWindowStart) {
+        statsComputationWindowStart = startTimeNanos;
+      }
+      if ((startTimeNanos + durationNanos) > statsComputationWindowEnd) {
+        statsComputationWindowEnd = startTimeNanos + durationNanos;
+      }
+      // Compute statistics
+      double duration = durationNanos / 1000000d;
+      totalDuration += duration;
+      if (duration < minDuration) {
+        minDuration = duration;
+      }
+      if (duration > maxDuration) {
+        maxDuration = duration;
+      }
+      totalUnderlyingCount += underlyingCount;
+      // Dump stats if needed
+      if (count == statsComputationWindow) {
+        LOG.info(HankTimerEventAggregator.getStatsString(name, count, totalUnderlyingCount,
+            Math.abs(statsComputationWindowEnd - statsComputationWindowStart),
+            minDuration, totalDuration, maxDuration));
+        clear();
+      }
+    }
+
+    // Events recorded concurrently are either drained now or left for the next retrieval,
+    // so the minimum, maximum and total can be off by the few events in flight
+    private void drainTo(DoublePopulationStatisticsAggregator populationStatistics) {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (int i = 0; i < LatencyHistogram.NUM_BUCKETS; ++i) {
+        if (histogramCounts.get(i) != 0) {
+          histogram.addCount(i, histogramCounts.getAndSet(i, 0));
+        }
+      }
+      long totalNanos = histogramTotalNanos.getAndSet(0);
+      long minNanos = histogramMinNanos.getAndSet(Long.MAX_VALUE);
+      long maxNanos = histogramMaxNanos.getAndSet(Long.MIN_VALUE);
+      if (histogram.getTotalCount() > 0) {
+        populationStatistics.aggregate(minNanos / 1000000d, maxNanos / 1000000d, histogram.getTotalCount(),
+            totalNanos / 1000000d, histogram);
+      }
+    }
+
+    private void clear() {
+      count = 0;
+      totalDuration = 0;
+      statsComputationWindowStart = Long.MAX_VALUE;
+      statsComputationWindowEnd = Long.MIN_VALUE;
+      minDuration = Double.MAX_VALUE;
+      maxDuration = Double.MIN_VALUE;
+      totalUnderlyingCount = 0;
+    }
+  }
+
+  private static void updateMin(AtomicLong min, long value) {
+    long current = min.get();
+    while (value < current && !min.compareAndSet(current, value)) {
+      current = min.get();
+    }
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+}
@@ -19,7 +19,7 @@ package com.liveramp.hank.util;
 import com.liveramp.commons.collections.MemoryBoundLruHashMap;
 import com.liveramp.commons.util.MemoryUsageEstimator;
 
-public class SynchronizedMemoryBoundCache<K, V> {
+public class SynchronizedMemoryBoundCache<K, V> implements MemoryBoundCache<K, V> {
 
   private final com.liveramp.commons.collections.MemoryBoundLruHashMap<K, V> cache;
 
@@ -36,10 +36,12 @@ public class SynchronizedMemoryBoundCache<K, V> {
     }
   }
 
+  @Override
   public boolean isEnabled() {
     return cache != null;
   }
 
+  @Override
   public V get(K key) {
     if (!isEnabled()) {
       return null;
@@ -50,6 +52,7 @@ public class SynchronizedMemoryBoundCache<K, V> {
     }
   }
 
+  @Override
   public void put(K key, V value) {
     if (isEnabled()) {
       if (value == null) {
@@ -61,6 +64,7 @@ public class SynchronizedMemoryBoundCache<K, V> {
     }
   }
 
+  @Override
   public int size() {
     if (!isEnabled()) {
       return 0;
@@ -71,10 +75,12 @@ public class SynchronizedMemoryBoundCache<K, V> {
     }
   }
 
+  @Override
   public int getMaxNumItems() {
     return cache.getMaxNumItems();
   }
 
+  @Override
   public long getNumManagedBytes() {
     if (!isEnabled()) {
       return 0;
@@ -85,6 +91,7 @@ public class SynchronizedMemoryBoundCache<K, V> {
     }
   }
 
+  @Override
   public long getMaxNumManagedBytes() {
     return cache.getMaxNumManagedBytes();
   }
@@ -18,6 +18,7 @@ package com.liveramp.hank.util;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class UnsafeByteArrayOutputStream extends ByteArrayOutputStream {
 
@@ -40,4 +41,18 @@ public class UnsafeByteArrayOutputStream extends ByteArrayOutputStream {
   public ByteBuffer getByteBuffer() {
     return ByteBuffer.wrap(this.buf, 0, this.count);
   }
+
+  // Grow the underlying array so that the given number of bytes can be written directly
+  // into array(), starting at count()
+  public void ensureRemaining(int numBytes) {
+    int minCapacity = this.count + numBytes;
+    if (minCapacity > this.buf.length) {
+      this.buf = Arrays.copyOf(this.buf, Math.max(minCapacity, this.buf.length << 1));
+    }
+  }
+
+  // Account for bytes that were written directly into array()
+  public void advance(int numBytes) {
+    this.count += numBytes;
+  }
 }
@@ -0,0 +1,115 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.metrics;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Scanner;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.liveramp.hank.partition_server.DoublePopulationStatisticsAggregator;
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestMetricsExporter extends BaseTestCase {
+
+  private static final MetricsSource SOURCE = new MetricsSource() {
+    @Override
+    public void collect(MetricsCollector collector) {
+      collector.counter("requests_total", "Number of requests", 12, "domain", "d\"1", "partition", "0");
+      collector.counter("requests_total", "Number of requests", 3, "domain", "d2", "partition", "1");
+      collector.gauge("eta_seconds", "ETA", 1.5);
+      collector.latency("latency_seconds", "Latency",
+          new DoublePopulationStatisticsAggregator(0.2, 3.0, 3, 4.2, new double[]{0.2, 1.0, 3.0}), "domain", "d2");
+    }
+  };
+
+  @Test
+  public void testPrometheusTextFormat() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.register(SOURCE);
+    StringWriter writer = new StringWriter();
+    PrometheusTextFormat.write(registry.collect(), writer);
+    String text = writer.toString();
+
+    assertTrue(text.startsWith("# HELP requests_total Number of requests\n"
+        + "# TYPE requests_total counter\n"
+        + "requests_total{domain=\"d\\\"1\",partition=\"0\"} 12\n"
+        + "requests_total{domain=\"d2\",partition=\"1\"} 3\n"
+        + "# HELP eta_seconds ETA\n"
+        + "# TYPE eta_seconds gauge\n"
+        + "eta_seconds 1.5\n"
+        + "# HELP latency_seconds Latency\n"
+        + "# TYPE latency_seconds histogram\n"));
+    assertTrue(text.contains("latency_seconds_bucket{domain=\"d2\",le=\"0.0001\"} 0\n"));
+    assertTrue(text.contains("latency_seconds_bucket{domain=\"d2\",le=\"0.00025\"} 1\n"));
+    assertTrue(text.contains("latency_seconds_bucket{domain=\"d2\",le=\"0.001\"} 2\n"));
+    assertTrue(text.contains("latency_seconds_bucket{domain=\"d2\",le=\"0.005\"} 3\n"));
+    assertTrue(text.contains("latency_seconds_bucket{domain=\"d2\",le=\"10\"} 3\n"));
+    assertTrue(text.contains("latency_seconds_bucket{domain=\"d2\",le=\"+Inf\"} 3\n"));
+    assertTrue(text.contains("latency_seconds_sum{domain=\"d2\"} 0.0042"));
+    assertTrue(text.contains("latency_seconds_count{domain=\"d2\"} 3\n"));
+
+    // Failing sources are skipped
+    registry.register(new MetricsSource() {
+      @Override
+      public void collect(MetricsCollector collector) {
+        throw new RuntimeException();
+      }
+    });
+    assertEquals(3, registry.collect().getFamilies().size());
+  }
+
+  @Test
+  public void testExporter() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.register(SOURCE);
+
+    MetricsHttpServer server = new MetricsHttpServer(registry, 0);
+    server.start();
+    try {
+      HttpURLConnection connection = (HttpURLConnection)
+          new URL("http://localhost:" + server.getPort() + MetricsHttpServer.PATH).openConnection();
+      assertEquals(200, connection.getResponseCode());
+      assertEquals(PrometheusTextFormat.CONTENT_TYPE, connection.getContentType());
+      InputStream inputStream = connection.getInputStream();
+      String body = new Scanner(inputStream, "UTF-8").useDelimiter("\\A").next();
+      inputStream.close();
+      assertTrue(body.contains("eta_seconds 1.5\n"));
+    } finally {
+      server.stop();
+    }
+
+    MetricsExporter exporter = new MetricsExporter(registry, "test", 0);
+    exporter.start();
+    try {
+      ObjectName objectName = new ObjectName("com.liveramp.hank:type=Metrics,name=\"test\"");
+      assertEquals(1.5, (Double)ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "eta_seconds"), 0.0);
+      assertEquals(3.0, (Double)ManagementFactory.getPlatformMBeanServer().getAttribute(objectName,
+          "requests_total{domain=\"d2\",partition=\"1\"}"), 0.0);
+    } finally {
+      exporter.stop();
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.liveramp.hank.partition_assigner;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.liveramp.hank.coordinator.Domain;
+import com.liveramp.hank.coordinator.DomainAndVersion;
+import com.liveramp.hank.coordinator.Host;
+import com.liveramp.hank.coordinator.PartitionServerAddress;
+import com.liveramp.hank.coordinator.mock.MockDomain;
+import com.liveramp.hank.coordinator.mock.MockDomainVersion;
+import com.liveramp.hank.ring_group_conductor.RingGroupConductorMode;
+import com.liveramp.hank.test.BaseTestCase;
+import com.liveramp.hank.test.coordinator.MockHost;
+import com.liveramp.hank.test.coordinator.MockRing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestLoadBalancingPartitionAssigner extends BaseTestCase {
+
+  private final Host host1 = new MockHost(new PartitionServerAddress("host1", 0));
+  private final Host host2 = new MockHost(new PartitionServerAddress("host2", 0));
+  private final Host host3 = new MockHost(new PartitionServerAddress("host3", 0));
+
+  // 12 partitions, the first 3 being 10 times larger than the others
+  private Set<DomainAndVersion> getSkewedDomainVersions() {
+    MockDomainVersion domainVersion = new MockDomainVersion(0, 0L);
+    for (int partitionNumber = 0; partitionNumber < 12; ++partitionNumber) {
+      long numBytes = partitionNumber < 3 ? 100 : 10;
+      domainVersion.addPartitionProperties(partitionNumber, numBytes, numBytes);
+    }
+    Domain domain = new MockDomain("domain", 0, 12, null, null, null, domainVersion);
+    return Collections.singleton(new DomainAndVersion(domain, 0));
+  }
+
+  @Test
+  public void testBalancesNumBytes() throws IOException {
+    PartitionAssignmentSimulator.Report report =
+        PartitionAssignmentSimulator.simulate(new LoadBalancingPartitionAssigner(), getSkewedDomainVersions(), 3);
+    assertEquals(12, report.getNumPartitions());
+    // Each host gets one large partition, and no host exceeds the average by more than the slack
+    assertTrue(report.getNumBytesImbalance() <= 1 + LoadBalancingPartitionAssigner.DEFAULT_LOAD_SLACK);
+  }
+
+  @Test
+  public void testStable() throws IOException {
+    Set<DomainAndVersion> domainVersions = getSkewedDomainVersions();
+    Set<Host> hosts = new HashSet<Host>();
+    hosts.add(host1);
+    hosts.add(host2);
+    hosts.add(host3);
+    MockRing ring = new MockRing(hosts, null, 0);
+
+    LoadBalancingPartitionAssigner partitionAssigner = new LoadBalancingPartitionAssigner();
+    partitionAssigner.prepare(ring, domainVersions, RingGroupConductorMode.ACTIVE);
+    for (Host host : hosts) {
+      partitionAssigner.assign(host);
+    }
+
+    // Assigning again does not move any partition
+    partitionAssigner = new LoadBalancingPartitionAssigner();
+    partitionAssigner.prepare(ring, domainVersions, RingGroupConductorMode.ACTIVE);
+    for (Host host : hosts) {
+      assertTrue(partitionAssigner.isAssigned(host));
+    }
+  }
+}
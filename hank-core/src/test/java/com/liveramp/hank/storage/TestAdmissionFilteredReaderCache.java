@@ -0,0 +1,108 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.liveramp.hank.util.FrequencySketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAdmissionFilteredReaderCache {
+
+  private static ByteBuffer key(int value) {
+    return ByteBuffer.wrap(new byte[]{(byte)(value >>> 8), (byte)value});
+  }
+
+  @Test
+  public void testAdmission() {
+    ReaderCache cache = new AdmissionFilteredReaderCache(new HeapReaderCache(1 << 20, 100), 1 << 20, 100);
+    ReaderResult result = new ReaderResult();
+
+    // First miss is not admitted
+    assertFalse(cache.get(key(1), result));
+    cache.put(key(1), key(10));
+    assertFalse(cache.get(key(1), result));
+
+    // Second miss is admitted
+    cache.put(key(1), key(10));
+    assertTrue(cache.get(key(1), result));
+    assertTrue(result.isFound());
+    assertEquals(key(10), result.getBuffer());
+
+    assertFalse(cache.get(key(2), result));
+    cache.putNotFound(key(2));
+    assertFalse(cache.get(key(2), result));
+    cache.putNotFound(key(2));
+    assertTrue(cache.get(key(2), result));
+    assertFalse(result.isFound());
+
+    CacheStatistics statistics = cache.getCacheStatistics();
+    assertEquals(2, statistics.getNumItems());
+    assertEquals(2, statistics.getNumAdmissions());
+    assertEquals(2, statistics.getNumAdmissionRejections());
+    assertEquals(0.5, statistics.getAdmissionRejectionRate(), 0.001);
+  }
+
+  @Test
+  public void testScanDoesNotEvictWorkingSet() {
+    // Sketch window is larger than the scan
+    ReaderCache cache = new AdmissionFilteredReaderCache(new HeapReaderCache(-1, 10), new FrequencySketch(1 << 12));
+    ReaderResult result = new ReaderResult();
+    // Hot keys are read repeatedly
+    for (int i = 0; i < 3; ++i) {
+      for (int key = 0; key < 10; ++key) {
+        if (!cache.get(key(key), result)) {
+          cache.put(key(key), key(key));
+        }
+      }
+    }
+    // A scan reads many keys once
+    for (int key = 1000; key < 2000; ++key) {
+      if (!cache.get(key(key), result)) {
+        cache.put(key(key), key(key));
+      }
+    }
+    for (int key = 0; key < 10; ++key) {
+      assertTrue(cache.get(key(key), result));
+    }
+  }
+
+  @Test
+  public void testFrequencySketch() {
+    FrequencySketch sketch = new FrequencySketch(1000);
+    assertEquals(0, sketch.frequency(42));
+    for (int i = 0; i < 5; ++i) {
+      sketch.increment(42);
+    }
+    assertEquals(5, sketch.frequency(42));
+    // Counters saturate
+    for (int i = 0; i < 20; ++i) {
+      sketch.increment(42);
+    }
+    assertEquals(15, sketch.frequency(42));
+    // Counters are halved once enough accesses have been recorded
+    for (int i = 0; i < 1024; ++i) {
+      sketch.increment(i + 1000);
+    }
+    assertTrue(sketch.frequency(42) < 15);
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.storage;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestIOEngines extends BaseTestCase {
+
+  private final String path = localTmpDir + "/data";
+
+  private void writeData(int length) throws IOException {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      data[i] = (byte)i;
+    }
+    FileOutputStream os = new FileOutputStream(path);
+    os.write(data);
+    os.close();
+  }
+
+  @Test
+  public void testCreate() {
+    assertTrue(IOEngines.create(Collections.singleton(localTmpDir), 0) instanceof SynchronousIOEngine);
+    IOEngine ioEngine = IOEngines.create(Collections.singleton(localTmpDir), 4);
+    assertTrue(ioEngine instanceof ThreadPoolIOEngine);
+    assertEquals(4, ioEngine.getMaxNumReadsInFlight());
+    ioEngine.close();
+  }
+
+  @Test
+  public void testSynchronousIOEngine() throws Exception {
+    doTestReads(new SynchronousIOEngine());
+  }
+
+  @Test
+  public void testThreadPoolIOEngine() throws Exception {
+    doTestReads(new ThreadPoolIOEngine(Collections.singleton(localTmpDir), 4));
+    // Files outside of the data directories are read too
+    doTestReads(new ThreadPoolIOEngine(Collections.singleton("/other"), 4));
+  }
+
+  private void doTestReads(IOEngine ioEngine) throws Exception {
+    writeData(100);
+    IOEngineFile file = ioEngine.open(path);
+
+    // Blocking read
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    assertEquals(4, file.read(buffer, 10));
+    assertEquals(ByteBuffer.wrap(new byte[]{10, 11, 12, 13}), (ByteBuffer)buffer.flip());
+
+    // Many reads in flight
+    List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+    List<Future<Integer>> reads = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < 10; ++i) {
+      buffers.add(ByteBuffer.allocate(10));
+      reads.add(file.submitRead(buffers.get(i), i * 10));
+    }
+    for (int i = 0; i < 10; ++i) {
+      assertEquals(10, IOEngines.waitFor(reads.get(i)));
+      assertEquals(i * 10, buffers.get(i).get(0));
+      assertEquals(i * 10 + 9, buffers.get(i).get(9));
+    }
+
+    // Reads past the end of the file
+    assertEquals(-1, IOEngines.waitFor(file.submitRead(ByteBuffer.allocate(10), 200)));
+
+    // Failed reads are reported as IOExceptions
+    file.close();
+    try {
+      IOEngines.waitFor(file.submitRead(ByteBuffer.allocate(10), 0));
+      fail("Should fail");
+    } catch (IOException e) {
+      // Good
+    }
+    ioEngine.close();
+  }
+}
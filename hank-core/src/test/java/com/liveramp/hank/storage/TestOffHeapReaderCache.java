@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestOffHeapReaderCache {
+
+  private static ByteBuffer bytes(int... values) {
+    byte[] result = new byte[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      result[i] = (byte)values[i];
+    }
+    return ByteBuffer.wrap(result);
+  }
+
+  @Test
+  public void testGetAndPut() {
+    ReaderCache cache = new OffHeapReaderCache(1 << 10, -1, 1);
+    ReaderResult result = new ReaderResult();
+
+    assertFalse(cache.get(bytes(1), result));
+    assertEquals(0, cache.getCacheStatistics().getNumOffHeapBytes());
+
+    cache.put(bytes(1), bytes(1, 2, 3));
+    cache.putNotFound(bytes(2));
+    assertEquals(1 << 10, cache.getCacheStatistics().getNumOffHeapBytes());
+    assertEquals(2, cache.getCacheStatistics().getNumItems());
+
+    assertTrue(cache.get(bytes(1), result));
+    assertTrue(result.isFound());
+    assertEquals(bytes(1, 2, 3), result.getBuffer());
+
+    assertTrue(cache.get(bytes(2), result));
+    assertFalse(result.isFound());
+
+    // Replace a value
+    cache.put(bytes(1), bytes(4, 5));
+    assertTrue(cache.get(bytes(1), result));
+    assertEquals(bytes(4, 5), result.getBuffer());
+    assertEquals(2, cache.getCacheStatistics().getNumItems());
+
+    // Key is read before the value is copied into the same buffer
+    ByteBuffer key = result.getBuffer();
+    key.clear();
+    key.put((byte)1);
+    key.flip();
+    assertTrue(cache.get(key, result));
+    assertEquals(bytes(4, 5), result.getBuffer());
+  }
+
+  @Test
+  public void testItemsCapacity() {
+    ReaderCache cache = new OffHeapReaderCache(1 << 10, 2, 1);
+    ReaderResult result = new ReaderResult();
+    cache.put(bytes(1), bytes(1));
+    cache.put(bytes(2), bytes(2));
+    cache.put(bytes(3), bytes(3));
+    assertEquals(2, cache.getCacheStatistics().getNumItems());
+    // Oldest entry is evicted first
+    assertFalse(cache.get(bytes(1), result));
+    assertTrue(cache.get(bytes(2), result));
+    assertTrue(cache.get(bytes(3), result));
+  }
+
+  @Test
+  public void testBytesCapacity() {
+    // Entries are 16 bytes of header, 1 byte of key and 15 bytes of value
+    ReaderCache cache = new OffHeapReaderCache(100, -1, 1);
+    ReaderResult result = new ReaderResult();
+    for (int i = 0; i < 4; ++i) {
+      cache.put(bytes(i), ByteBuffer.wrap(new byte[15]));
+    }
+    assertEquals(3, cache.getCacheStatistics().getNumItems());
+    assertEquals(100, cache.getCacheStatistics().getNumManagedBytes());
+    assertFalse(cache.get(bytes(0), result));
+    for (int i = 1; i < 4; ++i) {
+      assertTrue(cache.get(bytes(i), result));
+    }
+
+    // Values larger than the slab are not cached
+    cache.put(bytes(5), ByteBuffer.wrap(new byte[100]));
+    assertFalse(cache.get(bytes(5), result));
+  }
+
+  @Test
+  public void testRandomized() {
+    OffHeapReaderCache cache = new OffHeapReaderCache(1 << 12, 64, 2);
+    Map<Integer, ByteBuffer> expected = new HashMap<Integer, ByteBuffer>();
+    ReaderResult result = new ReaderResult();
+    Random random = new Random(0);
+    for (int i = 0; i < 100000; ++i) {
+      int key = random.nextInt(256);
+      if (random.nextBoolean()) {
+        byte[] value = new byte[random.nextInt(64)];
+        random.nextBytes(value);
+        cache.put(bytes(key), ByteBuffer.wrap(value));
+        expected.put(key, ByteBuffer.wrap(value));
+      } else if (cache.get(bytes(key), result)) {
+        assertTrue(result.isFound());
+        assertEquals(expected.get(key), result.getBuffer());
+      }
+      CacheStatistics statistics = cache.getCacheStatistics();
+      assertTrue(statistics.getNumItems() <= 64);
+      assertTrue(statistics.getNumManagedBytes() <= 1 << 12);
+    }
+  }
+
+  @Test
+  public void testDefaultNumStripes() {
+    assertEquals(1, OffHeapReaderCache.getDefaultNumStripes(1 << 20));
+    // Slabs are limited to 2GB
+    long numBytesCapacity = 100L << 30;
+    int numStripes = OffHeapReaderCache.getDefaultNumStripes(numBytesCapacity);
+    assertEquals(0, numStripes & (numStripes - 1));
+    assertTrue(numBytesCapacity / numStripes <= Integer.MAX_VALUE);
+  }
+}
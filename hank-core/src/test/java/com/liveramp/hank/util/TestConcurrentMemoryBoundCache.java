@@ -0,0 +1,127 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.liveramp.commons.util.MemoryUsageEstimator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConcurrentMemoryBoundCache {
+
+  private static final MemoryUsageEstimator<Integer> ESTIMATOR = new MemoryUsageEstimator<Integer>() {
+    @Override
+    public long estimateMemorySize(Integer item) {
+      return 4;
+    }
+  };
+
+  @Test
+  public void testDisabled() {
+    ConcurrentMemoryBoundCache<Integer, Integer> cache =
+        new ConcurrentMemoryBoundCache<Integer, Integer>(false, 100, 10, ESTIMATOR, ESTIMATOR);
+    assertFalse(cache.isEnabled());
+    cache.put(1, 1);
+    assertNull(cache.get(1));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getNumManagedBytes());
+  }
+
+  @Test
+  public void testItemsCapacity() {
+    ConcurrentMemoryBoundCache<Integer, Integer> cache =
+        new ConcurrentMemoryBoundCache<Integer, Integer>(true, -1, 3, ESTIMATOR, ESTIMATOR, 1);
+    cache.put(1, 10);
+    cache.put(2, 20);
+    cache.put(3, 30);
+    assertEquals(3, cache.size());
+    assertEquals(24, cache.getNumManagedBytes());
+
+    // Reference 1 and 3, 2 should be evicted first
+    assertEquals(Integer.valueOf(10), cache.get(1));
+    assertEquals(Integer.valueOf(30), cache.get(3));
+    cache.put(4, 40);
+    assertEquals(3, cache.size());
+    assertNull(cache.get(2));
+    assertEquals(Integer.valueOf(10), cache.get(1));
+    assertEquals(Integer.valueOf(30), cache.get(3));
+    assertEquals(Integer.valueOf(40), cache.get(4));
+
+    // Overwrite does not change size
+    cache.put(4, 41);
+    assertEquals(3, cache.size());
+    assertEquals(Integer.valueOf(41), cache.get(4));
+  }
+
+  @Test
+  public void testBytesCapacity() {
+    ConcurrentMemoryBoundCache<Integer, Integer> cache =
+        new ConcurrentMemoryBoundCache<Integer, Integer>(true, 16, -1, ESTIMATOR, ESTIMATOR, 1);
+    cache.put(1, 10);
+    cache.put(2, 20);
+    assertEquals(16, cache.getNumManagedBytes());
+    cache.put(3, 30);
+    assertEquals(2, cache.size());
+    assertEquals(16, cache.getNumManagedBytes());
+    assertEquals(Integer.valueOf(30), cache.get(3));
+  }
+
+  @Test
+  public void testDefaultNumStripes() {
+    // Small caches are not striped
+    assertEquals(1, ConcurrentMemoryBoundCache.getDefaultNumStripes(-1, 1));
+    assertEquals(1, ConcurrentMemoryBoundCache.getDefaultNumStripes(1 << 10, -1));
+    assertTrue(ConcurrentMemoryBoundCache.getDefaultNumStripes(1L << 30, 1 << 20) >= 1);
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    final ConcurrentMemoryBoundCache<Integer, Integer> cache =
+        new ConcurrentMemoryBoundCache<Integer, Integer>(true, -1, 1000, ESTIMATOR, ESTIMATOR, 8);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; ++t) {
+      final int offset = t * 10000;
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; ++i) {
+            cache.put(offset + i, i);
+            Integer value = cache.get(offset + i / 2);
+            if (value != null) {
+              assertEquals(Integer.valueOf(i / 2), value);
+            }
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(cache.size() <= 1000);
+    assertEquals(cache.size() * 8, cache.getNumManagedBytes());
+  }
+}
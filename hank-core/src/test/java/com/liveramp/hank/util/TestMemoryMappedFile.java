@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.Test;
+
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMemoryMappedFile extends BaseTestCase {
+
+  private final String path = localTmpDir + "/mapped";
+
+  @Test
+  public void testChunks() throws Exception {
+    byte[] data = new byte[100];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = (byte)i;
+    }
+    FileOutputStream os = new FileOutputStream(path);
+    os.write(data);
+    os.close();
+
+    FileChannel channel = new FileInputStream(path).getChannel();
+    // Chunks of 32 bytes overlapping by 8 bytes
+    MemoryMappedFile file = new MemoryMappedFile(channel, data.length, 8, 32);
+    assertEquals(4, file.getNumChunks());
+    assertEquals(100, file.getLength());
+
+    for (int i = 0; i < data.length; ++i) {
+      assertEquals(data[i], file.get(i));
+    }
+
+    // Region within the overlap of the first chunk is a view
+    ByteBuffer region = file.getRegion(28, 8);
+    assertFalse(region.hasArray());
+    assertEquals(ByteBuffer.wrap(data, 28, 8), region);
+
+    // Region straddling two chunks beyond the overlap is copied
+    region = file.getRegion(28, 16);
+    assertTrue(region.hasArray());
+    assertEquals(ByteBuffer.wrap(data, 28, 16), region);
+
+    // Region is truncated at the end of the file
+    region = file.getRegion(96, 8);
+    assertEquals(4, region.remaining());
+    assertEquals(ByteBuffer.wrap(data, 96, 4), region);
+
+    // Copy across all chunks
+    byte[] copy = new byte[90];
+    file.get(5, copy, 0, 90);
+    assertEquals(ByteBuffer.wrap(data, 5, 90), ByteBuffer.wrap(copy));
+
+    channel.close();
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestStripedLongCollection extends BaseTestCase {
+
+  @Test
+  public void testNumStripes() {
+    assertEquals(2, StripedLongCollection.getNumStripes(1));
+    assertEquals(8, StripedLongCollection.getNumStripes(3));
+    assertEquals(16, StripedLongCollection.getNumStripes(8));
+  }
+
+  @Test
+  public void testManyShortLivedThreads() throws InterruptedException {
+    final StripedLongCollection counters = new StripedLongCollection(2);
+    // More threads than stripes, so that threads share stripes
+    int numThreads = 4 * StripedLongCollection.NUM_STRIPES;
+    final int numIncrements = 1000;
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < numThreads; ++i) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < numIncrements; ++j) {
+            counters.get().increment(0, 1);
+            counters.get().increment(1, 2);
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long total = (long)numThreads * numIncrements;
+    assertArrayEquals(new long[]{total, 2 * total}, counters.getTotals());
+    assertArrayEquals(new long[]{total, 2 * total}, counters.getAsArrayAndReset());
+
+    // Increments are counted once
+    counters.get().increment(0, 5);
+    assertArrayEquals(new long[]{5, 0}, counters.getAsArrayAndReset());
+    assertArrayEquals(new long[]{total + 5, 2 * total}, counters.getTotals());
+  }
+}
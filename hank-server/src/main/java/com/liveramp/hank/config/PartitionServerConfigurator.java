@@ -16,6 +16,8 @@
 
 package com.liveramp.hank.config;
 
+import com.liveramp.hank.partition_server.ExecutionMode;
+
 public interface PartitionServerConfigurator extends CoordinatorConfigurator, ReaderConfigurator {
 
   public int getServicePort();
@@ -30,11 +32,29 @@ public interface PartitionServerConfigurator extends CoordinatorConfigurator, Re
 
   public int getNumConcurrentGetBulkTasks();
 
+  // Threads on which requests and GET BULK tasks are executed
+  public ExecutionMode getExecutionMode();
+
+  // Number of threads handling network I/O of requests
+  public int getNumSelectorThreads();
+
+  // Port of the HTTP metrics endpoint, 0 to disable it
+  public int getMetricsPort();
+
   public int getGetBulkTaskSize();
 
+  // Number of threads reading partition files of each data directory for batched lookups. With no threads,
+  // reads are performed by the threads serving lookups.
+  public int getNumIOEngineThreadsPerDataDirectory();
+
+  // Capacity in bytes of the decompressed block cache shared by all readers, 0 to disable it
+  public long getBlockCacheNumBytesCapacity();
+
   public int getGetTimerAggregatorWindow();
 
   public long getUpdateFailureCooldown();
 
+  public boolean getUseOnlineUpdates();
+
   public ReaderConfigurator getReaderConfigurator(int numTotalPartitions);
 }
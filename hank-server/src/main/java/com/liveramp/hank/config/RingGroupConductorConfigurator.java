@@ -26,5 +26,11 @@ public interface RingGroupConductorConfigurator extends CoordinatorConfigurator
 
   public int getMinRingFullyServingObservations();
 
+  // Update serving hosts without taking them out of service. Requires online updates on partition servers.
+  public boolean getUseOnlineUpdates();
+
+  // Balance the number of bytes and throughput of partitions across hosts, rather than the number of partitions
+  public boolean getUseLoadBalancingPartitionAssigner();
+
   public RingGroupConductorMode getInitialMode();
 }
@@ -38,4 +38,19 @@ public class SimpleDataDirectoriesConfigurator implements DataDirectoriesConfigu
   public Set<String> getDataDirectories() {
     return dataDirectories;
   }
+
+  @Override
+  public int getUpdateMergeParallelism() {
+    return 1;
+  }
+
+  @Override
+  public boolean getUpdateStreamDeltas() {
+    return false;
+  }
+
+  @Override
+  public int getKeyFileFilterBitsPerKey() {
+    return 0;
+  }
 }
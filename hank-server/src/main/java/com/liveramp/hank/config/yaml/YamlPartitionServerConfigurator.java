@@ -24,6 +24,10 @@ import com.liveramp.hank.config.BaseReaderConfigurator;
 import com.liveramp.hank.config.InvalidConfigurationException;
 import com.liveramp.hank.config.PartitionServerConfigurator;
 import com.liveramp.hank.config.ReaderConfigurator;
+import com.liveramp.hank.partition_server.ExecutionMode;
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.IOEngine;
+import com.liveramp.hank.storage.IOEngines;
 
 public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator implements PartitionServerConfigurator {
 
@@ -36,6 +40,9 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
   public static final String UPDATE_DAEMON_SECTION_KEY = "update_daemon";
   public static final String NUM_CONCURRENT_UPDATES_KEY = "num_concurrent_updates";
   public static final String MAX_CONCURRENT_UPDATES_PER_DATA_DIRECTORY_KEY = "max_concurrent_updates_per_data_directory";
+  public static final String UPDATE_MERGE_PARALLELISM_KEY = "update_merge_parallelism";
+  public static final String UPDATE_STREAM_DELTAS_KEY = "update_stream_deltas";
+  public static final String USE_ONLINE_UPDATES_KEY = "use_online_updates";
   public static final String NUM_CONCURRENT_GET_BULK_TASKS = "num_concurrent_get_bulk_tasks";
   public static final String GET_BULK_TASK_SIZE = "get_bulk_task_size";
   public static final String GET_TIMER_AGGREGATOR_WINDOW_KEY = "get_timer_aggregator_window";
@@ -43,6 +50,21 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
   public static final String BUFFER_REUSE_MAX_SIZE = "buffer_reuse_max_size";
   public static final String CACHE_NUM_BYTES_CAPACITY = "cache_num_bytes_capacity";
   public static final String CACHE_NUM_ITEMS_CAPACITY = "cache_num_items_capacity";
+  public static final String USE_MEMORY_MAPPED_FILES = "use_memory_mapped_files";
+  public static final String USE_CACHE_ADMISSION_FILTER = "use_cache_admission_filter";
+  public static final String KEY_FILE_FILTER_BITS_PER_KEY = "key_file_filter_bits_per_key";
+  public static final String USE_OFF_HEAP_CACHE = "use_off_heap_cache";
+  public static final String NUM_IO_ENGINE_THREADS_PER_DATA_DIRECTORY = "num_io_engine_threads_per_data_directory";
+  public static final String BLOCK_CACHE_NUM_BYTES_CAPACITY = "block_cache_num_bytes_capacity";
+  public static final String EXECUTION_MODE = "execution_mode";
+  public static final String NUM_SELECTOR_THREADS = "num_selector_threads";
+  public static final String METRICS_PORT = "metrics_port";
+
+  private static final int DEFAULT_NUM_SELECTOR_THREADS = 4;
+
+  // Shared by the readers of all partition server handlers created with this configurator
+  private IOEngine ioEngine;
+  private BlockCache blockCache;
 
   public YamlPartitionServerConfigurator(String path) throws IOException,
       InvalidConfigurationException {
@@ -84,6 +106,24 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
     return new HashSet<String>(getStringList(PARTITION_SERVER_SECTION_KEY, LOCAL_DATA_DIRS_KEY));
   }
 
+  @Override
+  public int getUpdateMergeParallelism() {
+    Integer result = getOptionalInteger(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, UPDATE_MERGE_PARALLELISM_KEY);
+    return result == null ? 1 : result;
+  }
+
+  @Override
+  public boolean getUpdateStreamDeltas() {
+    Boolean result = getOptionalBoolean(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, UPDATE_STREAM_DELTAS_KEY);
+    return result != null && result;
+  }
+
+  @Override
+  public boolean getUseOnlineUpdates() {
+    Boolean result = getOptionalBoolean(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, USE_ONLINE_UPDATES_KEY);
+    return result != null && result;
+  }
+
   @Override
   public int getServicePort() {
     return getInteger(PARTITION_SERVER_SECTION_KEY, SERVICE_PORT_KEY);
@@ -108,6 +148,24 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
         NUM_CONCURRENT_GET_BULK_TASKS);
   }
 
+  @Override
+  public ExecutionMode getExecutionMode() {
+    String result = getOptionalString(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, EXECUTION_MODE);
+    return result == null ? ExecutionMode.THREAD_POOL : ExecutionMode.valueOf(result);
+  }
+
+  @Override
+  public int getNumSelectorThreads() {
+    Integer result = getOptionalInteger(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, NUM_SELECTOR_THREADS);
+    return result == null ? DEFAULT_NUM_SELECTOR_THREADS : result;
+  }
+
+  @Override
+  public int getMetricsPort() {
+    Integer result = getOptionalInteger(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, METRICS_PORT);
+    return result == null ? 0 : result;
+  }
+
   @Override
   public int getGetBulkTaskSize() {
     return getInteger(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, GET_BULK_TASK_SIZE);
@@ -138,7 +196,12 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
         getCacheNumBytesCapacity(),
         getCacheNumItemsCapacity(),
         getBufferReuseMaxSize(),
-        numTotalPartitions);
+        numTotalPartitions,
+        getUseMemoryMappedFiles(),
+        getUseOffHeapCache(),
+        getUseCacheAdmissionFilter(),
+        getIOEngine(),
+        getBlockCache());
   }
 
   @Override
@@ -151,6 +214,58 @@ public class YamlPartitionServerConfigurator extends YamlCoordinatorConfigurator
     return getLong(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, CACHE_NUM_ITEMS_CAPACITY);
   }
 
+  @Override
+  public boolean getUseMemoryMappedFiles() {
+    Boolean result = getOptionalBoolean(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, USE_MEMORY_MAPPED_FILES);
+    return result != null && result;
+  }
+
+  @Override
+  public int getKeyFileFilterBitsPerKey() {
+    Integer result = getOptionalInteger(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, KEY_FILE_FILTER_BITS_PER_KEY);
+    return result == null ? 0 : result;
+  }
+
+  @Override
+  public boolean getUseOffHeapCache() {
+    Boolean result = getOptionalBoolean(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, USE_OFF_HEAP_CACHE);
+    return result != null && result;
+  }
+
+  @Override
+  public boolean getUseCacheAdmissionFilter() {
+    Boolean result = getOptionalBoolean(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, USE_CACHE_ADMISSION_FILTER);
+    return result != null && result;
+  }
+
+  @Override
+  public int getNumIOEngineThreadsPerDataDirectory() {
+    Integer result = getOptionalInteger(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, NUM_IO_ENGINE_THREADS_PER_DATA_DIRECTORY);
+    return result == null ? 0 : result;
+  }
+
+  @Override
+  public synchronized IOEngine getIOEngine() {
+    if (ioEngine == null) {
+      ioEngine = IOEngines.create(getDataDirectories(), getNumIOEngineThreadsPerDataDirectory());
+    }
+    return ioEngine;
+  }
+
+  @Override
+  public long getBlockCacheNumBytesCapacity() {
+    Long result = getOptionalLong(PARTITION_SERVER_SECTION_KEY, PARTITION_SERVER_DAEMON_SECTION_KEY, BLOCK_CACHE_NUM_BYTES_CAPACITY);
+    return result == null ? 0 : result;
+  }
+
+  @Override
+  public synchronized BlockCache getBlockCache() {
+    if (blockCache == null) {
+      blockCache = new BlockCache(getBlockCacheNumBytesCapacity());
+    }
+    return blockCache;
+  }
+
   @Override
   public int getNumConcurrentUpdates() {
     return getInteger(PARTITION_SERVER_SECTION_KEY, UPDATE_DAEMON_SECTION_KEY, NUM_CONCURRENT_UPDATES_KEY);
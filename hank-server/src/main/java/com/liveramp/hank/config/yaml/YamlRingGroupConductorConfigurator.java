@@ -29,6 +29,8 @@ public class YamlRingGroupConductorConfigurator extends YamlCoordinatorConfigura
   public static final String MIN_RING_FULLY_SERVING_OBSERVATIONS_KEY = "min_ring_fully_serving_observations";
   public static final String RING_GROUP_NAME_KEY = "ring_group_name";
   public static final String INITIAL_MODE_KEY = "initial_mode";
+  public static final String USE_ONLINE_UPDATES_KEY = "use_online_updates";
+  public static final String USE_LOAD_BALANCING_PARTITION_ASSIGNER_KEY = "use_load_balancing_partition_assigner";
 
   public YamlRingGroupConductorConfigurator(String configPath) throws IOException, InvalidConfigurationException {
     super(configPath);
@@ -49,6 +51,18 @@ public class YamlRingGroupConductorConfigurator extends YamlCoordinatorConfigura
     return getInteger(RING_GROUP_CONDUCTOR_SECTION_KEY, MIN_RING_FULLY_SERVING_OBSERVATIONS_KEY);
   }
 
+  @Override
+  public boolean getUseOnlineUpdates() {
+    Boolean result = getOptionalBoolean(RING_GROUP_CONDUCTOR_SECTION_KEY, USE_ONLINE_UPDATES_KEY);
+    return result != null && result;
+  }
+
+  @Override
+  public boolean getUseLoadBalancingPartitionAssigner() {
+    Boolean result = getOptionalBoolean(RING_GROUP_CONDUCTOR_SECTION_KEY, USE_LOAD_BALANCING_PARTITION_ASSIGNER_KEY);
+    return result != null && result;
+  }
+
   @Override
   public RingGroupConductorMode getInitialMode() {
     return RingGroupConductorMode.valueOf(getString(RING_GROUP_CONDUCTOR_SECTION_KEY, INITIAL_MODE_KEY));
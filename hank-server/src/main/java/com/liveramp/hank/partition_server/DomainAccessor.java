@@ -20,14 +20,17 @@ import com.liveramp.commons.util.BytesUtils;
 import com.liveramp.hank.coordinator.HostDomain;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.metrics.MetricsCollector;
 import com.liveramp.hank.partitioner.Partitioner;
 import com.liveramp.hank.storage.ReaderResult;
-import com.liveramp.hank.util.HankTimer;
-import com.liveramp.hank.util.HankTimerEventAggregator;
+import com.liveramp.hank.util.StripedTimerEventAggregator;
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Class that manages accessing data on behalf of a particular Domain.
@@ -38,34 +41,68 @@ public class DomainAccessor {
 
   private static final Logger LOG = LoggerFactory.getLogger(DomainAccessor.class);
   private final HostDomain hostDomain;
-  private final PartitionAccessor[] partitionAccessors;
+  private final AtomicReferenceArray<PartitionAccessor> partitionAccessors;
   private final Partitioner partitioner;
-  private final HankTimerEventAggregator getRequestsTimerAggregator;
+  private final StripedTimerEventAggregator getRequestsTimerAggregator;
 
   DomainAccessor(HostDomain hostDomain,
                  PartitionAccessor[] partitionAccessors,
                  Partitioner partitioner,
                  int getTimerAggregatorWindow) throws IOException {
     this.hostDomain = hostDomain;
-    this.partitionAccessors = partitionAccessors;
+    this.partitionAccessors = new AtomicReferenceArray<PartitionAccessor>(partitionAccessors);
     this.partitioner = partitioner;
-    this.getRequestsTimerAggregator = new HankTimerEventAggregator("GET " + hostDomain.getDomain().getName(),
+    this.getRequestsTimerAggregator = new StripedTimerEventAggregator("GET " + hostDomain.getDomain().getName(),
         getTimerAggregatorWindow);
   }
 
   public HankResponse get(ByteBuffer key, ReaderResult result) throws IOException {
-    HankTimer timer = getRequestsTimerAggregator.getTimer();
+    return get(key, result, null);
+  }
+
+  // When a response is supplied, it is reused to return values instead of allocating a new one
+  public HankResponse get(ByteBuffer key, ReaderResult result, HankResponse response) throws IOException {
+    long startTime = getRequestsTimerAggregator.getStartTime();
     try {
-      int partition = partitioner.partition(key, partitionAccessors.length);
-      PartitionAccessor partitionAccessor = partitionAccessors[partition];
-      if (partitionAccessor == null) {
+      int partition = partitioner.partition(key, partitionAccessors.length());
+      PartitionAccessor partitionAccessor = partitionAccessors.get(partition);
+      HankResponse partitionResponse = null;
+      if (partitionAccessor != null) {
+        partitionResponse = partitionAccessor.get(key, result, response);
+      }
+      // The partition is not served, or was unloaded concurrently
+      if (partitionResponse == null) {
         LOG.error("Failed to perform get because of an Exception: wrong host for domain: " + hostDomain.getDomain().getName()
             + ", partition: " + partition + ", key: " + BytesUtils.bytesToHexString(key) + ", response: " + WRONG_HOST);
         return WRONG_HOST;
       }
-      return partitionAccessor.get(key, result);
+      return partitionResponse;
     } finally {
-      getRequestsTimerAggregator.add(timer);
+      getRequestsTimerAggregator.add(startTime);
+    }
+  }
+
+  public int getPartition(ByteBuffer key) {
+    return partitioner.partition(key, partitionAccessors.length());
+  }
+
+  // Look up a batch of keys that all belong to the given partition. Responses are stored in the given array,
+  // at the same indices as their keys.
+  public void getBulk(int partition,
+                      List<ByteBuffer> keys,
+                      List<ReaderResult> results,
+                      HankResponse[] responses) throws IOException {
+    long startTime = getRequestsTimerAggregator.getStartTime();
+    try {
+      PartitionAccessor partitionAccessor = partitionAccessors.get(partition);
+      // The partition is not served, or was unloaded concurrently
+      if (partitionAccessor == null || !partitionAccessor.getBulk(keys, results, responses)) {
+        LOG.error("Failed to perform get bulk because of an Exception: wrong host for domain: " + hostDomain.getDomain().getName()
+            + ", partition: " + partition + ", num keys: " + keys.size() + ", response: " + WRONG_HOST);
+        Arrays.fill(responses, 0, keys.size(), WRONG_HOST);
+      }
+    } finally {
+      getRequestsTimerAggregator.add(startTime, keys.size());
     }
   }
 
@@ -77,18 +114,51 @@ public class DomainAccessor {
     return hostDomain;
   }
 
+  public PartitionAccessor getPartitionAccessor(int partitionNumber) {
+    return partitionAccessors.get(partitionNumber);
+  }
+
+  // Start serving a partition that was not served so far
+  public void addPartitionAccessor(int partitionNumber, PartitionAccessor partitionAccessor) {
+    if (!partitionAccessors.compareAndSet(partitionNumber, null, partitionAccessor)) {
+      throw new IllegalStateException("Partition " + partitionNumber + " of domain " + getName() + " is already served.");
+    }
+  }
+
+  // Stop serving a partition and close its Reader once in-flight requests have completed
+  public void removePartitionAccessor(int partitionNumber) {
+    PartitionAccessor partitionAccessor = partitionAccessors.getAndSet(partitionNumber, null);
+    if (partitionAccessor != null) {
+      partitionAccessor.shutDown();
+    }
+  }
+
   public void shutDown() {
     // Shutdown partition accessors
-    for (PartitionAccessor partitionAccessor : partitionAccessors) {
+    for (int i = 0; i < partitionAccessors.length(); ++i) {
+      PartitionAccessor partitionAccessor = partitionAccessors.get(i);
       if (partitionAccessor != null) {
         partitionAccessor.shutDown();
       }
     }
   }
 
+  public void collect(MetricsCollector collector) {
+    String domainName = hostDomain.getDomain().getName();
+    collector.latency("hank_get_latency_seconds", "Server-side latency of GET requests",
+        getRequestsTimerAggregator.getCumulativePopulationStatistics(), "domain", domainName);
+    for (int i = 0; i < partitionAccessors.length(); ++i) {
+      PartitionAccessor partitionAccessor = partitionAccessors.get(i);
+      if (partitionAccessor != null) {
+        partitionAccessor.collect(collector, domainName);
+      }
+    }
+  }
+
   public RuntimeStatisticsAggregator getRuntimeStatistics() {
     RuntimeStatisticsAggregator runtimeStatisticsAggregator = new RuntimeStatisticsAggregator();
-    for (PartitionAccessor partitionAccessor : partitionAccessors) {
+    for (int i = 0; i < partitionAccessors.length(); ++i) {
+      PartitionAccessor partitionAccessor = partitionAccessors.get(i);
       if (partitionAccessor != null) {
         runtimeStatisticsAggregator.add(partitionAccessor.getRuntimeStatistics());
       }
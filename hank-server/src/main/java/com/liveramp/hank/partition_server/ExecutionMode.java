@@ -0,0 +1,26 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.partition_server;
+
+// Threads on which the partition server executes requests and GET BULK tasks
+public enum ExecutionMode {
+  // Fixed pools of platform threads
+  THREAD_POOL,
+  // Work-stealing pools of platform threads
+  FORK_JOIN,
+  // One virtual thread per task when the JVM supports them, work-stealing pools otherwise
+  VIRTUAL_THREADS
+}
@@ -0,0 +1,35 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.partition_server;
+
+import java.io.IOException;
+
+import com.liveramp.hank.coordinator.HostDomain;
+import com.liveramp.hank.coordinator.HostDomainPartition;
+
+/**
+ * Swaps the Readers of partitions that are being served, so that domain updates can be applied
+ * without taking the host out of service.
+ */
+interface IReaderReloader {
+
+  // Load a Reader for the given version of the partition and start serving it in place of the current one
+  public void reloadReader(HostDomain hostDomain, HostDomainPartition partition, int versionNumber) throws IOException;
+
+  // Stop serving the partition before its files are deleted
+  public void unloadReader(HostDomain hostDomain, HostDomainPartition partition);
+}
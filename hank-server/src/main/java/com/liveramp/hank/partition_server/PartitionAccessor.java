@@ -18,20 +18,29 @@ package com.liveramp.hank.partition_server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
 import com.liveramp.hank.coordinator.HostDomainPartition;
 import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.metrics.MetricsCollector;
+import com.liveramp.hank.storage.CacheStatistics;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
-import com.liveramp.hank.util.AtomicLongCollection;
 import com.liveramp.hank.util.HankTimer;
+import com.liveramp.hank.util.StripedLongCollection;
 
 /**
  * Wrapper class that stores: 1. HostDomainPartition 2. Reader: The Reader
- * associated with the HostDomainPartition 3. AtomicLongCollection: counters
+ * associated with the HostDomainPartition 3. StripedLongCollection: counters
  * for number of requests and hits in a given time window
+ *
+ * The Reader can be swapped while requests are being served. Readers are reference counted
+ * so that in-flight requests complete on the Reader they started with, which is closed once
+ * the last of them has released it.
  */
 public class PartitionAccessor {
 
@@ -39,23 +48,25 @@ public class PartitionAccessor {
   private static final Logger LOG = LoggerFactory.getLogger(PartitionAccessor.class);
 
   private final HostDomainPartition partition;
-  private final Reader reader;
+  private final AtomicReference<ReaderReference> readerReference;
   private final HankTimer windowTimer = new HankTimer();
   //0: num requests
   //1: num hits
   //2: responses data num bytes
   //3: num L1 cache hits
   //4: num L2 cache hits
-  private final AtomicLongCollection countersWindow;
+  //5: num memory mapped reads
+  //6: num block cache hits
+  private final StripedLongCollection countersWindow;
 
   public PartitionAccessor(HostDomainPartition partition, Reader reader) {
     if (reader == null) {
       throw new IllegalArgumentException("Reader may not be null!");
     }
     this.partition = partition;
-    this.reader = reader;
+    this.readerReference = new AtomicReference<ReaderReference>(new ReaderReference(reader));
     windowTimer.restart();
-    countersWindow = new AtomicLongCollection(5, new long[]{0, 0, 0, 0, 0});
+    countersWindow = new StripedLongCollection(7);
   }
 
   public HostDomainPartition getHostDomainPartition() {
@@ -63,16 +74,79 @@ public class PartitionAccessor {
   }
 
   public HankResponse get(ByteBuffer key, ReaderResult result) throws IOException {
-    // Increment requests counter
+    return get(key, result, null);
+  }
+
+  // When a response is supplied, it is reused to return values instead of allocating a new one.
+  // Returns null if the partition was shut down.
+  public HankResponse get(ByteBuffer key, ReaderResult result, HankResponse response) throws IOException {
     LOG.trace("Partition GET");
+    ReaderReference reference = acquireReader();
+    if (reference == null) {
+      return null;
+    }
+    try {
+      return get(reference.reader, key, result, response);
+    } finally {
+      reference.release();
+    }
+  }
+
+  // Look up a batch of keys and store their responses in the given array, at the same indices.
+  // Returns false if the partition was shut down.
+  public boolean getBulk(List<ByteBuffer> keys, List<ReaderResult> results, HankResponse[] responses) throws IOException {
+    LOG.trace("Partition GET BULK");
+    ReaderReference reference = acquireReader();
+    if (reference == null) {
+      return false;
+    }
+    try {
+      reference.reader.getBulk(keys, results);
+      for (int i = 0; i < keys.size(); ++i) {
+        responses[i] = getResponse(results.get(i), null);
+      }
+      return true;
+    } finally {
+      reference.release();
+    }
+  }
+
+  private HankResponse get(Reader reader, ByteBuffer key, ReaderResult result, HankResponse response) throws IOException {
     reader.get(key, result);
-    int l1CacheHit = result.getL1CacheHit() ? 1 : 0;
-    int l2CacheHit = result.getL2CacheHit() ? 1 : 0;
+    return getResponse(result, response);
+  }
+
+  private HankResponse getResponse(ReaderResult result, HankResponse response) {
+    // Increment counters of the stripe of the current thread
+    StripedLongCollection.Counters counters = countersWindow.get();
+    counters.increment(0, 1);
+    if (result.getL1CacheHit()) {
+      counters.increment(3, 1);
+    }
+    if (result.getL2CacheHit()) {
+      counters.increment(4, 1);
+    }
+    if (result.getMemoryMappedRead()) {
+      counters.increment(5, 1);
+    }
+    if (result.getBlockCacheHit()) {
+      counters.increment(6, 1);
+    }
     if (result.isFound()) {
-      countersWindow.increment(1, 1, result.getBuffer().remaining(), l1CacheHit, l2CacheHit);
-      return HankResponse.value(result.getBuffer());
+      // Thrift serializes binary fields from their backing array, so values that are views
+      // (e.g. of memory mapped files) are copied into the result's own buffer.
+      if (result.isView()) {
+        result.deepCopyIntoResultBuffer(result.getBuffer());
+      }
+      counters.increment(1, 1);
+      counters.increment(2, result.getBuffer().remaining());
+      if (response == null) {
+        return HankResponse.value(result.getBuffer());
+      } else {
+        response.set_value(result.getBuffer());
+        return response;
+      }
     } else {
-      countersWindow.increment(1, 0, 0, l1CacheHit, l2CacheHit);
       return NOT_FOUND;
     }
   }
@@ -82,12 +156,14 @@ public class PartitionAccessor {
     long windowDurationNanos = windowTimer.getDuration();
     windowTimer.restart();
     // Get atomic counters
-    long[] counters = countersWindow.getAsArrayAndSet(0, 0, 0, 0, 0);
+    long[] counters = countersWindow.getAsArrayAndReset();
     long numRequestsInWindow = counters[0];
     long numHitsInWindow = counters[1];
     long responsesNumBytesInWindow = counters[2];
     long numL1CacheHitsInWindow = counters[3];
     long numL2CacheHitsInWindow = counters[4];
+    long numMemoryMappedReadsInWindow = counters[5];
+    long numBlockCacheHitsInWindow = counters[6];
     double throughput = 0;
     double responseDataThroughput = 0;
     if (windowDurationNanos != 0) {
@@ -101,15 +177,107 @@ public class PartitionAccessor {
         responseDataThroughput,
         numL1CacheHitsInWindow,
         numL2CacheHitsInWindow,
-        reader.getCacheStatistics());
+        numMemoryMappedReadsInWindow,
+        numBlockCacheHitsInWindow,
+        getCacheStatistics());
+  }
+
+  // Report counters since this accessor was created, and the current state of the reader's caches
+  public void collect(MetricsCollector collector, String domainName) {
+    long[] counters = countersWindow.getTotals();
+    String partitionNumber = Integer.toString(partition.getPartitionNumber());
+    String[] labels = {"domain", domainName, "partition", partitionNumber};
+    collector.counter("hank_partition_requests_total", "Number of keys requested", counters[0], labels);
+    collector.counter("hank_partition_hits_total", "Number of keys found", counters[1], labels);
+    collector.counter("hank_partition_response_bytes_total", "Number of bytes of values found", counters[2], labels);
+    collector.counter("hank_partition_l1_cache_hits_total", "Number of requests served by the L1 cache", counters[3], labels);
+    collector.counter("hank_partition_l2_cache_hits_total", "Number of requests served by the L2 cache", counters[4], labels);
+    collector.counter("hank_partition_memory_mapped_reads_total", "Number of requests served from memory mapped files", counters[5], labels);
+    collector.counter("hank_partition_block_cache_hits_total", "Number of requests served by the block cache", counters[6], labels);
+    CacheStatistics cacheStatistics = getCacheStatistics();
+    if (cacheStatistics != null) {
+      collector.gauge("hank_partition_cache_items", "Number of items in caches", cacheStatistics.getNumItems(), labels);
+      collector.gauge("hank_partition_cache_max_items", "Maximum number of items in caches", cacheStatistics.getMaxNumItems(), labels);
+      collector.gauge("hank_partition_cache_bytes", "Number of bytes managed by caches", cacheStatistics.getNumManagedBytes(), labels);
+      collector.gauge("hank_partition_cache_max_bytes", "Maximum number of bytes managed by caches", cacheStatistics.getMaxNumManagedBytes(), labels);
+      collector.gauge("hank_partition_off_heap_bytes", "Number of bytes held off heap", cacheStatistics.getNumOffHeapBytes(), labels);
+      collector.gauge("hank_partition_filter_bytes", "Number of bytes used by key filters", cacheStatistics.getNumFilterBytes(), labels);
+    }
+  }
+
+  private CacheStatistics getCacheStatistics() {
+    ReaderReference reference = acquireReader();
+    if (reference == null) {
+      return null;
+    }
+    try {
+      return reference.reader.getCacheStatistics();
+    } finally {
+      reference.release();
+    }
+  }
+
+  /**
+   * Replace the current Reader. Requests that already acquired the previous Reader complete on it,
+   * and it is closed once they have all released it.
+   */
+  public void swapReader(Reader reader) {
+    if (reader == null) {
+      throw new IllegalArgumentException("Reader may not be null!");
+    }
+    ReaderReference previousReference = readerReference.getAndSet(new ReaderReference(reader));
+    if (previousReference != null) {
+      previousReference.release();
+    }
   }
 
   public void shutDown() {
-    if (reader != null) {
-      try {
-        reader.close();
-      } catch (IOException e) {
-        LOG.error("Exception while closing Reader", e);
+    ReaderReference previousReference = readerReference.getAndSet(null);
+    if (previousReference != null) {
+      previousReference.release();
+    }
+  }
+
+  // Returns null if the partition was shut down
+  private ReaderReference acquireReader() {
+    while (true) {
+      ReaderReference reference = readerReference.get();
+      if (reference == null || reference.acquire()) {
+        return reference;
+      }
+      // The Reader was swapped and released in the meantime, retry with the new one
+    }
+  }
+
+  private static class ReaderReference {
+
+    private final Reader reader;
+    // The accessor holds one reference until the Reader is swapped out or shut down
+    private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+    private ReaderReference(Reader reader) {
+      this.reader = reader;
+    }
+
+    private boolean acquire() {
+      while (true) {
+        int count = referenceCount.get();
+        if (count == 0) {
+          return false;
+        }
+        if (referenceCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    private void release() {
+      if (referenceCount.decrementAndGet() == 0) {
+        try {
+          reader.close();
+        } catch (IOException e) {
+          LOG.error("Exception while closing Reader", e);
+        }
       }
     }
   }
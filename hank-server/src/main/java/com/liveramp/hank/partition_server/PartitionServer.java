@@ -31,6 +31,7 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 import org.apache.log4j.PropertyConfigurator;
 import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.server.TThreadedSelectorServer;
@@ -51,6 +52,12 @@ import com.liveramp.hank.coordinator.Hosts;
 import com.liveramp.hank.coordinator.PartitionServerAddress;
 import com.liveramp.hank.coordinator.Ring;
 import com.liveramp.hank.coordinator.RingGroup;
+import com.liveramp.hank.metrics.MetricsCollector;
+import com.liveramp.hank.metrics.MetricsExporter;
+import com.liveramp.hank.metrics.MetricsRegistry;
+import com.liveramp.hank.metrics.MetricsSource;
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.CacheStatistics;
 import com.liveramp.hank.util.CommandLineChecker;
 import com.liveramp.hank.util.HankTimer;
 import com.liveramp.hank.util.UpdateStatisticsRunnable;
@@ -77,17 +84,21 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
   private final Host host;
 
   private Thread updateThread;
+  private volatile IUpdateManager currentUpdateManager;
   private Thread offlineWatcherThread;
 
   private TThreadedSelectorServer dataServer;
   private Thread dataServerThread;
   private boolean waitForDataServer;
+  private volatile IfaceWithShutdown dataServerHandler;
 
   private final RingGroup ringGroup;
 
   private Thread shutdownHook;
   private UpdateFilesystemStatisticsRunnable updateFilesystemStatisticsRunnable;
   private Thread updateFilesystemStatisticsThread;
+  private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+  private final MetricsExporter metricsExporter;
 
   public PartitionServer(PartitionServerConfigurator configurator, String hostName) throws IOException {
     this.configurator = configurator;
@@ -120,11 +131,17 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     updateFilesystemStatisticsThread = new Thread(updateFilesystemStatisticsRunnable, "Update Filesystem Statistics");
     updateFilesystemStatisticsThread.setDaemon(true);
     updateFilesystemStatisticsThread.start();
+
+    metricsRegistry.register(new PartitionServerMetricsSource());
+    metricsExporter = new MetricsExporter(metricsRegistry, "PartitionServer " + hostAddress,
+        configurator.getMetricsPort());
   }
 
   public void run() throws IOException, InterruptedException {
     // Add shutdown hook
     addShutdownHook();
+    // Expose metrics
+    metricsExporter.start();
     // Initialize and process commands
     setStateSynchronized(HostState.IDLE); // In case of exception, server will stop and state will be coherent.
     // Wait for state to propagate
@@ -162,6 +179,8 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     setStateSynchronized(HostState.OFFLINE); // In case of exception, server will stop and state will be coherent.
     // Remove shutdown hook. We don't need it anymore as we just set the host state to OFFLINE
     removeShutdownHook();
+    // Stop exposing metrics
+    metricsExporter.stop();
     // Disconnect from zookeeper
     coordinator.close();
   }
@@ -238,6 +257,11 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     return new UpdateManager(configurator, host, ringGroup);
   }
 
+  // Update manager that swaps the Readers of the given handler while it keeps serving
+  protected IUpdateManager getOnlineUpdateManager(IReaderReloader readerReloader) throws IOException {
+    return new UpdateManager(configurator, host, ringGroup, readerReloader);
+  }
+
   @Override
   public synchronized void onCommandQueueChange(Host host) {
     LOG.info("Command queue changed.");
@@ -348,9 +372,20 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     switch (state) {
       case IDLE:
         host.setState(HostState.UPDATING); // In case of exception, server will stop and state will be coherent.
-        executeUpdate();
+        executeUpdate(null);
         // Next command is set by the updater thread
         break;
+      case SERVING:
+        // Update online: keep serving and swap Readers as partitions are updated
+        IfaceWithShutdown handler = dataServerHandler;
+        if (configurator.getUseOnlineUpdates() && handler instanceof IReaderReloader) {
+          executeUpdate((IReaderReloader)handler);
+          // Next command is set by the updater thread
+        } else {
+          LOG.info(ignoreIncompatibleCommandMessage(HostCommand.EXECUTE_UPDATE, state));
+          host.nextCommand(); // In case of exception, server will stop and state will be coherent.
+        }
+        break;
       default:
         LOG.info(ignoreIncompatibleCommandMessage(HostCommand.EXECUTE_UPDATE, state));
         host.nextCommand(); // In case of exception, server will stop and state will be coherent.
@@ -370,7 +405,8 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     }
   }
 
-  private void executeUpdate() {
+  // When a reader reloader is supplied, the update is performed online and the host keeps serving
+  private void executeUpdate(final IReaderReloader readerReloader) {
     if (updateThread != null) {
       LOG.error("Update got called while one is already running!");
       return;
@@ -379,7 +415,14 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
       @Override
       public void run() {
         try {
-          IUpdateManager updateManager = getUpdateManager();
+          IUpdateManager updateManager;
+          if (readerReloader == null) {
+            updateManager = getUpdateManager();
+          } else {
+            LOG.info("Updating online while serving data.");
+            updateManager = getOnlineUpdateManager(readerReloader);
+          }
+          currentUpdateManager = updateManager;
           updateManager.update();
           LOG.info("Update succeeded.");
         } catch (Throwable e) {
@@ -395,11 +438,14 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
             //  no op
           }
         }
-        // Go back to IDLE even in case of failure
-        try {
-          setStateSynchronized(HostState.IDLE); // In case of exception, server will stop and state will be coherent.
-        } catch (IOException e) {
-          LOG.error("Failed to record state change.", e);
+        currentUpdateManager = null;
+        // Go back to IDLE even in case of failure. Online updates keep serving.
+        if (readerReloader == null) {
+          try {
+            setStateSynchronized(HostState.IDLE); // In case of exception, server will stop and state will be coherent.
+          } catch (IOException e) {
+            LOG.error("Failed to record state change.", e);
+          }
         }
         // Move on to next command
         try {
@@ -428,12 +474,20 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     try {
       // Set up the service handler
       handler = getHandler();
+      dataServerHandler = handler;
       // Launch the thrift server
       TNonblockingServerSocket serverSocket = new TNonblockingServerSocket(configurator.getServicePort());
       TThreadedSelectorServer.Args options = new TThreadedSelectorServer.Args(serverSocket);
-      options.processor(new com.liveramp.hank.generated.PartitionServer.Processor(handler));
-      options.workerThreads(configurator.getNumConcurrentQueries());
-      options.selectorThreads(4);
+      TProcessor processor = new com.liveramp.hank.generated.PartitionServer.Processor(handler);
+      if (handler instanceof PartitionServerHandler) {
+        // Pooled GET results and responses are released once Thrift has serialized the responses
+        processor = ((PartitionServerHandler)handler).wrapProcessor(processor);
+      }
+      options.processor(processor);
+      // The server shuts down its executor when it stops
+      options.executorService(PartitionServerExecutors.create(configurator.getExecutionMode(),
+          configurator.getNumConcurrentQueries(), "Thrift Worker Thread"));
+      options.selectorThreads(configurator.getNumSelectorThreads());
       options.protocolFactory(new TCompactProtocol.Factory());
       dataServer = new TThreadedSelectorServer(options);
       LOG.info("Launching Thrift server.");
@@ -448,6 +502,7 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
       serverSocket.close();
     } finally {
       // Always shut down the handler
+      dataServerHandler = null;
       if (handler != null) {
         LOG.debug("Shutting down Partition Server handler.");
         handler.shutDown();
@@ -603,6 +658,37 @@ public class PartitionServer implements HostCommandQueueChangeListener, WatchedN
     }
   }
 
+  /**
+   * Reports filesystem statistics, and the metrics of the current handler and update manager
+   */
+  private class PartitionServerMetricsSource implements MetricsSource {
+
+    @Override
+    public void collect(MetricsCollector collector) throws IOException {
+      for (Map.Entry<String, FilesystemStatisticsAggregator> entry : getFilesystemStatistics().entrySet()) {
+        collector.gauge("hank_filesystem_total_bytes", "Total space of data filesystems",
+            entry.getValue().getTotalSpace(), "filesystem", entry.getKey());
+        collector.gauge("hank_filesystem_used_bytes", "Used space of data filesystems",
+            entry.getValue().getUsedSpace(), "filesystem", entry.getKey());
+      }
+      BlockCache blockCache = configurator.getBlockCache();
+      if (blockCache != null && blockCache.isEnabled()) {
+        CacheStatistics blockCacheStatistics = blockCache.getCacheStatistics();
+        collector.gauge("hank_block_cache_items", "Number of blocks in the block cache", blockCacheStatistics.getNumItems());
+        collector.gauge("hank_block_cache_bytes", "Number of bytes managed by the block cache", blockCacheStatistics.getNumManagedBytes());
+        collector.gauge("hank_block_cache_max_bytes", "Maximum number of bytes managed by the block cache", blockCacheStatistics.getMaxNumManagedBytes());
+      }
+      IfaceWithShutdown handler = dataServerHandler;
+      if (handler instanceof MetricsSource) {
+        ((MetricsSource)handler).collect(collector);
+      }
+      IUpdateManager updateManager = currentUpdateManager;
+      if (updateManager instanceof MetricsSource) {
+        ((MetricsSource)updateManager).collect(collector);
+      }
+    }
+  }
+
   // Set the host to OFFLINE on VM shutdown
   private void addShutdownHook() {
     if (shutdownHook == null) {
@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.partition_server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PartitionServerExecutors {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionServerExecutors.class);
+
+  private static final long THREAD_POOL_KEEP_ALIVE_DAYS = 1;
+
+  private PartitionServerExecutors() {
+  }
+
+  // Create an executor of the given mode. The number of threads is ignored by virtual threads,
+  // which run every task on its own thread.
+  public static ExecutorService create(ExecutionMode executionMode, int numThreads, String threadName) {
+    switch (executionMode) {
+      case THREAD_POOL:
+        return createThreadPool(numThreads, threadName);
+      case FORK_JOIN:
+        return createForkJoinPool(numThreads, threadName);
+      case VIRTUAL_THREADS:
+        ExecutorService executor = createVirtualThreadExecutor();
+        if (executor != null) {
+          return executor;
+        }
+        LOG.warn("Virtual threads are not supported by this JVM. Using a work-stealing pool of "
+            + numThreads + " threads for " + threadName + " instead.");
+        return createForkJoinPool(numThreads, threadName);
+      default:
+        throw new IllegalArgumentException("Unsupported execution mode: " + executionMode);
+    }
+  }
+
+  private static ExecutorService createThreadPool(int numThreads, final String threadName) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        numThreads,
+        numThreads,
+        THREAD_POOL_KEEP_ALIVE_DAYS,
+        TimeUnit.DAYS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          private final AtomicInteger threadId = new AtomicInteger(0);
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, threadName + " " + threadId.getAndIncrement());
+          }
+        });
+    // Prestart core threads
+    executor.prestartAllCoreThreads();
+    return executor;
+  }
+
+  private static ExecutorService createForkJoinPool(int numThreads, final String threadName) {
+    // Tasks are independent and never joined, so they are scheduled in FIFO order
+    return new ForkJoinPool(numThreads,
+        new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+          @Override
+          public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(threadName + " " + thread.getPoolIndex());
+            return thread;
+          }
+        },
+        null,
+        true);
+  }
+
+  // Return null when virtual threads are not available. They are looked up by reflection since
+  // the code is compiled for JVMs that predate them.
+  private static ExecutorService createVirtualThreadExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService)method.invoke(null);
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (Exception e) {
+      LOG.warn("Failed to create virtual thread executor", e);
+      return null;
+    }
+  }
+}
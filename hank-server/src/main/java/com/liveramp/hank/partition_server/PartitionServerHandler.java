@@ -18,17 +18,19 @@ package com.liveramp.hank.partition_server;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,15 +49,18 @@ import com.liveramp.hank.coordinator.Ring;
 import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.metrics.MetricsCollector;
+import com.liveramp.hank.metrics.MetricsSource;
 import com.liveramp.hank.storage.Reader;
 import com.liveramp.hank.storage.ReaderResult;
 import com.liveramp.hank.storage.StorageEngine;
+import com.liveramp.hank.util.ObjectPool;
 import com.liveramp.hank.util.UpdateStatisticsRunnable;
 
 /**
  * Implements the actual data serving logic of the PartitionServer
  */
-public class PartitionServerHandler implements IfaceWithShutdown {
+public class PartitionServerHandler implements IfaceWithShutdown, IReaderReloader, MetricsSource {
 
   private final static Logger LOG = LoggerFactory.getLogger(PartitionServerHandler.class);
 
@@ -64,12 +69,19 @@ public class PartitionServerHandler implements IfaceWithShutdown {
   private static final HankBulkResponse NO_SUCH_DOMAIN_BULK = HankBulkResponse.xception(HankException.no_such_domain(true));
   private final int getBulkTaskSize;
   private final int bufferReuseMaxSize;
-  private static final long GET_BULK_TASK_EXECUTOR_KEEP_ALIVE_VALUE = 1;
-  private static final TimeUnit GET_BULK_TASK_EXECUTOR_KEEP_ALIVE_UNIT = TimeUnit.DAYS;
 
-  private static final ReaderResultThreadLocal readerResultThreadLocal = new ReaderResultThreadLocal();
-  private final DomainAccessor[] domainAccessors;
-  private final ThreadPoolExecutor getBulkTaskExecutor;
+  // Results and responses of single GETs, which might each run on a new thread
+  private final ObjectPool<GetContext> getContextPool;
+  // Only set while a GET is being processed, so that threads do not retain contexts
+  private final ThreadLocal<GetContext> inFlightGetContext = new ThreadLocal<GetContext>();
+  // Replaced as a whole when a domain is loaded while serving
+  private volatile DomainAccessor[] domainAccessors;
+  private final PartitionServerConfigurator configurator;
+  private final int numTotalPartitions;
+  private boolean isShutDown = false;
+  private final ExecutorService getBulkTaskExecutor;
+  // Results of GET BULK tasks, which might each run on a new thread
+  private final ReaderResultPool readerResultPool;
   private static final long GET_BULK_TASK_EXECUTOR_AWAIT_TERMINATION_VALUE = 1;
   private static final TimeUnit GET_BULK_TASK_EXECUTOR_AWAIT_TERMINATION_UNIT = TimeUnit.SECONDS;
   private static final double USED_SIZE_THRESHOLD_FOR_VALUE_BUFFER_DEEP_COPY = 0.75;
@@ -77,26 +89,41 @@ public class PartitionServerHandler implements IfaceWithShutdown {
   private final UpdateStatisticsRunnable updateRuntimeStatisticsRunnable;
   private final Thread updateRuntimeStatisticsThread;
   private static final int UPDATE_RUNTIME_STATISTICS_THREAD_SLEEP_TIME_MS_DEFAULT = 30000;
+  // When metrics are scraped over HTTP, the coordinator only gets summaries, and less often
+  private static final int UPDATE_RUNTIME_STATISTICS_THREAD_SLEEP_TIME_MS_WITH_METRICS_PORT = 5 * 60 * 1000;
 
   // The coordinator is supplied and not created from the configurator to allow caching
   public PartitionServerHandler(PartitionServerAddress address,
                                 PartitionServerConfigurator configurator,
                                 Coordinator coordinator) throws IOException {
+    this.configurator = configurator;
 
     // Create the GET executor
-    getBulkTaskExecutor = new ThreadPoolExecutor(
-        configurator.getNumConcurrentGetBulkTasks(),
-        configurator.getNumConcurrentGetBulkTasks(),
-        GET_BULK_TASK_EXECUTOR_KEEP_ALIVE_VALUE,
-        GET_BULK_TASK_EXECUTOR_KEEP_ALIVE_UNIT,
-        new LinkedBlockingQueue<Runnable>(),
-        new GetBulkThreadFactory());
+    getBulkTaskExecutor = PartitionServerExecutors.create(configurator.getExecutionMode(),
+        configurator.getNumConcurrentGetBulkTasks(), "GET BULK Thread");
 
     getBulkTaskSize = configurator.getGetBulkTaskSize();
     bufferReuseMaxSize = configurator.getBufferReuseMaxSize();
 
-    // Prestart core threads
-    getBulkTaskExecutor.prestartAllCoreThreads();
+    // Twice the number of results in use when all tasks run at once, so that free slots are easy to find
+    readerResultPool = new ReaderResultPool(
+        2 * Math.max(1, configurator.getNumConcurrentGetBulkTasks() * getBulkTaskSize), bufferReuseMaxSize);
+    getContextPool = new ObjectPool<GetContext>(2 * Math.max(1, configurator.getNumConcurrentQueries())) {
+      @Override
+      protected GetContext create() {
+        return new GetContext();
+      }
+
+      @Override
+      protected void reset(GetContext context) {
+        context.result.clear();
+      }
+
+      @Override
+      protected boolean isReusable(GetContext context) {
+        return context.result.getBuffer() == null || context.result.getBuffer().capacity() <= bufferReuseMaxSize;
+      }
+    };
 
     // Find the ring
     Ring ring = coordinator.getRingGroup(configurator.getRingGroupName()).getRingForHost(address);
@@ -132,6 +159,7 @@ public class PartitionServerHandler implements IfaceWithShutdown {
       }
     }
     LOG.info("Detected " + numTotalPartitions + " loadable partitions for " + host);
+    this.numTotalPartitions = numTotalPartitions;
 
     // Determine the max domain id so we can bound the arrays
     int maxDomainId = 0;
@@ -217,21 +245,45 @@ public class PartitionServerHandler implements IfaceWithShutdown {
       throw new IOException("Failed to load Readers. Encountered " + exceptions.size() + " exceptions.");
     }
     // Start the update runtime statistics thread
-    updateRuntimeStatisticsRunnable = new UpdateRuntimeStatisticsRunnable();
+    boolean hasMetricsPort = configurator.getMetricsPort() > 0;
+    updateRuntimeStatisticsRunnable = new UpdateRuntimeStatisticsRunnable(hasMetricsPort
+        ? UPDATE_RUNTIME_STATISTICS_THREAD_SLEEP_TIME_MS_WITH_METRICS_PORT
+        : UPDATE_RUNTIME_STATISTICS_THREAD_SLEEP_TIME_MS_DEFAULT, hasMetricsPort);
     updateRuntimeStatisticsThread = new Thread(updateRuntimeStatisticsRunnable, "Update Runtime Statistics");
     updateRuntimeStatisticsThread.start();
   }
 
   @Override
   public HankResponse get(int domainId, ByteBuffer key) {
-    ReaderResult result = readerResultThreadLocal.get();
-    // If buffer exceeds limit, reset it
-    if (result.getBuffer() != null && result.getBuffer().capacity() > bufferReuseMaxSize) {
-      readerResultThreadLocal.remove();
-      result = readerResultThreadLocal.get();
+    // Thrift serializes the response before this thread serves another request, so the context of the
+    // previous GET can be released if the processor did not do it
+    releaseGetContext();
+    GetContext context = getContextPool.acquire();
+    inFlightGetContext.set(context);
+    return _get(this, domainId, key, context.result, context.response);
+  }
+
+  // Return the context of the GET processed by the current thread to the pool
+  private void releaseGetContext() {
+    GetContext context = inFlightGetContext.get();
+    if (context != null) {
+      inFlightGetContext.remove();
+      getContextPool.release(context);
     }
-    result.clear();
-    return _get(this, domainId, key, result);
+  }
+
+  // Wrap the given processor so that contexts of GETs are released once their responses have been serialized
+  public TProcessor wrapProcessor(final TProcessor processor) {
+    return new TProcessor() {
+      @Override
+      public boolean process(TProtocol in, TProtocol out) throws TException {
+        try {
+          return processor.process(in, out);
+        } finally {
+          releaseGetContext();
+        }
+      }
+    };
   }
 
   @Override
@@ -241,29 +293,35 @@ public class PartitionServerHandler implements IfaceWithShutdown {
       if (domainAccessor == null) {
         return NO_SUCH_DOMAIN_BULK;
       }
-      // Build and execute all get bulk tasks
-      HankBulkResponse bulkResponse = HankBulkResponse.responses(new ArrayList<HankResponse>(keys.size()));
-      GetBulkTask[] tasks = new GetBulkTask[(keys.size() / getBulkTaskSize) + 1];
-      int maxTaskIndex = 0;
-      for (int i = 0; i < keys.size(); i += getBulkTaskSize) {
-        GetBulkTask task = new GetBulkTask(new GetBulkRunnable(domainId, keys, i));
-        // No need to synchronize since ThreadPoolExecutor's execute() is thread-safe
-        getBulkTaskExecutor.execute(task);
-        tasks[maxTaskIndex++] = task;
+      // Group keys by partition, so that each task looks up keys of a single partition in one batch
+      Map<Integer, List<Integer>> partitionToKeyIndices = new HashMap<Integer, List<Integer>>();
+      for (int i = 0; i < keys.size(); ++i) {
+        int partition = domainAccessor.getPartition(keys.get(i));
+        List<Integer> keyIndices = partitionToKeyIndices.get(partition);
+        if (keyIndices == null) {
+          keyIndices = new ArrayList<Integer>();
+          partitionToKeyIndices.put(partition, keyIndices);
+        }
+        keyIndices.add(i);
       }
-      // Wait for all get tasks and retrieve responses
-      for (int taskIndex = 0; taskIndex < maxTaskIndex; ++taskIndex) {
-        HankResponse[] responses = tasks[taskIndex].getResponses();
-        for (HankResponse response : responses) {
-          // Check if we have retrieved all responses
-          if (bulkResponse.get_responses().size() == keys.size()) {
-            break;
-          } else {
-            bulkResponse.get_responses().add(response);
-          }
+      // Build and execute all get bulk tasks. Each task stores its responses directly in the shared array.
+      HankResponse[] responses = new HankResponse[keys.size()];
+      List<GetBulkTask> tasks = new ArrayList<GetBulkTask>();
+      for (Map.Entry<Integer, List<Integer>> entry : partitionToKeyIndices.entrySet()) {
+        List<Integer> keyIndices = entry.getValue();
+        for (int i = 0; i < keyIndices.size(); i += getBulkTaskSize) {
+          GetBulkTask task = new GetBulkTask(new GetBulkRunnable(domainAccessor, entry.getKey(), keys,
+              keyIndices.subList(i, Math.min(i + getBulkTaskSize, keyIndices.size())), responses));
+          // No need to synchronize since the executor's execute() is thread-safe
+          getBulkTaskExecutor.execute(task);
+          tasks.add(task);
         }
       }
-      return bulkResponse;
+      // Wait for all get tasks
+      for (GetBulkTask task : tasks) {
+        task.waitForResponses();
+      }
+      return HankBulkResponse.responses(Arrays.asList(responses));
     } catch (Throwable t) {
       String errMsg = "Throwable during GET BULK";
       LOG.error(errMsg, t);
@@ -272,13 +330,18 @@ public class PartitionServerHandler implements IfaceWithShutdown {
     }
   }
 
-  private HankResponse _get(PartitionServerHandler partitionServerHandler, int domainId, ByteBuffer key, ReaderResult result) {
+  // When a response is supplied, it is reused to return values instead of allocating a new one
+  private HankResponse _get(PartitionServerHandler partitionServerHandler,
+                            int domainId,
+                            ByteBuffer key,
+                            ReaderResult result,
+                            HankResponse response) {
     DomainAccessor domainAccessor = partitionServerHandler.getDomainAccessor(domainId);
     if (domainAccessor == null) {
       return NO_SUCH_DOMAIN;
     }
     try {
-      return domainAccessor.get(key, result);
+      return domainAccessor.get(key, result, response);
     } catch (IOException e) {
       String errMsg = String.format(
           "Exception during GET. Domain: %s (domain #%d) Key: %s",
@@ -294,55 +357,58 @@ public class PartitionServerHandler implements IfaceWithShutdown {
     }
   }
 
-  private static class ReaderResultThreadLocal extends ThreadLocal<ReaderResult> {
+  // The response references the buffer of the result once a value is found
+  private static class GetContext {
 
-    @Override
-    protected ReaderResult initialValue() {
-      return new ReaderResult();
-    }
-  }
-
-  private static class GetThread extends Thread {
-
-    public GetThread(Runnable runnable, String name) {
-      super(runnable, name);
-    }
-  }
-
-  private static class GetBulkThreadFactory implements ThreadFactory {
-
-    private int threadId = 0;
-
-    @Override
-    public Thread newThread(Runnable runnable) {
-      return new GetThread(runnable, "GET BULK Thread " + threadId++);
-    }
+    private final ReaderResult result = new ReaderResult();
+    private final HankResponse response = new HankResponse();
   }
 
   private class GetBulkRunnable implements Runnable {
 
-    private final int domainId;
+    private final DomainAccessor domainAccessor;
+    private final int partition;
     private final List<ByteBuffer> keys;
-    private final int firstKeyIndex;
-    private HankResponse[] responses;
-
-    // Perform GET requests for keys starting at firstKeyIndex and in a window of size GET_BULK_TASK_SIZE
-    public GetBulkRunnable(int domainId, List<ByteBuffer> keys, int firstKeyIndex) {
-      this.domainId = domainId;
+    private final List<Integer> keyIndices;
+    private final HankResponse[] responses;
+
+    // Perform a batched GET request of the keys at the given indices, which all belong to the given partition.
+    // Responses are stored at the same indices as their keys.
+    public GetBulkRunnable(DomainAccessor domainAccessor,
+                           int partition,
+                           List<ByteBuffer> keys,
+                           List<Integer> keyIndices,
+                           HankResponse[] responses) {
+      this.domainAccessor = domainAccessor;
+      this.partition = partition;
       this.keys = keys;
-      this.firstKeyIndex = firstKeyIndex;
+      this.keyIndices = keyIndices;
+      this.responses = responses;
     }
 
     @Override
     public void run() {
-      ReaderResult result = readerResultThreadLocal.get();
-      result.clear();
-      responses = new HankResponse[getBulkTaskSize];
-      // Perform GET requests for keys starting at firstKeyIndex up to GET_BULK_TASK_SIZE keys or until the last key
-      for (int keyOffset = 0; keyOffset < getBulkTaskSize
-          && (firstKeyIndex + keyOffset) < keys.size(); keyOffset++) {
-        HankResponse response =
-            _get(PartitionServerHandler.this, domainId, keys.get(firstKeyIndex + keyOffset), result);
+      int numKeys = keyIndices.size();
+      List<ByteBuffer> batchKeys = new ArrayList<ByteBuffer>(numKeys);
+      for (int keyIndex : keyIndices) {
+        batchKeys.add(keys.get(keyIndex));
+      }
+      List<ReaderResult> results = new ArrayList<ReaderResult>(numKeys);
+      for (int i = 0; i < numKeys; ++i) {
+        results.add(readerResultPool.acquire());
+      }
+      HankResponse[] batchResponses = new HankResponse[numKeys];
+      try {
+        domainAccessor.getBulk(partition, batchKeys, results, batchResponses);
+      } catch (Throwable t) {
+        String errMsg = String.format("Exception during GET BULK. Domain: %s Partition: %d Num keys: %d",
+            domainAccessor.getName(), partition, numKeys);
+        LOG.error(errMsg, t);
+        Arrays.fill(batchResponses, HankResponse.xception(
+            HankException.internal_error(errMsg + " " + (t.getMessage() != null ? t.getMessage() : ""))));
+      }
+      for (int i = 0; i < numKeys; ++i) {
+        HankResponse response = batchResponses[i];
         // If a value was found, we have the choice to keep the buffer that was used to read the value, or do a deep
         // copy into the response. This decision is based on a size difference threshold.
         // This allows us to do bulk requests that are large even when the read buffer ends up being much larger
@@ -355,42 +421,32 @@ public class PartitionServerHandler implements IfaceWithShutdown {
               < (USED_SIZE_THRESHOLD_FOR_VALUE_BUFFER_DEEP_COPY * valueBuffer.capacity())) {
             // Deep copy the value. Hence we can reuse the result buffer.
             response.set_value(BytesUtils.byteBufferDeepCopy(valueBuffer));
-            result.clear();
-          } else {
-            // Keep the ReaderResult's buffer in the response. Hence we need to create a new result buffer.
-            // Initialize it with the same capacity we had.
-            result = new ReaderResult(valueBuffer.capacity());
+            readerResultPool.release(results.get(i));
           }
+          // Otherwise keep the ReaderResult's buffer in the response. Hence the result is not reused.
+        } else {
+          readerResultPool.release(results.get(i));
         }
         // Store response
-        responses[keyOffset] = response;
+        responses[keyIndices.get(i)] = response;
       }
-      // Update the thread local result buffer to point to the latest one used (which is valid for reuse)
-      readerResultThreadLocal.set(result);
-    }
-
-    public HankResponse[] getResponses() {
-      return responses;
     }
   }
 
   private class GetBulkTask extends FutureTask<Object> {
 
-    private final GetBulkRunnable runnable;
-
     public GetBulkTask(GetBulkRunnable runnable) {
-      super(runnable, new Object());
-      this.runnable = runnable;
+      super(runnable, null);
     }
 
-    // Wait for termination and return response
-    public HankResponse[] getResponses() throws ExecutionException, InterruptedException {
+    // Wait for termination, responses are then available in the shared array
+    public void waitForResponses() throws ExecutionException, InterruptedException {
       this.get();
-      return runnable.getResponses();
     }
   }
 
   private DomainAccessor getDomainAccessor(int domainId) {
+    DomainAccessor[] domainAccessors = this.domainAccessors;
     if (domainId < domainAccessors.length) {
       return domainAccessors[domainId];
     } else {
@@ -398,13 +454,78 @@ public class PartitionServerHandler implements IfaceWithShutdown {
     }
   }
 
+  @Override
+  public synchronized void reloadReader(HostDomain hostDomain,
+                                        HostDomainPartition partition,
+                                        int versionNumber) throws IOException {
+    Domain domain = hostDomain.getDomain();
+    if (isShutDown) {
+      throw new IOException(String.format("Could not reload Reader for partition #%d of domain %s because the handler is shut down.",
+          partition.getPartitionNumber(), domain.getName()));
+    }
+    Reader reader = domain.getStorageEngine().getReader(configurator.getReaderConfigurator(numTotalPartitions),
+        partition.getPartitionNumber());
+    // Check that Reader's version number and the updated version number match
+    if (reader.getVersionNumber() != null && !reader.getVersionNumber().equals(versionNumber)) {
+      reader.close();
+      throw new IOException(String.format("Could not reload Reader for partition #%d of domain %s because version numbers reported by the Reader (%d) and by the update (%d) differ.",
+          partition.getPartitionNumber(), domain.getName(), reader.getVersionNumber(), versionNumber));
+    }
+    DomainAccessor domainAccessor = getDomainAccessor(domain.getId());
+    if (domainAccessor == null) {
+      domainAccessor = addDomainAccessor(hostDomain);
+    }
+    PartitionAccessor partitionAccessor = domainAccessor.getPartitionAccessor(partition.getPartitionNumber());
+    if (partitionAccessor == null) {
+      domainAccessor.addPartitionAccessor(partition.getPartitionNumber(), new PartitionAccessor(partition, reader));
+    } else {
+      // In-flight requests complete on the previous Reader
+      partitionAccessor.swapReader(reader);
+    }
+    LOG.info(String.format("Reloaded Reader for domain %s, partition #%d at version %d",
+        domain.getName(), partition.getPartitionNumber(), versionNumber));
+  }
+
+  @Override
+  public synchronized void unloadReader(HostDomain hostDomain, HostDomainPartition partition) {
+    DomainAccessor domainAccessor = getDomainAccessor(hostDomain.getDomain().getId());
+    if (domainAccessor != null) {
+      domainAccessor.removePartitionAccessor(partition.getPartitionNumber());
+      LOG.info(String.format("Unloaded Reader for domain %s, partition #%d",
+          hostDomain.getDomain().getName(), partition.getPartitionNumber()));
+    }
+  }
+
+  private DomainAccessor addDomainAccessor(HostDomain hostDomain) throws IOException {
+    Domain domain = hostDomain.getDomain();
+    DomainAccessor domainAccessor = new DomainAccessor(hostDomain, new PartitionAccessor[domain.getNumParts()],
+        domain.getPartitioner(), configurator.getGetTimerAggregatorWindow());
+    DomainAccessor[] newDomainAccessors =
+        Arrays.copyOf(domainAccessors, Math.max(domainAccessors.length, domain.getId() + 1));
+    newDomainAccessors[domain.getId()] = domainAccessor;
+    domainAccessors = newDomainAccessors;
+    return domainAccessor;
+  }
+
+  @Override
+  public void collect(MetricsCollector collector) {
+    for (DomainAccessor domainAccessor : domainAccessors) {
+      if (domainAccessor != null) {
+        domainAccessor.collect(collector);
+      }
+    }
+  }
+
   /**
    * This thread periodically updates statistics of the Host
    */
   private class UpdateRuntimeStatisticsRunnable extends UpdateStatisticsRunnable implements Runnable {
 
-    public UpdateRuntimeStatisticsRunnable() {
-      super(UPDATE_RUNTIME_STATISTICS_THREAD_SLEEP_TIME_MS_DEFAULT);
+    private final boolean publishSummaries;
+
+    public UpdateRuntimeStatisticsRunnable(int updateRuntimeStatisticsThreadSleepTimeMs, boolean publishSummaries) {
+      super(updateRuntimeStatisticsThreadSleepTimeMs);
+      this.publishSummaries = publishSummaries;
     }
 
     @Override
@@ -414,8 +535,9 @@ public class PartitionServerHandler implements IfaceWithShutdown {
       // Compute aggregate partition runtime statistics
       for (DomainAccessor domainAccessor : domainAccessors) {
         if (domainAccessor != null) {
+          RuntimeStatisticsAggregator runtimeStatistics = domainAccessor.getRuntimeStatistics();
           runtimeStatisticsAggregators.put(domainAccessor.getHostDomain().getDomain(),
-              domainAccessor.getRuntimeStatistics());
+              publishSummaries ? RuntimeStatisticsAggregator.summarize(runtimeStatistics) : runtimeStatistics);
         }
       }
       // Set statistics
@@ -434,7 +556,8 @@ public class PartitionServerHandler implements IfaceWithShutdown {
   }
 
   @Override
-  public void shutDown() {
+  public synchronized void shutDown() {
+    isShutDown = true;
     // Stop update runtime statistics
     updateRuntimeStatisticsRunnable.cancel();
     updateRuntimeStatisticsThread.interrupt();
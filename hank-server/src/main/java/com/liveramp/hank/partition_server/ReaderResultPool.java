@@ -0,0 +1,49 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.partition_server;
+
+import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.util.ObjectPool;
+
+/**
+ * Reader results shared by all the threads serving GET BULK tasks, which might each run on a new
+ * thread. Results with buffers that grew beyond the buffer reuse max size are not kept.
+ */
+public class ReaderResultPool extends ObjectPool<ReaderResult> {
+
+  private final int bufferReuseMaxSize;
+
+  public ReaderResultPool(int capacity, int bufferReuseMaxSize) {
+    super(capacity);
+    this.bufferReuseMaxSize = bufferReuseMaxSize;
+  }
+
+  @Override
+  protected ReaderResult create() {
+    return new ReaderResult();
+  }
+
+  @Override
+  protected void reset(ReaderResult result) {
+    result.clear();
+  }
+
+  // The buffer of a released result must not be referenced anymore
+  @Override
+  protected boolean isReusable(ReaderResult result) {
+    return result.getBuffer() == null || result.getBuffer().capacity() <= bufferReuseMaxSize;
+  }
+}
@@ -48,6 +48,8 @@ import com.liveramp.hank.coordinator.HostDomain;
 import com.liveramp.hank.coordinator.HostDomainPartition;
 import com.liveramp.hank.coordinator.Hosts;
 import com.liveramp.hank.coordinator.RingGroup;
+import com.liveramp.hank.metrics.MetricsCollector;
+import com.liveramp.hank.metrics.MetricsSource;
 import com.liveramp.hank.storage.Deleter;
 import com.liveramp.hank.storage.StorageEngine;
 import com.liveramp.hank.util.DurationAggregator;
@@ -57,7 +59,7 @@ import com.liveramp.hank.util.HankTimer;
 /**
  * Manages the domain update process.
  */
-public class UpdateManager implements IUpdateManager {
+public class UpdateManager implements IUpdateManager, MetricsSource {
 
   private static final int UPDATE_EXECUTOR_TERMINATION_CHECK_TIMEOUT_VALUE = 10;
   private static final TimeUnit UPDATE_EXECUTOR_TERMINATION_CHECK_TIMEOUT_UNIT = TimeUnit.SECONDS;
@@ -148,7 +150,11 @@ public class UpdateManager implements IUpdateManager {
       for (Map.Entry<Domain, List<PartitionUpdateTaskStatistics>> entry1 : domainToPartitionUpdateTaskStatistics.entrySet()) {
         Domain domain = entry1.getKey();
         List<PartitionUpdateTaskStatistics> partitionUpdateTaskStatisticsList = entry1.getValue();
+        long numBytesWritten = 0;
+        long peakDiskUsageBytes = 0;
         for (PartitionUpdateTaskStatistics partitionUpdateTaskStatistics : partitionUpdateTaskStatisticsList) {
+          numBytesWritten += partitionUpdateTaskStatistics.getNumBytesWritten();
+          peakDiskUsageBytes = Math.max(peakDiskUsageBytes, partitionUpdateTaskStatistics.getPeakDiskUsageBytes());
           for (Map.Entry<String, Long> entry2 : partitionUpdateTaskStatistics.getDurationsMs().entrySet()) {
             String name = domain.getName() + " - " + entry2.getKey();
             Long duration = entry2.getValue();
@@ -160,6 +166,9 @@ public class UpdateManager implements IUpdateManager {
             aggregator.add(duration);
           }
         }
+        LOG.info("Partition updates of domain " + domain.getName()
+            + ": wrote " + FormatUtils.formatNumBytes(numBytesWritten)
+            + ", peak partition disk usage " + FormatUtils.formatNumBytes(peakDiskUsageBytes));
       }
       for (DurationAggregator aggregator : hankTimerDurationAggregators.values()) {
         aggregator.logStats();
@@ -210,6 +219,10 @@ public class UpdateManager implements IUpdateManager {
         // If unable to determine the version, this partition is deletable (the corresponding domain is not in the
         // target domain group version)
         if (partition.isDeletable() || targetDomainAndVersion == null) {
+          // Stop serving the partition before deleting its files
+          if (readerReloader != null) {
+            readerReloader.unloadReader(hostDomain, partition);
+          }
           deletePartition(hostDomain, partition);
         } else {
           // Determine Domain Version
@@ -236,6 +249,11 @@ public class UpdateManager implements IUpdateManager {
               domain.getName(), partition.getPartitionNumber(), targetDomainVersion.getVersionNumber(), getDataDirectory()));
           storageEngine.getUpdater(configurator, partition.getPartitionNumber()).updateTo(targetDomainVersion, statistics);
 
+          // When updating while serving, start serving the new version before recording it
+          if (readerReloader != null) {
+            readerReloader.reloadReader(hostDomain, partition, targetDomainVersion.getVersionNumber());
+          }
+
           // Record update success
           partition.setCurrentDomainVersion(targetDomainVersion.getVersionNumber());
           LOG.info(String.format(
@@ -316,11 +334,32 @@ public class UpdateManager implements IUpdateManager {
   private final PartitionServerConfigurator configurator;
   private final Host host;
   private final RingGroup ringGroup;
+  private final IReaderReloader readerReloader;
+  // Latest ETA in seconds, negative when unknown
+  private volatile long updateETA = -1;
 
   public UpdateManager(PartitionServerConfigurator configurator, Host host, RingGroup ringGroup) throws IOException {
+    this(configurator, host, ringGroup, null);
+  }
+
+  // When a reader reloader is supplied, partitions are updated while being served. Previous versions
+  // keep being served until each partition's new version is ready.
+  UpdateManager(PartitionServerConfigurator configurator,
+                Host host,
+                RingGroup ringGroup,
+                IReaderReloader readerReloader) throws IOException {
     this.configurator = configurator;
     this.host = host;
     this.ringGroup = ringGroup;
+    this.readerReloader = readerReloader;
+  }
+
+  @Override
+  public void collect(MetricsCollector collector) {
+    long eta = updateETA;
+    if (eta >= 0) {
+      collector.gauge("hank_update_eta_seconds", "Estimated time until the current update completes", eta);
+    }
   }
 
   @Override
@@ -411,7 +450,8 @@ public class UpdateManager implements IUpdateManager {
               keepWaiting = false;
             }
             // Record update ETA
-            Hosts.setUpdateETA(host, partitionUpdateTaskStatisticsAggregator.computeETA());
+            updateETA = partitionUpdateTaskStatisticsAggregator.computeETA();
+            Hosts.setUpdateETA(host, updateETA);
           } catch (InterruptedException e) {
             // Received interruption (stop request).
             // Swallow the interrupted state and ask the executor to shutdown immediately. Also, keep waiting.
@@ -24,6 +24,8 @@ import com.liveramp.hank.config.RingGroupConductorConfigurator;
 import com.liveramp.hank.config.yaml.YamlRingGroupConductorConfigurator;
 import com.liveramp.hank.coordinator.Coordinator;
 import com.liveramp.hank.coordinator.RingGroup;
+import com.liveramp.hank.partition_assigner.LoadBalancingPartitionAssigner;
+import com.liveramp.hank.partition_assigner.PartitionAssigner;
 import com.liveramp.hank.partition_assigner.RendezVousPartitionAssigner;
 import com.liveramp.hank.util.CommandLineChecker;
 
@@ -46,7 +48,15 @@ public class RingGroupConductor {
   private Thread shutdownHook;
 
   public RingGroupConductor(RingGroupConductorConfigurator configurator) throws IOException {
-    this(configurator, new RingGroupUpdateTransitionFunctionImpl(new RendezVousPartitionAssigner(), configurator.getMinRingFullyServingObservations()));
+    this(configurator, new RingGroupUpdateTransitionFunctionImpl(getPartitionAssigner(configurator), configurator.getMinRingFullyServingObservations(), configurator.getUseOnlineUpdates()));
+  }
+
+  private static PartitionAssigner getPartitionAssigner(RingGroupConductorConfigurator configurator) {
+    if (configurator.getUseLoadBalancingPartitionAssigner()) {
+      return new LoadBalancingPartitionAssigner();
+    } else {
+      return new RendezVousPartitionAssigner();
+    }
   }
 
   RingGroupConductor(RingGroupConductorConfigurator configurator, RingGroupUpdateTransitionFunction transFunc) throws IOException {
@@ -43,12 +43,21 @@ public class RingGroupUpdateTransitionFunctionImpl implements RingGroupUpdateTra
 
   private final PartitionAssigner partitionAssigner;
   private final int minRingFullyServingObservations;
+  private final boolean useOnlineUpdates;
   private final Map<String, Integer> hostToFullyServingObservations = new HashMap<String, Integer>();
 
   public RingGroupUpdateTransitionFunctionImpl(PartitionAssigner partitionAssigner,
                                                int minRingFullyServingObservations) throws IOException {
+    this(partitionAssigner, minRingFullyServingObservations, false);
+  }
+
+  // With online updates, serving hosts are updated without going idle first
+  public RingGroupUpdateTransitionFunctionImpl(PartitionAssigner partitionAssigner,
+                                               int minRingFullyServingObservations,
+                                               boolean useOnlineUpdates) throws IOException {
     this.partitionAssigner = partitionAssigner;
     this.minRingFullyServingObservations = minRingFullyServingObservations;
+    this.useOnlineUpdates = useOnlineUpdates;
   }
 
   private static boolean isServingAndAboutToServe(Host host) throws IOException {
@@ -161,6 +170,15 @@ public class RingGroupUpdateTransitionFunctionImpl implements RingGroupUpdateTra
       return;
     }
 
+    if (useOnlineUpdates && isFullyServing && isAssigned && !isUpToDate && numReplicasFullyServing > minNumReplicasFullyServing) {
+      // Host is serving, assigned, not up-to-date and there are more than enough replicas serving. Update online.
+      // The host keeps serving, but is not considered fully serving until the update has completed.
+      LOG.info("Host " + host.getAddress() + " is serving, assigned, not up-to-date, and there are more than enough replicas serving. Update online.");
+      Hosts.enqueueCommandIfNotPresent(host, HostCommand.EXECUTE_UPDATE);
+      removeFromReplicasFullyServing(domainToPartitionToHostsFullyServing, host);
+      return;
+    }
+
     if (isFullyServing && isAssigned && !isUpToDate && numReplicasFullyServing > minNumReplicasFullyServing) {
       // Host is serving, assigned, not up-to-date and there are more than enough replicas serving. Go idle.
       LOG.info("Host " + host.getAddress() + " is serving, assigned, not up-to-date, and there are more than enough replicas serving. Go idle.");
@@ -17,6 +17,7 @@ package com.liveramp.hank.storage.map;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -56,6 +57,13 @@ public class MapReader implements Reader {
     }
   }
 
+  @Override
+  public void getBulk(List<ByteBuffer> keys, List<ReaderResult> results) throws IOException {
+    for (int i = 0; i < keys.size(); ++i) {
+      get(keys.get(i), results.get(i));
+    }
+  }
+
   @Override
   public Integer getVersionNumber() {
     return versionNumber;
@@ -17,6 +17,7 @@ package com.liveramp.hank.storage.mock;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import com.liveramp.hank.config.DataDirectoriesConfigurator;
 import com.liveramp.hank.storage.CacheStatistics;
@@ -53,6 +54,13 @@ public class MockReader implements Reader {
     }
   }
 
+  @Override
+  public void getBulk(List<ByteBuffer> keys, List<ReaderResult> results) throws IOException {
+    for (int i = 0; i < keys.size(); ++i) {
+      get(keys.get(i), results.get(i));
+    }
+  }
+
   public Integer getVersionNumber() {
     return versionNumber;
   }
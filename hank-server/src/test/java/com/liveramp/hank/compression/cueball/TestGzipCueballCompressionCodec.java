@@ -3,12 +3,16 @@ package com.liveramp.hank.compression.cueball;
 import com.liveramp.hank.test.BaseTestCase;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class TestGzipCueballCompressionCodec extends BaseTestCase {
   private static final List<byte[]> TESTCASES = Arrays.asList(
@@ -48,6 +52,87 @@ public class TestGzipCueballCompressionCodec extends BaseTestCase {
       assertEquals(testcase.length, decompressedLength);
 
       assertEquals(ByteBuffer.wrap(testcase), ByteBuffer.wrap(decompressedBytes, 0, decompressedLength));
+
+      // Decompress out of a direct buffer, which is not backed by an array
+      ByteBuffer direct = ByteBuffer.allocateDirect(compressedLength);
+      direct.put(compressedBytes, 0, compressedLength);
+      direct.flip();
+      decompressedBytes = new byte[testcase.length + 1];
+      decompressedLength = codec.decompress(direct, decompressedBytes, 0);
+      assertEquals(testcase.length, decompressedLength);
+      assertEquals(ByteBuffer.wrap(testcase), ByteBuffer.wrap(decompressedBytes, 0, decompressedLength));
+      assertEquals(compressedLength, direct.remaining());
+    }
+  }
+
+  @Test
+  public void testTrailingBytes() throws Exception {
+    GzipCueballCompressionCodec codec = new GzipCueballCompressionCodec();
+    byte[] testcase = lotsOfBytes(16 * 1024);
+
+    // Blocks can be followed by the rest of the file
+    byte[] compressedBytes = new byte[codec.getMaxCompressBufferSize(testcase.length) + 100];
+    int compressedLength = codec.compress(testcase, 0, testcase.length, compressedBytes, 0);
+    Arrays.fill(compressedBytes, compressedLength, compressedBytes.length, (byte) 42);
+
+    byte[] decompressedBytes = new byte[testcase.length + 1];
+    int decompressedLength = codec.decompress(compressedBytes, 0, compressedBytes.length, decompressedBytes, 0);
+    assertEquals(testcase.length, decompressedLength);
+    assertEquals(ByteBuffer.wrap(testcase), ByteBuffer.wrap(decompressedBytes, 0, decompressedLength));
+  }
+
+  @Test
+  public void testOptionalHeaderFields() throws Exception {
+    GzipCueballCompressionCodec codec = new GzipCueballCompressionCodec();
+    byte[] testcase = lotsOfBytes(16 * 1024);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // Magic, deflate, FEXTRA | FNAME | FCOMMENT | FHCRC, mtime, xfl, os
+    out.write(new byte[]{0x1f, (byte) 0x8b, 8, 4 | 8 | 16 | 2, 0, 0, 0, 0, 0, 0});
+    out.write(new byte[]{3, 0, 1, 2, 3});
+    out.write(new byte[]{'n', 'a', 'm', 'e', 0});
+    out.write(new byte[]{'c', 'o', 'm', 'm', 'e', 'n', 't', 0});
+    out.write(new byte[]{0, 0});
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    deflater.setInput(testcase);
+    deflater.finish();
+    byte[] buffer = new byte[1024];
+    while (!deflater.finished()) {
+      out.write(buffer, 0, deflater.deflate(buffer));
+    }
+    deflater.end();
+    CRC32 crc = new CRC32();
+    crc.update(testcase);
+    writeInt(out, (int) crc.getValue());
+    writeInt(out, testcase.length);
+    byte[] compressedBytes = out.toByteArray();
+
+    byte[] decompressedBytes = new byte[testcase.length + 1];
+    int decompressedLength = codec.decompress(compressedBytes, 0, compressedBytes.length, decompressedBytes, 0);
+    assertEquals(testcase.length, decompressedLength);
+    assertEquals(ByteBuffer.wrap(testcase), ByteBuffer.wrap(decompressedBytes, 0, decompressedLength));
+
+    // Corrupt the CRC
+    compressedBytes[compressedBytes.length - 8] ^= 1;
+    try {
+      codec.decompress(compressedBytes, 0, compressedBytes.length, new byte[testcase.length + 1], 0);
+      fail("Should have failed on a corrupt trailer");
+    } catch (RuntimeException e) {
+      // Expected
+    }
+
+    // A truncated block
+    try {
+      codec.decompress(compressedBytes, 0, compressedBytes.length / 2, new byte[testcase.length + 1], 0);
+      fail("Should have failed on a truncated block");
+    } catch (RuntimeException e) {
+      // Expected
+    }
+  }
+
+  private static void writeInt(ByteArrayOutputStream out, int value) {
+    for (int i = 0; i < 4; i++) {
+      out.write(value >>> (8 * i));
     }
   }
 }
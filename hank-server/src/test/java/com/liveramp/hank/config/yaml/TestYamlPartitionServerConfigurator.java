@@ -22,9 +22,12 @@ import java.util.Collections;
 import org.junit.Test;
 
 import com.liveramp.hank.coordinator.mock.MockCoordinator;
+import com.liveramp.hank.partition_server.ExecutionMode;
 import com.liveramp.hank.test.BaseTestCase;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TestYamlPartitionServerConfigurator extends BaseTestCase {
   private final String configPath = localTmpDir + "/config.yml";
@@ -41,13 +44,25 @@ public class TestYamlPartitionServerConfigurator extends BaseTestCase {
     pw.println("    num_concurrent_queries: 5");
     pw.println("    num_concurrent_get_bulk_tasks: 1");
     pw.println("    get_bulk_task_size: 2");
+    pw.println("    execution_mode: FORK_JOIN");
+    pw.println("    num_selector_threads: 2");
+    pw.println("    metrics_port: 9102");
     pw.println("    get_timer_aggregator_window: 1000");
     pw.println("    buffer_reuse_max_size: 1024");
     pw.println("    cache_num_bytes_capacity: 1000000");
     pw.println("    cache_num_items_capacity: 2000");
+    pw.println("    use_memory_mapped_files: true");
+    pw.println("    use_off_heap_cache: true");
+    pw.println("    use_cache_admission_filter: true");
+    pw.println("    key_file_filter_bits_per_key: 10");
+    pw.println("    num_io_engine_threads_per_data_directory: 8");
+    pw.println("    block_cache_num_bytes_capacity: 3000000");
     pw.println("  update_daemon:");
     pw.println("    num_concurrent_updates: 5");
     pw.println("    max_concurrent_updates_per_data_directory: 2");
+    pw.println("    update_merge_parallelism: 4");
+    pw.println("    update_stream_deltas: true");
+    pw.println("    use_online_updates: true");
     pw.println("coordinator:");
     pw.println("  factory: " + MockCoordinator.Factory.class.getName());
     pw.println("  options:");
@@ -60,9 +75,23 @@ public class TestYamlPartitionServerConfigurator extends BaseTestCase {
     assertEquals("rg1", conf.getRingGroupName());
     assertEquals(5, conf.getNumConcurrentUpdates());
     assertEquals(2, conf.getMaxConcurrentUpdatesPerDataDirectory());
+    assertEquals(4, conf.getUpdateMergeParallelism());
+    assertTrue(conf.getUpdateStreamDeltas());
+    assertEquals(true, conf.getUseOnlineUpdates());
     assertEquals(5, conf.getNumConcurrentQueries());
+    assertEquals(ExecutionMode.FORK_JOIN, conf.getExecutionMode());
+    assertEquals(2, conf.getNumSelectorThreads());
+    assertEquals(9102, conf.getMetricsPort());
     assertEquals(1024, conf.getBufferReuseMaxSize());
     assertEquals(1000000, conf.getCacheNumBytesCapacity());
     assertEquals(2000, conf.getCacheNumItemsCapacity());
+    assertEquals(true, conf.getUseMemoryMappedFiles());
+    assertEquals(true, conf.getUseOffHeapCache());
+    assertTrue(conf.getUseCacheAdmissionFilter());
+    assertEquals(10, conf.getKeyFileFilterBitsPerKey());
+    assertEquals(8, conf.getNumIOEngineThreadsPerDataDirectory());
+    assertEquals(3000000, conf.getBlockCacheNumBytesCapacity());
+    assertTrue(conf.getBlockCache().isEnabled());
+    assertSame(conf.getBlockCache(), conf.getReaderConfigurator(2).getBlockCache());
   }
 }
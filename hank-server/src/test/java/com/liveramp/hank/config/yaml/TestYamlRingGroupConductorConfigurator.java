@@ -38,6 +38,8 @@ public class TestYamlRingGroupConductorConfigurator extends TestCase {
     pw.println("  sleep_interval: 1000");
     pw.println("  min_ring_fully_serving_observations: 10");
     pw.println("  initial_mode: INACTIVE");
+    pw.println("  use_online_updates: true");
+    pw.println("  use_load_balancing_partition_assigner: true");
     pw.println("coordinator:");
     pw.println("  factory: " + MockCoordinator.Factory.class.getName());
     pw.println("  options:");
@@ -53,5 +55,7 @@ public class TestYamlRingGroupConductorConfigurator extends TestCase {
     assertTrue(c.createCoordinator() instanceof MockCoordinator);
     assertTrue(((MockCoordinator) c.createCoordinator()).getInitOptions().containsKey("blah"));
     assertEquals(RingGroupConductorMode.INACTIVE, c.getInitialMode());
+    assertTrue(c.getUseOnlineUpdates());
+    assertTrue(c.getUseLoadBalancingPartitionAssigner());
   }
 }
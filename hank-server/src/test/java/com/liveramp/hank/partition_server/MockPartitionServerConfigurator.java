@@ -21,6 +21,9 @@ import java.util.Set;
 import com.liveramp.hank.config.PartitionServerConfigurator;
 import com.liveramp.hank.config.ReaderConfigurator;
 import com.liveramp.hank.coordinator.Coordinator;
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.IOEngine;
+import com.liveramp.hank.storage.SynchronousIOEngine;
 
 public class MockPartitionServerConfigurator implements PartitionServerConfigurator {
 
@@ -45,6 +48,21 @@ public class MockPartitionServerConfigurator implements PartitionServerConfigura
     }
   }
 
+  @Override
+  public int getUpdateMergeParallelism() {
+    return 1;
+  }
+
+  @Override
+  public boolean getUpdateStreamDeltas() {
+    return false;
+  }
+
+  @Override
+  public int getKeyFileFilterBitsPerKey() {
+    return 0;
+  }
+
   @Override
   public int getServicePort() {
     return servicePort;
@@ -70,6 +88,21 @@ public class MockPartitionServerConfigurator implements PartitionServerConfigura
     return 1;
   }
 
+  @Override
+  public ExecutionMode getExecutionMode() {
+    return ExecutionMode.THREAD_POOL;
+  }
+
+  @Override
+  public int getNumSelectorThreads() {
+    return 1;
+  }
+
+  @Override
+  public int getMetricsPort() {
+    return 0;
+  }
+
   @Override
   public int getGetBulkTaskSize() {
     return 1;
@@ -85,6 +118,11 @@ public class MockPartitionServerConfigurator implements PartitionServerConfigura
     return 0;
   }
 
+  @Override
+  public boolean getUseOnlineUpdates() {
+    return false;
+  }
+
   @Override
   public int getBufferReuseMaxSize() {
     return 0;
@@ -100,6 +138,41 @@ public class MockPartitionServerConfigurator implements PartitionServerConfigura
     return 0;
   }
 
+  @Override
+  public boolean getUseMemoryMappedFiles() {
+    return false;
+  }
+
+  @Override
+  public boolean getUseOffHeapCache() {
+    return false;
+  }
+
+  @Override
+  public boolean getUseCacheAdmissionFilter() {
+    return false;
+  }
+
+  @Override
+  public int getNumIOEngineThreadsPerDataDirectory() {
+    return 0;
+  }
+
+  @Override
+  public IOEngine getIOEngine() {
+    return new SynchronousIOEngine();
+  }
+
+  @Override
+  public long getBlockCacheNumBytesCapacity() {
+    return 0;
+  }
+
+  @Override
+  public BlockCache getBlockCache() {
+    return new BlockCache(0);
+  }
+
   @Override
   public ReaderConfigurator getReaderConfigurator(int numTotalPartitions) {
     return null;
@@ -0,0 +1,87 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.partition_server;
+
+import org.junit.Test;
+
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestLatencyHistogram extends BaseTestCase {
+
+  @Test
+  public void testBuckets() {
+    // Small values are exact
+    for (int i = 0; i < 64; ++i) {
+      assertEquals(i, LatencyHistogram.getBucketIndex(i));
+      assertEquals(i / 1000d, LatencyHistogram.getBucketValue(i), 0.0000001);
+    }
+    // Buckets are contiguous and values are within 2% of their bucket value
+    int previousIndex = LatencyHistogram.getBucketIndex(63);
+    for (long value = 64; value < (1L << 32); value += 1 + value / 1000) {
+      int index = LatencyHistogram.getBucketIndex(value);
+      assertTrue(index == previousIndex || index == previousIndex + 1);
+      double bucketValue = LatencyHistogram.getBucketValue(index) * 1000;
+      assertTrue(Math.abs(bucketValue - value) / value <= 0.02);
+      previousIndex = index;
+    }
+    assertEquals(LatencyHistogram.NUM_BUCKETS - 1, previousIndex);
+    // Out of range values are clamped
+    assertEquals(0, LatencyHistogram.getBucketIndex(-1));
+    assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0.0, histogram.getValueAtPercentile(99), 0.0);
+    for (int i = 1; i <= 1000; ++i) {
+      histogram.record(i / 100d);
+    }
+    assertEquals(1000, histogram.getTotalCount());
+    assertEquals(5.0, histogram.getValueAtPercentile(50), 0.1);
+    assertEquals(9.9, histogram.getValueAtPercentile(99), 0.2);
+    assertEquals(9.99, histogram.getValueAtPercentile(99.9), 0.2);
+    assertEquals(10.0, histogram.getValueAtPercentile(100), 0.2);
+  }
+
+  @Test
+  public void testCombineAndParse() {
+    LatencyHistogram a = new LatencyHistogram();
+    LatencyHistogram b = new LatencyHistogram();
+    for (int i = 0; i < 99; ++i) {
+      a.record(1.0);
+    }
+    b.record(100.0);
+    a.add(b);
+    assertEquals(100, a.getTotalCount());
+    assertEquals(1.0, a.getValueAtPercentile(99), 0.02);
+    assertEquals(100.0, a.getValueAtPercentile(99.9), 2.0);
+
+    String str = LatencyHistogram.toString(a);
+    LatencyHistogram parsed = LatencyHistogram.parse(("x " + str).split(" "), 1);
+    assertEquals(str, LatencyHistogram.toString(parsed));
+    assertEquals(100, parsed.getTotalCount());
+
+    // Random samples published by previous versions are recorded as values
+    LatencyHistogram legacy = LatencyHistogram.parse("1.0 2.0 100.0".split(" "), 0);
+    assertEquals(3, legacy.getTotalCount());
+    assertEquals(100.0, legacy.getValueAtPercentile(100), 2.0);
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.partition_server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.liveramp.hank.generated.HankResponse;
+import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.storage.mock.MockReader;
+import com.liveramp.hank.test.BaseTestCase;
+import com.liveramp.hank.test.coordinator.MockHostDomainPartition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestPartitionAccessor extends BaseTestCase {
+
+  private static final ByteBuffer KEY = ByteBuffer.wrap("key".getBytes());
+
+  private static class ClosingReader extends MockReader {
+
+    private final CountDownLatch getStarted = new CountDownLatch(1);
+    private final CountDownLatch getCanComplete;
+    private volatile boolean closed = false;
+
+    public ClosingReader(byte[] returnValue, CountDownLatch getCanComplete) {
+      super(null, 0, returnValue, null);
+      this.getCanComplete = getCanComplete;
+    }
+
+    @Override
+    public void get(ByteBuffer key, ReaderResult result) throws IOException {
+      getStarted.countDown();
+      try {
+        getCanComplete.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (closed) {
+        throw new IOException("Reader is closed");
+      }
+      super.get(key, result);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  @Test
+  public void testSwapReaderWaitsForInFlightRequests() throws Exception {
+    CountDownLatch getCanComplete = new CountDownLatch(1);
+    ClosingReader reader1 = new ClosingReader("v1".getBytes(), getCanComplete);
+    ClosingReader reader2 = new ClosingReader("v2".getBytes(), new CountDownLatch(0));
+    final PartitionAccessor partitionAccessor = new PartitionAccessor(new MockHostDomainPartition(0, 1), reader1);
+
+    // Start a request on the first Reader
+    final AtomicReference<HankResponse> inFlightResponse = new AtomicReference<HankResponse>();
+    Thread inFlightRequest = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          inFlightResponse.set(partitionAccessor.get(KEY, new ReaderResult()));
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    inFlightRequest.start();
+    reader1.getStarted.await();
+
+    // Swap Readers while the request is in flight
+    partitionAccessor.swapReader(reader2);
+    assertFalse(reader1.closed);
+    assertEquals(HankResponse.value("v2".getBytes()), partitionAccessor.get(KEY, new ReaderResult()));
+
+    // The in-flight request completes on the first Reader, which is then closed
+    getCanComplete.countDown();
+    inFlightRequest.join();
+    assertEquals(HankResponse.value("v1".getBytes()), inFlightResponse.get());
+    assertTrue(reader1.closed);
+    assertFalse(reader2.closed);
+
+    // Once shut down, the partition is not served anymore
+    partitionAccessor.shutDown();
+    assertTrue(reader2.closed);
+    assertNull(partitionAccessor.get(KEY, new ReaderResult()));
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.partition_server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class TestPartitionServerExecutors {
+
+  @Test
+  public void testExecutionModes() throws Exception {
+    for (ExecutionMode executionMode : ExecutionMode.values()) {
+      ExecutorService executor = PartitionServerExecutors.create(executionMode, 2, "Test Thread");
+      final CountDownLatch latch = new CountDownLatch(10);
+      for (int i = 0; i < 10; ++i) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            latch.countDown();
+          }
+        });
+      }
+      assertTrue(executionMode.toString(), latch.await(10, TimeUnit.SECONDS));
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+  }
+}
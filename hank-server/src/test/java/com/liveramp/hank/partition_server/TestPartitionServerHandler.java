@@ -16,6 +16,7 @@
 package com.liveramp.hank.partition_server;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,7 +45,10 @@ import com.liveramp.hank.generated.HankBulkResponse;
 import com.liveramp.hank.generated.HankException;
 import com.liveramp.hank.generated.HankResponse;
 import com.liveramp.hank.partitioner.Partitioner;
+import com.liveramp.hank.storage.HeapReaderCache;
 import com.liveramp.hank.storage.Reader;
+import com.liveramp.hank.storage.ReaderCache;
+import com.liveramp.hank.storage.ReaderResult;
 import com.liveramp.hank.storage.mock.MockReader;
 import com.liveramp.hank.storage.mock.MockStorageEngine;
 import com.liveramp.hank.test.BaseTestCase;
@@ -56,7 +60,9 @@ import com.liveramp.hank.test.coordinator.MockRingGroup;
 import com.liveramp.hank.test.partitioner.MapPartitioner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 public class TestPartitionServerHandler extends BaseTestCase {
 
@@ -139,14 +145,96 @@ public class TestPartitionServerHandler extends BaseTestCase {
     assertEquals(HankBulkResponse.responses(responses2), handler.getBulk(0, keys2));
   }
 
+  @Test
+  public void testReloadAndUnloadReaders() throws Exception {
+    PartitionServerHandler handler = createHandler(0);
+    final byte[] v2 = new byte[]{10};
+    MockStorageEngine storageEngine = new MockStorageEngine() {
+      @Override
+      public Reader getReader(ReaderConfigurator configurator, int partitionNumber) throws IOException {
+        return new MockReader(configurator, partitionNumber, v2, 1);
+      }
+    };
+    HostDomain hostDomain = new MockHostDomain(new MockDomain("myDomain", 0, 5, null, storageEngine, null, null));
+
+    // Swap the Reader of a served partition
+    handler.reloadReader(hostDomain, new MockHostDomainPartition(0, null), 1);
+    assertEquals(HankResponse.value(v2), handler.get(0, K1));
+    assertEquals(HankResponse.value(V1), handler.get(0, K5));
+
+    // Start serving a partition that was not served
+    handler.reloadReader(hostDomain, new MockHostDomainPartition(2, null), 1);
+    assertEquals(HankResponse.value(v2), handler.get(0, K3));
+
+    // A Reader that does not match the updated version is not swapped in
+    try {
+      handler.reloadReader(hostDomain, new MockHostDomainPartition(4, null), 2);
+      fail("Should throw an exception.");
+    } catch (IOException e) {
+    }
+    assertEquals(HankResponse.value(V1), handler.get(0, K5));
+
+    // Stop serving a partition
+    handler.unloadReader(hostDomain, new MockHostDomainPartition(0, null));
+    assertEquals(HankResponse.xception(HankException.wrong_host(true)), handler.get(0, K1));
+
+    handler.shutDown();
+  }
+
+  @Test
+  public void testCacheHitGetDoesNotAllocate() throws Exception {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+    PartitionServerHandler handler = createHandler(0, true);
+    long threadId = Thread.currentThread().getId();
+    int numRequests = 10000;
+
+    // Warm up thread locals, the cache and the JIT
+    for (int i = 0; i < numRequests; ++i) {
+      handler.get(0, K1);
+    }
+    assertEquals(HankResponse.value(V1), handler.get(0, K1));
+
+    long allocatedBytesBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < numRequests; ++i) {
+      handler.get(0, K1);
+    }
+    long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+    // Any allocation per request would amount to at least 16 bytes per request. Allow for the
+    // allocations performed by the measurement itself.
+    assertTrue("Allocated " + allocatedBytes + " bytes for " + numRequests + " GET requests",
+        allocatedBytes < numRequests);
+  }
+
   private PartitionServerHandler createHandler(final int readerVersionNumber) throws IOException {
+    return createHandler(readerVersionNumber, false);
+  }
+
+  // Caching readers serve values from a reader cache once they have been read
+  private PartitionServerHandler createHandler(final int readerVersionNumber, final boolean caching) throws IOException {
     Partitioner partitioner = new MapPartitioner(K1, 0, K2, 1, K3, 2, K4, 3,
         K5, 4);
     MockStorageEngine storageEngine = new MockStorageEngine() {
       @Override
       public Reader getReader(ReaderConfigurator configurator, int partitionNumber)
           throws IOException {
+        final ReaderCache cache = new HeapReaderCache(1 << 20, 1024);
         return new MockReader(configurator, partitionNumber, V1, readerVersionNumber) {
+          @Override
+          public void get(ByteBuffer key, ReaderResult result) throws IOException {
+            if (caching && cache.get(key, result)) {
+              result.setL1CacheHit(true);
+              return;
+            }
+            super.get(key, result);
+            if (caching) {
+              cache.put(key, result.getBuffer());
+            }
+          }
+
           @Override
           public Integer getVersionNumber() {
             return readerVersionNumber;
@@ -186,7 +274,13 @@ public class TestPartitionServerHandler extends BaseTestCase {
       }
     };
     PartitionServerConfigurator config = new MockPartitionServerConfigurator(12345,
-        mockCoordinator, "myRingGroupName", "/tmp/local/data/dir");
+        mockCoordinator, "myRingGroupName", "/tmp/local/data/dir") {
+      @Override
+      public int getGetTimerAggregatorWindow() {
+        // Time requests without completing a window (and logging) while testing allocations
+        return caching ? 1 << 16 : super.getGetTimerAggregatorWindow();
+      }
+    };
     PartitionServerHandler handler = new PartitionServerHandler(new PartitionServerAddress(
         "localhost", 12345), config, mockCoordinator);
     return handler;
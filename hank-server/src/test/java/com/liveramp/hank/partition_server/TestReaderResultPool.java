@@ -0,0 +1,63 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.liveramp.hank.partition_server;
+
+import org.junit.Test;
+
+import com.liveramp.hank.storage.ReaderResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestReaderResultPool {
+
+  @Test
+  public void testReuse() {
+    ReaderResultPool pool = new ReaderResultPool(1, 16);
+
+    ReaderResult result = pool.acquire();
+    result.requiresBufferSize(8);
+    result.found();
+    pool.release(result);
+
+    // Released results are cleared and reused
+    ReaderResult reused = pool.acquire();
+    assertSame(result, reused);
+    assertFalse(reused.isFound());
+    assertEquals(8, reused.getBuffer().capacity());
+
+    // An empty pool allocates new results
+    assertNotSame(result, pool.acquire());
+
+    // Results are dropped when the pool is full
+    pool.release(reused);
+    pool.release(new ReaderResult());
+    assertSame(reused, pool.acquire());
+  }
+
+  @Test
+  public void testLargeBuffersAreNotReused() {
+    ReaderResultPool pool = new ReaderResultPool(4, 16);
+    ReaderResult result = pool.acquire();
+    result.requiresBufferSize(32);
+    pool.release(result);
+    for (int i = 0; i < 4; ++i) {
+      assertNotSame(result, pool.acquire());
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.liveramp.hank.partition_server;
+
+import org.junit.Test;
+
+import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestRuntimeStatisticsAggregator extends BaseTestCase {
+
+  @Test
+  public void testToStringAndParse() {
+    DoublePopulationStatisticsAggregator populationStatistics =
+        new DoublePopulationStatisticsAggregator(1.0, 9.0, 1000, 4000.0, new double[]{1.0, 2.0, 3.0});
+    RuntimeStatisticsAggregator runtimeStatistics = new RuntimeStatisticsAggregator(
+        100.0, 2048.0, 1000, 800, 300, 200, 400, 150,
+        populationStatistics,
+        new CacheStatistics(50, 100, 4096, 8192, 1024, 512, 30, 3, 70, 20));
+
+    RuntimeStatisticsAggregator parsed =
+        RuntimeStatisticsAggregator.parse(RuntimeStatisticsAggregator.toString(runtimeStatistics));
+
+    assertEquals(100.0, parsed.getThroughput(), 0.0);
+    assertEquals(2048.0, parsed.getResponseDataThroughput(), 0.0);
+    assertEquals(0.8, parsed.getHitRate(), 0.0001);
+    assertEquals(0.3, parsed.getL1CacheHitRate(), 0.0001);
+    assertEquals(0.25, parsed.getL2CacheHitRate(), 0.0001);
+    assertEquals(0.4, parsed.getMemoryMappedReadRate(), 0.0001);
+    assertEquals(0.15, parsed.getBlockCacheHitRate(), 0.0001);
+
+    CacheStatistics cacheStatistics = parsed.getCacheStatistics();
+    assertEquals(50, cacheStatistics.getNumItems());
+    assertEquals(100, cacheStatistics.getMaxNumItems());
+    assertEquals(4096, cacheStatistics.getNumManagedBytes());
+    assertEquals(8192, cacheStatistics.getMaxNumManagedBytes());
+    assertEquals(1024, cacheStatistics.getNumOffHeapBytes());
+    assertEquals(512, cacheStatistics.getNumFilterBytes());
+    assertEquals(30, cacheStatistics.getNumFilterNegatives());
+    assertEquals(3, cacheStatistics.getNumFilterFalsePositives());
+    assertEquals(70, cacheStatistics.getNumAdmissions());
+    assertEquals(20, cacheStatistics.getNumAdmissionRejections());
+
+    DoublePopulationStatisticsAggregator parsedPopulationStatistics = parsed.getGetRequestsPopulationStatistics();
+    assertEquals(1.0, parsedPopulationStatistics.getMinimum(), 0.0);
+    assertEquals(9.0, parsedPopulationStatistics.getMaximum(), 0.0);
+    assertEquals(4.0, parsedPopulationStatistics.getMean(), 0.0);
+    assertEquals(2.0, parsedPopulationStatistics.computeDeciles()[4], 0.05);
+  }
+
+  @Test
+  public void testSummarize() {
+    DoublePopulationStatisticsAggregator populationStatistics =
+        new DoublePopulationStatisticsAggregator(1.0, 9.0, 1000, 4000.0, new double[]{1.0, 2.0, 3.0, 5.0, 8.0});
+    RuntimeStatisticsAggregator runtimeStatistics = new RuntimeStatisticsAggregator(
+        100.0, 2048.0, 1000, 800, 300, 200, 400, 150,
+        populationStatistics,
+        new CacheStatistics(50, 100, 4096, 8192, 1024, 512, 30, 3, 70, 20));
+
+    String summary = RuntimeStatisticsAggregator.toString(RuntimeStatisticsAggregator.summarize(runtimeStatistics));
+    assertTrue(summary.length() < RuntimeStatisticsAggregator.toString(runtimeStatistics).length());
+
+    // Summaries are read like any other statistics
+    RuntimeStatisticsAggregator parsed = RuntimeStatisticsAggregator.parse(summary);
+    assertEquals(100.0, parsed.getThroughput(), 0.0);
+    assertEquals(2048.0, parsed.getResponseDataThroughput(), 0.0);
+    assertEquals(0.8, parsed.getHitRate(), 0.0001);
+    assertEquals(0.15, parsed.getBlockCacheHitRate(), 0.0001);
+    assertEquals(0, parsed.getCacheStatistics().getNumItems());
+    assertEquals(0, parsed.getCacheStatistics().getNumFilterBytes());
+
+    DoublePopulationStatisticsAggregator parsedPopulationStatistics = parsed.getGetRequestsPopulationStatistics();
+    assertEquals(9.0, parsedPopulationStatistics.getMaximum(), 0.0);
+    assertEquals(4.0, parsedPopulationStatistics.getMean(), 0.0);
+    assertEquals(0, parsedPopulationStatistics.getHistogram().getTotalCount());
+  }
+
+  @Test
+  public void testParseUnversionedFormat() {
+    // Original format: throughputs, request and hit counts, cache statistics,
+    // then latency statistics followed by a random sample of latencies
+    String unversioned = "100.0 2048.0 1000 800 300 200 50 100 4096 8192 1.0 9.0 1000 4000.0 1.0 2.0 3.0";
+
+    RuntimeStatisticsAggregator parsed = RuntimeStatisticsAggregator.parse(unversioned);
+
+    assertEquals(100.0, parsed.getThroughput(), 0.0);
+    assertEquals(2048.0, parsed.getResponseDataThroughput(), 0.0);
+    assertEquals(0.8, parsed.getHitRate(), 0.0001);
+    assertEquals(0.3, parsed.getL1CacheHitRate(), 0.0001);
+    assertEquals(0.25, parsed.getL2CacheHitRate(), 0.0001);
+    assertEquals(0.0, parsed.getMemoryMappedReadRate(), 0.0);
+    assertEquals(0.0, parsed.getBlockCacheHitRate(), 0.0);
+
+    CacheStatistics cacheStatistics = parsed.getCacheStatistics();
+    assertEquals(50, cacheStatistics.getNumItems());
+    assertEquals(100, cacheStatistics.getMaxNumItems());
+    assertEquals(4096, cacheStatistics.getNumManagedBytes());
+    assertEquals(8192, cacheStatistics.getMaxNumManagedBytes());
+    assertEquals(0, cacheStatistics.getNumOffHeapBytes());
+    assertEquals(0, cacheStatistics.getNumFilterBytes());
+    assertEquals(0, cacheStatistics.getNumAdmissions());
+
+    DoublePopulationStatisticsAggregator populationStatistics = parsed.getGetRequestsPopulationStatistics();
+    assertEquals(1.0, populationStatistics.getMinimum(), 0.0);
+    assertEquals(9.0, populationStatistics.getMaximum(), 0.0);
+    assertEquals(4.0, populationStatistics.getMean(), 0.0);
+    assertEquals(2.0, populationStatistics.computeDeciles()[4], 0.05);
+  }
+
+  @Test
+  public void testParseOlderVersion() {
+    // Version 2 has memory mapped reads but no off-heap cache statistics
+    String older = "v2 100.0 2048.0 1000 800 300 200 400 50 100 4096 8192 1.0 9.0 1000 4000.0 1.0 2.0 3.0";
+
+    RuntimeStatisticsAggregator parsed = RuntimeStatisticsAggregator.parse(older);
+
+    assertEquals(100.0, parsed.getThroughput(), 0.0);
+    assertEquals(0.4, parsed.getMemoryMappedReadRate(), 0.0001);
+    assertEquals(50, parsed.getCacheStatistics().getNumItems());
+    assertEquals(8192, parsed.getCacheStatistics().getMaxNumManagedBytes());
+    assertEquals(0, parsed.getCacheStatistics().getNumOffHeapBytes());
+    assertEquals(9.0, parsed.getGetRequestsPopulationStatistics().getMaximum(), 0.0);
+  }
+
+  @Test
+  public void testParseUnknownVersion() {
+    // Statistics of a newer format are ignored rather than read into the wrong fields
+    RuntimeStatisticsAggregator parsed =
+        RuntimeStatisticsAggregator.parse("v99 100.0 2048.0 1000 800 300 200 400 50 100 4096 8192 1.0 9.0 1000 4000.0");
+
+    assertEquals(0.0, parsed.getThroughput(), 0.0);
+    assertEquals(0.0, parsed.getHitRate(), 0.0);
+  }
+}
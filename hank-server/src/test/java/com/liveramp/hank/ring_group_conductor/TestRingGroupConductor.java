@@ -130,6 +130,16 @@ public class TestRingGroupConductor extends TestCase {
         return 0;
       }
 
+      @Override
+      public boolean getUseOnlineUpdates() {
+        return false;
+      }
+
+      @Override
+      public boolean getUseLoadBalancingPartitionAssigner() {
+        return false;
+      }
+
       @Override
       public String getRingGroupName() {
         return "myRingGroup";
@@ -360,6 +360,39 @@ public class TestRingGroupUpdateTransitionFunctionImpl extends BaseTestCase {
     assertNull(r2h1.getAndClearLastEnqueuedCommand());
   }
 
+  @Test
+  public void testUpdatesFirstRingOnlineWhenStartingUpdate() throws IOException {
+    RingGroupUpdateTransitionFunctionImpl transitionFunction =
+        new RingGroupUpdateTransitionFunctionImpl(partitionAssigner, 0, true);
+    domainGroup.setDomainVersions(versionsMap2);
+
+    setUpRing(r0, v1, v2, HostState.SERVING);
+    setUpRing(r1, v1, v2, HostState.SERVING);
+    setUpRing(r2, v1, v2, HostState.SERVING);
+
+    transitionFunction.manageTransitions(rg);
+
+    // All serving hosts in r0 should have received execute update without going idle
+    assertEquals(HostCommand.EXECUTE_UPDATE, r0h0.getAndClearLastEnqueuedCommand());
+    assertEquals(HostCommand.EXECUTE_UPDATE, r0h1.getAndClearLastEnqueuedCommand());
+    assertEquals(HostState.SERVING, r0h0.getState());
+    assertEquals(HostState.SERVING, r0h1.getState());
+
+    // No commands should have been issued to other rings
+    assertNull(r1h0.getAndClearLastEnqueuedCommand());
+    assertNull(r1h1.getAndClearLastEnqueuedCommand());
+    assertNull(r2h0.getAndClearLastEnqueuedCommand());
+    assertNull(r2h1.getAndClearLastEnqueuedCommand());
+
+    transitionFunction.manageTransitions(rg);
+
+    // Hosts updating online are not fully serving, other rings should not be updated yet
+    assertNull(r1h0.getAndClearLastEnqueuedCommand());
+    assertNull(r1h1.getAndClearLastEnqueuedCommand());
+    assertNull(r2h0.getAndClearLastEnqueuedCommand());
+    assertNull(r2h1.getAndClearLastEnqueuedCommand());
+  }
+
   @Test
   public void testAssignWhenOneHostIsServing() throws IOException {
     domainGroup.setDomainVersions(versionsMap3);
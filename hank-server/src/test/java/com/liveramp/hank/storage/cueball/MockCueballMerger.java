@@ -19,6 +19,7 @@
 package com.liveramp.hank.storage.cueball;
 
 import com.liveramp.hank.compression.cueball.CueballCompressionCodec;
+import com.liveramp.hank.storage.PartitionRemoteFileOps;
 
 import java.io.File;
 import java.io.IOException;
@@ -28,6 +29,7 @@ public class MockCueballMerger implements ICueballMerger {
 
   public CueballFilePath latestBase;
   public List<CueballFilePath> deltas;
+  public List<String> deltaRemoteFiles;
   public String newBasePath;
   public int keyHashSize;
   public int valueSize;
@@ -50,4 +52,15 @@ public class MockCueballMerger implements ICueballMerger {
       throw new IOException("Failed to create file " + newBasePath);
     }
   }
+
+  @Override
+  public void merge(CueballFilePath latestBase, List<String> deltaRemoteFiles,
+                    PartitionRemoteFileOps partitionRemoteFileOps,
+                    String newBasePath, int keyHashSize, int valueSize,
+                    ValueTransformer transformer, int hashIndexBits, CueballCompressionCodec compressionCodec)
+      throws IOException {
+    this.deltaRemoteFiles = deltaRemoteFiles;
+    merge(latestBase, (List<CueballFilePath>)null, newBasePath, keyHashSize, valueSize, transformer, hashIndexBits,
+        compressionCodec);
+  }
 }
@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage.cueball;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.liveramp.commons.util.BytesUtils;
+import com.liveramp.hank.test.BaseTestCase;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestCueballBlockSearch extends BaseTestCase {
+
+  private static final int VALUE_SIZE = 3;
+
+  @Test
+  public void testCompareKeyHashes() {
+    Random random = new Random(0);
+    for (int keyHashSize : new int[]{1, 7, 8, 10, 16, 20}) {
+      for (int i = 0; i < 1000; ++i) {
+        byte[] a = new byte[keyHashSize + 1];
+        byte[] b = new byte[keyHashSize];
+        random.nextBytes(a);
+        // Share a prefix of random length so that all positions of the first difference are covered
+        System.arraycopy(a, 1, b, 0, random.nextInt(keyHashSize + 1));
+        if (random.nextBoolean()) {
+          b[random.nextInt(keyHashSize)] = (byte)random.nextInt();
+        }
+        assertEquals(Integer.signum(BytesUtils.compareBytesUnsigned(a, 1, b, 0, keyHashSize)),
+            CueballBlockSearch.compareKeyHashes(a, 1, b, 0, keyHashSize));
+        assertEquals(Integer.signum(BytesUtils.compareBytesUnsigned(b, 0, a, 1, keyHashSize)),
+            CueballBlockSearch.compareKeyHashes(b, 0, a, 1, keyHashSize));
+      }
+    }
+    assertEquals(-1, CueballBlockSearch.compareKeyHashes(new byte[8], 0, new byte[]{0, 0, 0, 0, 0, 0, 0, (byte)0xff}, 0, 8));
+    assertEquals(1, CueballBlockSearch.compareKeyHashes(new byte[]{(byte)0x80, 0, 0, 0, 0, 0, 0, 0}, 0, new byte[8], 0, 8));
+  }
+
+  @Test
+  public void testLowerBound() {
+    Random random = new Random(0);
+    for (int keyHashSize : new int[]{2, 10}) {
+      int recordSize = keyHashSize + VALUE_SIZE;
+      for (int numRecords : new int[]{0, 1, 5, CueballBlockSearch.MAX_NUM_RECORDS_SCANNED + 1, 100}) {
+        // Block of sorted records, after some unrelated bytes
+        byte[][] keyHashes = new byte[numRecords][keyHashSize];
+        for (byte[] keyHash : keyHashes) {
+          random.nextBytes(keyHash);
+        }
+        Arrays.sort(keyHashes, new Comparator<byte[]>() {
+          @Override
+          public int compare(byte[] a, byte[] b) {
+            return BytesUtils.compareBytesUnsigned(a, 0, b, 0, a.length);
+          }
+        });
+        int offset = 7;
+        int limit = offset + numRecords * recordSize;
+        byte[] block = new byte[limit];
+        for (int i = 0; i < numRecords; ++i) {
+          System.arraycopy(keyHashes[i], 0, block, offset + i * recordSize, keyHashSize);
+        }
+
+        for (int i = 0; i < numRecords; ++i) {
+          // Short key hashes collide, in which case the first of equal records is found
+          int expected = i;
+          while (expected > 0 && Arrays.equals(keyHashes[expected - 1], keyHashes[i])) {
+            --expected;
+          }
+          assertEquals(offset + expected * recordSize, CueballBlockSearch.lowerBound(block, offset, limit, recordSize,
+              keyHashes[i], 0, keyHashSize));
+        }
+        for (int i = 0; i < 1000; ++i) {
+          byte[] keyHash = new byte[keyHashSize];
+          random.nextBytes(keyHash);
+          int expected = CueballBlockSearch.scanLowerBound(block, offset, limit, recordSize, keyHash, 0, keyHashSize);
+          assertEquals(expected, CueballBlockSearch.lowerBound(block, offset, limit, recordSize, keyHash, 0, keyHashSize));
+          // Search from the middle of the block
+          int start = offset + (numRecords / 2) * recordSize;
+          assertEquals(Math.max(expected, start),
+              CueballBlockSearch.lowerBound(block, start, limit, recordSize, keyHash, 0, keyHashSize));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/**
+ *  Copyright 2014 LiveRamp
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.liveramp.hank.storage.cueball;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.storage.CacheStatistics;
+import com.liveramp.hank.storage.HeapReaderCache;
+import com.liveramp.hank.storage.ReaderResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCueballBloomFilter extends AbstractCueballTest {
+
+  private static final int KEY_HASH_SIZE = 8;
+  private static final int HASH_INDEX_BITS = 4;
+  private static final int NUM_KEYS_PER_BLOCK = 1000;
+
+  @Test
+  public void testMightContain() throws Exception {
+    byte[][] blocks = getBlocks(new Random(1));
+    CueballBloomFilter.Builder builder = new CueballBloomFilter.Builder(HASH_INDEX_BITS, 10);
+    for (int hashPrefix = 0; hashPrefix < blocks.length; ++hashPrefix) {
+      builder.addBlock(hashPrefix, blocks[hashPrefix], 0, blocks[hashPrefix].length, KEY_HASH_SIZE, KEY_HASH_SIZE);
+    }
+    CueballBloomFilter filter = builder.build();
+    assertEquals(blocks.length * NUM_KEYS_PER_BLOCK, filter.getNumKeys());
+    assertNoFalseNegatives(filter, blocks);
+    // 10 bits per key should yield a false positive rate around 1%
+    assertTrue(getFalsePositiveRate(filter, new Random(2)) < 0.02);
+    assertTrue(filter.getExpectedFalsePositiveRate() < 0.02);
+
+    // Write and read back
+    String path = localTmpDir + "/filter";
+    filter.write(path);
+    CueballBloomFilter readFilter = CueballBloomFilter.read(path, HASH_INDEX_BITS);
+    assertEquals(filter.getNumKeys(), readFilter.getNumKeys());
+    assertEquals(filter.getNumBytes(), readFilter.getNumBytes());
+    assertNoFalseNegatives(readFilter, blocks);
+  }
+
+  @Test
+  public void testCombine() throws Exception {
+    byte[][] blocks = getBlocks(new Random(3));
+    int split = blocks.length / 2;
+    CueballBloomFilter.Builder lower = new CueballBloomFilter.Builder(HASH_INDEX_BITS, 8);
+    CueballBloomFilter.Builder upper = new CueballBloomFilter.Builder(HASH_INDEX_BITS, 8);
+    for (int hashPrefix = 0; hashPrefix < blocks.length; ++hashPrefix) {
+      (hashPrefix < split ? lower : upper)
+          .addBlock(hashPrefix, blocks[hashPrefix], 0, blocks[hashPrefix].length, KEY_HASH_SIZE, KEY_HASH_SIZE);
+    }
+    CueballBloomFilter filter = CueballBloomFilter.combine(Arrays.asList(lower.build(), upper.build()));
+    assertEquals(blocks.length * NUM_KEYS_PER_BLOCK, filter.getNumKeys());
+    assertNoFalseNegatives(filter, blocks);
+  }
+
+  @Test
+  public void testReaderWithoutFilterFile() throws Exception {
+    String root = localTmpDir + "/reader_without_filter";
+    new File(root).mkdir();
+    OutputStream os = new FileOutputStream(root + "/00000.base.cueball");
+    os.write(EXPECTED_DATA);
+    os.close();
+
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new NoCueballCompressionCodec(),
+        new HeapReaderCache(0, 0), false, 10);
+    // Missing filter is neither built nor written when opening
+    assertFalse(new File(CueballBloomFilter.getPath(root + "/00000.base.cueball")).exists());
+
+    ReaderResult result = new ReaderResult();
+    reader.get(ByteBuffer.wrap(KEY1), result);
+    assertTrue(result.isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}), result.getBuffer());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY4), result);
+    assertFalse(result.isFound());
+    result.clear();
+
+    CacheStatistics statistics = reader.getCacheStatistics();
+    assertEquals(0, statistics.getNumFilterBytes());
+    assertEquals(0, statistics.getNumFilterNegatives() + statistics.getNumFilterFalsePositives());
+    reader.close();
+  }
+
+  @Test
+  public void testReaderUsesFilterFile() throws Exception {
+    String root = localTmpDir + "/reader";
+    new File(root).mkdir();
+    String keyFilePath = root + "/00000.base.cueball";
+    OutputStream os = new FileOutputStream(keyFilePath);
+    os.write(EXPECTED_DATA);
+    os.close();
+    CueballBloomFilter.build(keyFilePath, 10, 5, 1, new NoCueballCompressionCodec(), 10)
+        .write(CueballBloomFilter.getPath(keyFilePath));
+
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new NoCueballCompressionCodec(),
+        new HeapReaderCache(0, 0), false, 10);
+
+    ReaderResult result = new ReaderResult();
+    reader.get(ByteBuffer.wrap(KEY1), result);
+    assertTrue(result.isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}), result.getBuffer());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY3), result);
+    assertTrue(result.isFound());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY4), result);
+    assertFalse(result.isFound());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY10), result);
+    assertFalse(result.isFound());
+    result.clear();
+
+    CacheStatistics statistics = reader.getCacheStatistics();
+    assertTrue(statistics.getNumFilterBytes() > 0);
+    // Every absent key is either rejected by the filter or a false positive
+    assertEquals(2, statistics.getNumFilterNegatives() + statistics.getNumFilterFalsePositives());
+    reader.close();
+  }
+
+  private static byte[][] getBlocks(Random random) {
+    byte[][] blocks = new byte[1 << HASH_INDEX_BITS][];
+    for (int hashPrefix = 0; hashPrefix < blocks.length; ++hashPrefix) {
+      blocks[hashPrefix] = new byte[NUM_KEYS_PER_BLOCK * KEY_HASH_SIZE];
+      random.nextBytes(blocks[hashPrefix]);
+    }
+    return blocks;
+  }
+
+  private static void assertNoFalseNegatives(CueballBloomFilter filter, byte[][] blocks) {
+    for (int hashPrefix = 0; hashPrefix < blocks.length; ++hashPrefix) {
+      for (int off = 0; off < blocks[hashPrefix].length; off += KEY_HASH_SIZE) {
+        assertTrue(filter.mightContain(blocks[hashPrefix], off, KEY_HASH_SIZE, hashPrefix));
+      }
+    }
+  }
+
+  private static double getFalsePositiveRate(CueballBloomFilter filter, Random random) {
+    int numQueries = 100000;
+    int numPositives = 0;
+    byte[] keyHash = new byte[KEY_HASH_SIZE];
+    for (int i = 0; i < numQueries; ++i) {
+      random.nextBytes(keyHash);
+      if (filter.mightContain(keyHash, 0, KEY_HASH_SIZE, i % (1 << HASH_INDEX_BITS))) {
+        ++numPositives;
+      }
+    }
+    return (double)numPositives / numQueries;
+  }
+}
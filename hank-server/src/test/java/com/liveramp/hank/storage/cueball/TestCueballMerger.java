@@ -16,6 +16,8 @@
 package com.liveramp.hank.storage.cueball;
 
 import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.storage.LocalPartitionRemoteFileOps;
+import com.liveramp.hank.storage.PartitionRemoteFileOps;
 import org.junit.Test;
 
 import java.io.*;
@@ -23,6 +25,7 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 public class TestCueballMerger extends AbstractCueballTest {
   private final String LOCAL_ROOT = localTmpDir;
@@ -155,6 +158,69 @@ public class TestCueballMerger extends AbstractCueballTest {
 
   @Test
   public void testMerge() throws Exception {
+    writeFiles();
+
+    new CueballMerger().merge(BASE,
+        Arrays.asList(DELTA_1, DELTA_2),
+        NEW_BASE_PATH,
+        1,
+        1,
+        null,
+        1,
+        new NoCueballCompressionCodec());
+
+    assertEquals(ByteBuffer.wrap(EXPECTED_MERGED_DATA), ByteBuffer.wrap(readNewBase()));
+  }
+
+  @Test
+  public void testParallelMerge() throws Exception {
+    writeFiles();
+
+    // Each hash prefix range is merged separately, the result should be identical
+    new CueballMerger(2).merge(BASE,
+        Arrays.asList(DELTA_1, DELTA_2),
+        NEW_BASE_PATH,
+        1,
+        1,
+        null,
+        1,
+        new NoCueballCompressionCodec());
+
+    assertEquals(ByteBuffer.wrap(EXPECTED_MERGED_DATA), ByteBuffer.wrap(readNewBase()));
+    assertFalse(new File(NEW_BASE_PATH + ".range0").exists());
+    assertFalse(new File(NEW_BASE_PATH + ".range1").exists());
+  }
+
+  @Test
+  public void testMergeRemoteDeltas() throws Exception {
+    writeFiles();
+    PartitionRemoteFileOps remoteFileOps = new LocalPartitionRemoteFileOps(LOCAL_ROOT + "/remote", 0);
+    writeRemoteFile(remoteFileOps, "00001.delta.cueball", DELTA_1_DATA);
+    writeRemoteFile(remoteFileOps, "00002.delta.cueball", DELTA_2_DATA);
+
+    // Deltas are streamed from the remote file ops, the result should be identical
+    for (int parallelism = 1; parallelism <= 2; ++parallelism) {
+      new CueballMerger(parallelism).merge(BASE,
+          Arrays.asList("00001.delta.cueball", "00002.delta.cueball"),
+          remoteFileOps,
+          NEW_BASE_PATH,
+          1,
+          1,
+          null,
+          1,
+          new NoCueballCompressionCodec());
+
+      assertEquals(ByteBuffer.wrap(EXPECTED_MERGED_DATA), ByteBuffer.wrap(readNewBase()));
+    }
+  }
+
+  private void writeRemoteFile(PartitionRemoteFileOps remoteFileOps, String path, byte[] data) throws IOException {
+    OutputStream s = remoteFileOps.getOutputStream(path);
+    s.write(data);
+    s.close();
+  }
+
+  private void writeFiles() throws IOException {
     new File(LOCAL_ROOT).mkdirs();
     OutputStream s = new FileOutputStream(BASE.getPath());
     s.write(BASE_DATA);
@@ -170,21 +236,14 @@ public class TestCueballMerger extends AbstractCueballTest {
     s.write(DELTA_2_DATA);
     s.flush();
     s.close();
+  }
 
-    new CueballMerger().merge(BASE,
-        Arrays.asList(DELTA_1, DELTA_2),
-        NEW_BASE_PATH,
-        1,
-        1,
-        null,
-        1,
-        new NoCueballCompressionCodec());
-
+  private byte[] readNewBase() throws IOException {
     DataInputStream in = new DataInputStream(new FileInputStream(NEW_BASE_PATH));
     int length = (int) new File(NEW_BASE_PATH).length();
     byte[] actualMergedData = new byte[length];
     in.readFully(actualMergedData);
-
-    assertEquals(ByteBuffer.wrap(EXPECTED_MERGED_DATA), ByteBuffer.wrap(actualMergedData));
+    in.close();
+    return actualMergedData;
   }
 }
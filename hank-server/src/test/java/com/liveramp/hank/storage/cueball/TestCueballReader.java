@@ -19,11 +19,21 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
+import com.liveramp.hank.compression.cueball.GzipCueballCompressionCodec;
 import com.liveramp.hank.compression.cueball.NoCueballCompressionCodec;
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.HeapReaderCache;
+import com.liveramp.hank.storage.IOEngine;
 import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.storage.SynchronousIOEngine;
+import com.liveramp.hank.storage.ThreadPoolIOEngine;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -107,4 +117,255 @@ public class TestCueballReader extends AbstractCueballTest {
     assertEquals(false, result.getL2CacheHit());
     result.clear();
   }
+
+  @Test
+  public void testReadMemoryMapped() throws Exception {
+    String root = localTmpDir + "/2";
+    new File(root).mkdir();
+    OutputStream os = new FileOutputStream(root + "/00000.base.cueball");
+    os.write(EXPECTED_DATA);
+    os.flush();
+    os.close();
+
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new NoCueballCompressionCodec(), 1 << 20, 10, true);
+    assertTrue(reader.isMemoryMapped());
+
+    ReaderResult result = new ReaderResult();
+    reader.get(ByteBuffer.wrap(KEY1), result);
+    assertTrue(result.isFound());
+    assertTrue(result.getMemoryMappedRead());
+    assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}), result.getBuffer());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY3), result);
+    assertTrue(result.isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}), result.getBuffer());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY4), result);
+    assertFalse(result.isFound());
+    assertTrue(result.getMemoryMappedRead());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY2), result);
+    assertTrue(result.isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}), result.getBuffer());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY10), result);
+    assertFalse(result.isFound());
+    result.clear();
+
+    // Cache hits do not read from the mapped file
+    reader.get(ByteBuffer.wrap(KEY2), result);
+    assertTrue(result.isFound());
+    assertEquals(true, result.getL1CacheHit());
+    assertFalse(result.getMemoryMappedRead());
+    result.clear();
+
+    reader.close();
+  }
+
+  @Test
+  public void testGetBulkMemoryMapped() throws Exception {
+    String root = localTmpDir + "/6";
+    new File(root).mkdir();
+    OutputStream os = new FileOutputStream(root + "/00000.base.cueball");
+    os.write(EXPECTED_DATA);
+    os.flush();
+    os.close();
+
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new NoCueballCompressionCodec(), 1 << 20, 10, true);
+    assertTrue(reader.isMemoryMapped());
+
+    List<ByteBuffer> keys = Arrays.asList(ByteBuffer.wrap(KEY3), ByteBuffer.wrap(KEY2), ByteBuffer.wrap(KEY10),
+        ByteBuffer.wrap(KEY4), ByteBuffer.wrap(KEY1));
+    List<ReaderResult> results = new ArrayList<ReaderResult>();
+    for (int i = 0; i < keys.size(); ++i) {
+      results.add(new ReaderResult());
+    }
+    reader.getBulk(keys, results);
+
+    assertTrue(results.get(0).isFound());
+    assertTrue(results.get(0).getMemoryMappedRead());
+    assertEquals(ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}), results.get(0).getBuffer());
+    assertTrue(results.get(1).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}), results.get(1).getBuffer());
+    assertFalse(results.get(2).isFound());
+    assertFalse(results.get(3).isFound());
+    assertTrue(results.get(4).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}), results.get(4).getBuffer());
+
+    reader.close();
+  }
+
+  @Test
+  public void testGetBulk() throws Exception {
+    String root = localTmpDir + "/3";
+    new File(root).mkdir();
+    OutputStream os = new FileOutputStream(root + "/00000.base.cueball");
+    os.write(EXPECTED_DATA);
+    os.flush();
+    os.close();
+
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new NoCueballCompressionCodec(), 1 << 20, 10);
+
+    // KEY1, KEY2 and KEY4 share a block, KEY3 and KEY10 share the other one
+    List<ByteBuffer> keys = Arrays.asList(ByteBuffer.wrap(KEY3), ByteBuffer.wrap(KEY2), ByteBuffer.wrap(KEY10),
+        ByteBuffer.wrap(KEY4), ByteBuffer.wrap(KEY1), ByteBuffer.wrap(KEY2));
+    List<ReaderResult> results = new ArrayList<ReaderResult>();
+    for (int i = 0; i < keys.size(); ++i) {
+      results.add(new ReaderResult());
+    }
+    reader.getBulk(keys, results);
+
+    assertTrue(results.get(0).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}), results.get(0).getBuffer());
+    assertTrue(results.get(1).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}), results.get(1).getBuffer());
+    assertFalse(results.get(2).isFound());
+    assertFalse(results.get(3).isFound());
+    assertTrue(results.get(4).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}), results.get(4).getBuffer());
+    assertTrue(results.get(5).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}), results.get(5).getBuffer());
+
+    // Results are cached like single lookups
+    ReaderResult result = new ReaderResult();
+    reader.get(ByteBuffer.wrap(KEY1), result);
+    assertTrue(result.isFound());
+    assertEquals(true, result.getL1CacheHit());
+
+    reader.close();
+  }
+
+  @Test
+  public void testGetBulkThroughThreadPoolIOEngine() throws Exception {
+    String root = localTmpDir + "/4";
+    new File(root).mkdir();
+    OutputStream os = new FileOutputStream(root + "/00000.base.cueball");
+    os.write(EXPECTED_DATA);
+    os.flush();
+    os.close();
+
+    // Both blocks are read concurrently
+    IOEngine ioEngine = new ThreadPoolIOEngine(Collections.singleton(localTmpDir), 2);
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new NoCueballCompressionCodec(),
+        new HeapReaderCache(0, 0), false, 0, ioEngine);
+
+    List<ByteBuffer> keys = Arrays.asList(ByteBuffer.wrap(KEY10), ByteBuffer.wrap(KEY1), ByteBuffer.wrap(KEY3),
+        ByteBuffer.wrap(KEY4), ByteBuffer.wrap(KEY2));
+    List<ReaderResult> results = new ArrayList<ReaderResult>();
+    for (int i = 0; i < keys.size(); ++i) {
+      results.add(new ReaderResult());
+    }
+    reader.getBulk(keys, results);
+
+    assertFalse(results.get(0).isFound());
+    assertTrue(results.get(1).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}), results.get(1).getBuffer());
+    assertTrue(results.get(2).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}), results.get(2).getBuffer());
+    assertFalse(results.get(3).isFound());
+    assertTrue(results.get(4).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}), results.get(4).getBuffer());
+
+    reader.close();
+    ioEngine.close();
+  }
+
+  @Test
+  public void testBlockCache() throws Exception {
+    String root = localTmpDir + "/5";
+    new File(root).mkdir();
+    OutputStream os = new FileOutputStream(root + "/00000.base.cueball");
+    CueballWriter writer = new CueballWriter(os, 10, HASHER, 5, new GzipCueballCompressionCodec(), 1);
+    writer.write(ByteBuffer.wrap(KEY1), ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}));
+    writer.write(ByteBuffer.wrap(KEY2), ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}));
+    writer.write(ByteBuffer.wrap(KEY3), ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}));
+    writer.close();
+
+    BlockCache blockCache = new BlockCache(1 << 20);
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new GzipCueballCompressionCodec(),
+        new HeapReaderCache(0, 0), false, 0, new SynchronousIOEngine(), blockCache);
+
+    ReaderResult result = new ReaderResult();
+    reader.get(ByteBuffer.wrap(KEY1), result);
+    assertTrue(result.isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}), result.getBuffer());
+    assertFalse(result.getBlockCacheHit());
+    result.clear();
+
+    // KEY1, KEY2 and KEY4 share a block, which is now decompressed in the block cache
+    reader.get(ByteBuffer.wrap(KEY2), result);
+    assertTrue(result.isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}), result.getBuffer());
+    assertTrue(result.getBlockCacheHit());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY4), result);
+    assertFalse(result.isFound());
+    assertTrue(result.getBlockCacheHit());
+    result.clear();
+
+    reader.get(ByteBuffer.wrap(KEY3), result);
+    assertTrue(result.isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}), result.getBuffer());
+    assertFalse(result.getBlockCacheHit());
+    result.clear();
+
+    assertEquals(2, blockCache.getCacheStatistics().getNumItems());
+
+    reader.close();
+  }
+
+  @Test
+  public void testGetBulkBlockCache() throws Exception {
+    String root = localTmpDir + "/7";
+    new File(root).mkdir();
+    OutputStream os = new FileOutputStream(root + "/00000.base.cueball");
+    CueballWriter writer = new CueballWriter(os, 10, HASHER, 5, new GzipCueballCompressionCodec(), 1);
+    writer.write(ByteBuffer.wrap(KEY1), ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}));
+    writer.write(ByteBuffer.wrap(KEY2), ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}));
+    writer.write(ByteBuffer.wrap(KEY3), ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}));
+    writer.close();
+
+    BlockCache blockCache = new BlockCache(1 << 20);
+    CueballReader reader = new CueballReader(root, 10, HASHER, 5, 1, new GzipCueballCompressionCodec(),
+        new HeapReaderCache(0, 0), false, 0, new SynchronousIOEngine(), blockCache);
+
+    // Each block is decompressed once and put in the block cache
+    List<ByteBuffer> keys = Arrays.asList(ByteBuffer.wrap(KEY3), ByteBuffer.wrap(KEY1));
+    List<ReaderResult> results = Arrays.asList(new ReaderResult(), new ReaderResult());
+    reader.getBulk(keys, results);
+    assertTrue(results.get(0).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}), results.get(0).getBuffer());
+    assertFalse(results.get(0).getBlockCacheHit());
+    assertTrue(results.get(1).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 1, 2, 1}), results.get(1).getBuffer());
+    assertFalse(results.get(1).getBlockCacheHit());
+    assertEquals(2, blockCache.getCacheStatistics().getNumItems());
+
+    // Blocks cached by GET BULK serve single GETs and the other way around
+    ReaderResult result = new ReaderResult();
+    reader.get(ByteBuffer.wrap(KEY2), result);
+    assertTrue(result.isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}), result.getBuffer());
+    assertTrue(result.getBlockCacheHit());
+
+    keys = Arrays.asList(ByteBuffer.wrap(KEY2), ByteBuffer.wrap(KEY4), ByteBuffer.wrap(KEY3));
+    results = Arrays.asList(new ReaderResult(), new ReaderResult(), new ReaderResult());
+    reader.getBulk(keys, results);
+    assertTrue(results.get(0).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{2, 1, 2, 1, 2}), results.get(0).getBuffer());
+    assertTrue(results.get(0).getBlockCacheHit());
+    assertFalse(results.get(1).isFound());
+    assertTrue(results.get(1).getBlockCacheHit());
+    assertTrue(results.get(2).isFound());
+    assertEquals(ByteBuffer.wrap(new byte[]{(byte)0x8f, 1, 2, 1, 2}), results.get(2).getBuffer());
+    assertTrue(results.get(2).getBlockCacheHit());
+    assertEquals(2, blockCache.getCacheStatistics().getNumItems());
+
+    reader.close();
+  }
 }
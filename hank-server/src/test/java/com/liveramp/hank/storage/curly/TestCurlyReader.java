@@ -15,15 +15,24 @@
  */
 package com.liveramp.hank.storage.curly;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.liveramp.hank.compression.CompressionCodec;
+import com.liveramp.hank.storage.BlockCache;
+import com.liveramp.hank.storage.HeapReaderCache;
 import com.liveramp.hank.storage.ReaderResult;
+import com.liveramp.hank.storage.SynchronousIOEngine;
 import com.liveramp.hank.storage.map.MapReader;
+import com.liveramp.hank.storage.map.MapWriter;
+import com.liveramp.hank.util.EncodingHelper;
 
 public class TestCurlyReader extends AbstractCurlyTestBase {
   private static final String TMP_TEST_CURLY_READER = "/tmp/TestCurlyReader";
@@ -107,7 +116,125 @@ public class TestCurlyReader extends AbstractCurlyTestBase {
     result.clear();
   }
 
+  public void testGetBulk() throws Exception {
+    new File(TMP_TEST_CURLY_READER).mkdirs();
+    OutputStream s = new FileOutputStream(TMP_TEST_CURLY_READER + "/00000.base.curly");
+    s.write(EXPECTED_RECORD_FILE);
+    s.write(new byte[]{(byte)0x80, (byte)0xa0, 1});
+    s.write(TWENTYK_BLOB);
+    s.flush();
+    s.close();
+
+    MapReader keyfileReader = new MapReader(0,
+        KEY1.array(), new byte[]{0, 0, 0},
+        KEY2.array(), new byte[]{5, 0, 0},
+        KEY3.array(), new byte[]{10, 0, 0},
+        KEY5.array(), new byte[]{15, 0, 0}
+    );
+
+    CurlyReader reader = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader, -1, 10);
+
+    // Keys are not in record file order and some are repeated or missing
+    List<ByteBuffer> keys = Arrays.asList(KEY5, KEY3, KEY4, KEY1, KEY3, KEY2);
+    List<ReaderResult> results = getResults(keys.size());
+    reader.getBulk(keys, results);
+
+    assertTrue(results.get(0).isFound());
+    assertEquals(ByteBuffer.wrap(TWENTYK_BLOB), results.get(0).getBuffer());
+    assertTrue(results.get(1).isFound());
+    assertEquals(VALUE3, results.get(1).getBuffer());
+    assertFalse(results.get(2).isFound());
+    assertTrue(results.get(3).isFound());
+    assertEquals(VALUE1, results.get(3).getBuffer());
+    assertTrue(results.get(4).isFound());
+    assertEquals(VALUE3, results.get(4).getBuffer());
+    assertTrue(results.get(5).isFound());
+    assertEquals(VALUE2, results.get(5).getBuffer());
+
+    // Values are now cached
+    results = getResults(1);
+    reader.getBulk(Arrays.asList(KEY1), results);
+    assertTrue(results.get(0).isFound());
+    assertEquals(VALUE1, results.get(0).getBuffer());
+    assertEquals(true, results.get(0).getL2CacheHit());
+  }
+
+  private static List<ReaderResult> getResults(int numResults) {
+    List<ReaderResult> results = new ArrayList<ReaderResult>();
+    for (int i = 0; i < numResults; ++i) {
+      results.add(new ReaderResult());
+    }
+    return results;
+  }
+
+  public void testReaderMemoryMapped() throws Exception {
+    new File(TMP_TEST_CURLY_READER).mkdirs();
+    OutputStream s = new FileOutputStream(TMP_TEST_CURLY_READER + "/00000.base.curly");
+    s.write(EXPECTED_RECORD_FILE);
+    s.write(new byte[]{(byte)0x80, (byte)0xa0, 1});
+    s.write(TWENTYK_BLOB);
+    s.flush();
+    s.close();
+
+    MapReader keyfileReader = new MapReader(0,
+        KEY1.array(), new byte[]{0, 0, 0},
+        KEY2.array(), new byte[]{5, 0, 0},
+        KEY3.array(), new byte[]{10, 0, 0},
+        KEY5.array(), new byte[]{15, 0, 0}
+    );
+
+    // Read buffer is smaller than the largest value, which is read without a second read
+    CurlyReader reader = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 16, keyfileReader, -1, 1,
+        null, -1, -1, false, 0, true);
+
+    ReaderResult result = new ReaderResult();
+
+    reader.get(KEY1, result);
+    assertTrue(result.isFound());
+    assertTrue(result.isView());
+    assertTrue(result.getMemoryMappedRead());
+    assertEquals(VALUE1, result.getBuffer());
+    result.clear();
+
+    reader.get(KEY4, result);
+    assertFalse(result.isFound());
+    assertFalse(result.getMemoryMappedRead());
+    result.clear();
+
+    reader.get(KEY3, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE3, result.getBuffer());
+    result.clear();
+
+    reader.get(KEY2, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE2, result.getBuffer());
+    result.clear();
+
+    reader.get(KEY5, result);
+    assertTrue(result.isFound());
+    assertEquals(20 * 1024, result.getBuffer().remaining());
+    assertEquals(ByteBuffer.wrap(TWENTYK_BLOB), result.getBuffer());
+    result.clear();
+
+    // Cached values are copied out of the mapping
+    reader.get(KEY5, result);
+    assertTrue(result.isFound());
+    assertTrue(result.getL2CacheHit());
+    assertFalse(result.isView());
+    assertEquals(ByteBuffer.wrap(TWENTYK_BLOB), result.getBuffer());
+    result.clear();
+
+    reader.close();
+  }
+
   private void doTestBlockCompression(CompressionCodec blockCompressionCodec, byte[] compressedBlock) throws IOException {
+    doTestBlockCompression(blockCompressionCodec, compressedBlock, false);
+  }
+
+  private void doTestBlockCompression(CompressionCodec blockCompressionCodec,
+                                      byte[] compressedBlock,
+                                      boolean useMemoryMappedFile) throws IOException {
     new File(TMP_TEST_CURLY_READER).mkdirs();
     OutputStream s = new FileOutputStream(TMP_TEST_CURLY_READER + "/00000.base.curly");
     s.write(compressedBlock);
@@ -121,7 +248,7 @@ public class TestCurlyReader extends AbstractCurlyTestBase {
     );
 
     CurlyReader reader = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader, -1, -1,
-        blockCompressionCodec, 3, 2, true, 0);
+        blockCompressionCodec, 3, 2, true, 0, useMemoryMappedFile);
 
     ReaderResult result = new ReaderResult();
 
@@ -143,6 +270,17 @@ public class TestCurlyReader extends AbstractCurlyTestBase {
     assertTrue(result.isFound());
     assertEquals(VALUE2, result.getBuffer());
     result.clear();
+
+    // All values are in the same block, which is only read once
+    List<ReaderResult> results = getResults(4);
+    reader.getBulk(Arrays.asList(KEY3, KEY4, KEY1, KEY2), results);
+    assertTrue(results.get(0).isFound());
+    assertEquals(VALUE3, results.get(0).getBuffer());
+    assertFalse(results.get(1).isFound());
+    assertTrue(results.get(2).isFound());
+    assertEquals(VALUE1, results.get(2).getBuffer());
+    assertTrue(results.get(3).isFound());
+    assertEquals(VALUE2, results.get(3).getBuffer());
   }
 
   public void testBlockCompressionSlowNoCompression() throws Exception {
@@ -160,4 +298,195 @@ public class TestCurlyReader extends AbstractCurlyTestBase {
   public void testBlockCompressionSnappy() throws Exception {
     doTestBlockCompression(CompressionCodec.SNAPPY, EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_SNAPPY);
   }
+
+  public void testBlockCompressionGzipMemoryMapped() throws Exception {
+    doTestBlockCompression(CompressionCodec.GZIP, EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_GZIP, true);
+  }
+
+  public void testBlockCompressionLz4() throws Exception {
+    doTestBlockCompressionRoundTrip(CompressionCodec.LZ4, -1, 1, false);
+  }
+
+  public void testBlockCompressionZstd() throws Exception {
+    doTestBlockCompressionRoundTrip(CompressionCodec.ZSTD, -1, 1, false);
+  }
+
+  public void testBlockCompressionZstdDictionary() throws Exception {
+    doTestBlockCompressionRoundTrip(CompressionCodec.ZSTD, 256, 1, false);
+  }
+
+  public void testBlockCompressionZstdDictionaryMemoryMapped() throws Exception {
+    doTestBlockCompressionRoundTrip(CompressionCodec.ZSTD, 256, 1, true);
+  }
+
+  public void testBlockCompressionZstdDictionaryConcatenated() throws Exception {
+    // Record files appended to one another, as the merger does, each with its own dictionary
+    doTestBlockCompressionRoundTrip(CompressionCodec.ZSTD, 256, 3, false);
+  }
+
+  // Write record files with the given codec, concatenate them, and read all values back
+  private void doTestBlockCompressionRoundTrip(CompressionCodec blockCompressionCodec,
+                                               int dictionaryNumBytes,
+                                               int numRecordFiles,
+                                               boolean useMemoryMappedFile) throws IOException {
+    int numValuesPerRecordFile = 1000;
+    ByteArrayOutputStream recordFiles = new ByteArrayOutputStream();
+    List<ByteBuffer> keys = new ArrayList<ByteBuffer>();
+    List<ByteBuffer> values = new ArrayList<ByteBuffer>();
+    List<byte[]> keyfileKeysAndValues = new ArrayList<byte[]>();
+    for (int f = 0; f < numRecordFiles; ++f) {
+      ByteArrayOutputStream s = new ByteArrayOutputStream();
+      MapWriter keyfileWriter = new MapWriter();
+      CurlyWriter writer = new CurlyWriter(s, keyfileWriter, 3, -1, blockCompressionCodec, 1024, 2, dictionaryNumBytes);
+      for (int i = f * numValuesPerRecordFile; i < (f + 1) * numValuesPerRecordFile; ++i) {
+        ByteBuffer key = ByteBuffer.wrap(new byte[]{(byte)(i >> 24), (byte)(i >> 16), (byte)(i >> 8), (byte)i});
+        ByteBuffer value = ByteBuffer.wrap(("{\"id\":" + i + ",\"name\":\"user_" + (i * 7) + "\",\"segments\":["
+            + (i % 3) + "," + (i % 5) + "," + (i % 11) + "]}").getBytes("UTF-8"));
+        writer.write(key, value);
+        keys.add(key);
+        values.add(value);
+      }
+      writer.close();
+      // Offsets of appended record files are shifted by the size of the preceding ones
+      for (ByteBuffer key : keyfileWriter.entries.keySet()) {
+        byte[] offset = new byte[5];
+        keyfileWriter.entries.get(key).duplicate().get(offset);
+        long recordFileOffset = EncodingHelper.decodeLittleEndianFixedWidthLong(offset, 0, 3);
+        EncodingHelper.encodeLittleEndianFixedWidthLong(recordFileOffset + recordFiles.size(), offset, 0, 3);
+        keyfileKeysAndValues.add(key.array());
+        keyfileKeysAndValues.add(offset);
+      }
+      recordFiles.write(s.toByteArray());
+    }
+
+    new File(TMP_TEST_CURLY_READER).mkdirs();
+    OutputStream s = new FileOutputStream(TMP_TEST_CURLY_READER + "/00000.base.curly");
+    s.write(recordFiles.toByteArray());
+    s.flush();
+    s.close();
+
+    MapReader keyfileReader = new MapReader(0, keyfileKeysAndValues.toArray(new byte[keyfileKeysAndValues.size()][]));
+    CurlyReader reader = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader, -1, -1,
+        blockCompressionCodec, 3, 2, false, 0, useMemoryMappedFile);
+
+    ReaderResult result = new ReaderResult();
+    for (int i = 0; i < keys.size(); ++i) {
+      reader.get(keys.get(i), result);
+      assertTrue(result.isFound());
+      assertEquals(values.get(i), result.getBuffer());
+      result.clear();
+    }
+
+    List<ReaderResult> results = getResults(keys.size());
+    reader.getBulk(keys, results);
+    for (int i = 0; i < keys.size(); ++i) {
+      assertTrue(results.get(i).isFound());
+      assertEquals(values.get(i), results.get(i).getBuffer());
+    }
+    reader.close();
+  }
+
+  public void testBlockCache() throws Exception {
+    new File(TMP_TEST_CURLY_READER).mkdirs();
+    OutputStream s = new FileOutputStream(TMP_TEST_CURLY_READER + "/00000.base.curly");
+    s.write(EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_GZIP);
+    s.flush();
+    s.close();
+
+    MapReader keyfileReader = new MapReader(0,
+        KEY1.array(), new byte[]{0, 0, 0, 0, 0},
+        KEY2.array(), new byte[]{0, 0, 0, 5, 0},
+        KEY3.array(), new byte[]{0, 0, 0, 10, 0}
+    );
+
+    BlockCache blockCache = new BlockCache(1 << 20);
+    CurlyReader reader = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader,
+        new HeapReaderCache(0, 0), CompressionCodec.GZIP, 3, 2, false, 0, false, new SynchronousIOEngine(), blockCache);
+
+    ReaderResult result = new ReaderResult();
+
+    reader.get(KEY1, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE1, result.getBuffer());
+    assertFalse(result.getBlockCacheHit());
+    result.clear();
+
+    // Other values of the same block are served by the block cache
+    reader.get(KEY3, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE3, result.getBuffer());
+    assertTrue(result.getBlockCacheHit());
+    result.clear();
+
+    reader.get(KEY2, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE2, result.getBuffer());
+    assertTrue(result.getBlockCacheHit());
+    result.clear();
+
+    assertEquals(1, blockCache.getCacheStatistics().getNumItems());
+
+    // A reader of another file does not see the blocks cached by the first one
+    CurlyReader otherReader = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader,
+        new HeapReaderCache(0, 0), CompressionCodec.GZIP, 3, 2, false, 0, false, new SynchronousIOEngine(), blockCache);
+    otherReader.get(KEY1, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE1, result.getBuffer());
+    assertFalse(result.getBlockCacheHit());
+    result.clear();
+
+    assertEquals(2, blockCache.getCacheStatistics().getNumItems());
+
+    reader.close();
+    otherReader.close();
+  }
+
+  public void testGetBulkBlockCache() throws Exception {
+    new File(TMP_TEST_CURLY_READER).mkdirs();
+    OutputStream s = new FileOutputStream(TMP_TEST_CURLY_READER + "/00000.base.curly");
+    s.write(EXPECTED_RECORD_FILE_BLOCK_COMPRESSED_GZIP);
+    s.flush();
+    s.close();
+
+    MapReader keyfileReader = new MapReader(0,
+        KEY1.array(), new byte[]{0, 0, 0, 0, 0},
+        KEY2.array(), new byte[]{0, 0, 0, 5, 0},
+        KEY3.array(), new byte[]{0, 0, 0, 10, 0}
+    );
+
+    BlockCache blockCache = new BlockCache(1 << 20);
+    CurlyReader reader = new CurlyReader(CurlyReader.getLatestBase(TMP_TEST_CURLY_READER), 1024, keyfileReader,
+        new HeapReaderCache(0, 0), CompressionCodec.GZIP, 3, 2, false, 0, false, new SynchronousIOEngine(), blockCache);
+
+    // The block is decompressed once and put in the block cache
+    List<ReaderResult> results = getResults(2);
+    reader.getBulk(Arrays.asList(KEY3, KEY1), results);
+    assertTrue(results.get(0).isFound());
+    assertEquals(VALUE3, results.get(0).getBuffer());
+    assertFalse(results.get(0).getBlockCacheHit());
+    assertTrue(results.get(1).isFound());
+    assertEquals(VALUE1, results.get(1).getBuffer());
+    assertFalse(results.get(1).getBlockCacheHit());
+    assertEquals(1, blockCache.getCacheStatistics().getNumItems());
+
+    // The cached block serves single GETs and later GET BULKs
+    ReaderResult result = new ReaderResult();
+    reader.get(KEY2, result);
+    assertTrue(result.isFound());
+    assertEquals(VALUE2, result.getBuffer());
+    assertTrue(result.getBlockCacheHit());
+
+    results = getResults(3);
+    reader.getBulk(Arrays.asList(KEY2, KEY4, KEY1), results);
+    assertTrue(results.get(0).isFound());
+    assertEquals(VALUE2, results.get(0).getBuffer());
+    assertTrue(results.get(0).getBlockCacheHit());
+    assertFalse(results.get(1).isFound());
+    assertTrue(results.get(2).isFound());
+    assertEquals(VALUE1, results.get(2).getBuffer());
+    assertTrue(results.get(2).getBlockCacheHit());
+    assertEquals(1, blockCache.getCacheStatistics().getNumItems());
+
+    reader.close();
+  }
 }
@@ -132,6 +132,29 @@
     </td>
     </tr>
 
+    <tr>
+    <td>Cache Off-Heap Size:</td>
+    <td>
+      <%= FormatUtils.formatNumBytes(runtimeStatisticsForHost.getCacheStatistics().getNumOffHeapBytes()) %>
+    </td>
+    </tr>
+
+    <tr>
+    <td>Cache Admission Rejections:</td>
+    <td>
+      <%= FormatUtils.formatDouble(runtimeStatisticsForHost.getCacheStatistics().getAdmissionRejectionRate() * 100) %>%
+    </td>
+    </tr>
+
+    <tr>
+    <td>Key File Filters:</td>
+    <td>
+      <%= FormatUtils.formatNumBytes(runtimeStatisticsForHost.getCacheStatistics().getNumFilterBytes()) %>
+      /
+      <%= FormatUtils.formatDouble(runtimeStatisticsForHost.getCacheStatistics().getFilterFalsePositiveRate() * 100) %>% false positives
+    </td>
+    </tr>
+
     <tr>
     <td>Uptime:</td>
     <td>
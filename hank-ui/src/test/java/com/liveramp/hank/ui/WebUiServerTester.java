@@ -162,6 +162,8 @@ public class WebUiServerTester extends ZkMockCoordinatorTestCase {
                 numHits,
                 numHitsL1,
                 numHitsL2,
+                0,
+                0,
                 new DoublePopulationStatisticsAggregator(
                     requestMinimum,
                     requestMaximum,